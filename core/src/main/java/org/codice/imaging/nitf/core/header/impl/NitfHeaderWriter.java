@@ -16,9 +16,13 @@ package org.codice.imaging.nitf.core.header.impl;
 
 import java.io.DataOutput;
 import java.io.IOException;
+import java.util.List;
+
 import org.codice.imaging.nitf.core.DataSource;
 import org.codice.imaging.nitf.core.header.NitfHeader;
+import org.codice.imaging.nitf.core.impl.NitfFileLayout;
 import org.codice.imaging.nitf.core.impl.RGBColourImpl;
+import org.codice.imaging.nitf.core.impl.SegmentLocation;
 import org.codice.imaging.nitf.core.common.impl.AbstractSegmentWriter;
 import org.codice.imaging.nitf.core.common.impl.CommonConstants;
 import org.codice.imaging.nitf.core.common.FileType;
@@ -56,7 +60,42 @@ public class NitfHeaderWriter extends AbstractSegmentWriter {
      * @throws NitfFormatException on TRE parsing problems
      */
     public final void writeFileHeader(final DataSource dataSource) throws IOException, NitfFormatException {
-        NitfHeader header = dataSource.getNitfHeader();
+        NitfFileLayout layout = new NitfFileLayout();
+        for (ImageSegment imageSegment : dataSource.getImageSegments()) {
+            layout.getImageSegments().add(new SegmentLocation(0, imageSegment.getHeaderLength(), imageSegment.getDataLength()));
+        }
+        for (GraphicSegment graphicSegment : dataSource.getGraphicSegments()) {
+            layout.getGraphicSegments().add(new SegmentLocation(0, graphicSegment.getHeaderLength(), graphicSegment.getDataLength()));
+        }
+        for (SymbolSegment symbolSegment : dataSource.getSymbolSegments()) {
+            layout.getSymbolSegments().add(new SegmentLocation(0, symbolSegment.getHeaderLength(), symbolSegment.getDataLength()));
+        }
+        for (LabelSegment labelSegment : dataSource.getLabelSegments()) {
+            layout.getLabelSegments().add(new SegmentLocation(0, labelSegment.getHeaderLength(), labelSegment.getData().length()));
+        }
+        for (TextSegment textSegment : dataSource.getTextSegments()) {
+            layout.getTextSegments().add(new SegmentLocation(0, textSegment.getHeaderLength(), textSegment.getData().length()));
+        }
+        for (DataExtensionSegment desHeader : dataSource.getDataExtensionSegments()) {
+            if (!desHeader.isStreamingMode()) {
+                layout.getDataExtensionSegments().add(new SegmentLocation(0, desHeader.getHeaderLength(), desHeader.getDataLength()));
+            }
+        }
+        writeFileHeader(dataSource.getNitfHeader(), layout);
+    }
+
+    /**
+     * Write out the file-level header, using the segment lengths from a layout.
+     * <p>
+     * Only the subheader and data lengths of the segments in the layout are used. This allows a file header to be
+     * written for segments that will be copied directly from another file, without parsing the segment content.
+     *
+     * @param header the file-level header to write out.
+     * @param layout the segments that will follow the header.
+     * @throws IOException on read or write problems
+     * @throws NitfFormatException on TRE parsing problems
+     */
+    public final void writeFileHeader(final NitfHeader header, final NitfFileLayout layout) throws IOException, NitfFormatException {
         writeBytes(header.getFileType().getTextEquivalent(), NitfHeaderConstants.FHDR_LENGTH + NitfHeaderConstants.FVER_LENGTH);
         writeFixedLengthNumber(header.getComplexityLevel(), NitfHeaderConstants.CLEVEL_LENGTH);
         writeFixedLengthString(header.getStandardType(), NitfHeaderConstants.STYPE_LENGTH);
@@ -78,24 +117,12 @@ public class NitfHeaderWriter extends AbstractSegmentWriter {
 
         long headerLength = getBasicHeaderLength(header);
 
-        int numberOfImageSegments = dataSource.getImageSegments().size();
-        int numberOfGraphicSegments = dataSource.getGraphicSegments().size();
-        int numberOfSymbolSegments = dataSource.getSymbolSegments().size();
-        int numberOfLabelSegments = dataSource.getLabelSegments().size();
-        int numberOfTextSegments = dataSource.getTextSegments().size();
-        headerLength += numberOfImageSegments * (NitfHeaderConstants.LISH_LENGTH + NitfHeaderConstants.LI_LENGTH);
-        headerLength += numberOfLabelSegments * (NitfHeaderConstants.LLSH_LENGTH + NitfHeaderConstants.LL_LENGTH);
-        headerLength += numberOfGraphicSegments * (NitfHeaderConstants.LSSH_LENGTH + NitfHeaderConstants.LS_LENGTH);
-        headerLength += numberOfSymbolSegments * (NitfHeaderConstants.LSSH_LENGTH + NitfHeaderConstants.LS_LENGTH);
-        headerLength += numberOfTextSegments * (NitfHeaderConstants.LTSH_LENGTH + NitfHeaderConstants.LT_LENGTH);
-
-        int numberOfDataExtensionSegments = 0;
-        for (DataExtensionSegment desHeader : dataSource.getDataExtensionSegments()) {
-            if (!desHeader.isStreamingMode()) {
-                headerLength += NitfHeaderConstants.LDSH_LENGTH + NitfHeaderConstants.LD_LENGTH;
-                numberOfDataExtensionSegments++;
-            }
-        }
+        headerLength += layout.getImageSegments().size() * (NitfHeaderConstants.LISH_LENGTH + NitfHeaderConstants.LI_LENGTH);
+        headerLength += layout.getLabelSegments().size() * (NitfHeaderConstants.LLSH_LENGTH + NitfHeaderConstants.LL_LENGTH);
+        headerLength += layout.getGraphicSegments().size() * (NitfHeaderConstants.LSSH_LENGTH + NitfHeaderConstants.LS_LENGTH);
+        headerLength += layout.getSymbolSegments().size() * (NitfHeaderConstants.LSSH_LENGTH + NitfHeaderConstants.LS_LENGTH);
+        headerLength += layout.getTextSegments().size() * (NitfHeaderConstants.LTSH_LENGTH + NitfHeaderConstants.LT_LENGTH);
+        headerLength += layout.getDataExtensionSegments().size() * (NitfHeaderConstants.LDSH_LENGTH + NitfHeaderConstants.LD_LENGTH);
 
         byte[] userDefinedHeaderData = mTreParser.getTREs(header, TreSource.UserDefinedHeaderData);
         int userDefinedHeaderDataLength = userDefinedHeaderData.length;
@@ -111,73 +138,25 @@ public class NitfHeaderWriter extends AbstractSegmentWriter {
         }
         headerLength += extendedHeaderDataLength;
 
-        long fileLength = headerLength;
-        for (ImageSegment imageSegment : dataSource.getImageSegments()) {
-            fileLength += imageSegment.getHeaderLength();
-            fileLength += imageSegment.getDataLength();
-        }
-        for (GraphicSegment graphicSegment : dataSource.getGraphicSegments()) {
-            fileLength += graphicSegment.getHeaderLength();
-            fileLength += graphicSegment.getDataLength();
-        }
-        for (SymbolSegment symbolSegment : dataSource.getSymbolSegments()) {
-            fileLength += symbolSegment.getHeaderLength();
-            fileLength += symbolSegment.getDataLength();
-        }
-        for (LabelSegment labelSegment : dataSource.getLabelSegments()) {
-            fileLength += labelSegment.getHeaderLength();
-            fileLength += labelSegment.getData().length();
-        }
-        for (TextSegment textSegment : dataSource.getTextSegments()) {
-            fileLength += textSegment.getHeaderLength();
-            fileLength += textSegment.getData().length();
-        }
-        for (int i = 0; i < numberOfDataExtensionSegments; ++i) {
-            DataExtensionSegment desHeader = dataSource.getDataExtensionSegments().get(i);
-            if (!desHeader.isStreamingMode()) {
-                fileLength += dataSource.getDataExtensionSegments().get(i).getHeaderLength();
-                fileLength += dataSource.getDataExtensionSegments().get(i).getDataLength();
-            }
-        }
+        long fileLength = headerLength + layout.getSegmentsLength();
         writeFixedLengthNumber(fileLength, NitfHeaderConstants.FL_LENGTH);
         writeFixedLengthNumber(headerLength, NitfHeaderConstants.HL_LENGTH);
-        writeFixedLengthNumber(numberOfImageSegments, NitfHeaderConstants.NUMI_LENGTH);
-        for (ImageSegment imageSegment : dataSource.getImageSegments()) {
-            writeFixedLengthNumber(imageSegment.getHeaderLength(), NitfHeaderConstants.LISH_LENGTH);
-            writeFixedLengthNumber(imageSegment.getDataLength(), NitfHeaderConstants.LI_LENGTH);
-        }
+        writeLengthTable(layout.getImageSegments(), NitfHeaderConstants.NUMI_LENGTH, NitfHeaderConstants.LISH_LENGTH,
+                NitfHeaderConstants.LI_LENGTH);
         if ((header.getFileType() == FileType.NITF_TWO_ONE) || (header.getFileType() == FileType.NSIF_ONE_ZERO)) {
-            writeFixedLengthNumber(numberOfGraphicSegments, NitfHeaderConstants.NUMS_LENGTH);
-            for (GraphicSegment graphicSegment : dataSource.getGraphicSegments()) {
-                writeFixedLengthNumber(graphicSegment.getHeaderLength(), NitfHeaderConstants.LSSH_LENGTH);
-                writeFixedLengthNumber(graphicSegment.getDataLength(), NitfHeaderConstants.LS_LENGTH);
-            }
+            writeLengthTable(layout.getGraphicSegments(), NitfHeaderConstants.NUMS_LENGTH, NitfHeaderConstants.LSSH_LENGTH,
+                    NitfHeaderConstants.LS_LENGTH);
             writeFixedLengthNumber(0, NitfHeaderConstants.NUMX_LENGTH);
         } else {
-            writeFixedLengthNumber(numberOfSymbolSegments, NitfHeaderConstants.NUMS_LENGTH);
-            for (SymbolSegment symbolSegment : dataSource.getSymbolSegments()) {
-                writeFixedLengthNumber(symbolSegment.getHeaderLength(), NitfHeaderConstants.LSSH_LENGTH);
-                writeFixedLengthNumber(symbolSegment.getDataLength(), NitfHeaderConstants.LS_LENGTH);
-            }
-            writeFixedLengthNumber(numberOfLabelSegments, NitfHeaderConstants.NUML20_LENGTH);
-            for (LabelSegment labelSegment : dataSource.getLabelSegments()) {
-                writeFixedLengthNumber(labelSegment.getHeaderLength(), NitfHeaderConstants.LLSH_LENGTH);
-                writeFixedLengthNumber(labelSegment.getData().length(), NitfHeaderConstants.LL_LENGTH);
-            }
-        }
-        writeFixedLengthNumber(numberOfTextSegments, NitfHeaderConstants.NUMT_LENGTH);
-        for (TextSegment textSegment : dataSource.getTextSegments()) {
-            writeFixedLengthNumber(textSegment.getHeaderLength(), NitfHeaderConstants.LTSH_LENGTH);
-            writeFixedLengthNumber(textSegment.getData().length(), NitfHeaderConstants.LT_LENGTH);
-        }
-        writeFixedLengthNumber(numberOfDataExtensionSegments, NitfHeaderConstants.NUMDES_LENGTH);
-        for (int i = 0; i < numberOfDataExtensionSegments; ++i) {
-            DataExtensionSegment desHeader = dataSource.getDataExtensionSegments().get(i);
-            if (!desHeader.isStreamingMode()) {
-                writeFixedLengthNumber(dataSource.getDataExtensionSegments().get(i).getHeaderLength(), NitfHeaderConstants.LDSH_LENGTH);
-                writeFixedLengthNumber(dataSource.getDataExtensionSegments().get(i).getDataLength(), NitfHeaderConstants.LD_LENGTH);
-            }
-        }
+            writeLengthTable(layout.getSymbolSegments(), NitfHeaderConstants.NUMS_LENGTH, NitfHeaderConstants.LSSH_LENGTH,
+                    NitfHeaderConstants.LS_LENGTH);
+            writeLengthTable(layout.getLabelSegments(), NitfHeaderConstants.NUML20_LENGTH, NitfHeaderConstants.LLSH_LENGTH,
+                    NitfHeaderConstants.LL_LENGTH);
+        }
+        writeLengthTable(layout.getTextSegments(), NitfHeaderConstants.NUMT_LENGTH, NitfHeaderConstants.LTSH_LENGTH,
+                NitfHeaderConstants.LT_LENGTH);
+        writeLengthTable(layout.getDataExtensionSegments(), NitfHeaderConstants.NUMDES_LENGTH, NitfHeaderConstants.LDSH_LENGTH,
+                NitfHeaderConstants.LD_LENGTH);
         writeFixedLengthNumber(0, NitfHeaderConstants.NUMRES_LENGTH);
         writeFixedLengthNumber(userDefinedHeaderDataLength, NitfHeaderConstants.UDHDL_LENGTH);
         if (userDefinedHeaderDataLength > 0) {
@@ -191,6 +170,15 @@ public class NitfHeaderWriter extends AbstractSegmentWriter {
         }
     }
 
+    private void writeLengthTable(final List<SegmentLocation> segments, final int countLength, final int subheaderLengthLength,
+            final int dataLengthLength) throws IOException {
+        writeFixedLengthNumber(segments.size(), countLength);
+        for (SegmentLocation segment : segments) {
+            writeFixedLengthNumber(segment.getHeaderLength(), subheaderLengthLength);
+            writeFixedLengthNumber(segment.getDataLength(), dataLengthLength);
+        }
+    }
+
     private long getBasicHeaderLength(final NitfHeader header) {
         long headerLength = NitfHeaderConstants.FHDR_LENGTH
                 + NitfHeaderConstants.FVER_LENGTH
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.codice.imaging.nitf.core.common.FileType;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.security.FileSecurityMetadata;
+import org.codice.imaging.nitf.core.security.SecurityClassification;
+import org.codice.imaging.nitf.core.security.SecurityMetadata;
+import org.codice.imaging.nitf.core.security.impl.FileSecurityMetadataBuilder20;
+import org.codice.imaging.nitf.core.security.impl.FileSecurityMetadataBuilder21;
+
+/**
+ * Works out the file level security metadata for a file made up of content with several security markings.
+ * <p>
+ * The result is based on the security metadata with the highest classification (the first such metadata, if several
+ * have the same classification), so the file is never marked at a lower classification than any of its content.
+ * Markings that only add restrictions are combined: the codewords of all the content are merged, and the control and
+ * handling instructions are taken from whichever content has them. Markings that would release or declassify other
+ * content cannot be combined, so the release instructions of all the content, and the classification system,
+ * declassification and downgrade markings of all the classified content, must be the same.
+ */
+final class FileSecurityMerger {
+
+    private static final int CODEWORDS_LENGTH = 11;
+
+    private static final int CODEWORDS20_LENGTH = 40;
+
+    private FileSecurityMerger() {
+    }
+
+    /**
+     * Combine security metadata into file level security metadata.
+     *
+     * @param contentSecurity the security metadata of each part of the file content (e.g. input files or segments).
+     * @param fileSecurity the file security metadata to take the file copy number and number of copies from.
+     * @param fileType the type of file that the security metadata is for.
+     * @param action what is being done with the content, for error messages (e.g. "merge files").
+     * @return the file level security metadata, which is unclassified if there is no content.
+     * @throws NitfFormatException if the security metadata cannot be combined.
+     */
+    static FileSecurityMetadata merge(final List<? extends SecurityMetadata> contentSecurity, final FileSecurityMetadata fileSecurity,
+            final FileType fileType, final String action) throws NitfFormatException {
+        if (contentSecurity.isEmpty()) {
+            return buildUnclassified(fileType, fileSecurity);
+        }
+        SecurityMetadata highest = contentSecurity.get(0);
+        List<SecurityMetadata> classified = new ArrayList<>();
+        for (SecurityMetadata security : contentSecurity) {
+            if (security.getSecurityClassification().compareTo(highest.getSecurityClassification()) > 0) {
+                highest = security;
+            }
+            if (security.getSecurityClassification() != SecurityClassification.UNCLASSIFIED) {
+                classified.add(security);
+            }
+        }
+        checkSameMarking(contentSecurity, SecurityMetadata::getReleaseInstructions, "release instructions", action);
+        checkSameMarking(classified, SecurityMetadata::getSecurityClassificationSystem, "classification system", action);
+        checkSameMarking(classified, SecurityMetadata::getDeclassificationType, "declassification type", action);
+        checkSameMarking(classified, SecurityMetadata::getDeclassificationDate, "declassification date", action);
+        checkSameMarking(classified, SecurityMetadata::getDeclassificationExemption, "declassification exemption", action);
+        checkSameMarking(classified, SecurityMetadata::getDowngrade, "downgrade", action);
+        checkSameMarking(classified, SecurityMetadata::getDowngradeDate, "downgrade date", action);
+        checkSameMarking(classified, SecurityMetadata::getDowngradeDateOrSpecialCase, "downgrade date or special case", action);
+        checkSameMarking(classified, SecurityMetadata::getDowngradeEvent, "downgrade event", action);
+
+        String controlAndHandling = "";
+        Set<String> codewords = new LinkedHashSet<>();
+        for (SecurityMetadata security : contentSecurity) {
+            String contentControlAndHandling = trimMarking(security.getControlAndHandling());
+            if (controlAndHandling.isEmpty()) {
+                controlAndHandling = contentControlAndHandling;
+            } else if (!contentControlAndHandling.isEmpty() && !contentControlAndHandling.equals(controlAndHandling)) {
+                throw new NitfFormatException(String.format("Cannot %s with different control and handling: %s and %s", action,
+                        controlAndHandling, contentControlAndHandling));
+            }
+            for (String codeword : trimMarking(security.getCodewords()).split(" +")) {
+                if (!codeword.isEmpty()) {
+                    codewords.add(codeword);
+                }
+            }
+        }
+        String mergedCodewords = String.join(" ", codewords);
+        if (fileType == FileType.NITF_TWO_ZERO) {
+            checkMarkingLength(mergedCodewords, CODEWORDS20_LENGTH);
+        } else {
+            checkMarkingLength(mergedCodewords, CODEWORDS_LENGTH);
+        }
+        return build(fileType, highest, mergedCodewords, controlAndHandling, fileSecurity);
+    }
+
+    private static FileSecurityMetadata build(final FileType fileType, final SecurityMetadata base, final String codewords,
+            final String controlAndHandling, final FileSecurityMetadata fileSecurity) {
+        if (fileType == FileType.NITF_TWO_ZERO) {
+            return new FileSecurityMetadataBuilder20(base).codewords(codewords).controlAndHandling(controlAndHandling)
+                    .fileCopyNumber(fileSecurity.getFileCopyNumber()).fileNumberOfCopies(fileSecurity.getFileNumberOfCopies()).get();
+        }
+        return new FileSecurityMetadataBuilder21(base).codewords(codewords).controlAndHandling(controlAndHandling)
+                .fileCopyNumber(fileSecurity.getFileCopyNumber()).fileNumberOfCopies(fileSecurity.getFileNumberOfCopies()).get();
+    }
+
+    private static FileSecurityMetadata buildUnclassified(final FileType fileType, final FileSecurityMetadata fileSecurity) {
+        if (fileType == FileType.NITF_TWO_ZERO) {
+            return new FileSecurityMetadataBuilder20().securityClassification(SecurityClassification.UNCLASSIFIED)
+                    .fileCopyNumber(fileSecurity.getFileCopyNumber()).fileNumberOfCopies(fileSecurity.getFileNumberOfCopies()).get();
+        }
+        return new FileSecurityMetadataBuilder21(fileType).securityClassification(SecurityClassification.UNCLASSIFIED)
+                .fileCopyNumber(fileSecurity.getFileCopyNumber()).fileNumberOfCopies(fileSecurity.getFileNumberOfCopies()).get();
+    }
+
+    private static void checkSameMarking(final List<? extends SecurityMetadata> contentSecurity,
+            final Function<SecurityMetadata, String> marking, final String markingName, final String action)
+            throws NitfFormatException {
+        if (contentSecurity.isEmpty()) {
+            return;
+        }
+        String first = trimMarking(marking.apply(contentSecurity.get(0)));
+        for (SecurityMetadata security : contentSecurity) {
+            String value = trimMarking(marking.apply(security));
+            if (!value.equals(first)) {
+                throw new NitfFormatException(String.format("Cannot %s with different %s: %s and %s", action, markingName, first,
+                        value));
+            }
+        }
+    }
+
+    private static void checkMarkingLength(final String codewords, final int maximumLength) throws NitfFormatException {
+        if (codewords.length() > maximumLength) {
+            throw new NitfFormatException(String.format("Merged codewords (%s) are longer than %d characters", codewords,
+                    maximumLength));
+        }
+    }
+
+    private static String trimMarking(final String marking) {
+        if (marking == null) {
+            return "";
+        }
+        return marking.trim();
+    }
+}
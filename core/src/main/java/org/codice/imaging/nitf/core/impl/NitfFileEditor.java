@@ -0,0 +1,286 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import org.codice.imaging.nitf.core.DataSource;
+import org.codice.imaging.nitf.core.common.CommonBasicSegment;
+import org.codice.imaging.nitf.core.common.FileType;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.dataextension.DataExtensionSegment;
+import org.codice.imaging.nitf.core.graphic.GraphicSegment;
+import org.codice.imaging.nitf.core.header.NitfHeader;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.core.label.LabelSegment;
+import org.codice.imaging.nitf.core.symbol.SymbolSegment;
+import org.codice.imaging.nitf.core.text.TextSegment;
+
+/**
+ * Editor for the file header and segment subheaders (including TREs) of an existing NITF file.
+ * <p>
+ * The headers are parsed without reading any segment data. The caller modifies the headers obtained from
+ * getDataSource(), and then calls write() to update the file.
+ * <p>
+ * If every modified header serialises to the same length as the original, the modified headers are overwritten in
+ * place, and the rest of the file is not touched. Otherwise the file is rewritten, with the segment data (and any
+ * unmodified subheaders) copied by byte range rather than being decoded and re-encoded.
+ * <p>
+ * Streaming mode files, and headers with TREs that overflow into a DES, are not supported.
+ */
+public class NitfFileEditor {
+
+    private final File mFile;
+
+    private final DataSource mDataSource;
+
+    private final SubheaderSerialiser mSerialiser;
+
+    private NitfFileLayout mLayout;
+
+    private byte[] mFileHeader;
+
+    private final List<byte[]> mImageSubheaders = new ArrayList<>();
+    private final List<byte[]> mGraphicSubheaders = new ArrayList<>();
+    private final List<byte[]> mSymbolSubheaders = new ArrayList<>();
+    private final List<byte[]> mLabelSubheaders = new ArrayList<>();
+    private final List<byte[]> mTextSubheaders = new ArrayList<>();
+    private final List<byte[]> mDataExtensionSubheaders = new ArrayList<>();
+
+    /**
+     * Constructor.
+     *
+     * @param file the NITF file to edit.
+     * @throws NitfFormatException if the file could not be parsed, or is a streaming mode file.
+     * @throws IOException if the headers could not be serialised.
+     */
+    public NitfFileEditor(final File file) throws NitfFormatException, IOException {
+        mFile = file;
+        SegmentLocatingParseStrategy parseStrategy = SegmentLocatingParseStrategy.parse(file);
+        mDataSource = parseStrategy.getDataSource();
+        for (DataExtensionSegment des : mDataSource.getDataExtensionSegments()) {
+            if (des.isStreamingMode()) {
+                throw new NitfFormatException("Editing of streaming mode files is not supported");
+            }
+        }
+        mSerialiser = new SubheaderSerialiser();
+        mLayout = parseStrategy.getLayout();
+        mFileHeader = mSerialiser.serialiseFileHeader(mDataSource.getNitfHeader(), mLayout);
+        for (Subheader subheader : serialiseSubheaders()) {
+            subheader.mSnapshots.add(subheader.mBytes);
+        }
+    }
+
+    /**
+     * Get the headers of the file being edited.
+     * <p>
+     * The segments do not contain any data. Changes made to the headers are written out by write().
+     *
+     * @return the file header and segment subheaders.
+     */
+    public final DataSource getDataSource() {
+        return mDataSource;
+    }
+
+    /**
+     * Write any changed headers back to the file.
+     *
+     * @return true if the changes were written in place, false if the file had to be rewritten.
+     * @throws NitfFormatException if a changed header cannot be written, or the file is shorter than expected.
+     * @throws IOException on read or write problems.
+     */
+    public final boolean write() throws NitfFormatException, IOException {
+        List<Subheader> subheaders = serialiseSubheaders();
+        NitfHeader header = mDataSource.getNitfHeader();
+        boolean sameLengths = true;
+        for (Subheader subheader : subheaders) {
+            if (subheader.isChanged()) {
+                checkNoOverflow(subheader.mSegment);
+                sameLengths &= (subheader.mBytes.length == subheader.mLocation.getHeaderLength());
+            }
+        }
+        NitfFileLayout updatedLayout = locate(mLayout.getFileHeaderLength(), subheaders);
+        byte[] fileHeader = mSerialiser.serialiseFileHeader(header, updatedLayout);
+        boolean fileHeaderChanged = !Arrays.equals(fileHeader, mFileHeader);
+        if (fileHeaderChanged) {
+            checkNoOverflow(header);
+            sameLengths &= (fileHeader.length == mLayout.getFileHeaderLength());
+        }
+
+        if (sameLengths) {
+            writeInPlace(fileHeader, fileHeaderChanged, subheaders);
+        } else {
+            rewrite(subheaders);
+            mLayout = locate(fileHeader.length, subheaders);
+        }
+        mFileHeader = fileHeader;
+        for (Subheader subheader : subheaders) {
+            subheader.mSnapshots.set(subheader.mIndex, subheader.mBytes);
+        }
+        return sameLengths;
+    }
+
+    private void writeInPlace(final byte[] fileHeader, final boolean fileHeaderChanged, final List<Subheader> subheaders)
+            throws IOException {
+        try (RandomAccessFile output = new RandomAccessFile(mFile, NitfFileWriter.WRITE_MODE)) {
+            if (fileHeaderChanged) {
+                output.seek(0);
+                output.write(fileHeader);
+            }
+            for (Subheader subheader : subheaders) {
+                if (subheader.isChanged()) {
+                    output.seek(subheader.mLocation.getHeaderOffset());
+                    output.write(subheader.mBytes);
+                }
+            }
+        }
+    }
+
+    private void rewrite(final List<Subheader> subheaders) throws NitfFormatException, IOException {
+        SegmentCopyWriter writer = new SegmentCopyWriter(mDataSource.getNitfHeader());
+        for (Subheader subheader : subheaders) {
+            byte[] replacement = null;
+            if (subheader.isChanged()) {
+                replacement = subheader.mBytes;
+            }
+            subheader.mCopier.add(writer, mFile, subheader.mLocation, replacement);
+        }
+        File tempFile = File.createTempFile(mFile.getName(), ".tmp", mFile.getAbsoluteFile().getParentFile());
+        try {
+            writer.write(tempFile);
+            Files.move(tempFile.toPath(), mFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
+
+    /**
+     * Work out where each segment will be, once the changed subheaders are written out.
+     * <p>
+     * Unchanged subheaders are never re-written, so they keep their original length even if they do not serialise
+     * back to exactly the same bytes.
+     */
+    private NitfFileLayout locate(final long fileHeaderLength, final List<Subheader> subheaders) {
+        NitfFileLayout layout = new NitfFileLayout();
+        layout.setFileHeaderLength(fileHeaderLength);
+        long offset = fileHeaderLength;
+        for (Subheader subheader : subheaders) {
+            SegmentLocation location = new SegmentLocation(offset, subheader.getWrittenLength(), subheader.mLocation.getDataLength());
+            subheader.mLayoutList.apply(layout).add(location);
+            offset = location.getEndOffset();
+        }
+        return layout;
+    }
+
+    private static void checkNoOverflow(final Object headerObject) throws NitfFormatException {
+        if (headerObject instanceof NitfHeader) {
+            NitfHeader header = (NitfHeader) headerObject;
+            if ((header.getUserDefinedHeaderOverflow() != 0) || (header.getExtendedHeaderDataOverflow() != 0)) {
+                throw new NitfFormatException("Cannot update file header with TREs that overflow into a DES");
+            }
+        }
+        if (headerObject instanceof ImageSegment && ((ImageSegment) headerObject).getUserDefinedHeaderOverflow() != 0) {
+            throw new NitfFormatException("Cannot update image subheader with TREs that overflow into a DES");
+        }
+        if (headerObject instanceof CommonBasicSegment && ((CommonBasicSegment) headerObject).getExtendedHeaderDataOverflow() != 0) {
+            throw new NitfFormatException("Cannot update subheader with TREs that overflow into a DES");
+        }
+    }
+
+    /**
+     * Serialise each subheader, in file order.
+     *
+     * @return the current serialised form of each subheader, along with its original location.
+     */
+    private List<Subheader> serialiseSubheaders() throws IOException, NitfFormatException {
+        FileType fileType = mDataSource.getNitfHeader().getFileType();
+        List<Subheader> subheaders = new ArrayList<>();
+        for (int i = 0; i < mDataSource.getImageSegments().size(); ++i) {
+            ImageSegment segment = mDataSource.getImageSegments().get(i);
+            subheaders.add(new Subheader(segment, i, mSerialiser.serialise(segment, fileType), mLayout.getImageSegments().get(i),
+                    NitfFileLayout::getImageSegments, mImageSubheaders, SegmentCopyWriter::addImageSegment));
+        }
+        for (int i = 0; i < mDataSource.getGraphicSegments().size(); ++i) {
+            GraphicSegment segment = mDataSource.getGraphicSegments().get(i);
+            subheaders.add(new Subheader(segment, i, mSerialiser.serialise(segment), mLayout.getGraphicSegments().get(i),
+                    NitfFileLayout::getGraphicSegments, mGraphicSubheaders, SegmentCopyWriter::addGraphicSegment));
+        }
+        for (int i = 0; i < mDataSource.getSymbolSegments().size(); ++i) {
+            SymbolSegment segment = mDataSource.getSymbolSegments().get(i);
+            subheaders.add(new Subheader(segment, i, mSerialiser.serialise(segment), mLayout.getSymbolSegments().get(i),
+                    NitfFileLayout::getSymbolSegments, mSymbolSubheaders, SegmentCopyWriter::addSymbolSegment));
+        }
+        for (int i = 0; i < mDataSource.getLabelSegments().size(); ++i) {
+            LabelSegment segment = mDataSource.getLabelSegments().get(i);
+            subheaders.add(new Subheader(segment, i, mSerialiser.serialise(segment), mLayout.getLabelSegments().get(i),
+                    NitfFileLayout::getLabelSegments, mLabelSubheaders, SegmentCopyWriter::addLabelSegment));
+        }
+        for (int i = 0; i < mDataSource.getTextSegments().size(); ++i) {
+            TextSegment segment = mDataSource.getTextSegments().get(i);
+            subheaders.add(new Subheader(segment, i, mSerialiser.serialise(segment, fileType), mLayout.getTextSegments().get(i),
+                    NitfFileLayout::getTextSegments, mTextSubheaders, SegmentCopyWriter::addTextSegment));
+        }
+        for (int i = 0; i < mDataSource.getDataExtensionSegments().size(); ++i) {
+            DataExtensionSegment segment = mDataSource.getDataExtensionSegments().get(i);
+            subheaders.add(new Subheader(segment, i, mSerialiser.serialise(segment), mLayout.getDataExtensionSegments().get(i),
+                    NitfFileLayout::getDataExtensionSegments, mDataExtensionSubheaders, SegmentCopyWriter::addDataExtensionSegment));
+        }
+        return subheaders;
+    }
+
+    /**
+     * The serialised form of a segment subheader, and where it came from.
+     */
+    private static final class Subheader {
+        private final Object mSegment;
+        private final int mIndex;
+        private final byte[] mBytes;
+        private final SegmentLocation mLocation;
+        private final Function<NitfFileLayout, List<SegmentLocation>> mLayoutList;
+        private final List<byte[]> mSnapshots;
+        private final SegmentCopier mCopier;
+
+        Subheader(final Object segment, final int index, final byte[] bytes, final SegmentLocation location,
+                final Function<NitfFileLayout, List<SegmentLocation>> layoutList, final List<byte[]> snapshots,
+                final SegmentCopier copier) {
+            mSegment = segment;
+            mIndex = index;
+            mBytes = bytes;
+            mLocation = location;
+            mLayoutList = layoutList;
+            mSnapshots = snapshots;
+            mCopier = copier;
+        }
+
+        boolean isChanged() {
+            return !Arrays.equals(mBytes, mSnapshots.get(mIndex));
+        }
+
+        long getWrittenLength() {
+            if (isChanged()) {
+                return mBytes.length;
+            }
+            return mLocation.getHeaderLength();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The segment layout of a NITF file.
+ * <p>
+ * This holds the location of each segment, in the same order as the segments appear in the file (and in the file
+ * header length tables). It is used both to describe an existing file, and to describe the length tables of a file that
+ * is being written.
+ */
+public class NitfFileLayout {
+
+    private long mFileHeaderLength = 0;
+
+    private final List<SegmentLocation> mImageSegments = new ArrayList<>();
+    private final List<SegmentLocation> mGraphicSegments = new ArrayList<>();
+    private final List<SegmentLocation> mSymbolSegments = new ArrayList<>();
+    private final List<SegmentLocation> mLabelSegments = new ArrayList<>();
+    private final List<SegmentLocation> mTextSegments = new ArrayList<>();
+    private final List<SegmentLocation> mDataExtensionSegments = new ArrayList<>();
+
+    /**
+     * Get the length of the file level header.
+     *
+     * @return the file header length in bytes.
+     */
+    public final long getFileHeaderLength() {
+        return mFileHeaderLength;
+    }
+
+    /**
+     * Set the length of the file level header.
+     *
+     * @param headerLength the file header length in bytes.
+     */
+    public final void setFileHeaderLength(final long headerLength) {
+        mFileHeaderLength = headerLength;
+    }
+
+    /**
+     * Return the locations of the image segments.
+     *
+     * @return image segment locations
+     */
+    public final List<SegmentLocation> getImageSegments() {
+        return mImageSegments;
+    }
+
+    /**
+     * Return the locations of the graphic segments.
+     *
+     * @return graphic segment locations
+     */
+    public final List<SegmentLocation> getGraphicSegments() {
+        return mGraphicSegments;
+    }
+
+    /**
+     * Return the locations of the symbol segments.
+     *
+     * @return symbol segment locations
+     */
+    public final List<SegmentLocation> getSymbolSegments() {
+        return mSymbolSegments;
+    }
+
+    /**
+     * Return the locations of the label segments.
+     *
+     * @return label segment locations
+     */
+    public final List<SegmentLocation> getLabelSegments() {
+        return mLabelSegments;
+    }
+
+    /**
+     * Return the locations of the text segments.
+     *
+     * @return text segment locations
+     */
+    public final List<SegmentLocation> getTextSegments() {
+        return mTextSegments;
+    }
+
+    /**
+     * Return the locations of the data extension segments.
+     *
+     * @return data extension segment locations
+     */
+    public final List<SegmentLocation> getDataExtensionSegments() {
+        return mDataExtensionSegments;
+    }
+
+    /**
+     * Get the total length of the segments in this layout.
+     *
+     * @return the sum of the length of each segment subheader and data, in bytes.
+     */
+    public final long getSegmentsLength() {
+        long segmentsLength = 0;
+        for (List<SegmentLocation> segments : getAllSegmentLists()) {
+            for (SegmentLocation segment : segments) {
+                segmentsLength += segment.getHeaderLength() + segment.getDataLength();
+            }
+        }
+        return segmentsLength;
+    }
+
+    /**
+     * Get the offset of the first byte after the last segment.
+     *
+     * @return the end offset of the last segment, or the file header length if there are no segments.
+     */
+    public final long getEndOffset() {
+        long endOffset = mFileHeaderLength;
+        for (List<SegmentLocation> segments : getAllSegmentLists()) {
+            for (SegmentLocation segment : segments) {
+                endOffset = Math.max(endOffset, segment.getEndOffset());
+            }
+        }
+        return endOffset;
+    }
+
+    private List<List<SegmentLocation>> getAllSegmentLists() {
+        List<List<SegmentLocation>> allSegments = new ArrayList<>();
+        allSegments.add(mImageSegments);
+        allSegments.add(mGraphicSegments);
+        allSegments.add(mSymbolSegments);
+        allSegments.add(mLabelSegments);
+        allSegments.add(mTextSegments);
+        allSegments.add(mDataExtensionSegments);
+        return allSegments;
+    }
+}
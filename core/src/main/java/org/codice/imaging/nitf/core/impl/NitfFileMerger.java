@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codice.imaging.nitf.core.DataSource;
+import org.codice.imaging.nitf.core.common.CommonBasicSegment;
+import org.codice.imaging.nitf.core.common.FileType;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.dataextension.DataExtensionSegment;
+import org.codice.imaging.nitf.core.graphic.GraphicSegment;
+import org.codice.imaging.nitf.core.header.NitfHeader;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.core.label.LabelSegment;
+import org.codice.imaging.nitf.core.security.FileSecurityMetadata;
+import org.codice.imaging.nitf.core.symbol.SymbolSegment;
+import org.codice.imaging.nitf.core.text.TextSegment;
+
+/**
+ * Merges the segments of several NITF files into a single NITF file.
+ * <p>
+ * The file header is taken from the first input file, with the complexity level raised to the highest complexity level
+ * of the inputs. For NITF 2.1 and NSIF 1.0 files, the complexity level is also raised to the lowest level that allows
+ * the merged file length and the number of segments of each type, and the merge is rejected if no complexity level
+ * allows them. The segments of each type are written in input file order.
+ * <p>
+ * The file security metadata is based on the input with the highest file security classification (the first such
+ * input, if several have the same classification), so the merged file is never marked at a lower classification than
+ * any of its inputs. Markings that only add restrictions are combined: the codewords of all the inputs are merged, and
+ * the control and handling instructions are taken from whichever input has them. Markings that would release or
+ * declassify the content of another input cannot be combined, so the release instructions of every input, and the
+ * classification system, declassification and downgrade markings of every classified input, must be the same. The file
+ * copy number and number of copies are taken from the first input.
+ * <p>
+ * Each input is parsed (headers only) in turn, and only the segment locations are retained. The segment data is then
+ * copied by byte range, so memory use does not depend on the size of the segment data. The display and attachment
+ * levels of segments from the second and later inputs are shifted so they do not collide with earlier inputs, which
+ * requires those subheaders to be re-serialised. Subheaders from the first input are copied unchanged.
+ * <p>
+ * All inputs must have the same file type. Streaming mode files are not supported. TRE overflow is only supported in the
+ * first input, since overflow segments refer to segments by index.
+ */
+public class NitfFileMerger {
+
+    private static final int MAX_DISPLAY_LEVEL = 999;
+
+    // NITF 2.1 / NSIF 1.0 complexity levels (MIL-STD-2500C Table A-10), with the file length and segment count limits
+    // of each level.
+    private static final int[] COMPLEXITY_LEVELS = {3, 5, 6, 7, 9};
+
+    private static final long[] MAX_FILE_LENGTHS = {(50L << 20) - 1, (1L << 30) - 1, (2L << 30) - 1, (10L << 30) - 1, 999999999998L};
+
+    private static final int[] MAX_IMAGE_SEGMENTS = {20, 20, 100, 100, 999};
+
+    private static final int[] MAX_GRAPHIC_SEGMENTS = {100, 100, 100, 100, 999};
+
+    private static final int[] MAX_TEXT_SEGMENTS = {32, 32, 32, 32, 999};
+
+    private static final int[] MAX_DATA_EXTENSION_SEGMENTS = {100, 100, 100, 100, 999};
+
+    private final List<File> mInputFiles;
+
+    /**
+     * Constructor.
+     *
+     * @param inputFiles the files to merge, in order.
+     */
+    public NitfFileMerger(final List<File> inputFiles) {
+        mInputFiles = new ArrayList<>(inputFiles);
+    }
+
+    /**
+     * Write the merged file.
+     *
+     * @param outputFile the file to write to. Any existing content is replaced. This must not be one of the input files.
+     * @throws NitfFormatException if an input could not be parsed or cannot be merged.
+     * @throws IOException on read or write problems.
+     */
+    public final void write(final File outputFile) throws NitfFormatException, IOException {
+        if (mInputFiles.isEmpty()) {
+            throw new NitfFormatException("No input files to merge");
+        }
+        SubheaderSerialiser serialiser = new SubheaderSerialiser();
+        NitfHeader mergedHeader = null;
+        SegmentCopyWriter writer = null;
+        int levelOffset = 0;
+        List<FileSecurityMetadata> inputSecurity = new ArrayList<>();
+        for (File inputFile : mInputFiles) {
+            SegmentLocatingParseStrategy parseStrategy = SegmentLocatingParseStrategy.parse(inputFile);
+            DataSource dataSource = parseStrategy.getDataSource();
+            NitfFileLayout layout = parseStrategy.getLayout();
+            NitfHeader header = dataSource.getNitfHeader();
+            boolean isFirstInput = (mergedHeader == null);
+            if (isFirstInput) {
+                mergedHeader = header;
+                writer = new SegmentCopyWriter(mergedHeader);
+            } else {
+                if (header.getFileType() != mergedHeader.getFileType()) {
+                    throw new NitfFormatException(String.format("Cannot merge %s file %s into %s file", header.getFileType(),
+                            inputFile.getName(), mergedHeader.getFileType()));
+                }
+                mergedHeader.setComplexityLevel(Math.max(mergedHeader.getComplexityLevel(), header.getComplexityLevel()));
+            }
+            inputSecurity.add(header.getFileSecurityMetadata());
+            FileType fileType = header.getFileType();
+            int maxLevel = levelOffset;
+
+            for (int i = 0; i < dataSource.getImageSegments().size(); ++i) {
+                ImageSegment segment = dataSource.getImageSegments().get(i);
+                byte[] replacementSubheader = null;
+                if (!isFirstInput) {
+                    checkNoOverflow(segment, inputFile);
+                    if (segment.getUserDefinedHeaderOverflow() != 0) {
+                        throw overflowException(inputFile);
+                    }
+                    segment.setImageDisplayLevel(segment.getImageDisplayLevel() + levelOffset);
+                    shiftAttachmentLevel(segment, levelOffset);
+                    replacementSubheader = serialiser.serialise(segment, fileType);
+                }
+                maxLevel = Math.max(maxLevel, segment.getImageDisplayLevel());
+                writer.addImageSegment(inputFile, layout.getImageSegments().get(i), replacementSubheader);
+            }
+            for (int i = 0; i < dataSource.getGraphicSegments().size(); ++i) {
+                GraphicSegment segment = dataSource.getGraphicSegments().get(i);
+                byte[] replacementSubheader = null;
+                if (!isFirstInput) {
+                    checkNoOverflow(segment, inputFile);
+                    segment.setGraphicDisplayLevel(segment.getGraphicDisplayLevel() + levelOffset);
+                    shiftAttachmentLevel(segment, levelOffset);
+                    replacementSubheader = serialiser.serialise(segment);
+                }
+                maxLevel = Math.max(maxLevel, segment.getGraphicDisplayLevel());
+                writer.addGraphicSegment(inputFile, layout.getGraphicSegments().get(i), replacementSubheader);
+            }
+            for (int i = 0; i < dataSource.getSymbolSegments().size(); ++i) {
+                SymbolSegment segment = dataSource.getSymbolSegments().get(i);
+                byte[] replacementSubheader = null;
+                if (!isFirstInput) {
+                    checkNoOverflow(segment, inputFile);
+                    segment.setSymbolDisplayLevel(segment.getSymbolDisplayLevel() + levelOffset);
+                    shiftAttachmentLevel(segment, levelOffset);
+                    replacementSubheader = serialiser.serialise(segment);
+                }
+                maxLevel = Math.max(maxLevel, segment.getSymbolDisplayLevel());
+                writer.addSymbolSegment(inputFile, layout.getSymbolSegments().get(i), replacementSubheader);
+            }
+            for (int i = 0; i < dataSource.getLabelSegments().size(); ++i) {
+                LabelSegment segment = dataSource.getLabelSegments().get(i);
+                byte[] replacementSubheader = null;
+                if (!isFirstInput) {
+                    checkNoOverflow(segment, inputFile);
+                    segment.setLabelDisplayLevel(segment.getLabelDisplayLevel() + levelOffset);
+                    shiftAttachmentLevel(segment, levelOffset);
+                    replacementSubheader = serialiser.serialise(segment);
+                }
+                maxLevel = Math.max(maxLevel, segment.getLabelDisplayLevel());
+                writer.addLabelSegment(inputFile, layout.getLabelSegments().get(i), replacementSubheader);
+            }
+            for (int i = 0; i < dataSource.getTextSegments().size(); ++i) {
+                TextSegment segment = dataSource.getTextSegments().get(i);
+                byte[] replacementSubheader = null;
+                if (!isFirstInput) {
+                    checkNoOverflow(segment, inputFile);
+                    if (segment.getAttachmentLevel() != 0) {
+                        shiftAttachmentLevel(segment, levelOffset);
+                        replacementSubheader = serialiser.serialise(segment, fileType);
+                    }
+                }
+                writer.addTextSegment(inputFile, layout.getTextSegments().get(i), replacementSubheader);
+            }
+            for (int i = 0; i < dataSource.getDataExtensionSegments().size(); ++i) {
+                DataExtensionSegment segment = dataSource.getDataExtensionSegments().get(i);
+                if (segment.isStreamingMode()) {
+                    throw new NitfFormatException(String.format("Cannot merge %s: streaming mode files are not supported",
+                            inputFile.getName()));
+                }
+                if (!isFirstInput && segment.isTreOverflow()) {
+                    throw overflowException(inputFile);
+                }
+                writer.addDataExtensionSegment(inputFile, layout.getDataExtensionSegments().get(i), null);
+            }
+
+            if (maxLevel > MAX_DISPLAY_LEVEL) {
+                throw new NitfFormatException(String.format("Merged file would need display level %d, maximum is %d", maxLevel,
+                        MAX_DISPLAY_LEVEL));
+            }
+            levelOffset = maxLevel;
+        }
+        mergedHeader.setFileSecurityMetadata(FileSecurityMerger.merge(inputSecurity, mergedHeader.getFileSecurityMetadata(),
+                mergedHeader.getFileType(), "merge files"));
+        if (mergedHeader.getFileType() != FileType.NITF_TWO_ZERO) {
+            NitfFileLayout outputLayout = writer.getOutputLayout();
+            long fileLength = serialiser.serialiseFileHeader(mergedHeader, outputLayout).length + outputLayout.getSegmentsLength();
+            mergedHeader.setComplexityLevel(Math.max(mergedHeader.getComplexityLevel(),
+                    getRequiredComplexityLevel(fileLength, outputLayout)));
+        }
+        writer.write(outputFile);
+    }
+
+    /**
+     * Get the lowest NITF 2.1 complexity level that allows a file of the specified length and segment counts.
+     *
+     * @param fileLength the length of the whole file, in bytes.
+     * @param layout the segments in the file.
+     * @return the complexity level.
+     * @throws NitfFormatException if no complexity level allows the file.
+     */
+    private static int getRequiredComplexityLevel(final long fileLength, final NitfFileLayout layout) throws NitfFormatException {
+        for (int i = 0; i < COMPLEXITY_LEVELS.length; ++i) {
+            if ((fileLength <= MAX_FILE_LENGTHS[i])
+                    && (layout.getImageSegments().size() <= MAX_IMAGE_SEGMENTS[i])
+                    && (layout.getGraphicSegments().size() <= MAX_GRAPHIC_SEGMENTS[i])
+                    && (layout.getTextSegments().size() <= MAX_TEXT_SEGMENTS[i])
+                    && (layout.getDataExtensionSegments().size() <= MAX_DATA_EXTENSION_SEGMENTS[i])) {
+                return COMPLEXITY_LEVELS[i];
+            }
+        }
+        throw new NitfFormatException(String.format("Merged file (%d bytes, %d image, %d graphic, %d text and %d data extension "
+                + "segments) exceeds complexity level %d", fileLength, layout.getImageSegments().size(),
+                layout.getGraphicSegments().size(), layout.getTextSegments().size(), layout.getDataExtensionSegments().size(),
+                COMPLEXITY_LEVELS[COMPLEXITY_LEVELS.length - 1]));
+    }
+
+    private static void checkNoOverflow(final CommonBasicSegment segment, final File inputFile) throws NitfFormatException {
+        if (segment.getExtendedHeaderDataOverflow() != 0) {
+            throw overflowException(inputFile);
+        }
+    }
+
+    private static NitfFormatException overflowException(final File inputFile) {
+        return new NitfFormatException(String.format("Cannot merge %s: TRE overflow is only supported in the first input",
+                inputFile.getName()));
+    }
+
+    private static void shiftAttachmentLevel(final CommonBasicSegment segment, final int levelOffset) {
+        if (segment.getAttachmentLevel() != 0) {
+            segment.setAttachmentLevel(segment.getAttachmentLevel() + levelOffset);
+        }
+    }
+}
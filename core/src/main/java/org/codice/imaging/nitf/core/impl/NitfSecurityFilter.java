@@ -0,0 +1,311 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import org.codice.imaging.nitf.core.DataSource;
+import org.codice.imaging.nitf.core.common.CommonBasicSegment;
+import org.codice.imaging.nitf.core.common.CommonSegment;
+import org.codice.imaging.nitf.core.common.FileType;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.dataextension.DataExtensionSegment;
+import org.codice.imaging.nitf.core.header.NitfHeader;
+import org.codice.imaging.nitf.core.security.FileSecurityMetadata;
+import org.codice.imaging.nitf.core.security.SecurityMetadata;
+
+/**
+ * Copies a NITF file, dropping segments whose security metadata does not satisfy a predicate.
+ * <p>
+ * The source file headers are parsed without reading any segment data. The kept segments are copied by byte range, and
+ * the file header is rebuilt from the source file header (as returned by getDataSource()).
+ * <p>
+ * When any segment is dropped, the file level security metadata is recomputed from the security metadata of the kept
+ * segments, in the same way as NitfFileMerger combines the security metadata of its inputs, so the filtered file does
+ * not carry the classification or markings of the dropped segments. The file copy number and number of copies are kept
+ * from the source file. If the kept segments have markings that cannot be combined (e.g. different release
+ * instructions), or the file level security metadata should be something else, set it with setFileSecurityMetadata().
+ * When every segment is kept, the source file security metadata is used unchanged.
+ * <p>
+ * A kept segment that is attached to a dropped segment is written as unattached (attachment level 0), which requires its
+ * subheader to be re-serialised. Other subheaders are copied unchanged.
+ * <p>
+ * TRE overflow segments are dropped along with the segment they extend. Since overflow segments refer to segments by
+ * index, filtering fails if the kept overflow segments (or the segments they extend) would need to be renumbered.
+ * Streaming mode files are not supported.
+ */
+public class NitfSecurityFilter {
+
+    private static final String FILE_HEADER_UDHD = "UDHD";
+    private static final String FILE_HEADER_XHD = "XHD";
+    private static final String IMAGE_UDID = "UDID";
+    private static final String IMAGE_IXSHD = "IXSHD";
+    private static final String GRAPHIC_OR_SYMBOL_SXSHD = "SXSHD";
+    private static final String LABEL_LXSHD = "LXSHD";
+    private static final String TEXT_TXSHD = "TXSHD";
+
+    private final File mSource;
+
+    private final SegmentLocatingParseStrategy mParseStrategy;
+
+    private SubheaderSerialiser mSerialiser = null;
+
+    private FileSecurityMetadata mFileSecurityMetadata = null;
+
+    /**
+     * Constructor.
+     *
+     * @param source the NITF file to filter.
+     * @throws NitfFormatException if the file could not be parsed.
+     */
+    public NitfSecurityFilter(final File source) throws NitfFormatException {
+        mSource = source;
+        mParseStrategy = SegmentLocatingParseStrategy.parse(source);
+    }
+
+    /**
+     * Get the headers of the source file.
+     * <p>
+     * Changes to the file header are written to the filtered file, except that the file security metadata is recomputed
+     * from the kept segments when any segment is dropped (use setFileSecurityMetadata() to write something else). The
+     * segments do not contain any data.
+     *
+     * @return the file header and segment subheaders.
+     */
+    public final DataSource getDataSource() {
+        return mParseStrategy.getDataSource();
+    }
+
+    /**
+     * Set the file level security metadata for the filtered file, instead of computing it from the kept segments.
+     *
+     * @param fileSecurityMetadata the file security metadata to write, or null (the default) to compute it from the
+     * security metadata of the kept segments.
+     */
+    public final void setFileSecurityMetadata(final FileSecurityMetadata fileSecurityMetadata) {
+        mFileSecurityMetadata = fileSecurityMetadata;
+    }
+
+    /**
+     * Write a copy of the source file containing only the segments that satisfy the predicate.
+     *
+     * @param keepSegment predicate that is tested against the security metadata of each segment. Segments are kept if
+     * the predicate returns true.
+     * @param outputFile the file to write to. Any existing content is replaced. This must not be the source file.
+     * @throws NitfFormatException if the source file cannot be filtered, the security metadata of the kept segments
+     * cannot be combined, or the output headers could not be serialised.
+     * @throws IOException on read or write problems.
+     */
+    public final void write(final Predicate<SecurityMetadata> keepSegment, final File outputFile)
+            throws NitfFormatException, IOException {
+        DataSource dataSource = mParseStrategy.getDataSource();
+        NitfFileLayout layout = mParseStrategy.getLayout();
+        FileType fileType = dataSource.getNitfHeader().getFileType();
+
+        List<Integer> images = select(dataSource.getImageSegments(), keepSegment);
+        List<Integer> graphics = select(dataSource.getGraphicSegments(), keepSegment);
+        List<Integer> symbols = select(dataSource.getSymbolSegments(), keepSegment);
+        List<Integer> labels = select(dataSource.getLabelSegments(), keepSegment);
+        List<Integer> texts = select(dataSource.getTextSegments(), keepSegment);
+        List<Integer> dataExtensions = new ArrayList<>();
+        for (int i = 0; i < dataSource.getDataExtensionSegments().size(); ++i) {
+            DataExtensionSegment des = dataSource.getDataExtensionSegments().get(i);
+            if (des.isStreamingMode()) {
+                throw new NitfFormatException("Filtering of streaming mode files is not supported");
+            }
+            boolean keep = keepSegment.test(des.getSecurityMetadata());
+            if (des.isTreOverflow()) {
+                List<Integer> extended = getExtendedSegments(des, fileType, images, graphics, symbols, labels, texts);
+                boolean extendedKept = (extended == null) || extended.contains(des.getItemOverflowed() - 1);
+                if (extendedKept && !keep) {
+                    throw new NitfFormatException(String.format("Data extension segment %d holds TRE overflow for a kept segment", i));
+                }
+                keep = keep && extendedKept;
+            }
+            if (keep) {
+                dataExtensions.add(i);
+            }
+        }
+        checkOverflowNumbering(dataExtensions, fileType, images, graphics, symbols, labels, texts);
+
+        Set<Integer> displayLevels = new HashSet<>();
+        for (Integer index : images) {
+            displayLevels.add(dataSource.getImageSegments().get(index).getImageDisplayLevel());
+        }
+        for (Integer index : graphics) {
+            displayLevels.add(dataSource.getGraphicSegments().get(index).getGraphicDisplayLevel());
+        }
+        for (Integer index : symbols) {
+            displayLevels.add(dataSource.getSymbolSegments().get(index).getSymbolDisplayLevel());
+        }
+        for (Integer index : labels) {
+            displayLevels.add(dataSource.getLabelSegments().get(index).getLabelDisplayLevel());
+        }
+
+        NitfHeader header = dataSource.getNitfHeader();
+        FileSecurityMetadata sourceFileSecurity = header.getFileSecurityMetadata();
+        FileSecurityMetadata fileSecurity = mFileSecurityMetadata;
+        if (fileSecurity == null) {
+            List<SecurityMetadata> keptSecurity = new ArrayList<>();
+            addSecurityMetadata(dataSource.getImageSegments(), images, keptSecurity);
+            addSecurityMetadata(dataSource.getGraphicSegments(), graphics, keptSecurity);
+            addSecurityMetadata(dataSource.getSymbolSegments(), symbols, keptSecurity);
+            addSecurityMetadata(dataSource.getLabelSegments(), labels, keptSecurity);
+            addSecurityMetadata(dataSource.getTextSegments(), texts, keptSecurity);
+            addSecurityMetadata(dataSource.getDataExtensionSegments(), dataExtensions, keptSecurity);
+            if (keptSecurity.size() == getSegmentCount(dataSource)) {
+                fileSecurity = sourceFileSecurity;
+            } else {
+                fileSecurity = FileSecurityMerger.merge(keptSecurity, sourceFileSecurity, fileType, "combine kept segments");
+            }
+        }
+
+        SegmentCopyWriter writer = new SegmentCopyWriter(header);
+        addSegments(dataSource.getImageSegments(), images, layout.getImageSegments(), displayLevels,
+                segment -> getSerialiser().serialise(segment, fileType), SegmentCopyWriter::addImageSegment, writer);
+        addSegments(dataSource.getGraphicSegments(), graphics, layout.getGraphicSegments(), displayLevels,
+                segment -> getSerialiser().serialise(segment), SegmentCopyWriter::addGraphicSegment, writer);
+        addSegments(dataSource.getSymbolSegments(), symbols, layout.getSymbolSegments(), displayLevels,
+                segment -> getSerialiser().serialise(segment), SegmentCopyWriter::addSymbolSegment, writer);
+        addSegments(dataSource.getLabelSegments(), labels, layout.getLabelSegments(), displayLevels,
+                segment -> getSerialiser().serialise(segment), SegmentCopyWriter::addLabelSegment, writer);
+        addSegments(dataSource.getTextSegments(), texts, layout.getTextSegments(), displayLevels,
+                segment -> getSerialiser().serialise(segment, fileType), SegmentCopyWriter::addTextSegment, writer);
+        for (Integer index : dataExtensions) {
+            writer.addDataExtensionSegment(mSource, layout.getDataExtensionSegments().get(index), null);
+        }
+        header.setFileSecurityMetadata(fileSecurity);
+        try {
+            writer.write(outputFile);
+        } finally {
+            header.setFileSecurityMetadata(sourceFileSecurity);
+        }
+    }
+
+    private static void addSecurityMetadata(final List<? extends CommonSegment> segments, final List<Integer> kept,
+            final List<SecurityMetadata> keptSecurity) {
+        for (Integer index : kept) {
+            keptSecurity.add(segments.get(index).getSecurityMetadata());
+        }
+    }
+
+    private static int getSegmentCount(final DataSource dataSource) {
+        return dataSource.getImageSegments().size() + dataSource.getGraphicSegments().size()
+                + dataSource.getSymbolSegments().size() + dataSource.getLabelSegments().size()
+                + dataSource.getTextSegments().size() + dataSource.getDataExtensionSegments().size();
+    }
+
+    private static List<Integer> select(final List<? extends CommonSegment> segments, final Predicate<SecurityMetadata> keepSegment) {
+        List<Integer> selected = new ArrayList<>();
+        for (int i = 0; i < segments.size(); ++i) {
+            if (keepSegment.test(segments.get(i).getSecurityMetadata())) {
+                selected.add(i);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Get the kept segments of the type that a TRE overflow segment extends.
+     *
+     * @return the indexes of the kept segments, or null if the overflow is for the file header.
+     */
+    private static List<Integer> getExtendedSegments(final DataExtensionSegment des, final FileType fileType,
+            final List<Integer> images, final List<Integer> graphics, final List<Integer> symbols, final List<Integer> labels,
+            final List<Integer> texts) throws NitfFormatException {
+        String overflowedHeaderType = des.getOverflowedHeaderType().trim();
+        switch (overflowedHeaderType) {
+            case FILE_HEADER_UDHD:
+            case FILE_HEADER_XHD:
+                return null;
+            case IMAGE_UDID:
+            case IMAGE_IXSHD:
+                return images;
+            case GRAPHIC_OR_SYMBOL_SXSHD:
+                if (fileType == FileType.NITF_TWO_ZERO) {
+                    return symbols;
+                }
+                return graphics;
+            case LABEL_LXSHD:
+                return labels;
+            case TEXT_TXSHD:
+                return texts;
+            default:
+                throw new NitfFormatException("Unknown TRE overflow header type: " + overflowedHeaderType);
+        }
+    }
+
+    /**
+     * Check that the kept overflow segments, and the segments they extend, keep the same (one based) index.
+     */
+    private void checkOverflowNumbering(final List<Integer> dataExtensions, final FileType fileType, final List<Integer> images,
+            final List<Integer> graphics, final List<Integer> symbols, final List<Integer> labels, final List<Integer> texts)
+            throws NitfFormatException {
+        for (int i = 0; i < dataExtensions.size(); ++i) {
+            DataExtensionSegment des = mParseStrategy.getDataSource().getDataExtensionSegments().get(dataExtensions.get(i));
+            if (!des.isTreOverflow()) {
+                continue;
+            }
+            List<Integer> extended = getExtendedSegments(des, fileType, images, graphics, symbols, labels, texts);
+            boolean extendedRenumbered = (extended != null) && (extended.indexOf(des.getItemOverflowed() - 1) != des.getItemOverflowed() - 1);
+            if ((dataExtensions.get(i) != i) || extendedRenumbered) {
+                throw new NitfFormatException(String.format("Data extension segment %d holds TRE overflow that would need renumbering",
+                        dataExtensions.get(i)));
+            }
+        }
+    }
+
+    private <T extends CommonBasicSegment> void addSegments(final List<T> segments, final List<Integer> kept,
+            final List<SegmentLocation> locations, final Set<Integer> displayLevels, final SubheaderFunction<T> serialise,
+            final SegmentCopier copier, final SegmentCopyWriter writer) throws NitfFormatException, IOException {
+        for (Integer index : kept) {
+            T segment = segments.get(index);
+            byte[] replacementSubheader = null;
+            int attachmentLevel = segment.getAttachmentLevel();
+            if ((attachmentLevel != 0) && !displayLevels.contains(attachmentLevel)) {
+                try {
+                    segment.setAttachmentLevel(0);
+                    replacementSubheader = serialise.apply(segment);
+                } finally {
+                    segment.setAttachmentLevel(attachmentLevel);
+                }
+            }
+            copier.add(writer, mSource, locations.get(index), replacementSubheader);
+        }
+    }
+
+    private SubheaderSerialiser getSerialiser() throws NitfFormatException {
+        if (mSerialiser == null) {
+            mSerialiser = new SubheaderSerialiser();
+        }
+        return mSerialiser;
+    }
+
+    /**
+     * Serialises a segment subheader.
+     *
+     * @param <T> the type of segment.
+     */
+    @FunctionalInterface
+    private interface SubheaderFunction<T> {
+        byte[] apply(T segment) throws IOException, NitfFormatException;
+    }
+}
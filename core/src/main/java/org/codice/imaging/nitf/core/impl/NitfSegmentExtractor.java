@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.codice.imaging.nitf.core.DataSource;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.dataextension.DataExtensionSegment;
+import org.codice.imaging.nitf.core.header.NitfHeader;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+
+/**
+ * Extracts selected image and data extension segments from a NITF file into new NITF files.
+ * <p>
+ * The source file headers are parsed once, without reading any segment data. Each extraction writes a new file header
+ * (based on the source file header), and copies the selected subheaders and segment data by byte range. TREs are not
+ * re-serialised, and image data is not decoded.
+ * <p>
+ * An extracted image that is attached to an image that is not part of the same extraction is written as unattached
+ * (attachment level 0), since its subheader would otherwise refer to a segment that is not in the output file.
+ * <p>
+ * Files whose header TREs overflow into a DES cannot be extracted from, since the copied file header would refer to the
+ * overflow DES by its index in the source file.
+ */
+public class NitfSegmentExtractor {
+
+    private final File mSource;
+
+    private final SegmentLocatingParseStrategy mParseStrategy;
+
+    private SubheaderSerialiser mSerialiser = null;
+
+    /**
+     * Constructor.
+     *
+     * @param source the NITF file to extract segments from.
+     * @throws NitfFormatException if the file could not be parsed.
+     */
+    public NitfSegmentExtractor(final File source) throws NitfFormatException {
+        mSource = source;
+        mParseStrategy = SegmentLocatingParseStrategy.parse(source);
+    }
+
+    /**
+     * Get the headers of the source file.
+     * <p>
+     * This can be used to decide which segments to extract. The segments do not contain any data.
+     *
+     * @return the file header and segment subheaders.
+     */
+    public final DataSource getDataSource() {
+        return mParseStrategy.getDataSource();
+    }
+
+    /**
+     * Extract segments to a new file.
+     *
+     * @param imageSegmentIndexes the (zero based) indexes of the image segments to extract, in source file order.
+     * @param dataExtensionSegmentIndexes the (zero based) indexes of the data extension segments to extract.
+     * @param outputFile the file to write to. Any existing content is replaced.
+     * @throws NitfFormatException if the file header or a selected segment cannot be extracted on its own (TRE overflow
+     * or streaming mode segments), or if the output headers could not be serialised.
+     * @throws IOException on read or write problems.
+     */
+    public final void extract(final List<Integer> imageSegmentIndexes, final List<Integer> dataExtensionSegmentIndexes,
+            final File outputFile) throws NitfFormatException, IOException {
+        DataSource dataSource = mParseStrategy.getDataSource();
+        NitfFileLayout layout = mParseStrategy.getLayout();
+        NitfHeader header = dataSource.getNitfHeader();
+        if ((header.getUserDefinedHeaderOverflow() != 0) || (header.getExtendedHeaderDataOverflow() != 0)) {
+            // the copied file header would refer to a DES by its index in the source file
+            throw new NitfFormatException("File header has TREs that overflow into a DES");
+        }
+        SegmentCopyWriter writer = new SegmentCopyWriter(header);
+
+        Set<Integer> displayLevels = new HashSet<>();
+        for (Integer index : imageSegmentIndexes) {
+            displayLevels.add(dataSource.getImageSegments().get(index).getImageDisplayLevel());
+        }
+        for (Integer index : imageSegmentIndexes) {
+            ImageSegment imageSegment = dataSource.getImageSegments().get(index);
+            if ((imageSegment.getUserDefinedHeaderOverflow() != 0) || (imageSegment.getExtendedHeaderDataOverflow() != 0)) {
+                throw new NitfFormatException(String.format("Image segment %d has TREs that overflow into a DES", index));
+            }
+            byte[] replacementSubheader = null;
+            if ((imageSegment.getAttachmentLevel() != 0) && !displayLevels.contains(imageSegment.getAttachmentLevel())) {
+                replacementSubheader = serialiseUnattached(imageSegment);
+            }
+            writer.addImageSegment(mSource, layout.getImageSegments().get(index), replacementSubheader);
+        }
+        for (Integer index : dataExtensionSegmentIndexes) {
+            DataExtensionSegment des = dataSource.getDataExtensionSegments().get(index);
+            if (des.isTreOverflow() || des.isStreamingMode()) {
+                throw new NitfFormatException(String.format("Data extension segment %d (%s) cannot be extracted on its own",
+                        index, des.getIdentifier().trim()));
+            }
+            writer.addDataExtensionSegment(mSource, layout.getDataExtensionSegments().get(index), null);
+        }
+        writer.write(outputFile);
+    }
+
+    private byte[] serialiseUnattached(final ImageSegment imageSegment) throws NitfFormatException, IOException {
+        if (mSerialiser == null) {
+            mSerialiser = new SubheaderSerialiser();
+        }
+        int attachmentLevel = imageSegment.getAttachmentLevel();
+        try {
+            imageSegment.setAttachmentLevel(0);
+            return mSerialiser.serialise(imageSegment, mParseStrategy.getDataSource().getNitfHeader().getFileType());
+        } finally {
+            imageSegment.setAttachmentLevel(attachmentLevel);
+        }
+    }
+}
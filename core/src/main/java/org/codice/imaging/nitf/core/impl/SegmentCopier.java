@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.impl;
+
+import java.io.File;
+
+/**
+ * Adds a segment of a particular type to a SegmentCopyWriter.
+ * <p>
+ * This allows the segment copying methods (e.g. SegmentCopyWriter::addImageSegment) to be passed around, so that
+ * segments of each type can be handled in the same way.
+ */
+@FunctionalInterface
+interface SegmentCopier {
+
+    /**
+     * Add a segment to be copied.
+     *
+     * @param writer the writer to add the segment to.
+     * @param source the file containing the segment.
+     * @param location the location of the segment within the source file.
+     * @param replacementSubheader the subheader to write instead of the subheader in the source file, or null to copy
+     * the source subheader.
+     */
+    void add(SegmentCopyWriter writer, File source, SegmentLocation location, byte[] replacementSubheader);
+}
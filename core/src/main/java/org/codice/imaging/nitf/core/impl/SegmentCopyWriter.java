@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.header.NitfHeader;
+
+/**
+ * Writes a NITF file with segments copied by byte range from existing files.
+ * <p>
+ * Only the file header is serialised. Each segment subheader and its data are transferred directly from the source
+ * file, so TREs are not re-serialised and image data is not decoded. A segment subheader can optionally be replaced by
+ * a pre-serialised subheader, while still copying the segment data from the source.
+ */
+public class SegmentCopyWriter {
+
+    static final String READ_MODE = "r";
+
+    private final NitfHeader mHeader;
+
+    private final List<CopiedSegment> mImageSegments = new ArrayList<>();
+    private final List<CopiedSegment> mGraphicSegments = new ArrayList<>();
+    private final List<CopiedSegment> mSymbolSegments = new ArrayList<>();
+    private final List<CopiedSegment> mLabelSegments = new ArrayList<>();
+    private final List<CopiedSegment> mTextSegments = new ArrayList<>();
+    private final List<CopiedSegment> mDataExtensionSegments = new ArrayList<>();
+
+    /**
+     * Constructor.
+     *
+     * @param header the file level header to write out. The length fields are recalculated from the copied segments.
+     */
+    public SegmentCopyWriter(final NitfHeader header) {
+        mHeader = header;
+    }
+
+    /**
+     * Add an image segment to be copied.
+     *
+     * @param source the file containing the segment.
+     * @param location the location of the segment within the source file.
+     * @param replacementSubheader the subheader to write instead of the subheader in the source file, or null to copy
+     * the source subheader.
+     */
+    public final void addImageSegment(final File source, final SegmentLocation location, final byte[] replacementSubheader) {
+        mImageSegments.add(new CopiedSegment(source, location, replacementSubheader));
+    }
+
+    /**
+     * Add a graphic segment to be copied.
+     *
+     * @param source the file containing the segment.
+     * @param location the location of the segment within the source file.
+     * @param replacementSubheader the subheader to write instead of the subheader in the source file, or null to copy
+     * the source subheader.
+     */
+    public final void addGraphicSegment(final File source, final SegmentLocation location, final byte[] replacementSubheader) {
+        mGraphicSegments.add(new CopiedSegment(source, location, replacementSubheader));
+    }
+
+    /**
+     * Add a symbol segment to be copied.
+     *
+     * @param source the file containing the segment.
+     * @param location the location of the segment within the source file.
+     * @param replacementSubheader the subheader to write instead of the subheader in the source file, or null to copy
+     * the source subheader.
+     */
+    public final void addSymbolSegment(final File source, final SegmentLocation location, final byte[] replacementSubheader) {
+        mSymbolSegments.add(new CopiedSegment(source, location, replacementSubheader));
+    }
+
+    /**
+     * Add a label segment to be copied.
+     *
+     * @param source the file containing the segment.
+     * @param location the location of the segment within the source file.
+     * @param replacementSubheader the subheader to write instead of the subheader in the source file, or null to copy
+     * the source subheader.
+     */
+    public final void addLabelSegment(final File source, final SegmentLocation location, final byte[] replacementSubheader) {
+        mLabelSegments.add(new CopiedSegment(source, location, replacementSubheader));
+    }
+
+    /**
+     * Add a text segment to be copied.
+     *
+     * @param source the file containing the segment.
+     * @param location the location of the segment within the source file.
+     * @param replacementSubheader the subheader to write instead of the subheader in the source file, or null to copy
+     * the source subheader.
+     */
+    public final void addTextSegment(final File source, final SegmentLocation location, final byte[] replacementSubheader) {
+        mTextSegments.add(new CopiedSegment(source, location, replacementSubheader));
+    }
+
+    /**
+     * Add a data extension segment to be copied.
+     *
+     * @param source the file containing the segment.
+     * @param location the location of the segment within the source file.
+     * @param replacementSubheader the subheader to write instead of the subheader in the source file, or null to copy
+     * the source subheader.
+     */
+    public final void addDataExtensionSegment(final File source, final SegmentLocation location, final byte[] replacementSubheader) {
+        mDataExtensionSegments.add(new CopiedSegment(source, location, replacementSubheader));
+    }
+
+    /**
+     * Write out the file header and the copied segments.
+     *
+     * @param outputFile the file to write to. Any existing content is replaced. This must not be one of the source files.
+     * @throws NitfFormatException if the file header could not be serialised, or a source file was shorter than expected.
+     * @throws IOException on read or write problems.
+     */
+    public final void write(final File outputFile) throws NitfFormatException, IOException {
+        byte[] fileHeader = new SubheaderSerialiser().serialiseFileHeader(mHeader, getOutputLayout());
+
+        try (RandomAccessFile output = new RandomAccessFile(outputFile, NitfFileWriter.WRITE_MODE);
+                SourceChannels sources = new SourceChannels()) {
+            output.setLength(0);
+            FileChannel target = output.getChannel();
+            writeFully(fileHeader, target);
+            copySegments(mImageSegments, sources, target);
+            copySegments(mGraphicSegments, sources, target);
+            copySegments(mSymbolSegments, sources, target);
+            copySegments(mLabelSegments, sources, target);
+            copySegments(mTextSegments, sources, target);
+            copySegments(mDataExtensionSegments, sources, target);
+        }
+    }
+
+    /**
+     * Get the segment lengths of the file that will be written.
+     *
+     * @return the layout of the copied segments. Only the subheader and data lengths are set, not the offsets.
+     */
+    final NitfFileLayout getOutputLayout() {
+        NitfFileLayout outputLayout = new NitfFileLayout();
+        addLengths(mImageSegments, outputLayout.getImageSegments());
+        addLengths(mGraphicSegments, outputLayout.getGraphicSegments());
+        addLengths(mSymbolSegments, outputLayout.getSymbolSegments());
+        addLengths(mLabelSegments, outputLayout.getLabelSegments());
+        addLengths(mTextSegments, outputLayout.getTextSegments());
+        addLengths(mDataExtensionSegments, outputLayout.getDataExtensionSegments());
+        return outputLayout;
+    }
+
+    private void addLengths(final List<CopiedSegment> segments, final List<SegmentLocation> lengths) {
+        for (CopiedSegment segment : segments) {
+            lengths.add(new SegmentLocation(0, segment.getSubheaderLength(), segment.mLocation.getDataLength()));
+        }
+    }
+
+    private void copySegments(final List<CopiedSegment> segments, final SourceChannels sources, final FileChannel target)
+            throws IOException, NitfFormatException {
+        for (CopiedSegment segment : segments) {
+            FileChannel source = sources.getChannel(segment.mSource);
+            if (segment.mReplacementSubheader != null) {
+                writeFully(segment.mReplacementSubheader, target);
+            } else {
+                copyRange(source, segment.mLocation.getHeaderOffset(), segment.mLocation.getHeaderLength(), target);
+            }
+            copyRange(source, segment.mLocation.getDataOffset(), segment.mLocation.getDataLength(), target);
+        }
+    }
+
+    private static void writeFully(final byte[] bytes, final FileChannel target) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+
+    /**
+     * Copy a range of bytes from one file to the current position of another.
+     *
+     * @param source the channel to copy from.
+     * @param offset the offset of the first byte to copy from the source.
+     * @param length the number of bytes to copy.
+     * @param target the channel to copy to.
+     * @throws IOException on read or write problems.
+     * @throws NitfFormatException if the source ends before the range is copied.
+     */
+    static void copyRange(final FileChannel source, final long offset, final long length, final FileChannel target)
+            throws IOException, NitfFormatException {
+        long position = offset;
+        long remaining = length;
+        while (remaining > 0) {
+            long transferred = source.transferTo(position, remaining, target);
+            if (transferred <= 0) {
+                throw new NitfFormatException("Unexpected end of file while copying segment", position);
+            }
+            position += transferred;
+            remaining -= transferred;
+        }
+    }
+
+    private static final class CopiedSegment {
+        private final File mSource;
+        private final SegmentLocation mLocation;
+        private final byte[] mReplacementSubheader;
+
+        CopiedSegment(final File source, final SegmentLocation location, final byte[] replacementSubheader) {
+            mSource = source;
+            mLocation = location;
+            mReplacementSubheader = replacementSubheader;
+        }
+
+        long getSubheaderLength() {
+            if (mReplacementSubheader != null) {
+                return mReplacementSubheader.length;
+            }
+            return mLocation.getHeaderLength();
+        }
+    }
+
+    /**
+     * Keeps the current source file open while consecutive segments are copied from it.
+     */
+    private static final class SourceChannels implements AutoCloseable {
+        private File mCurrentFile = null;
+        private RandomAccessFile mCurrentSource = null;
+
+        FileChannel getChannel(final File source) throws IOException {
+            if (!source.equals(mCurrentFile)) {
+                close();
+                mCurrentSource = new RandomAccessFile(source, READ_MODE);
+                mCurrentFile = source;
+            }
+            return mCurrentSource.getChannel();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (mCurrentSource != null) {
+                mCurrentSource.close();
+                mCurrentSource = null;
+                mCurrentFile = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.impl;
+
+import java.io.File;
+import java.util.List;
+import javax.xml.transform.Source;
+
+import org.codice.imaging.nitf.core.DataSource;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.common.NitfReader;
+import org.codice.imaging.nitf.core.common.ParseStrategy;
+import org.codice.imaging.nitf.core.common.impl.FileReader;
+import org.codice.imaging.nitf.core.header.NitfHeader;
+import org.codice.imaging.nitf.core.header.impl.NitfParser;
+import org.codice.imaging.nitf.core.tre.TreCollection;
+import org.codice.imaging.nitf.core.tre.TreSource;
+
+/**
+ * Parse strategy that records where each segment is located, without reading any segment data.
+ * <p>
+ * The headers are parsed as for a SlottedParseStrategy configured for HEADERS_ONLY, and the segment data is skipped.
+ * The resulting NitfFileLayout allows the segment subheaders and data to be copied by byte range.
+ */
+public class SegmentLocatingParseStrategy implements ParseStrategy {
+
+    private final SlottedParseStrategy mHeaderStrategy = new SlottedParseStrategy(SlottedParseStrategy.HEADERS_ONLY);
+
+    private final NitfFileLayout mLayout = new NitfFileLayout();
+
+    private boolean mFileHeaderLengthKnown = false;
+
+    /**
+     * Parse the headers of a NITF file, and locate each segment.
+     *
+     * @param file the NITF file to parse.
+     * @return the parse strategy, holding the headers and the segment layout.
+     * @throws NitfFormatException if the file could not be parsed, or the segments did not account for the whole file.
+     */
+    public static SegmentLocatingParseStrategy parse(final File file) throws NitfFormatException {
+        SegmentLocatingParseStrategy parseStrategy = new SegmentLocatingParseStrategy();
+        FileReader reader = new FileReader(file);
+        try {
+            NitfParser.parse(reader, parseStrategy);
+            if (!parseStrategy.mFileHeaderLengthKnown) {
+                parseStrategy.mLayout.setFileHeaderLength(reader.getCurrentOffset());
+            }
+        } finally {
+            reader.close();
+        }
+        long endOffset = parseStrategy.mLayout.getEndOffset();
+        if (endOffset != file.length()) {
+            throw new NitfFormatException(String.format("Segments end at offset %d, but file length is %d", endOffset, file.length()),
+                    endOffset);
+        }
+        return parseStrategy;
+    }
+
+    /**
+     * Get the layout of the segments in the parsed file.
+     *
+     * @return the segment layout.
+     */
+    public final NitfFileLayout getLayout() {
+        return mLayout;
+    }
+
+    @Override
+    public final void setFileHeader(final NitfHeader nitfHeader) {
+        mHeaderStrategy.setFileHeader(nitfHeader);
+    }
+
+    @Override
+    public final NitfHeader getNitfHeader() {
+        return mHeaderStrategy.getNitfHeader();
+    }
+
+    @Override
+    public final TreCollection parseTREs(final NitfReader reader, final int length, final TreSource source) throws NitfFormatException {
+        return mHeaderStrategy.parseTREs(reader, length, source);
+    }
+
+    @Override
+    public final void handleTextSegment(final NitfReader reader, final long dataLength) throws NitfFormatException {
+        long headerOffset = startSegment(reader);
+        mHeaderStrategy.handleTextSegment(reader, dataLength);
+        endSegment(reader, headerOffset, dataLength, mLayout.getTextSegments());
+    }
+
+    @Override
+    public final void handleDataExtensionSegment(final NitfReader reader, final long dataLength) throws NitfFormatException {
+        long headerOffset = startSegment(reader);
+        mHeaderStrategy.handleDataExtensionSegment(reader, dataLength);
+        endSegment(reader, headerOffset, dataLength, mLayout.getDataExtensionSegments());
+    }
+
+    @Override
+    public final void handleGraphicSegment(final NitfReader reader, final long dataLength) throws NitfFormatException {
+        long headerOffset = startSegment(reader);
+        mHeaderStrategy.handleGraphicSegment(reader, dataLength);
+        endSegment(reader, headerOffset, dataLength, mLayout.getGraphicSegments());
+    }
+
+    @Override
+    public final void handleImageSegment(final NitfReader reader, final long dataLength) throws NitfFormatException {
+        long headerOffset = startSegment(reader);
+        mHeaderStrategy.handleImageSegment(reader, dataLength);
+        endSegment(reader, headerOffset, dataLength, mLayout.getImageSegments());
+    }
+
+    @Override
+    public final void handleLabelSegment(final NitfReader reader, final long dataLength) throws NitfFormatException {
+        long headerOffset = startSegment(reader);
+        mHeaderStrategy.handleLabelSegment(reader, dataLength);
+        endSegment(reader, headerOffset, dataLength, mLayout.getLabelSegments());
+    }
+
+    @Override
+    public final void handleSymbolSegment(final NitfReader reader, final long dataLength) throws NitfFormatException {
+        long headerOffset = startSegment(reader);
+        mHeaderStrategy.handleSymbolSegment(reader, dataLength);
+        endSegment(reader, headerOffset, dataLength, mLayout.getSymbolSegments());
+    }
+
+    @Override
+    public final void registerAdditionalTREdescriptor(final Source source) throws NitfFormatException {
+        mHeaderStrategy.registerAdditionalTREdescriptor(source);
+    }
+
+    @Override
+    public final DataSource getDataSource() {
+        return mHeaderStrategy.getDataSource();
+    }
+
+    private long startSegment(final NitfReader reader) {
+        long headerOffset = reader.getCurrentOffset();
+        if (!mFileHeaderLengthKnown) {
+            mLayout.setFileHeaderLength(headerOffset);
+            mFileHeaderLengthKnown = true;
+        }
+        return headerOffset;
+    }
+
+    private void endSegment(final NitfReader reader, final long headerOffset, final long dataLength,
+            final List<SegmentLocation> locations) {
+        long headerLength = reader.getCurrentOffset() - headerOffset - dataLength;
+        locations.add(new SegmentLocation(headerOffset, headerLength, dataLength));
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.impl;
+
+/**
+ * The position of a segment (subheader and associated data) within a NITF file.
+ * <p>
+ * The data always immediately follows the subheader, so the data offset is derived from the subheader offset and
+ * length.
+ */
+public final class SegmentLocation {
+
+    private final long mHeaderOffset;
+    private final long mHeaderLength;
+    private final long mDataLength;
+
+    /**
+     * Constructor.
+     *
+     * @param subheaderOffset the offset (in bytes, from the start of the file) of the start of the subheader.
+     * @param subheaderLength the length of the subheader in bytes.
+     * @param segmentDataLength the length of the segment data in bytes.
+     */
+    public SegmentLocation(final long subheaderOffset, final long subheaderLength, final long segmentDataLength) {
+        mHeaderOffset = subheaderOffset;
+        mHeaderLength = subheaderLength;
+        mDataLength = segmentDataLength;
+    }
+
+    /**
+     * Get the offset of the start of the subheader.
+     *
+     * @return the number of bytes from the start of the file to the start of the subheader.
+     */
+    public long getHeaderOffset() {
+        return mHeaderOffset;
+    }
+
+    /**
+     * Get the length of the subheader.
+     *
+     * @return the subheader length in bytes.
+     */
+    public long getHeaderLength() {
+        return mHeaderLength;
+    }
+
+    /**
+     * Get the offset of the start of the segment data.
+     *
+     * @return the number of bytes from the start of the file to the start of the segment data.
+     */
+    public long getDataOffset() {
+        return mHeaderOffset + mHeaderLength;
+    }
+
+    /**
+     * Get the length of the segment data.
+     *
+     * @return the segment data length in bytes.
+     */
+    public long getDataLength() {
+        return mDataLength;
+    }
+
+    /**
+     * Get the offset of the first byte after the end of the segment.
+     *
+     * @return the number of bytes from the start of the file to the end of the segment data.
+     */
+    public long getEndOffset() {
+        return getDataOffset() + mDataLength;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.codice.imaging.nitf.core.common.FileType;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.dataextension.DataExtensionSegment;
+import org.codice.imaging.nitf.core.dataextension.impl.DataExtensionSegmentWriter;
+import org.codice.imaging.nitf.core.graphic.GraphicSegment;
+import org.codice.imaging.nitf.core.graphic.impl.GraphicSegmentWriter;
+import org.codice.imaging.nitf.core.header.NitfHeader;
+import org.codice.imaging.nitf.core.header.impl.NitfHeaderWriter;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.core.image.impl.ImageSegmentWriter;
+import org.codice.imaging.nitf.core.label.LabelSegment;
+import org.codice.imaging.nitf.core.label.impl.LabelSegmentWriter;
+import org.codice.imaging.nitf.core.symbol.SymbolSegment;
+import org.codice.imaging.nitf.core.symbol.impl.SymbolSegmentWriter;
+import org.codice.imaging.nitf.core.text.TextSegment;
+import org.codice.imaging.nitf.core.text.impl.TextSegmentWriter;
+import org.codice.imaging.nitf.core.tre.impl.TreParser;
+
+/**
+ * Serialises the file header and segment subheaders to byte arrays.
+ * <p>
+ * The segments are expected to come from a headers-only parse, so no segment data is written.
+ */
+final class SubheaderSerialiser {
+
+    private final TreParser mTreParser;
+
+    /**
+     * Constructor.
+     *
+     * @throws NitfFormatException if the TRE parser could not be initialised.
+     */
+    SubheaderSerialiser() throws NitfFormatException {
+        mTreParser = new TreParser();
+    }
+
+    byte[] serialiseFileHeader(final NitfHeader header, final NitfFileLayout layout) throws IOException, NitfFormatException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new NitfHeaderWriter(new DataOutputStream(bytes), mTreParser).writeFileHeader(header, layout);
+        return bytes.toByteArray();
+    }
+
+    byte[] serialise(final ImageSegment segment, final FileType fileType) throws IOException, NitfFormatException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new ImageSegmentWriter(new DataOutputStream(bytes), mTreParser).writeImageSegment(segment, fileType);
+        return bytes.toByteArray();
+    }
+
+    byte[] serialise(final GraphicSegment segment) throws IOException, NitfFormatException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new GraphicSegmentWriter(new DataOutputStream(bytes), mTreParser).writeGraphicSegment(segment);
+        return bytes.toByteArray();
+    }
+
+    byte[] serialise(final SymbolSegment segment) throws IOException, NitfFormatException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new SymbolSegmentWriter(new DataOutputStream(bytes), mTreParser).writeSymbolSegment(segment);
+        return bytes.toByteArray();
+    }
+
+    byte[] serialise(final LabelSegment segment) throws IOException, NitfFormatException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new LabelSegmentWriter(new DataOutputStream(bytes), mTreParser).writeLabel(segment);
+        return bytes.toByteArray();
+    }
+
+    byte[] serialise(final TextSegment segment, final FileType fileType) throws IOException, NitfFormatException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new TextSegmentWriter(new DataOutputStream(bytes), mTreParser).writeTextSegment(segment, fileType);
+        return bytes.toByteArray();
+    }
+
+    byte[] serialise(final DataExtensionSegment segment) throws IOException, NitfFormatException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new DataExtensionSegmentWriter(new DataOutputStream(bytes), mTreParser).writeDESHeader(segment);
+        return bytes.toByteArray();
+    }
+}
@@ -81,7 +81,9 @@ public class LabelSegmentWriter extends AbstractSegmentWriter {
             writeFixedLengthNumber(labelSegment.getExtendedHeaderDataOverflow(), LXSOFL_LENGTH);
             writeBytes(labelExtendedSubheaderData, labelExtendedSubheaderDataLength - LXSOFL_LENGTH);
         }
-        mOutput.writeBytes(labelSegment.getData());
+        if (labelSegment.getData() != null) {
+            mOutput.writeBytes(labelSegment.getData());
+        }
     }
 }
 
@@ -15,6 +15,7 @@
 package org.codice.imaging.nitf.core.security.impl;
 
 import org.codice.imaging.nitf.core.security.FileSecurityMetadata;
+import org.codice.imaging.nitf.core.security.SecurityMetadata;
 
 import java.util.function.Supplier;
 
@@ -73,6 +74,18 @@ public final class FileSecurityMetadataBuilder20
         nitfFileNumberOfCopies = securityMetadata.getFileNumberOfCopies();
     }
 
+    /**
+     * Constructor, for file security metadata based on segment security metadata.
+     *
+     * The file copy number and number of copies are not set.
+     *
+     * @param securityMetadata base security metadata.
+     */
+    public FileSecurityMetadataBuilder20(final SecurityMetadata securityMetadata) {
+        super.instance = this;
+        builderInstance = new SecurityMetadataBuilder20(securityMetadata);
+    }
+
     /**
      * Set the downgrade date or special case for this file.
      * <p>
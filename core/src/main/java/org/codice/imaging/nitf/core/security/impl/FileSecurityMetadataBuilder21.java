@@ -16,6 +16,7 @@ package org.codice.imaging.nitf.core.security.impl;
 
 import java.util.function.Supplier;
 import org.codice.imaging.nitf.core.security.FileSecurityMetadata;
+import org.codice.imaging.nitf.core.security.SecurityMetadata;
 import org.codice.imaging.nitf.core.common.FileType;
 
 /**
@@ -82,6 +83,18 @@ public final class FileSecurityMetadataBuilder21
         nitfFileNumberOfCopies = securityMetadata.getFileNumberOfCopies();
     }
 
+    /**
+     * Constructor, for file security metadata based on segment security metadata.
+     *
+     * The file copy number and number of copies are not set.
+     *
+     * @param securityMetadata base security metadata.
+     */
+    public FileSecurityMetadataBuilder21(final SecurityMetadata securityMetadata) {
+        super.instance = this;
+        builderInstance = new SecurityMetadataBuilder21(securityMetadata);
+    }
+
     /**
      * Set the security classification system.
      * <p>
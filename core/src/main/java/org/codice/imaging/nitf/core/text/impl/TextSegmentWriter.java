@@ -78,6 +78,8 @@ public class TextSegmentWriter extends AbstractSegmentWriter {
             writeFixedLengthNumber(textSegment.getExtendedHeaderDataOverflow(), TXSOFL_LENGTH);
             writeBytes(textExtendedSubheaderData, textExtendedSubheaderDataLength - TXSOFL_LENGTH);
         }
-        mOutput.writeBytes(textSegment.getData());
+        if (textSegment.getData() != null) {
+            mOutput.writeBytes(textSegment.getData());
+        }
     }
 }
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import org.apache.commons.io.FileUtils;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.impl.NitfFileEditor;
+import org.codice.imaging.nitf.core.impl.SegmentLocatingParseStrategy;
+import org.codice.imaging.nitf.core.impl.SegmentLocation;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Tests for updating the headers of an existing NITF file.
+ */
+public class NitfFileEditorTest {
+
+    private static final String TEST_FILE = "/WithBE.ntf";
+
+    // Field positions in the TEST_FILE file header, and graphic subheader field lengths
+    private static final int FL_OFFSET = 342;
+    private static final int FL_LENGTH = 12;
+    private static final int LSSH_OFFSET = 382;
+    private static final int LSSH_LENGTH = 4;
+    private static final int SXSHDL_LENGTH = 5;
+    private static final int SXSOFL_LENGTH = 3;
+
+    @Test
+    public void checkSameLengthChangeIsInPlace() throws NitfFormatException, URISyntaxException, IOException {
+        File original = new File(getClass().getResource(TEST_FILE).toURI());
+        File outputFile = new File("editInPlace.ntf");
+        FileUtils.copyFile(original, outputFile);
+        try {
+            NitfFileEditor editor = new NitfFileEditor(outputFile);
+            editor.getDataSource().getNitfHeader().setFileTitle("Edited title");
+            editor.getDataSource().getImageSegments().get(0).setImageIdentifier2("Edited identifier");
+            assertTrue(editor.write());
+            assertEquals(original.length(), outputFile.length());
+
+            SegmentLocatingParseStrategy parseStrategy = SegmentLocatingParseStrategy.parse(outputFile);
+            assertThat(parseStrategy.getDataSource().getNitfHeader().getFileTitle(), is("Edited title"));
+            assertThat(parseStrategy.getDataSource().getImageSegments().get(0).getImageIdentifier2(), is("Edited identifier"));
+            SegmentLocation image = parseStrategy.getLayout().getImageSegments().get(0);
+            assertArrayEquals(readRange(original, image.getDataOffset(), image.getEndOffset()),
+                    readRange(outputFile, image.getDataOffset(), image.getEndOffset()));
+        } finally {
+            assertTrue(outputFile.delete());
+        }
+    }
+
+    @Test
+    public void checkLengthChangeRewritesFile() throws NitfFormatException, URISyntaxException, IOException {
+        File original = new File(getClass().getResource(TEST_FILE).toURI());
+        File outputFile = new File("editRewrite.ntf");
+        FileUtils.copyFile(original, outputFile);
+        try {
+            SegmentLocation originalImage = SegmentLocatingParseStrategy.parse(original).getLayout().getImageSegments().get(0);
+            NitfFileEditor editor = new NitfFileEditor(outputFile);
+            editor.getDataSource().getImageSegments().get(0).addImageComment("Added comment");
+            assertFalse(editor.write());
+            assertEquals(original.length() + 80, outputFile.length());
+
+            SegmentLocatingParseStrategy parseStrategy = SegmentLocatingParseStrategy.parse(outputFile);
+            assertThat(parseStrategy.getDataSource().getImageSegments().get(0).getImageComments().get(0).trim(), is("Added comment"));
+            SegmentLocation image = parseStrategy.getLayout().getImageSegments().get(0);
+            assertArrayEquals(readRange(original, originalImage.getDataOffset(), originalImage.getEndOffset()),
+                    readRange(outputFile, image.getDataOffset(), image.getEndOffset()));
+
+            // A further edit uses the updated layout
+            editor.getDataSource().getNitfHeader().setFileTitle("Edited title");
+            assertTrue(editor.write());
+            assertThat(SegmentLocatingParseStrategy.parse(outputFile).getDataSource().getNitfHeader().getFileTitle(), is("Edited title"));
+        } finally {
+            assertTrue(outputFile.delete());
+        }
+    }
+
+    @Test
+    public void checkUnchangedSubheaderKeepsOriginalLength() throws NitfFormatException, URISyntaxException, IOException {
+        File original = new File(getClass().getResource(TEST_FILE).toURI());
+        File outputFile = new File("editNoRoundTrip.ntf");
+        writeWithEmptyGraphicExtendedHeader(original, outputFile);
+        try {
+            long length = outputFile.length();
+            SegmentLocation originalGraphic = SegmentLocatingParseStrategy.parse(outputFile).getLayout().getGraphicSegments().get(0);
+            NitfFileEditor editor = new NitfFileEditor(outputFile);
+            editor.getDataSource().getNitfHeader().setFileTitle("Edited title");
+            assertTrue(editor.write());
+            assertEquals(length, outputFile.length());
+            assertLengthFields(outputFile, originalGraphic.getHeaderLength());
+
+            editor.getDataSource().getImageSegments().get(0).addImageComment("Added comment");
+            assertFalse(editor.write());
+            assertEquals(length + 80, outputFile.length());
+            SegmentLocatingParseStrategy parseStrategy = SegmentLocatingParseStrategy.parse(outputFile);
+            assertThat(parseStrategy.getDataSource().getNitfHeader().getFileTitle(), is("Edited title"));
+            SegmentLocation graphic = parseStrategy.getLayout().getGraphicSegments().get(0);
+            assertEquals(originalGraphic.getHeaderLength(), graphic.getHeaderLength());
+            assertLengthFields(outputFile, originalGraphic.getHeaderLength());
+            assertArrayEquals(readRange(original, originalGraphic.getDataOffset() - 3, originalGraphic.getEndOffset() - 3),
+                    readRange(outputFile, graphic.getDataOffset(), graphic.getEndOffset()));
+
+            // A further in-place edit uses the layout of the rewritten file
+            editor.getDataSource().getNitfHeader().setFileTitle("Edited again");
+            assertTrue(editor.write());
+            assertEquals(length + 80, outputFile.length());
+            assertLengthFields(outputFile, originalGraphic.getHeaderLength());
+            assertThat(SegmentLocatingParseStrategy.parse(outputFile).getDataSource().getNitfHeader().getFileTitle(), is("Edited again"));
+        } finally {
+            assertTrue(outputFile.delete());
+        }
+    }
+
+    /**
+     * Copy the test file, giving the graphic subheader an empty extended header (SXSHDL of 3, holding only SXSOFL).
+     * <p>
+     * The writer leaves out an empty extended header, so that subheader does not round trip, and is 3 bytes shorter
+     * when serialised.
+     */
+    private static void writeWithEmptyGraphicExtendedHeader(final File original, final File outputFile)
+            throws NitfFormatException, IOException {
+        SegmentLocation graphic = SegmentLocatingParseStrategy.parse(original).getLayout().getGraphicSegments().get(0);
+        byte[] input = Files.readAllBytes(original.toPath());
+        int sxshdlOffset = (int) graphic.getDataOffset() - SXSHDL_LENGTH;
+        byte[] output = new byte[input.length + SXSOFL_LENGTH];
+        System.arraycopy(input, 0, output, 0, sxshdlOffset);
+        System.arraycopy(ascii("00003000"), 0, output, sxshdlOffset, SXSHDL_LENGTH + SXSOFL_LENGTH);
+        System.arraycopy(input, (int) graphic.getDataOffset(), output, sxshdlOffset + SXSHDL_LENGTH + SXSOFL_LENGTH,
+                input.length - (int) graphic.getDataOffset());
+        System.arraycopy(ascii(String.format("%012d", output.length)), 0, output, FL_OFFSET, FL_LENGTH);
+        System.arraycopy(ascii(String.format("%04d", graphic.getHeaderLength() + SXSOFL_LENGTH)), 0, output, LSSH_OFFSET, LSSH_LENGTH);
+        Files.write(outputFile.toPath(), output);
+    }
+
+    private static void assertLengthFields(final File file, final long graphicSubheaderLength) throws IOException {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        assertEquals(file.length(), Long.parseLong(new String(bytes, FL_OFFSET, FL_LENGTH, StandardCharsets.US_ASCII)));
+        assertEquals(graphicSubheaderLength, Long.parseLong(new String(bytes, LSSH_OFFSET, LSSH_LENGTH, StandardCharsets.US_ASCII)));
+    }
+
+    private static byte[] ascii(final String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] readRange(final File file, final long start, final long end) throws IOException {
+        return Arrays.copyOfRange(Files.readAllBytes(file.toPath()), (int) start, (int) end);
+    }
+}
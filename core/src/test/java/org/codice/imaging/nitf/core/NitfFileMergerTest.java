@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.function.UnaryOperator;
+import org.apache.commons.io.FileUtils;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.header.NitfHeader;
+import org.codice.imaging.nitf.core.impl.NitfFileEditor;
+import org.codice.imaging.nitf.core.impl.NitfFileMerger;
+import org.codice.imaging.nitf.core.impl.SegmentLocatingParseStrategy;
+import org.codice.imaging.nitf.core.impl.SegmentLocation;
+import org.codice.imaging.nitf.core.security.FileSecurityMetadata;
+import org.codice.imaging.nitf.core.security.SecurityClassification;
+import org.codice.imaging.nitf.core.security.impl.FileSecurityMetadataBuilder21;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Tests for merging NITF files.
+ */
+public class NitfFileMergerTest {
+
+    @Test
+    public void checkMerge() throws NitfFormatException, URISyntaxException, IOException {
+        File first = new File(getClass().getResource("/WithBE.ntf").toURI());
+        File second = new File(getClass().getResource("/JitcNitf21Samples/i_3113g.ntf").toURI());
+        File outputFile = new File("merged.ntf");
+        try {
+            new NitfFileMerger(Arrays.asList(first, second)).write(outputFile);
+
+            SegmentLocatingParseStrategy parseStrategy = SegmentLocatingParseStrategy.parse(outputFile);
+            DataSource merged = parseStrategy.getDataSource();
+            assertThat(merged.getImageSegments().size(), is(3));
+            assertThat(merged.getGraphicSegments().size(), is(3));
+            assertThat(merged.getTextSegments().size(), is(1));
+            assertThat(merged.getImageSegments().get(0).getImageDisplayLevel(), is(1));
+            assertThat(merged.getImageSegments().get(1).getImageDisplayLevel(), is(3));
+            assertThat(merged.getImageSegments().get(2).getImageDisplayLevel(), is(4));
+            assertThat(merged.getGraphicSegments().get(0).getGraphicDisplayLevel(), is(2));
+            assertThat(merged.getGraphicSegments().get(1).getGraphicDisplayLevel(), is(5));
+            assertThat(merged.getGraphicSegments().get(2).getGraphicDisplayLevel(), is(6));
+
+            SegmentLocatingParseStrategy firstParse = SegmentLocatingParseStrategy.parse(first);
+            SegmentLocatingParseStrategy secondParse = SegmentLocatingParseStrategy.parse(second);
+            assertThat(merged.getNitfHeader().getFileTitle(), is(firstParse.getDataSource().getNitfHeader().getFileTitle()));
+            assertSameBytes(first, firstParse.getLayout().getImageSegments().get(0).getHeaderOffset(),
+                    outputFile, parseStrategy.getLayout().getImageSegments().get(0).getHeaderOffset(),
+                    firstParse.getLayout().getImageSegments().get(0).getHeaderLength());
+            for (int i = 0; i < 2; ++i) {
+                SegmentLocation sourceLocation = secondParse.getLayout().getImageSegments().get(i);
+                SegmentLocation outputLocation = parseStrategy.getLayout().getImageSegments().get(i + 1);
+                assertThat(outputLocation.getDataLength(), is(sourceLocation.getDataLength()));
+                assertSameBytes(second, sourceLocation.getDataOffset(), outputFile, outputLocation.getDataOffset(),
+                        sourceLocation.getDataLength());
+            }
+        } finally {
+            assertTrue(outputFile.delete());
+        }
+    }
+
+    @Test
+    public void checkMergeRaisesComplexityLevel() throws NitfFormatException, URISyntaxException, IOException {
+        File input = new File(getClass().getResource("/JitcNitf21Samples/i_3113g.ntf").toURI());
+        File outputFile = new File("mergedComplexity.ntf");
+        try {
+            // 11 copies of a CLEVEL 03 file with two image segments need more than the 20 image segments CLEVEL 03 allows
+            new NitfFileMerger(Collections.nCopies(11, input)).write(outputFile);
+
+            DataSource merged = SegmentLocatingParseStrategy.parse(outputFile).getDataSource();
+            assertThat(SegmentLocatingParseStrategy.parse(input).getDataSource().getNitfHeader().getComplexityLevel(), is(3));
+            assertThat(merged.getImageSegments().size(), is(22));
+            assertThat(merged.getNitfHeader().getComplexityLevel(), is(6));
+        } finally {
+            assertTrue(outputFile.delete());
+        }
+    }
+
+    @Test
+    public void checkMergeRaisesFileSecurity() throws NitfFormatException, URISyntaxException, IOException {
+        File first = new File(getClass().getResource("/WithBE.ntf").toURI());
+        File second = copyWithSecurity("/JitcNitf21Samples/i_3113g.ntf", "mergeSecretSource.ntf",
+                builder -> builder.securityClassification(SecurityClassification.SECRET).codewords("ABC"));
+        File outputFile = new File("mergedSecret.ntf");
+        try {
+            new NitfFileMerger(Arrays.asList(first, second)).write(outputFile);
+
+            FileSecurityMetadata merged = SegmentLocatingParseStrategy.parse(outputFile).getDataSource().getNitfHeader()
+                    .getFileSecurityMetadata();
+            assertThat(merged.getSecurityClassification(), is(SecurityClassification.SECRET));
+            assertThat(merged.getCodewords().trim(), is("ABC"));
+        } finally {
+            assertTrue(second.delete());
+            assertTrue(outputFile.delete());
+        }
+    }
+
+    @Test
+    public void checkMergeCombinesCodewordsAndControl() throws NitfFormatException, URISyntaxException, IOException {
+        File first = copyWithSecurity("/WithBE.ntf", "mergeCaveatSource.ntf",
+                builder -> builder.codewords("NF").controlAndHandling("DS"));
+        File second = copyWithSecurity("/JitcNitf21Samples/i_3113g.ntf", "mergeSecretSource.ntf",
+                builder -> builder.securityClassification(SecurityClassification.SECRET).codewords("ABC NF"));
+        File outputFile = new File("mergedCaveats.ntf");
+        try {
+            new NitfFileMerger(Arrays.asList(first, second)).write(outputFile);
+
+            FileSecurityMetadata merged = SegmentLocatingParseStrategy.parse(outputFile).getDataSource().getNitfHeader()
+                    .getFileSecurityMetadata();
+            assertThat(merged.getSecurityClassification(), is(SecurityClassification.SECRET));
+            assertThat(merged.getCodewords().trim(), is("NF ABC"));
+            assertThat(merged.getControlAndHandling().trim(), is("DS"));
+        } finally {
+            assertTrue(first.delete());
+            assertTrue(second.delete());
+            assertTrue(outputFile.delete());
+        }
+    }
+
+    @Test
+    public void checkMergeRejectsDifferentReleaseInstructions() throws NitfFormatException, URISyntaxException, IOException {
+        File first = copyWithSecurity("/WithBE.ntf", "mergeReleaseSource.ntf", builder -> builder.releaseInstructions("USA"));
+        File second = copyWithSecurity("/JitcNitf21Samples/i_3113g.ntf", "mergeSecretSource.ntf",
+                builder -> builder.securityClassification(SecurityClassification.SECRET).releaseInstructions("USA GBR"));
+        File outputFile = new File("mergedRelease.ntf");
+        try {
+            new NitfFileMerger(Arrays.asList(first, second)).write(outputFile);
+            fail("Expected NitfFormatException");
+        } catch (NitfFormatException e) {
+            assertThat(e.getMessage(), is("Cannot merge files with different release instructions: USA and USA GBR"));
+            assertFalse(outputFile.exists());
+        } finally {
+            assertTrue(first.delete());
+            assertTrue(second.delete());
+        }
+    }
+
+    @Test(expected = NitfFormatException.class)
+    public void checkMergeRejectsDifferentFileTypes() throws NitfFormatException, URISyntaxException, IOException {
+        File nitf = new File(getClass().getResource("/WithBE.ntf").toURI());
+        File nsif = new File(getClass().getResource("/JitcNitf21Samples/ns3361c.nsf").toURI());
+        File outputFile = new File("mergedMixed.ntf");
+        try {
+            new NitfFileMerger(Arrays.asList(nitf, nsif)).write(outputFile);
+        } finally {
+            assertFalse(outputFile.exists());
+        }
+    }
+
+    private File copyWithSecurity(final String resourceName, final String copyName,
+            final UnaryOperator<FileSecurityMetadataBuilder21> security) throws NitfFormatException, URISyntaxException, IOException {
+        File copy = new File(copyName);
+        FileUtils.copyFile(new File(getClass().getResource(resourceName).toURI()), copy);
+        NitfFileEditor editor = new NitfFileEditor(copy);
+        NitfHeader header = editor.getDataSource().getNitfHeader();
+        header.setFileSecurityMetadata(security.apply(new FileSecurityMetadataBuilder21(header.getFileSecurityMetadata())).get());
+        assertTrue(editor.write());
+        return copy;
+    }
+
+    private static void assertSameBytes(final File source, final long sourceOffset, final File output, final long outputOffset,
+            final long length) throws IOException {
+        byte[] sourceBytes = Files.readAllBytes(source.toPath());
+        byte[] outputBytes = Files.readAllBytes(output.toPath());
+        assertArrayEquals(Arrays.copyOfRange(sourceBytes, (int) sourceOffset, (int) (sourceOffset + length)),
+                Arrays.copyOfRange(outputBytes, (int) outputOffset, (int) (outputOffset + length)));
+    }
+}
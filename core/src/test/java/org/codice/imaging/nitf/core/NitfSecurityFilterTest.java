@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import org.apache.commons.io.FileUtils;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.header.NitfHeader;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.core.impl.NitfFileEditor;
+import org.codice.imaging.nitf.core.impl.NitfSecurityFilter;
+import org.codice.imaging.nitf.core.impl.SegmentLocatingParseStrategy;
+import org.codice.imaging.nitf.core.impl.SegmentLocation;
+import org.codice.imaging.nitf.core.security.FileSecurityMetadata;
+import org.codice.imaging.nitf.core.security.SecurityClassification;
+import org.codice.imaging.nitf.core.security.impl.FileSecurityMetadataBuilder20;
+import org.codice.imaging.nitf.core.security.impl.SecurityMetadataBuilder20;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Tests for copying a NITF file with segments filtered by security metadata.
+ */
+public class NitfSecurityFilterTest {
+
+    @Test
+    public void checkKeepAllIsUnchanged() throws NitfFormatException, URISyntaxException, IOException {
+        File source = new File(getClass().getResource("/WithBE.ntf").toURI());
+        File outputFile = new File("filterKeepAll.ntf");
+        try {
+            new NitfSecurityFilter(source).write(securityMetadata -> true, outputFile);
+            assertTrue(FileUtils.contentEquals(source, outputFile));
+        } finally {
+            assertTrue(outputFile.delete());
+        }
+    }
+
+    @Test
+    public void checkClassifiedImageIsDropped() throws NitfFormatException, URISyntaxException, IOException {
+        File original = new File(getClass().getResource("/JitcNitf20Samples/U_1122A.NTF").toURI());
+        File source = new File("filterSource.ntf");
+        File outputFile = new File("filterOutput.ntf");
+        FileUtils.copyFile(original, source);
+        try {
+            NitfFileEditor editor = new NitfFileEditor(source);
+            ImageSegment classifiedImage = editor.getDataSource().getImageSegments().get(0);
+            classifiedImage.setSecurityMetadata(new SecurityMetadataBuilder20(classifiedImage.getSecurityMetadata())
+                    .securityClassification(SecurityClassification.SECRET).codewords("ABC").get());
+            NitfHeader header = editor.getDataSource().getNitfHeader();
+            header.setFileSecurityMetadata(new FileSecurityMetadataBuilder20(header.getFileSecurityMetadata())
+                    .securityClassification(SecurityClassification.SECRET).codewords("ABC").fileCopyNumber("00002").get());
+            assertTrue(editor.write());
+
+            new NitfSecurityFilter(source).write(
+                    metadata -> metadata.getSecurityClassification() == SecurityClassification.UNCLASSIFIED, outputFile);
+
+            SegmentLocatingParseStrategy sourceParse = SegmentLocatingParseStrategy.parse(source);
+            SegmentLocatingParseStrategy parseStrategy = SegmentLocatingParseStrategy.parse(outputFile);
+            DataSource filtered = parseStrategy.getDataSource();
+            FileSecurityMetadata fileSecurity = filtered.getNitfHeader().getFileSecurityMetadata();
+            assertThat(fileSecurity.getSecurityClassification(), is(SecurityClassification.UNCLASSIFIED));
+            assertThat(fileSecurity.getCodewords().trim(), is(""));
+            assertThat(fileSecurity.getFileCopyNumber(), is("00002"));
+            assertThat(filtered.getImageSegments().size(), is(4));
+            assertThat(filtered.getSymbolSegments().size(), is(sourceParse.getDataSource().getSymbolSegments().size()));
+            assertThat(filtered.getLabelSegments().size(), is(sourceParse.getDataSource().getLabelSegments().size()));
+            assertThat(filtered.getTextSegments().size(), is(sourceParse.getDataSource().getTextSegments().size()));
+            for (int i = 0; i < 4; ++i) {
+                ImageSegment image = filtered.getImageSegments().get(i);
+                assertThat(image.getSecurityMetadata().getSecurityClassification(), is(SecurityClassification.UNCLASSIFIED));
+                assertThat(image.getImageDisplayLevel(), is(i + 2));
+                assertThat(image.getAttachmentLevel(), is(0));
+                SegmentLocation sourceLocation = sourceParse.getLayout().getImageSegments().get(i + 1);
+                SegmentLocation outputLocation = parseStrategy.getLayout().getImageSegments().get(i);
+                assertArrayEquals(readRange(source, sourceLocation.getDataOffset(), sourceLocation.getEndOffset()),
+                        readRange(outputFile, outputLocation.getDataOffset(), outputLocation.getEndOffset()));
+            }
+        } finally {
+            assertTrue(source.delete());
+            assertTrue(outputFile.delete());
+        }
+    }
+
+    @Test
+    public void checkFileSecurityOverride() throws NitfFormatException, URISyntaxException, IOException {
+        File original = new File(getClass().getResource("/JitcNitf20Samples/U_1122A.NTF").toURI());
+        File source = new File("filterOverrideSource.ntf");
+        File outputFile = new File("filterOverrideOutput.ntf");
+        FileUtils.copyFile(original, source);
+        try {
+            NitfFileEditor editor = new NitfFileEditor(source);
+            ImageSegment classifiedImage = editor.getDataSource().getImageSegments().get(0);
+            classifiedImage.setSecurityMetadata(new SecurityMetadataBuilder20(classifiedImage.getSecurityMetadata())
+                    .securityClassification(SecurityClassification.SECRET).get());
+            assertTrue(editor.write());
+
+            NitfSecurityFilter filter = new NitfSecurityFilter(source);
+            filter.setFileSecurityMetadata(new FileSecurityMetadataBuilder20(filter.getDataSource().getNitfHeader()
+                    .getFileSecurityMetadata()).securityClassification(SecurityClassification.CONFIDENTIAL).get());
+            filter.write(metadata -> metadata.getSecurityClassification() == SecurityClassification.UNCLASSIFIED, outputFile);
+
+            FileSecurityMetadata fileSecurity = SegmentLocatingParseStrategy.parse(outputFile).getDataSource().getNitfHeader()
+                    .getFileSecurityMetadata();
+            assertThat(fileSecurity.getSecurityClassification(), is(SecurityClassification.CONFIDENTIAL));
+        } finally {
+            assertTrue(source.delete());
+            assertTrue(outputFile.delete());
+        }
+    }
+
+    private static byte[] readRange(final File file, final long start, final long end) throws IOException {
+        return Arrays.copyOfRange(Files.readAllBytes(file.toPath()), (int) start, (int) end);
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.impl.NitfSegmentExtractor;
+import org.codice.imaging.nitf.core.impl.SegmentLocatingParseStrategy;
+import org.codice.imaging.nitf.core.impl.SegmentLocation;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Tests for extracting segments from a NITF file by byte range.
+ */
+public class NitfSegmentExtractorTest {
+
+    @Test
+    public void checkExtractAttachedImage() throws NitfFormatException, URISyntaxException, IOException {
+        File source = new File(getClass().getResource("/JitcNitf20Samples/U_1122A.NTF").toURI());
+        File outputFile = new File("extractAttachedImage.ntf");
+        try {
+            NitfSegmentExtractor extractor = new NitfSegmentExtractor(source);
+            assertThat(extractor.getDataSource().getImageSegments().get(2).getAttachmentLevel(), is(1));
+            extractor.extract(Collections.singletonList(2), Collections.emptyList(), outputFile);
+
+            SegmentLocatingParseStrategy parseStrategy = SegmentLocatingParseStrategy.parse(outputFile);
+            DataSource output = parseStrategy.getDataSource();
+            assertThat(output.getImageSegments().size(), is(1));
+            assertThat(output.getSymbolSegments().size(), is(0));
+            assertThat(output.getLabelSegments().size(), is(0));
+            assertThat(output.getTextSegments().size(), is(0));
+            assertThat(output.getImageSegments().get(0).getImageDisplayLevel(), is(3));
+            assertThat(output.getImageSegments().get(0).getAttachmentLevel(), is(0));
+            assertThat(output.getNitfHeader().getFileTitle(), is(extractor.getDataSource().getNitfHeader().getFileTitle()));
+            assertSameData(source, 2, outputFile, parseStrategy.getLayout().getImageSegments().get(0));
+        } finally {
+            assertTrue(outputFile.delete());
+        }
+    }
+
+    @Test
+    public void checkExtractImagesKeepsAttachment() throws NitfFormatException, URISyntaxException, IOException {
+        File source = new File(getClass().getResource("/JitcNitf20Samples/U_1122A.NTF").toURI());
+        File outputFile = new File("extractImages.ntf");
+        try {
+            new NitfSegmentExtractor(source).extract(Arrays.asList(0, 2), Collections.emptyList(), outputFile);
+
+            SegmentLocatingParseStrategy sourceParse = SegmentLocatingParseStrategy.parse(source);
+            SegmentLocatingParseStrategy parseStrategy = SegmentLocatingParseStrategy.parse(outputFile);
+            assertThat(parseStrategy.getDataSource().getImageSegments().size(), is(2));
+            assertThat(parseStrategy.getDataSource().getImageSegments().get(1).getAttachmentLevel(), is(1));
+            for (int i = 0; i < 2; ++i) {
+                SegmentLocation sourceLocation = sourceParse.getLayout().getImageSegments().get(i * 2);
+                SegmentLocation outputLocation = parseStrategy.getLayout().getImageSegments().get(i);
+                assertArrayEquals(readRange(source, sourceLocation.getHeaderOffset(), sourceLocation.getEndOffset()),
+                        readRange(outputFile, outputLocation.getHeaderOffset(), outputLocation.getEndOffset()));
+            }
+        } finally {
+            assertTrue(outputFile.delete());
+        }
+    }
+
+    @Test
+    public void checkExtractDataExtension() throws NitfFormatException, URISyntaxException, IOException {
+        File source = new File(getClass().getResource("/autzen-utm10.ntf").toURI());
+        File outputFile = new File("extractDES.ntf");
+        try {
+            new NitfSegmentExtractor(source).extract(Collections.emptyList(), Collections.singletonList(0), outputFile);
+
+            SegmentLocatingParseStrategy parseStrategy = SegmentLocatingParseStrategy.parse(outputFile);
+            assertThat(parseStrategy.getDataSource().getImageSegments().size(), is(0));
+            assertThat(parseStrategy.getDataSource().getDataExtensionSegments().size(), is(1));
+            assertThat(parseStrategy.getDataSource().getDataExtensionSegments().get(0).getIdentifier().trim(), is("LIDARA DES"));
+            SegmentLocation sourceLocation = SegmentLocatingParseStrategy.parse(source).getLayout().getDataExtensionSegments().get(0);
+            SegmentLocation outputLocation = parseStrategy.getLayout().getDataExtensionSegments().get(0);
+            assertArrayEquals(readRange(source, sourceLocation.getHeaderOffset(), sourceLocation.getEndOffset()),
+                    readRange(outputFile, outputLocation.getHeaderOffset(), outputLocation.getEndOffset()));
+        } finally {
+            assertTrue(outputFile.delete());
+        }
+    }
+
+    @Test(expected = NitfFormatException.class)
+    public void checkTreOverflowCannotBeExtracted() throws NitfFormatException, URISyntaxException, IOException {
+        File source = new File(getClass().getResource("/JitcNitf20Samples/U_1130F.NTF").toURI());
+        new NitfSegmentExtractor(source).extract(Collections.emptyList(), Collections.singletonList(0), new File("extractOverflow.ntf"));
+    }
+
+    @Test
+    public void checkFileHeaderOverflowCannotBeExtracted() throws NitfFormatException, URISyntaxException, IOException {
+        // the file header TREs of U_1130F overflow into DES 1 and 2, which would not be in the output
+        File source = new File(getClass().getResource("/JitcNitf20Samples/U_1130F.NTF").toURI());
+        File outputFile = new File("extractHeaderOverflow.ntf");
+        try {
+            new NitfSegmentExtractor(source).extract(Collections.emptyList(), Collections.emptyList(), outputFile);
+            fail("Expected NitfFormatException");
+        } catch (NitfFormatException e) {
+            assertThat(e.getMessage(), is("File header has TREs that overflow into a DES"));
+        }
+        assertFalse(outputFile.exists());
+    }
+
+    private static void assertSameData(final File source, final int index, final File output,
+            final SegmentLocation outputLocation) throws NitfFormatException, IOException {
+        SegmentLocation sourceLocation = SegmentLocatingParseStrategy.parse(source).getLayout().getImageSegments().get(index);
+        assertThat(outputLocation.getDataLength(), is(sourceLocation.getDataLength()));
+        assertArrayEquals(readRange(source, sourceLocation.getDataOffset(), sourceLocation.getEndOffset()),
+                readRange(output, outputLocation.getDataOffset(), outputLocation.getEndOffset()));
+    }
+
+    private static byte[] readRange(final File file, final long start, final long end) throws IOException {
+        return Arrays.copyOfRange(Files.readAllBytes(file.toPath()), (int) start, (int) end);
+    }
+}
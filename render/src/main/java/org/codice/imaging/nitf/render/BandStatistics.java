@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import java.util.Arrays;
+
+/**
+ * Statistics for the sample values of one band of an image.
+ *
+ * The statistics are held as a full histogram (one bin for every possible sample value), so partial results for
+ * different parts of an image can be merged without losing anything, and the minimum, maximum, mean and standard
+ * deviation are exact.
+ */
+public final class BandStatistics {
+
+    private final long[] mHistogram;
+    private final int mHistogramOffset;
+    private long mCount = 0;
+
+    /**
+     * Constructor for empty statistics.
+     *
+     * @param bitsPerSample the number of bits in each sample value (the actual bits per pixel, up to 16).
+     * @param signed true if the samples are signed (two's complement) values.
+     */
+    BandStatistics(final int bitsPerSample, final boolean signed) {
+        mHistogram = new long[1 << bitsPerSample];
+        if (signed) {
+            mHistogramOffset = -(1 << (bitsPerSample - 1));
+        } else {
+            mHistogramOffset = 0;
+        }
+    }
+
+    /**
+     * Add a sample value.
+     *
+     * @param value the sample value, which must be in the range of the histogram.
+     */
+    void add(final int value) {
+        mHistogram[value - mHistogramOffset]++;
+        mCount++;
+    }
+
+    /**
+     * Add the values from other statistics for the same band.
+     *
+     * @param other the statistics to merge into these statistics.
+     */
+    void merge(final BandStatistics other) {
+        for (int i = 0; i < mHistogram.length; ++i) {
+            mHistogram[i] += other.mHistogram[i];
+        }
+        mCount += other.mCount;
+    }
+
+    /**
+     * Get the number of sample values.
+     *
+     * @return the number of values that the statistics cover.
+     */
+    public long getCount() {
+        return mCount;
+    }
+
+    /**
+     * Get the smallest sample value.
+     *
+     * @return the minimum value, or zero if there are no values.
+     */
+    public int getMinimum() {
+        for (int i = 0; i < mHistogram.length; ++i) {
+            if (mHistogram[i] != 0) {
+                return i + mHistogramOffset;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Get the largest sample value.
+     *
+     * @return the maximum value, or zero if there are no values.
+     */
+    public int getMaximum() {
+        for (int i = mHistogram.length - 1; i >= 0; --i) {
+            if (mHistogram[i] != 0) {
+                return i + mHistogramOffset;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Get the mean sample value.
+     *
+     * @return the mean, or NaN if there are no values.
+     */
+    public double getMean() {
+        long sum = 0;
+        for (int i = 0; i < mHistogram.length; ++i) {
+            sum += mHistogram[i] * (i + mHistogramOffset);
+        }
+        return (double) sum / mCount;
+    }
+
+    /**
+     * Get the (population) standard deviation of the sample values.
+     *
+     * @return the standard deviation, or NaN if there are no values.
+     */
+    public double getStandardDeviation() {
+        double mean = getMean();
+        double sumOfSquares = 0.0;
+        for (int i = 0; i < mHistogram.length; ++i) {
+            double difference = i + mHistogramOffset - mean;
+            sumOfSquares += mHistogram[i] * difference * difference;
+        }
+        return Math.sqrt(sumOfSquares / mCount);
+    }
+
+    /**
+     * Get the histogram of sample values.
+     *
+     * @return the number of samples with each value. The count for value v is at index v - getHistogramOffset().
+     */
+    public long[] getHistogram() {
+        return Arrays.copyOf(mHistogram, mHistogram.length);
+    }
+
+    /**
+     * Get the sample value of the first histogram bin.
+     *
+     * @return zero for unsigned samples, or the most negative value for signed samples.
+     */
+    public int getHistogramOffset() {
+        return mHistogramOffset;
+    }
+}
@@ -15,32 +15,47 @@
 package org.codice.imaging.nitf.render;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.MultiPixelPackedSampleModel;
 import java.awt.image.WritableRaster;
+import java.io.EOFException;
 import java.io.IOException;
+import java.util.Arrays;
 import javax.imageio.stream.ImageInputStream;
 import org.codice.imaging.nitf.core.image.ImageSegment;
 
+/**
+ * Renderer for bi-level (C1) images, which are CCITT Group 3 (ITU-T T.4) coded.
+ *
+ * Each code (run length or two dimensional coding mode) is decoded with a single lookup, indexed by the next bits of the
+ * image data, into a table built from the code books. Each line is decoded into the positions of its changing pixels,
+ * which are also used to find the reference changing pixels when the next line is two dimensionally coded, and then
+ * the white runs are filled into the packed image data a byte at a time.
+ */
 class BilevelBlockRenderer implements BlockRenderer {
 
     private ImageSegment mImageSegment = null;
     private ImageInputStream mImageData = null;
-    private WritableRaster imgRaster = null;
     private boolean lineMode2D = false;
 
     private static final int EOL = 0b000000000001;
     private static final int EOL_LENGTH_IN_BITS = 12;
-    private static final int MAX_VALID_BITLENGTH_WHITE = 12;
-    private static final int MAX_VALID_BITLENGTH_BLACK = 13;
-    private static final int MAX_VALID_2D_CODEWORD_LENGTH = 7;
+    private static final int WHITE_LOOKUP_BITS = 12;
+    private static final int BLACK_LOOKUP_BITS = 13;
+    private static final int TWO_D_LOOKUP_BITS = 7;
     private static final int MAX_TERMINATING_RUN_LENGTH = 63;
     private static final String TWOD_S_ENCODING = "2DS";
     private static final String TWOD_H_ENCODING = "2DH";
-    private static final int INITIAL_WHITE_BITRUN_LENGTH = 4;
+
+    // lookup table entries hold the decoded value above the code length, and 0 for bits that do not start a code
+    private static final int CODE_LENGTH_BITS = 4;
+    private static final int CODE_LENGTH_MASK = (1 << CODE_LENGTH_BITS) - 1;
 
     private static final int VERTICAL_OFFSET_ONE_PIXEL = 1;
     private static final int VERTICAL_OFFSET_TWO_PIXELS = 2;
     private static final int VERTICAL_OFFSET_THREE_PIXELS = 3;
 
+    private static final int VERTICAL_ZERO = 0b1;
     private static final int VERTICAL_THREE_LEFT = 0b0000010;
     private static final int VERTICAL_THREE_RIGHT = 0b0000011;
     private static final int VERTICAL_TWO_LEFT = 0b000010;
@@ -53,6 +68,10 @@ class BilevelBlockRenderer implements BlockRenderer {
     private static final int WHITE = 0x1;
     private static final int BLACK = 0x0;
 
+    private static final int BITS_PER_BYTE = 8;
+    private static final int BIT_INDEX_MASK = BITS_PER_BYTE - 1;
+    private static final int BYTE_MASK = 0xFF;
+
     private enum TwoDmode {
         Unknown,
         Pass,
@@ -66,6 +85,8 @@ class BilevelBlockRenderer implements BlockRenderer {
         Vertical3Left
     }
 
+    private static final TwoDmode[] TWO_D_MODES = TwoDmode.values();
+
     private static final class CodebookEntry {
         private CodebookEntry(final int codelength, final int code, final int result) {
             codeWordLength = codelength;
@@ -84,6 +105,17 @@ class BilevelBlockRenderer implements BlockRenderer {
     private static final int SIX_BITS = 6;
     private static final int SEVEN_BITS = 7;
 
+    private static final CodebookEntry[] TWO_D_CODE_BOOK = {
+        new CodebookEntry(ONE_BIT, VERTICAL_ZERO, TwoDmode.Vertical0.ordinal()),
+        new CodebookEntry(THREE_BITS, VERTICAL_ONE_RIGHT, TwoDmode.Vertical1Right.ordinal()),
+        new CodebookEntry(THREE_BITS, VERTICAL_ONE_LEFT, TwoDmode.Vertical1Left.ordinal()),
+        new CodebookEntry(THREE_BITS, HORIZONTAL, TwoDmode.Horizontal.ordinal()),
+        new CodebookEntry(FOUR_BITS, PASS, TwoDmode.Pass.ordinal()),
+        new CodebookEntry(SIX_BITS, VERTICAL_TWO_RIGHT, TwoDmode.Vertical2Right.ordinal()),
+        new CodebookEntry(SIX_BITS, VERTICAL_TWO_LEFT, TwoDmode.Vertical2Left.ordinal()),
+        new CodebookEntry(SEVEN_BITS, VERTICAL_THREE_RIGHT, TwoDmode.Vertical3Right.ordinal()),
+        new CodebookEntry(SEVEN_BITS, VERTICAL_THREE_LEFT, TwoDmode.Vertical3Left.ordinal()),
+    };
 
     private static final CodebookEntry[] WHITE_CODE_BOOK = {
         new CodebookEntry(8, 0b00110101, 0),
@@ -299,6 +331,10 @@ class BilevelBlockRenderer implements BlockRenderer {
         new CodebookEntry(12, 0b000000011111, 2560),
     };
 
+    private static final int[] WHITE_LOOKUP = buildLookupTable(WHITE_CODE_BOOK, WHITE_LOOKUP_BITS);
+    private static final int[] BLACK_LOOKUP = buildLookupTable(BLACK_CODE_BOOK, BLACK_LOOKUP_BITS);
+    private static final int[] TWO_D_LOOKUP = buildLookupTable(TWO_D_CODE_BOOK, TWO_D_LOOKUP_BITS);
+
     @Override
     public final void setImageSegment(final ImageSegment imageSegment, final ImageInputStream imageInputStream) throws IOException {
         mImageSegment = imageSegment;
@@ -310,13 +346,33 @@ class BilevelBlockRenderer implements BlockRenderer {
         if (mImageSegment.getActualBitsPerPixelPerBand() != 1) {
             throw new IOException("Unhandled bilevel image depth:" + mImageSegment.getActualBitsPerPixelPerBand());
         }
-        BufferedImage img = new BufferedImage((int) mImageSegment.getNumberOfPixelsPerBlockHorizontal(),
-                                              (int) mImageSegment.getNumberOfPixelsPerBlockVertical(),
-                                              BufferedImage.TYPE_BYTE_BINARY);
-        imgRaster = img.getRaster();
-        for (int blockRow = 0; blockRow < mImageSegment.getNumberOfPixelsPerBlockVertical(); ++blockRow) {
-            readScanline(blockRow);
+        int width = (int) mImageSegment.getNumberOfPixelsPerBlockHorizontal();
+        int height = (int) mImageSegment.getNumberOfPixelsPerBlockVertical();
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY);
+        WritableRaster raster = img.getRaster();
+        byte[] pixels = ((DataBufferByte) raster.getDataBuffer()).getData();
+        int scanlineStride = ((MultiPixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+
+        CodeReader codeReader = new CodeReader(mImageData);
+        // the changing pixels of the reference line, which is all white for the first line
+        int[] referenceLine = new int[width + 2];
+        int[] codingLine = new int[width + 2];
+        int referenceChanges = 0;
+        for (int blockRow = 0; blockRow < height; ++blockRow) {
+            readEOL(codeReader);
+            int codingChanges;
+            if (lineMode2D) {
+                codingChanges = readScanline2D(codeReader, blockRow, width, referenceLine, referenceChanges, codingLine);
+            } else {
+                codingChanges = readScanline1D(codeReader, width, codingLine);
+            }
+            fillWhiteRuns(pixels, blockRow * scanlineStride, width, codingLine, codingChanges);
+            int[] previousLine = referenceLine;
+            referenceLine = codingLine;
+            codingLine = previousLine;
+            referenceChanges = codingChanges;
         }
+        codeReader.finish();
         return img;
     }
 
@@ -326,298 +382,317 @@ class BilevelBlockRenderer implements BlockRenderer {
         return getNextImageBlock();
     }
 
-    private void readScanline(final int blockRow) throws IOException {
-        readEOL();
-        if (lineMode2D) {
-            readScanline2D(blockRow);
-        } else {
-            readScanline1D(blockRow);
-        }
-    }
-
-    private void readScanline2D(final int blockRow) throws IOException {
-        int referenceRow = blockRow - 1;
+    /**
+     * Decode a two dimensionally coded line.
+     *
+     * @return the number of changing pixels in the coding line.
+     */
+    private int readScanline2D(final CodeReader codeReader, final int blockRow, final int width, final int[] referenceLine,
+            final int referenceChanges, final int[] codingLine) throws IOException {
+        int codingChanges = 0;
         int a0colour = WHITE;
         int a0 = -1;
-        int a0prime = 0;
-        while (a0 < mImageSegment.getNumberOfPixelsPerBlockHorizontal()) {
-            TwoDmode mode = getTwoDmode();
+        // index of the first reference changing pixel to the right of a0
+        int referenceIndex = 0;
+        while (a0 < width) {
+            TwoDmode mode = TWO_D_MODES[codeReader.readCode(TWO_D_LOOKUP, TWO_D_LOOKUP_BITS)];
+            while ((referenceIndex < referenceChanges) && (referenceLine[referenceIndex] <= a0)) {
+                referenceIndex++;
+            }
+            // b1 is the first reference changing pixel to the right of a0 that changes to the opposite colour to a0
+            int b1Index = referenceIndex;
+            if (getChangeColour(b1Index) == a0colour) {
+                b1Index++;
+            }
+            int b1 = getChangingPixel(referenceLine, referenceChanges, b1Index, width);
             int a1;
-            int b1 = getBindex(referenceRow, a0colour, a0);
             switch (mode) {
                 case Pass:
-                    int b2 = getBindex(referenceRow, flipColour(a0colour), b1);
-                    writeRunFromTo(blockRow, a0, b2, a0colour);
-                    a0prime = b2;
-                    break;
+                    a0 = getChangingPixel(referenceLine, referenceChanges, b1Index + 1, width);
+                    continue;
                 case Horizontal:
                     if (a0 < 0) {
                         a0 = 0;
                     }
-                    if (a0colour == WHITE) {
-                        int whiteRun = readWhiteRunLength();
-                        writeRun(blockRow, a0, whiteRun, WHITE);
-                        int blackRun = readBlackRunLength();
-                        writeRun(blockRow, a0 + whiteRun, blackRun, BLACK);
-                        a0prime += whiteRun;
-                        a0prime += blackRun;
-                    } else {
-                        int blackRun = readBlackRunLength();
-                        writeRun(blockRow, a0, blackRun, BLACK);
-                        int whiteRun = readWhiteRunLength();
-                        writeRun(blockRow, a0 + blackRun, whiteRun, WHITE);
-                        a0prime += blackRun;
-                        a0prime += whiteRun;
-                    }
-                    break;
+                    int firstRun = readRun(codeReader, a0colour, width);
+                    int secondRun = readRun(codeReader, flipColour(a0colour), width);
+                    codingChanges = addChangingPixel(codingLine, codingChanges, a0 + firstRun, width);
+                    a0 += firstRun + secondRun;
+                    codingChanges = addChangingPixel(codingLine, codingChanges, a0, width);
+                    continue;
                 case Vertical0:
                     a1 = b1;
-                    writeRunFromTo(blockRow, a0, a1, a0colour);
-                    a0prime = a1;
-                    a0colour = flipColour(a0colour);
                     break;
                 case Vertical1Left:
                     a1 = b1 - VERTICAL_OFFSET_ONE_PIXEL;
-                    writeRunFromTo(blockRow, a0, a1, a0colour);
-                    a0prime = a1;
-                    a0colour = flipColour(a0colour);
                     break;
                 case Vertical2Left:
                     a1 = b1 - VERTICAL_OFFSET_TWO_PIXELS;
-                    writeRunFromTo(blockRow, a0, a1, a0colour);
-                    a0prime = a1;
-                    a0colour = flipColour(a0colour);
                     break;
                 case Vertical3Left:
                     a1 = b1 - VERTICAL_OFFSET_THREE_PIXELS;
-                    writeRunFromTo(blockRow, a0, a1, a0colour);
-                    a0prime = a1;
-                    a0colour = flipColour(a0colour);
                     break;
                 case Vertical1Right:
                     a1 = b1 + VERTICAL_OFFSET_ONE_PIXEL;
-                    writeRunFromTo(blockRow, a0, a1, a0colour);
-                    a0prime = a1;
-                    a0colour = flipColour(a0colour);
                     break;
                 case Vertical2Right:
                     a1 = b1 + VERTICAL_OFFSET_TWO_PIXELS;
-                    writeRunFromTo(blockRow, a0, a1, a0colour);
-                    a0prime = a1;
-                    a0colour = flipColour(a0colour);
                     break;
                 case Vertical3Right:
                     a1 = b1 + VERTICAL_OFFSET_THREE_PIXELS;
-                    writeRunFromTo(blockRow, a0, a1, a0colour);
-                    a0prime = a1;
-                    a0colour = flipColour(a0colour);
                     break;
                 default:
                     throw new IOException("Unsupported 2D BilevelBlockRenderer encoding at row" + blockRow);
             }
-            a0 = a0prime;
+            if ((a1 < a0) || (a1 > width)) {
+                throw new IOException("Bad 2D BilevelBlockRenderer changing pixel at row" + blockRow);
+            }
+            codingChanges = addChangingPixel(codingLine, codingChanges, a1, width);
+            a0 = a1;
+            a0colour = flipColour(a0colour);
         }
+        return codingChanges;
     }
 
-    private void writeRunFromTo(final int blockRow, final int startColumn, final int endColumn, final int colour) {
-        int start = startColumn;
-        if (start < 0) {
-            start = 0;
-        }
-        for (int i = start; i < endColumn; ++i) {
-            imgRaster.setSample(i, blockRow, 0, colour);
+    /**
+     * Get the colour that a changing pixel changes to.
+     *
+     * Lines start white, so the changes to black are at even indexes, and the changes to white at odd indexes.
+     */
+    private static int getChangeColour(final int index) {
+        if ((index & 1) == 0) {
+            return BLACK;
         }
+        return WHITE;
     }
 
-    private int flipColour(final int colour) {
-        if (colour == WHITE) {
-            return BLACK;
-        } else {
-            return WHITE;
+    private static int getChangingPixel(final int[] line, final int changes, final int index, final int width) {
+        if (index < changes) {
+            return line[index];
         }
+        return width;
     }
 
-    private TwoDmode getTwoDmode() throws IOException {
-        TwoDmode mode = TwoDmode.Unknown;
-        int numberOfCodewordBits = 1;
-        int codeWord = (int) mImageData.readBits(numberOfCodewordBits);
-        do {
-            mode = lookupMode(codeWord, numberOfCodewordBits);
-            if (mode == TwoDmode.Unknown) {
-                numberOfCodewordBits++;
-                codeWord = (codeWord << 1) + (int) mImageData.readBits(1);
-            }
-        } while ((mode == TwoDmode.Unknown) && (numberOfCodewordBits <= MAX_VALID_2D_CODEWORD_LENGTH));
-        return mode;
+    /**
+     * Add a changing pixel to the end of a line.
+     *
+     * A change at the same position as the previous change cancels it out, and changes at the end of the line are
+     * dropped.
+     *
+     * @return the new number of changing pixels.
+     */
+    private static int addChangingPixel(final int[] line, final int changes, final int position, final int width) {
+        if (position >= width) {
+            return changes;
+        }
+        if ((changes > 0) && (line[changes - 1] == position)) {
+            return changes - 1;
+        }
+        line[changes] = position;
+        return changes + 1;
     }
 
-    private TwoDmode lookupMode(final int codeWord, final int numberOfCodewordBits) {
-        switch (numberOfCodewordBits) {
-            case ONE_BIT:
-                if (codeWord == 1) {
-                    return TwoDmode.Vertical0;
-                } else {
-                    return TwoDmode.Unknown;
-                }
-            case THREE_BITS:
-                if (codeWord == VERTICAL_ONE_RIGHT) {
-                    return TwoDmode.Vertical1Right;
-                } else if (codeWord == VERTICAL_ONE_LEFT) {
-                    return TwoDmode.Vertical1Left;
-                } else if (codeWord == HORIZONTAL) {
-                    return TwoDmode.Horizontal;
-                } else {
-                    return TwoDmode.Unknown;
-                }
-            case FOUR_BITS:
-                if (codeWord == PASS) {
-                    return TwoDmode.Pass;
-                } else {
-                    return TwoDmode.Unknown;
-                }
-            case SIX_BITS:
-                if (codeWord == VERTICAL_TWO_RIGHT) {
-                    return TwoDmode.Vertical2Right;
-                } else if (codeWord == VERTICAL_TWO_LEFT) {
-                    return TwoDmode.Vertical2Left;
-                } else {
-                    return TwoDmode.Unknown;
-                }
-            case SEVEN_BITS:
-                if (codeWord == VERTICAL_THREE_RIGHT) {
-                    return TwoDmode.Vertical3Right;
-                } else if (codeWord == VERTICAL_THREE_LEFT) {
-                    return TwoDmode.Vertical3Left;
-                } else {
-                    return TwoDmode.Unknown;
-                }
-            default:
-                return TwoDmode.Unknown;
+    /**
+     * Set the white pixels of a line.
+     *
+     * The line starts out black (0), and runs of white (1) pixels are set in whole bytes where they can be.
+     */
+    private static void fillWhiteRuns(final byte[] pixels, final int lineOffset, final int width, final int[] line,
+            final int changes) {
+        int start = 0;
+        for (int i = 0; i <= changes; i += 2) {
+            int end = getChangingPixel(line, changes, i, width);
+            setBits(pixels, lineOffset, start, end);
+            start = getChangingPixel(line, changes, i + 1, width);
         }
     }
 
+    private static void setBits(final byte[] pixels, final int lineOffset, final int start, final int end) {
+        if (start >= end) {
+            return;
+        }
+        int firstByte = lineOffset + start / BITS_PER_BYTE;
+        int lastByte = lineOffset + (end - 1) / BITS_PER_BYTE;
+        int firstMask = BYTE_MASK >>> (start & BIT_INDEX_MASK);
+        int lastMask = (BYTE_MASK << (BIT_INDEX_MASK - ((end - 1) & BIT_INDEX_MASK))) & BYTE_MASK;
+        if (firstByte == lastByte) {
+            pixels[firstByte] |= firstMask & lastMask;
+            return;
+        }
+        pixels[firstByte] |= firstMask;
+        Arrays.fill(pixels, firstByte + 1, lastByte, (byte) BYTE_MASK);
+        pixels[lastByte] |= lastMask;
+    }
 
-    private int getBindex(final int referenceRow, final int refcolour, final int refposition) {
-        // First find a changing pixel
-        int pixelAboveRefPosition;
-        if (refposition == -1) {
-            pixelAboveRefPosition = WHITE;
+    private int flipColour(final int colour) {
+        if (colour == WHITE) {
+            return BLACK;
         } else {
-            pixelAboveRefPosition = imgRaster.getSample(refposition, referenceRow, 0);
-        }
-        for (int i = refposition + 1; i < mImageSegment.getNumberOfPixelsPerBlockHorizontal(); ++i) {
-            int sampleValue = imgRaster.getSample(i, referenceRow, 0);
-            if (sampleValue != pixelAboveRefPosition) {
-                // This is a changing pixel
-                if (sampleValue != refcolour) {
-                    // opposite colour to the reference colour, so this is the one we want
-                    return i;
-                } else {
-                    // Look for another changing pixel
-                    pixelAboveRefPosition = sampleValue;
-                }
-            }
+            return WHITE;
         }
-        return (int) mImageSegment.getNumberOfPixelsPerBlockHorizontal();
     }
 
-    private void readScanline1D(final int blockRow) throws IOException {
+    /**
+     * Decode a one dimensionally coded line.
+     *
+     * @return the number of changing pixels in the coding line.
+     */
+    private int readScanline1D(final CodeReader codeReader, final int width, final int[] codingLine) throws IOException {
+        int codingChanges = 0;
         int blockColumn = 0;
         int colour = WHITE;
 
-        while (blockColumn < mImageSegment.getNumberOfPixelsPerBlockHorizontal()) {
-            int runLength = readNextRun(colour);
-            writeRun(blockRow, blockColumn, runLength, colour);
-            blockColumn += runLength;
+        while (blockColumn < width) {
+            blockColumn += readRun(codeReader, colour, width);
+            codingChanges = addChangingPixel(codingLine, codingChanges, blockColumn, width);
             colour = flipColour(colour);
         }
-        if (blockColumn != mImageSegment.getNumberOfPixelsPerBlockHorizontal()) {
+        if (blockColumn != width) {
             throw new IOException("Mismatched number of pixels: " + blockColumn);
         }
+        return codingChanges;
     }
 
-    private void writeRun(final int blockRow, final int blockColumn, final int runLength, final int colour) {
-        for (int i = 0; i < runLength; ++i) {
-            imgRaster.setSample(blockColumn + i, blockRow, 0, colour);
-        }
-    }
-
-    private void readEOL() throws IOException {
-        int eol = (int) mImageData.readBits(EOL_LENGTH_IN_BITS);
+    private void readEOL(final CodeReader codeReader) throws IOException {
+        int eol = codeReader.readBits(EOL_LENGTH_IN_BITS);
         // check for fill, and keep reading bits until we get something that isn't all fill bits
         while (eol == 0) {
-            eol = (eol << 1) + (int) mImageData.readBits(1);
+            eol = codeReader.readBits(1);
         }
         if (EOL != eol) {
             throw new IOException(String.format("Expected EOL, but got 0x%04d", eol));
         }
         if (TWOD_S_ENCODING.equals(mImageSegment.getCompressionRate()) || TWOD_H_ENCODING.equals(mImageSegment.getCompressionRate())) {
-            lineMode2D = (mImageData.readBits(1) != 0x01);
+            lineMode2D = (codeReader.readBits(1) != 0x01);
         }
     }
 
-    private int readNextRun(final int colour) throws IOException {
-        int cumulativeLengthOfThisRun = 0;
-        if (colour == WHITE) {
-            int whiteRunLength;
-            do {
-                whiteRunLength = readWhiteRunLength();
-                if (whiteRunLength == -1) {
-                    throw new IOException("Bad run length");
-                }
-                cumulativeLengthOfThisRun += whiteRunLength;
-            } while (whiteRunLength > MAX_TERMINATING_RUN_LENGTH);
-        } else {
-            int blackRunLength;
-            do {
-                blackRunLength = readBlackRunLength();
-                if (blackRunLength == -1) {
-                    throw new IOException("Bad run length");
-                }
-                cumulativeLengthOfThisRun += blackRunLength;
-            } while (blackRunLength > MAX_TERMINATING_RUN_LENGTH);
+    /**
+     * Read a run, made up of any make up codes and the terminating code.
+     */
+    private static int readRun(final CodeReader codeReader, final int colour, final int width) throws IOException {
+        int[] lookup = WHITE_LOOKUP;
+        int lookupBits = WHITE_LOOKUP_BITS;
+        if (colour == BLACK) {
+            lookup = BLACK_LOOKUP;
+            lookupBits = BLACK_LOOKUP_BITS;
         }
-        if (cumulativeLengthOfThisRun > mImageSegment.getNumberOfPixelsPerBlockHorizontal()) {
+        int cumulativeLengthOfThisRun = 0;
+        int runLength;
+        do {
+            runLength = codeReader.readCode(lookup, lookupBits);
+            cumulativeLengthOfThisRun += runLength;
+        } while (runLength > MAX_TERMINATING_RUN_LENGTH);
+        if (cumulativeLengthOfThisRun > width) {
             throw new IOException("Bad run length: " + cumulativeLengthOfThisRun);
         }
         return cumulativeLengthOfThisRun;
     }
 
-    private int readWhiteRunLength() throws IOException {
-        int numberOfCodewordBits = INITIAL_WHITE_BITRUN_LENGTH;
-        int codeWord = (int) mImageData.readBits(numberOfCodewordBits);
-        int runLength = 0;
-        do {
-            runLength = lookupRunLength(WHITE_CODE_BOOK, codeWord, numberOfCodewordBits);
-            if (runLength == -1) {
-                codeWord = (codeWord << 1) + (int) mImageData.readBits(1);
-                ++numberOfCodewordBits;
-            }
-        } while ((runLength == -1) && (numberOfCodewordBits <= MAX_VALID_BITLENGTH_WHITE));
-        return runLength;
+    /**
+     * Build a table that maps every value of the next lookupBits bits to the code that they start with.
+     */
+    private static int[] buildLookupTable(final CodebookEntry[] codeBook, final int lookupBits) {
+        int[] table = new int[1 << lookupBits];
+        for (CodebookEntry entry : codeBook) {
+            int unusedBits = lookupBits - entry.codeWordLength;
+            int first = entry.codeWord << unusedBits;
+            Arrays.fill(table, first, first + (1 << unusedBits), (entry.runLength << CODE_LENGTH_BITS) | entry.codeWordLength);
+        }
+        return table;
     }
 
-    private int readBlackRunLength() throws IOException {
-        int numberOfCodewordBits = 2;
-        int codeWord = (int) mImageData.readBits(numberOfCodewordBits);
-        int runLength = 0;
-        do {
-            runLength = lookupRunLength(BLACK_CODE_BOOK, codeWord, numberOfCodewordBits);
-            if (runLength == -1) {
-                codeWord = (codeWord << 1) + (int) mImageData.readBits(1);
-                ++numberOfCodewordBits;
+    /**
+     * Buffered reader for the bits of the image data.
+     *
+     * The image data is read a buffer at a time into a bit window. Once the block has been decoded, the image data
+     * stream is moved back to the first bit that was not used, which is where the next block starts.
+     */
+    private static final class CodeReader {
+        private static final int BUFFER_SIZE = 4096;
+        private static final int WINDOW_BITS = Long.SIZE;
+
+        private final ImageInputStream mStream;
+        private final long mStartPosition;
+        private final byte[] mBuffer = new byte[BUFFER_SIZE];
+        private int mBufferIndex = 0;
+        private int mBufferLength = 0;
+        private boolean mEndOfStream = false;
+        // the next bits, starting from the most significant bit, with zeros after the valid bits
+        private long mWindow = 0;
+        private int mWindowBits = 0;
+        private long mBitsUsed = 0;
+
+        CodeReader(final ImageInputStream stream) throws IOException {
+            mStream = stream;
+            mStartPosition = stream.getStreamPosition();
+            // reading resets the bit offset, so take it first
+            int bitOffset = stream.getBitOffset();
+            fill();
+            skip(bitOffset);
+        }
+
+        int readBits(final int numberOfBits) throws IOException {
+            int bits = peek(numberOfBits);
+            skip(numberOfBits);
+            return bits;
+        }
+
+        /**
+         * Read one code.
+         *
+         * @return the decoded value.
+         * @throws IOException if the next bits are not a code, or the image data ended.
+         */
+        int readCode(final int[] lookup, final int lookupBits) throws IOException {
+            int entry = lookup[peek(lookupBits)];
+            if (entry == 0) {
+                throw new IOException("Bad run length");
             }
-        } while ((runLength == -1) && (numberOfCodewordBits <= MAX_VALID_BITLENGTH_BLACK));
-        return runLength;
-    }
+            skip(entry & CODE_LENGTH_MASK);
+            return entry >>> CODE_LENGTH_BITS;
+        }
 
-    private int lookupRunLength(final CodebookEntry[] codeBook, final int codeWord, final int numberOfCodewordBits) throws IOException {
-        for (int i = 0; i < codeBook.length; ++i) {
-            CodebookEntry entry = codeBook[i];
-            if ((entry.codeWordLength == numberOfCodewordBits) && (entry.codeWord == codeWord)) {
-                return entry.runLength;
+        void finish() throws IOException {
+            mStream.seek(mStartPosition + mBitsUsed / BITS_PER_BYTE);
+            mStream.setBitOffset((int) (mBitsUsed & BIT_INDEX_MASK));
+        }
+
+        private int peek(final int numberOfBits) throws IOException {
+            if (mWindowBits < numberOfBits) {
+                fill();
+            }
+            return (int) (mWindow >>> (WINDOW_BITS - numberOfBits));
+        }
+
+        private void skip(final int numberOfBits) throws IOException {
+            if (mWindowBits < numberOfBits) {
+                fill();
+                if (mWindowBits < numberOfBits) {
+                    throw new EOFException();
+                }
+            }
+            mWindow <<= numberOfBits;
+            mWindowBits -= numberOfBits;
+            mBitsUsed += numberOfBits;
+        }
+
+        private void fill() throws IOException {
+            while (mWindowBits <= WINDOW_BITS - BITS_PER_BYTE) {
+                if (mBufferIndex == mBufferLength) {
+                    if (mEndOfStream) {
+                        return;
+                    }
+                    mBufferLength = Math.max(mStream.read(mBuffer), 0);
+                    mBufferIndex = 0;
+                    if (mBufferLength == 0) {
+                        mEndOfStream = true;
+                        return;
+                    }
+                }
+                mWindow |= ((long) (mBuffer[mBufferIndex++] & BYTE_MASK)) << (WINDOW_BITS - BITS_PER_BYTE - mWindowBits);
+                mWindowBits += BITS_PER_BYTE;
             }
         }
-        return -1;
     }
 }
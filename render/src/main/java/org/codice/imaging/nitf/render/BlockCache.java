@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Cache of rendered image blocks, shared between render requests.
+ *
+ * Blocks are identified by the file they come from, the index of the image segment within the file, the bands that
+ * were rendered, the subsampling factor and the block index. The cache holds blocks up to a maximum total size (based
+ * on the size of the image data buffers), and evicts the least recently used blocks to stay within that size.
+ *
+ * The cached images are shared between all renders that use the cache, so they must not be modified.
+ *
+ * This class is thread safe.
+ */
+public final class BlockCache {
+
+    private final long mMaximumSize;
+
+    private final LinkedHashMap<Key, BufferedImage> mBlocks = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long mSize = 0;
+    private long mHitCount = 0;
+    private long mMissCount = 0;
+    private long mEvictionCount = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param maximumSize the maximum total size of the cached blocks, in bytes.
+     */
+    public BlockCache(final long maximumSize) {
+        mMaximumSize = maximumSize;
+    }
+
+    /**
+     * Get a cached block.
+     *
+     * @param key the identity of the block.
+     * @return the block image, or null if the block is not in the cache.
+     */
+    public synchronized BufferedImage get(final Key key) {
+        BufferedImage block = mBlocks.get(key);
+        if (block == null) {
+            mMissCount++;
+        } else {
+            mHitCount++;
+        }
+        return block;
+    }
+
+    /**
+     * Add a block to the cache.
+     *
+     * Blocks that are larger than the maximum size of the cache are not added.
+     *
+     * @param key the identity of the block.
+     * @param block the block image, which must not be modified after it is added.
+     */
+    public synchronized void put(final Key key, final BufferedImage block) {
+        long blockSize = getSize(block);
+        if (blockSize > mMaximumSize) {
+            return;
+        }
+        BufferedImage previous = mBlocks.put(key, block);
+        if (previous != null) {
+            mSize -= getSize(previous);
+        }
+        mSize += blockSize;
+        Iterator<Map.Entry<Key, BufferedImage>> leastRecentlyUsed = mBlocks.entrySet().iterator();
+        while (mSize > mMaximumSize) {
+            mSize -= getSize(leastRecentlyUsed.next().getValue());
+            leastRecentlyUsed.remove();
+            mEvictionCount++;
+        }
+    }
+
+    /**
+     * Remove all blocks from the cache.
+     *
+     * The hit, miss and eviction counts are not reset.
+     */
+    public synchronized void clear() {
+        mBlocks.clear();
+        mSize = 0;
+    }
+
+    /**
+     * Get a view of the cache for one image segment.
+     *
+     * @param fileIdentity the identity of the file that contains the image segment (e.g. the path to the file).
+     * @param segmentIndex the index of the image segment within the file, zero based.
+     * @param bands the bands that are rendered, or null for the default display bands.
+     * @param subsampling the subsampling factor, which is 1 for full resolution.
+     * @return the blocks for the specified image segment.
+     */
+    public SegmentBlocks forSegment(final Object fileIdentity, final int segmentIndex, final int[] bands, final int subsampling) {
+        return new SegmentBlocks(fileIdentity, segmentIndex, bands, subsampling);
+    }
+
+    /**
+     * Get the maximum total size of the cached blocks.
+     *
+     * @return the maximum size, in bytes.
+     */
+    public long getMaximumSize() {
+        return mMaximumSize;
+    }
+
+    /**
+     * Get the total size of the cached blocks.
+     *
+     * @return the size, in bytes.
+     */
+    public synchronized long getSize() {
+        return mSize;
+    }
+
+    /**
+     * Get the number of cached blocks.
+     *
+     * @return the number of blocks.
+     */
+    public synchronized int getBlockCount() {
+        return mBlocks.size();
+    }
+
+    /**
+     * Get the number of requests that found the block in the cache.
+     *
+     * @return the number of cache hits.
+     */
+    public synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * Get the number of requests that did not find the block in the cache.
+     *
+     * @return the number of cache misses.
+     */
+    public synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * Get the number of blocks that have been removed to keep the cache within its maximum size.
+     *
+     * @return the number of evicted blocks.
+     */
+    public synchronized long getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    private static long getSize(final BufferedImage block) {
+        DataBuffer dataBuffer = block.getRaster().getDataBuffer();
+        return (long) dataBuffer.getSize() * dataBuffer.getNumBanks() * DataBuffer.getDataTypeSize(dataBuffer.getDataType())
+                / Byte.SIZE;
+    }
+
+    /**
+     * The identity of a cached block.
+     */
+    public static final class Key {
+        private final Object mFileIdentity;
+        private final int mSegmentIndex;
+        private final int[] mBands;
+        private final int mSubsampling;
+        private final int mBlockIndex;
+
+        /**
+         * Constructor.
+         *
+         * @param fileIdentity the identity of the file that contains the image segment (e.g. the path to the file).
+         * @param segmentIndex the index of the image segment within the file, zero based.
+         * @param bands the bands that are rendered, or null for the default display bands.
+         * @param subsampling the subsampling factor, which is 1 for full resolution.
+         * @param blockIndex the index of the block, in the same order as the image mask.
+         */
+        public Key(final Object fileIdentity, final int segmentIndex, final int[] bands, final int subsampling,
+                final int blockIndex) {
+            mFileIdentity = fileIdentity;
+            mSegmentIndex = segmentIndex;
+            mBands = copyOf(bands);
+            mSubsampling = subsampling;
+            mBlockIndex = blockIndex;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return mFileIdentity.equals(key.mFileIdentity) && (mSegmentIndex == key.mSegmentIndex)
+                    && Arrays.equals(mBands, key.mBands) && (mSubsampling == key.mSubsampling)
+                    && (mBlockIndex == key.mBlockIndex);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mFileIdentity, mSegmentIndex, Arrays.hashCode(mBands), mSubsampling, mBlockIndex);
+        }
+    }
+
+    /**
+     * The cached blocks for one image segment.
+     */
+    public final class SegmentBlocks {
+        private final Object mFileIdentity;
+        private final int mSegmentIndex;
+        private final int[] mBands;
+        private final int mSubsampling;
+
+        private SegmentBlocks(final Object fileIdentity, final int segmentIndex, final int[] bands, final int subsampling) {
+            mFileIdentity = fileIdentity;
+            mSegmentIndex = segmentIndex;
+            mBands = copyOf(bands);
+            mSubsampling = subsampling;
+        }
+
+        /**
+         * Get a cached block.
+         *
+         * @param blockIndex the index of the block, in the same order as the image mask.
+         * @return the block image, or null if the block is not in the cache.
+         */
+        public BufferedImage get(final int blockIndex) {
+            return BlockCache.this.get(getKey(blockIndex));
+        }
+
+        /**
+         * Add a block to the cache.
+         *
+         * @param blockIndex the index of the block, in the same order as the image mask.
+         * @param block the block image, which must not be modified after it is added.
+         */
+        public void put(final int blockIndex, final BufferedImage block) {
+            BlockCache.this.put(getKey(blockIndex), block);
+        }
+
+        private Key getKey(final int blockIndex) {
+            return new Key(mFileIdentity, mSegmentIndex, mBands, mSubsampling, blockIndex);
+        }
+    }
+
+    private static int[] copyOf(final int[] bands) {
+        if (bands == null) {
+            return null;
+        }
+        return bands.clone();
+    }
+}
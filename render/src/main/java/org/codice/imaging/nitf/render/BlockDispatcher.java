@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import org.codice.imaging.nitf.core.image.ImageSegment;
+
+/**
+ * Passes the blocks of a compressed image to a BlockConsumer, one after another or in parallel on a fork join pool.
+ *
+ * This also renders the images that are decoded through a BlockRenderer (bilevel and vector quantized images).
+ */
+final class BlockDispatcher {
+
+    private final ForkJoinPool mPool;
+
+    /**
+     * Constructor.
+     *
+     * @param pool the pool to process blocks on, or null to process blocks sequentially.
+     */
+    BlockDispatcher(final ForkJoinPool pool) {
+        mPool = pool;
+    }
+
+    /**
+     * Check whether blocks are processed in parallel.
+     *
+     * @return true if there is a pool to process blocks on.
+     */
+    boolean isParallel() {
+        return mPool != null;
+    }
+
+    /**
+     * Get the blocks that intersect a region.
+     *
+     * @param imageSegment the image segment being rendered.
+     * @param region the region, in image pixels, or null for the whole image.
+     * @return the range of blocks, with x as the column index and y as the row index.
+     */
+    static Rectangle getBlockRange(final ImageSegment imageSegment, final Rectangle region) {
+        Rectangle allBlocks = new Rectangle(0, 0, imageSegment.getNumberOfBlocksPerRow(), imageSegment.getNumberOfBlocksPerColumn());
+        if (region == null) {
+            return allBlocks;
+        }
+        int blockWidth = (int) imageSegment.getNumberOfPixelsPerBlockHorizontal();
+        int blockHeight = (int) imageSegment.getNumberOfPixelsPerBlockVertical();
+        int firstColumn = Math.floorDiv(region.x, blockWidth);
+        int firstRow = Math.floorDiv(region.y, blockHeight);
+        int lastColumn = Math.floorDiv(region.x + region.width - 1, blockWidth);
+        int lastRow = Math.floorDiv(region.y + region.height - 1, blockHeight);
+        return allBlocks.intersection(new Rectangle(firstColumn, firstRow, lastColumn - firstColumn + 1, lastRow - firstRow + 1));
+    }
+
+    /**
+     * Process a range of blocks, in parallel if there is a pool.
+     *
+     * @param blockRange the range of blocks, with x as the column index and y as the row index.
+     * @param consumer the operation for each block, which must be safe to call from several threads at once.
+     * @throws IOException if the consumer failed for any block.
+     */
+    void forEachBlock(final Rectangle blockRange, final BlockConsumer consumer) throws IOException {
+        if (mPool == null) {
+            forEachBlockInOrder(blockRange, consumer);
+            return;
+        }
+        if (blockRange.isEmpty()) {
+            return;
+        }
+        try {
+            mPool.submit(() -> IntStream.range(0, blockRange.width * blockRange.height)
+                    .parallel()
+                    .forEach(blockIndex -> {
+                        try {
+                            consumer.acccept(blockRange.y + blockIndex / blockRange.width, blockRange.x + blockIndex % blockRange.width);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })).join();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Process a range of blocks one after another, in row major order.
+     *
+     * @param blockRange the range of blocks, with x as the column index and y as the row index.
+     * @param consumer the operation for each block.
+     * @throws IOException if the consumer failed for any block.
+     */
+    static void forEachBlockInOrder(final Rectangle blockRange, final BlockConsumer consumer) throws IOException {
+        for (int rowIndex = blockRange.y; rowIndex < blockRange.y + blockRange.height; ++rowIndex) {
+            for (int columnIndex = blockRange.x; columnIndex < blockRange.x + blockRange.width; ++columnIndex) {
+                consumer.acccept(rowIndex, columnIndex);
+            }
+        }
+    }
+
+    /**
+     * Render an image segment through a block renderer.
+     *
+     * Blocks are only decoded in parallel (and cached) if the renderer has random block access. Otherwise every block
+     * has to be decoded to get to the next one, so all of the blocks are decoded and the target clips them.
+     *
+     * @param renderer the block renderer for the image compression.
+     * @param imageSegment the image segment to render.
+     * @param target the target to draw the blocks on.
+     * @param blockRange the blocks that intersect the rendered region.
+     * @param subsampling the subsampling factor.
+     * @param origin the position of the first pixel of the image segment on the target, at full resolution.
+     * @param cachedBlocks the cached blocks for the image segment, or null.
+     * @throws IOException if the source data could not be read from.
+     */
+    void render(final BlockRenderer renderer, final ImageSegment imageSegment, final RenderTarget target,
+            final Rectangle blockRange, final int subsampling, final Point origin, final BlockCache.SegmentBlocks cachedBlocks)
+            throws IOException {
+        renderer.setImageSegment(imageSegment, imageSegment.getData());
+        // blocks can only be cached if they can be decoded independently
+        BlockCache.SegmentBlocks segmentBlocks = null;
+        if (renderer.hasRandomBlockAccess()) {
+            segmentBlocks = cachedBlocks;
+        }
+        final BlockCache.SegmentBlocks blockCache = segmentBlocks;
+
+        BlockConsumer blockConsumer = (rowIndex, columnIndex) -> {
+            int x = origin.x + columnIndex * (int) imageSegment.getNumberOfPixelsPerBlockHorizontal();
+            int y = origin.y + rowIndex * (int) imageSegment.getNumberOfPixelsPerBlockVertical();
+            int firstColumn = Math.floorMod(-x, subsampling);
+            int firstRow = Math.floorMod(-y, subsampling);
+            int blockIndex = rowIndex * imageSegment.getNumberOfBlocksPerRow() + columnIndex;
+            BufferedImage img = null;
+            if (blockCache != null) {
+                img = blockCache.get(blockIndex);
+            }
+            if (img == null) {
+                img = renderer.getImageBlock(rowIndex, columnIndex);
+                if ((subsampling > 1) && (img != null)) {
+                    img = subsample(img, firstColumn, firstRow, subsampling);
+                }
+                putBlock(blockCache, blockIndex, img);
+            }
+            if (subsampling > 1) {
+                x = (x + firstColumn) / subsampling;
+                y = (y + firstRow) / subsampling;
+            }
+            target.drawImage(img, x, y);
+        };
+        if (!renderer.hasRandomBlockAccess()) {
+            forEachBlockInOrder(getBlockRange(imageSegment, null), blockConsumer);
+        } else {
+            forEachBlock(blockRange, blockConsumer);
+        }
+    }
+
+    /**
+     * Decode every block of an image segment through a block renderer, one block at a time in row major order.
+     *
+     * @param renderer the block renderer for the image compression.
+     * @param imageSegment the image segment to decode.
+     * @param consumer the consumer for the decoded blocks, which is not passed the blocks that the renderer leaves out.
+     * @throws IOException if the source data could not be read from, or the consumer failed.
+     */
+    static void decodeBlocks(final BlockRenderer renderer, final ImageSegment imageSegment, final DecodedBlockConsumer consumer)
+            throws IOException {
+        renderer.setImageSegment(imageSegment, imageSegment.getData());
+        forEachBlockInOrder(getBlockRange(imageSegment, null), (rowIndex, columnIndex) -> {
+            BufferedImage img = renderer.getImageBlock(rowIndex, columnIndex);
+            if (img == null) {
+                return;
+            }
+            consumer.accept(rowIndex, columnIndex, img);
+        });
+    }
+
+    /**
+     * Add a block to the cache, if blocks are cached.
+     *
+     * @param cachedBlocks the cached blocks for the image segment, or null.
+     * @param blockIndex the index of the block, in row major order.
+     * @param block the decoded block, or null if there is nothing to cache.
+     */
+    static void putBlock(final BlockCache.SegmentBlocks cachedBlocks, final int blockIndex, final BufferedImage block) {
+        if ((cachedBlocks != null) && (block != null)) {
+            cachedBlocks.put(blockIndex, block);
+        }
+    }
+
+    /**
+     * Copy every subsampling'th pixel of an image, starting from the specified pixel.
+     *
+     * @return the subsampled image, or null if no pixels are kept.
+     */
+    private static BufferedImage subsample(final BufferedImage img, final int firstColumn, final int firstRow,
+            final int subsampling) {
+        int width = ceilDiv(img.getWidth() - firstColumn, subsampling);
+        int height = ceilDiv(img.getHeight() - firstRow, subsampling);
+        if ((width <= 0) || (height <= 0)) {
+            return null;
+        }
+        Raster source = img.getRaster();
+        WritableRaster raster = img.getColorModel().createCompatibleWritableRaster(width, height);
+        Object pixel = null;
+        for (int row = 0; row < height; ++row) {
+            for (int column = 0; column < width; ++column) {
+                pixel = source.getDataElements(firstColumn + column * subsampling, firstRow + row * subsampling, pixel);
+                raster.setDataElements(column, row, pixel);
+            }
+        }
+        return new BufferedImage(img.getColorModel(), raster, img.isAlphaPremultiplied(), null);
+    }
+
+    /**
+     * Divide, rounding up.
+     *
+     * @param value the value.
+     * @param divisor the divisor, which must be positive.
+     * @return the quotient, rounded up for positive values.
+     */
+    static int ceilDiv(final int value, final int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+
+    /**
+     * Divide, rounding up.
+     *
+     * @param value the value.
+     * @param divisor the divisor, which must be positive.
+     * @return the quotient, rounded up for positive values.
+     */
+    static long ceilDiv(final long value, final long divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+}
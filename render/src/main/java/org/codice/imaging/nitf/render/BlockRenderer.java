@@ -52,4 +52,15 @@ public interface BlockRenderer {
      * @throws java.io.IOException if the data source is not readable
      */
     BufferedImage getImageBlock(int rowIndex, int columnIndex) throws IOException;
+
+    /**
+     * Check whether getImageBlock() supports random access.
+     *
+     * If this is true, blocks can be read in any order, and from several threads at the same time.
+     *
+     * @return true if getImageBlock() supports random access, otherwise false.
+     */
+    default boolean hasRandomBlockAccess() {
+        return false;
+    }
 }
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Receives image blocks as they are decoded.
+ */
+@FunctionalInterface
+public interface DecodedBlockConsumer {
+
+    /**
+     * Handle a decoded block.
+     *
+     * The block image is the full block size (number of pixels per block horizontal by number of pixels per block
+     * vertical), so blocks on the right and bottom edges of the image include the pad pixels past the edge of the
+     * image. The block image is not used by the decoder after this returns.
+     *
+     * @param rowIndex the row of the block in the block grid, zero based.
+     * @param columnIndex the column of the block in the block grid, zero based.
+     * @param block the decoded block image.
+     * @throws IOException if the block could not be handled.
+     */
+    void accept(int rowIndex, int columnIndex, BufferedImage block) throws IOException;
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * A RenderTarget that draws blocks through a Graphics2D.
+ *
+ * This works for any Graphics2D, but each block goes through Java2D compositing and colour conversion.
+ */
+public final class GraphicsRenderTarget implements RenderTarget {
+
+    private final Graphics2D mGraphics;
+
+    /**
+     * Constructor.
+     *
+     * @param graphics the graphics to draw blocks to.
+     */
+    public GraphicsRenderTarget(final Graphics2D graphics) {
+        mGraphics = graphics;
+    }
+
+    @Override
+    public void drawImage(final BufferedImage image, final int x, final int y) {
+        synchronized (mGraphics) {
+            mGraphics.drawImage(image, x, y, null);
+        }
+    }
+
+    @Override
+    public Graphics2D getGraphics() {
+        return mGraphics;
+    }
+}
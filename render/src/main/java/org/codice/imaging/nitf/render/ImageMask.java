@@ -15,8 +15,7 @@
 package org.codice.imaging.nitf.render;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 import javax.imageio.stream.ImageInputStream;
 import org.codice.imaging.nitf.core.image.ImageMode;
 import org.codice.imaging.nitf.core.image.ImageSegment;
@@ -32,17 +31,29 @@ import org.slf4j.LoggerFactory;
  *
  * Image masking is similar for the block, pixel and row interleve image modes.
  * Image masking for band-sequential images is handled slightly differently.
+ *
+ * The image mask also locates each block in the image data, so renderers can seek directly to the blocks they need.
+ * The block offsets are held in one array, with an entry for each block of each band that is recorded separately
+ * (every band for band-sequential images, otherwise just one).
  */
 public final class ImageMask {
     private static final Logger LOGGER = LoggerFactory.getLogger(ImageMask.class);
 
     private ImageSegment mImageSegment = null;
 
-    private int[][] bmrnbndm = null;
-    private final List<Integer> tmrnbndm = new ArrayList<>();
-    private int tpxcd = -1;
+    private long[] bmrnbndm = null;
+    private int[] tmrnbndm = null;
+    private int tpxcd = 0;
+    private boolean hasPadPixelCode = false;
+    private long padPixelCode = 0;
+    private int imageDataOffset = 0;
+    private int numberOfBlocks = 0;
+    private int numberOfMaskedBands = 1;
+    private boolean hasBlockMaskRecords = false;
 
-    private static final int BLOCK_NOT_RECORDED = 0xFFFFFFFF;
+    private static final long BLOCK_NOT_RECORDED = -1;
+    private static final long BLOCK_OFFSET_MASK = 0xFFFFFFFFL;
+    private static final int BLOCK_NOT_RECORDED_RECORD = 0xFFFFFFFF;
 
     /**
      * Create an image mask based on reading from an image segment and associated stream.
@@ -53,6 +64,7 @@ public final class ImageMask {
      */
     public ImageMask(final ImageSegment imageSegment, final ImageInputStream imageStream) throws IOException {
         mImageSegment = imageSegment;
+        setBlockLayout();
         readImageMask(imageStream);
     }
 
@@ -66,23 +78,28 @@ public final class ImageMask {
      */
     public ImageMask(final ImageSegment imageSegment) {
         mImageSegment = imageSegment;
-        bmrnbndm = new int[mImageSegment.getNumberOfBlocksPerRow() * mImageSegment.getNumberOfBlocksPerColumn()][mImageSegment.getNumBands()];
-        int numBandsToRead = 1;
+        setBlockLayout();
+        setRegularBlockOffsets();
+    }
+
+    private void setBlockLayout() {
+        numberOfBlocks = mImageSegment.getNumberOfBlocksPerRow() * mImageSegment.getNumberOfBlocksPerColumn();
         if (mImageSegment.getImageMode() == ImageMode.BANDSEQUENTIAL) {
-            numBandsToRead = mImageSegment.getNumBands();
+            numberOfMaskedBands = mImageSegment.getNumBands();
         }
-        int bytesPerPixel = (int) mImageSegment.getNumberOfBytesPerBlock();
-        int blockCounter = 0;
-        for (int m = 0; m < numBandsToRead; ++m) {
-            for (int n = 0; n < mImageSegment.getNumberOfBlocksPerRow() * mImageSegment.getNumberOfBlocksPerColumn(); ++n) {
-                bmrnbndm[n][m] = bytesPerPixel * blockCounter;
-                blockCounter++;
-            }
+    }
+
+    private void setRegularBlockOffsets() {
+        bmrnbndm = new long[numberOfBlocks * numberOfMaskedBands];
+        long bytesPerBlock = mImageSegment.getNumberOfBytesPerBlock() / numberOfMaskedBands;
+        for (int i = 0; i < bmrnbndm.length; ++i) {
+            bmrnbndm[i] = bytesPerBlock * i;
         }
     }
 
     private void readImageMask(final ImageInputStream imageInputStream) throws IOException {
         int imdatoff = imageInputStream.readInt();
+        imageDataOffset = imdatoff;
         int bmrlnth = imageInputStream.readShort();
         int tmrlnth = imageInputStream.readShort();
         int tpxcdlnth = imageInputStream.readShort();
@@ -91,39 +108,54 @@ public final class ImageMask {
         LOGGER.debug(String.format("Pad Pixel Mask Record Length: 0x%04x", tmrlnth));
         LOGGER.debug(String.format("Pad Output pixel code length: 0x%04x", tpxcdlnth));
         if (tpxcdlnth > 0) {
-            tpxcd = 0;
+            hasPadPixelCode = true;
             int numBytesToRead = (tpxcdlnth + Byte.SIZE - 1) / Byte.SIZE;
             LOGGER.debug("Reading TPXCD at length:" + numBytesToRead);
-            int bandBits = (int) imageInputStream.readBits(numBytesToRead * Byte.SIZE);
+            padPixelCode = imageInputStream.readBits(numBytesToRead * Byte.SIZE);
+            int bandBits = (int) padPixelCode;
             for (int i = 0; i < mImageSegment.getNumBands(); ++i) {
                 tpxcd |= (bandBits << (Byte.SIZE * i));
             }
             LOGGER.debug(String.format("Pad Output pixel code : 0x%08x", tpxcd));
         }
-        int numBandsToRead = 1;
-        if (mImageSegment.getImageMode() == ImageMode.BANDSEQUENTIAL) {
-            numBandsToRead = mImageSegment.getNumBands();
-        }
         if (bmrlnth > 0) {
-            bmrnbndm = new int[mImageSegment.getNumberOfBlocksPerRow() * mImageSegment.getNumberOfBlocksPerColumn()][mImageSegment.getNumBands()];
-            for (int m = 0; m < numBandsToRead; ++m) {
-                for (int n = 0; n < mImageSegment.getNumberOfBlocksPerRow() * mImageSegment.getNumberOfBlocksPerColumn(); ++n) {
-                    bmrnbndm[n][m] = imageInputStream.readInt();
-                    LOGGER.debug(String.format("mask blocks (band %d) %d: 0x%08x", m, n, bmrnbndm[n][m]));
+            hasBlockMaskRecords = true;
+            int[] records = readRecords(imageInputStream);
+            bmrnbndm = new long[records.length];
+            for (int i = 0; i < records.length; ++i) {
+                if (records[i] == BLOCK_NOT_RECORDED_RECORD) {
+                    bmrnbndm[i] = BLOCK_NOT_RECORDED;
+                } else {
+                    bmrnbndm[i] = records[i] & BLOCK_OFFSET_MASK;
                 }
             }
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("mask blocks: " + Arrays.toString(records));
+            }
+        } else {
+            setRegularBlockOffsets();
         }
         if (tmrlnth > 0) {
-            for (int m = 0; m < numBandsToRead; ++m) {
-                for (int n = 0; n < mImageSegment.getNumberOfBlocksPerRow() * mImageSegment.getNumberOfBlocksPerColumn(); ++n) {
-                    int val = imageInputStream.readInt();
-                    tmrnbndm.add(val);
-                    LOGGER.debug(String.format("mask pixel (band %d) %d: 0x%08x", m, n, val));
-                }
+            tmrnbndm = readRecords(imageInputStream);
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("mask pixel: " + Arrays.toString(tmrnbndm));
             }
         }
     }
 
+    private int[] readRecords(final ImageInputStream imageInputStream) throws IOException {
+        int[] records = new int[numberOfBlocks * numberOfMaskedBands];
+        imageInputStream.readFully(records, 0, records.length);
+        return records;
+    }
+
+    private int getRecordIndex(final int blockNumber, final int bandNumber) {
+        if (numberOfMaskedBands == 1) {
+            return blockNumber;
+        }
+        return bandNumber * numberOfBlocks + blockNumber;
+    }
+
     /**
      * Test if the specified block is not actually recorded in the file.
      *
@@ -140,15 +172,81 @@ public final class ImageMask {
      * false.
      */
     public boolean isMaskedBlock(final int blockNumber, final int bandNumber) {
-        if (bmrnbndm == null) {
+        if ((blockNumber >= numberOfBlocks) || (bandNumber >= mImageSegment.getNumBands())) {
             return false;
         }
 
-        if (blockNumber >= bmrnbndm.length || bandNumber >= bmrnbndm[blockNumber].length) {
-            return false;
+        return (BLOCK_NOT_RECORDED == bmrnbndm[getRecordIndex(blockNumber, bandNumber)]);
+    }
+
+    /**
+     * Test if the image mask has block mask records.
+     *
+     * If this is false, the blocks are assumed to follow each other in the image data, in order. If it is true, the
+     * blocks can be anywhere in the image data, so they should be read using getBlockLocation().
+     *
+     * @return true if the block offsets were read from the image data, otherwise false.
+     */
+    public boolean hasBlockMaskRecords() {
+        return hasBlockMaskRecords;
+    }
+
+    /**
+     * Get the offset of the blocked image data.
+     *
+     * This is the IMDATOFF value from the mask table, or zero if the image segment does not have a mask table.
+     *
+     * @return the offset, in bytes, from the start of the image data to the first block.
+     */
+    public int getImageDataOffset() {
+        return imageDataOffset;
+    }
+
+    /**
+     * Get the offset of the specified block within the blocked image data.
+     *
+     * For masked images, this is the block mask record. Otherwise, it assumes that each block takes the same number of
+     * bytes (i.e. there is no compression).
+     *
+     * Blocks are counted in the same order as for isMaskedBlock(). The result is not meaningful for masked blocks.
+     *
+     * @param blockNumber the block number to get the offset for.
+     * @param bandNumber the band to get the offset for (only used for Band Sequential).
+     * @return the offset, in bytes, from the start of the first block to the start of the specified block.
+     */
+    public long getBlockOffset(final int blockNumber, final int bandNumber) {
+        return bmrnbndm[getRecordIndex(blockNumber, bandNumber)];
+    }
+
+    /**
+     * Get the location of the specified block in the image data.
+     *
+     * Blocks are counted in the same order as for isMaskedBlock().
+     *
+     * @param blockNumber the block number to locate.
+     * @param bandNumber the band to locate (only used for Band Sequential).
+     * @return the offset, in bytes, from the start of the image data to the start of the specified block, or -1 if the
+     * block is masked.
+     */
+    public long getBlockLocation(final int blockNumber, final int bandNumber) {
+        long offset = bmrnbndm[getRecordIndex(blockNumber, bandNumber)];
+        if (offset == BLOCK_NOT_RECORDED) {
+            return BLOCK_NOT_RECORDED;
         }
+        return imageDataOffset + offset;
+    }
 
-        return (BLOCK_NOT_RECORDED == bmrnbndm[blockNumber][bandNumber]);
+    /**
+     * Get the location of the block at the specified position in the image data.
+     *
+     * @param blockRow the row of the block, counting from zero at the top of the image.
+     * @param blockColumn the column of the block, counting from zero at the left of the image.
+     * @param bandNumber the band to locate (only used for Band Sequential).
+     * @return the offset, in bytes, from the start of the image data to the start of the specified block, or -1 if the
+     * block is masked.
+     */
+    public long getBlockLocation(final int blockRow, final int blockColumn, final int bandNumber) {
+        return getBlockLocation(blockRow * mImageSegment.getNumberOfBlocksPerRow() + blockColumn, bandNumber);
     }
 
     /**
@@ -161,10 +259,24 @@ public final class ImageMask {
      * @return true if this is a pad ("no data") pixel value, otherwise false.
      */
     public boolean isPadPixel(final int value) {
-        if (tpxcd == -1) {
-            return false;
-        }
-        return (tpxcd == value);
+        return hasPadPixelCode && (tpxcd == value);
+    }
+
+    /**
+     * Test if the stored bits of a sample are the pad pixel code.
+     *
+     * This compares one sample (one band of a pixel) with the pad pixel code (TPXCD) as stored, unlike isPadPixel(),
+     * which compares a packed pixel value with the code repeated for each band. It is for integer samples that are
+     * read one band at a time, and for floating point and complex samples, where the code is the bit pattern of a whole
+     * sample (which may be a value that is not an integer, or not a number), so it is compared before the bits are
+     * converted to a value.
+     *
+     * @param sampleBits the bits of the sample as stored, right justified and unsigned (e.g. the
+     * Float.floatToRawIntBits() of a 32 bit floating point value, masked to 32 bits).
+     * @return true if this is a pad ("no data") pixel, otherwise false.
+     */
+    public boolean isPadPixelBits(final long sampleBits) {
+        return hasPadPixelCode && (padPixelCode == sampleBits);
     }
 
     /**
@@ -175,7 +287,7 @@ public final class ImageMask {
      * @return true if there is valid per-pixel masking, otherwise false
      */
     public boolean hasPixelMasks() {
-        return (tpxcd != -1);
+        return hasPadPixelCode;
     }
 
 }
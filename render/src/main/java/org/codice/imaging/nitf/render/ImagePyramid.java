@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.codice.imaging.nitf.core.DataSource;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.common.impl.FileReader;
+import org.codice.imaging.nitf.core.header.impl.NitfParser;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.core.impl.SlottedParseStrategy;
+
+/**
+ * An image segment together with reduced resolution versions of it (an image pyramid).
+ *
+ * Each level is identified by its subsampling factor, which is the ratio of the full resolution image size to the level
+ * image size (1 for the full resolution image segment). The factor is worked out from the image sizes, so levels made
+ * by other tools are recognised as long as each level is the full resolution image reduced by a whole number factor
+ * (with the size rounded either up or down).
+ *
+ * Levels can come from image segments in the same file (as written by ImagePyramidBuilder.writeWithLevelSegments())
+ * or from reduced resolution sets, which are companion files named with ".rn" appended to the full resolution file
+ * name (as written by ImagePyramidBuilder.writeReducedResolutionSets(), and used by other tools and data sets).
+ */
+public class ImagePyramid {
+
+    static final String REDUCED_RESOLUTION_SET_SUFFIX = ".r";
+
+    /**
+     * The highest reduced resolution set number that is looked for.
+     */
+    static final int MAXIMUM_REDUCED_RESOLUTION_SET = 15;
+
+    private final ImageSegment mFullResolution;
+
+    private final TreeMap<Integer, ImageSegment> mLevels = new TreeMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param fullResolution the full resolution image segment.
+     */
+    public ImagePyramid(final ImageSegment fullResolution) {
+        mFullResolution = fullResolution;
+        mLevels.put(1, fullResolution);
+    }
+
+    /**
+     * Add a reduced resolution level.
+     *
+     * @param level the image segment for the level.
+     * @return true if the level was added, or false if it is not a reduction of the full resolution image by a whole
+     * number factor of at least 2 (in which case it is ignored).
+     */
+    public final boolean addLevel(final ImageSegment level) {
+        int subsampling = getSubsampling(level);
+        if (subsampling < 2) {
+            return false;
+        }
+        mLevels.put(subsampling, level);
+        return true;
+    }
+
+    /**
+     * Add the reduced resolution levels from the image segments of a file.
+     *
+     * A level image segment has the same identifier (IID1) as the full resolution image segment, and an image
+     * magnification (IMAG) that gives the reduction (e.g. "/2").
+     *
+     * @param dataSource the file that contains the levels, which is usually the file that contains the full resolution
+     * image segment.
+     * @return the number of levels that were added.
+     */
+    public final int addLevels(final DataSource dataSource) {
+        int added = 0;
+        for (ImageSegment segment : dataSource.getImageSegments()) {
+            if ((segment != mFullResolution) && segment.getIdentifier().equals(mFullResolution.getIdentifier())
+                    && segment.getImageMagnification().trim().startsWith("/") && addLevel(segment)) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Add the reduced resolution levels from reduced resolution set files.
+     *
+     * This looks for files named with ".r1" to ".r15" appended to the name of the full resolution file, and adds the
+     * image segment at the same index from each file that exists. Missing files are skipped, so a set that only has
+     * (say) the .r2 to .r5 files is recognised. The image data of each level is read into memory.
+     *
+     * @param fullResolutionFile the file that contains the full resolution image segment.
+     * @param segmentIndex the index of the full resolution image segment within its file, zero based.
+     * @return the number of levels that were added.
+     * @throws NitfFormatException if a reduced resolution set file could not be parsed.
+     */
+    public final int addReducedResolutionSets(final File fullResolutionFile, final int segmentIndex) throws NitfFormatException {
+        int added = 0;
+        for (int set = 1; set <= MAXIMUM_REDUCED_RESOLUTION_SET; ++set) {
+            File setFile = getReducedResolutionSetFile(fullResolutionFile, set);
+            if (!setFile.isFile()) {
+                continue;
+            }
+            SlottedParseStrategy parseStrategy = new SlottedParseStrategy(SlottedParseStrategy.IMAGE_DATA);
+            FileReader reader = new FileReader(setFile);
+            try {
+                NitfParser.parse(reader, parseStrategy);
+            } finally {
+                reader.close();
+            }
+            List<ImageSegment> segments = parseStrategy.getDataSource().getImageSegments();
+            if ((segmentIndex < segments.size()) && addLevel(segments.get(segmentIndex))) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Get the subsampling factors of the levels.
+     *
+     * @return the subsampling factors, in increasing order, starting with 1 for the full resolution image segment.
+     */
+    public final List<Integer> getSubsamplingFactors() {
+        return new ArrayList<>(mLevels.keySet());
+    }
+
+    /**
+     * Get the best level to render at a subsampling factor.
+     *
+     * This is the smallest level that has at least the requested resolution.
+     *
+     * @param subsampling the requested subsampling factor relative to the full resolution image, which must be at least
+     * 1.
+     * @return the level with the largest subsampling factor that is no larger than the requested factor.
+     */
+    public final ImageSegment getLevel(final int subsampling) {
+        return getLevelEntry(subsampling).getValue();
+    }
+
+    /**
+     * Render the pyramid as a BufferedImage that fits within a target size.
+     *
+     * This renders the best level for the target size, subsampled as for NitfRenderer.renderToFit(imageSegment,
+     * maximumSize) if the level is still too large. The image data stream of the level is returned to its starting
+     * position afterwards, so the pyramid can be rendered repeatedly.
+     *
+     * @param renderer the renderer to use.
+     * @param maximumSize the maximum width and height of the rendered image.
+     * @return rendered image
+     * @throws IOException if the source data could not be read from
+     */
+    public final BufferedImage render(final NitfRenderer renderer, final Dimension maximumSize) throws IOException {
+        long subsampling = Math.max(
+                BlockDispatcher.ceilDiv(mFullResolution.getNumberOfColumns(), Math.max(maximumSize.width, 1)),
+                BlockDispatcher.ceilDiv(mFullResolution.getNumberOfRows(), Math.max(maximumSize.height, 1)));
+        ImageSegment level = getLevel((int) Math.min(Math.max(subsampling, 1), Integer.MAX_VALUE));
+        long levelPosition = level.getData().getStreamPosition();
+        try {
+            return renderer.renderToFit(level, maximumSize);
+        } finally {
+            // leave the level ready to be rendered again
+            level.getData().seek(levelPosition);
+        }
+    }
+
+    private Map.Entry<Integer, ImageSegment> getLevelEntry(final int subsampling) {
+        if (subsampling < 1) {
+            throw new IllegalArgumentException("Subsampling factor must be at least 1, got " + subsampling);
+        }
+        return mLevels.floorEntry(subsampling);
+    }
+
+    /**
+     * Get the reduction factor of a level.
+     *
+     * @return the factor, or 0 if the level is not a reduction of the full resolution image by a whole number factor.
+     */
+    private int getSubsampling(final ImageSegment level) {
+        if ((level.getNumberOfColumns() == 0) || (level.getNumberOfRows() == 0)) {
+            return 0;
+        }
+        int subsampling = (int) Math.round((double) mFullResolution.getNumberOfColumns() / level.getNumberOfColumns());
+        if ((subsampling < 1)
+                || !isReducedSize(mFullResolution.getNumberOfColumns(), level.getNumberOfColumns(), subsampling)
+                || !isReducedSize(mFullResolution.getNumberOfRows(), level.getNumberOfRows(), subsampling)) {
+            return 0;
+        }
+        return subsampling;
+    }
+
+    private static boolean isReducedSize(final long fullSize, final long levelSize, final int subsampling) {
+        return (levelSize == fullSize / subsampling) || (levelSize == BlockDispatcher.ceilDiv(fullSize, subsampling));
+    }
+
+    /**
+     * Get the name of a reduced resolution set file.
+     *
+     * @param fullResolutionFile the file that contains the full resolution image segment.
+     * @param set the reduced resolution set number, where set n is reduced by a factor of 2^n.
+     * @return the reduced resolution set file.
+     */
+    static File getReducedResolutionSetFile(final File fullResolutionFile, final int set) {
+        return new File(fullResolutionFile.getPath() + REDUCED_RESOLUTION_SET_SUFFIX + set);
+    }
+}
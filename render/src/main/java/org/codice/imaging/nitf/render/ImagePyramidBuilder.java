@@ -0,0 +1,352 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.imageio.stream.FileImageInputStream;
+
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.header.NitfHeader;
+import org.codice.imaging.nitf.core.image.ImageMode;
+import org.codice.imaging.nitf.core.image.ImageRepresentation;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.core.image.PixelJustification;
+import org.codice.imaging.nitf.core.image.PixelValueType;
+import org.codice.imaging.nitf.core.image.impl.ImageBandImpl;
+import org.codice.imaging.nitf.core.image.impl.ImageSegmentFactory;
+import org.codice.imaging.nitf.core.impl.NitfFileMerger;
+import org.codice.imaging.nitf.core.impl.NitfFileWriter;
+import org.codice.imaging.nitf.core.impl.SlottedStorage;
+
+/**
+ * Builds reduced resolution levels (an image pyramid) for an image segment.
+ *
+ * Each level is half the width and height of the previous level (rounded up), so level n is reduced by a factor of
+ * 2^n from the source image segment. Each pixel of a level is the average of the (up to) four pixels of the previous
+ * level that it covers, ignoring transparent (masked) pixels. The levels hold display values, as rendered by
+ * NitfRenderer, so they are 8 bit uncompressed monochrome images for monochrome sources, and 8 bit uncompressed RGB
+ * images for all other sources. The image magnification (IMAG) of each level is set to the reduction factor (e.g.
+ * "/4").
+ *
+ * The levels are built one row of output blocks at a time, rendering only the part of the previous level that the row
+ * covers, and the level data is held in temporary files rather than memory.
+ *
+ * The levels can be written as companion files alongside the source file (reduced resolution sets, where the file for
+ * level n has the source file name with ".rn" appended), or as extra image segments in a copy of the source file. See
+ * ImagePyramid for reading them back.
+ */
+public class ImagePyramidBuilder {
+
+    static final int DEFAULT_BLOCK_SIZE = 1024;
+
+    static final int DEFAULT_MINIMUM_SIZE = 256;
+
+    /**
+     * The largest level that can be recorded in the image magnification field ("/512").
+     */
+    static final int MAXIMUM_LEVEL = 9;
+
+    private static final int MAXIMUM_BLOCK_SIZE = 8192;
+    private static final int RGB_BANDS = 3;
+    private static final int RED_SHIFT = 16;
+    private static final int GREEN_SHIFT = 8;
+    private static final int ALPHA_SHIFT = 24;
+    private static final int BYTE_MASK = 0xFF;
+    private static final String[] MONO_BAND_REPRESENTATIONS = {"M"};
+    private static final String[] RGB_BAND_REPRESENTATIONS = {"R", "G", "B"};
+
+    private final NitfHeader mHeader;
+    private final ImageSegment mSource;
+    private final NitfRenderer mRenderer = new NitfRenderer();
+    private int mNumberOfLevels;
+    private int mBlockSize = DEFAULT_BLOCK_SIZE;
+
+    /**
+     * Constructor.
+     *
+     * The default number of levels is enough for the smallest level to be no larger than 256 pixels in each direction.
+     *
+     * @param header the file header of the file that contains the source image segment. This is used as the file
+     * header for the written files.
+     * @param source the image segment to build the levels from, which must have its image data.
+     */
+    public ImagePyramidBuilder(final NitfHeader header, final ImageSegment source) {
+        mHeader = header;
+        mSource = source;
+        long size = Math.max(source.getNumberOfColumns(), source.getNumberOfRows());
+        mNumberOfLevels = 0;
+        while ((size > DEFAULT_MINIMUM_SIZE) && (mNumberOfLevels < MAXIMUM_LEVEL)) {
+            size = BlockDispatcher.ceilDiv(size, 2);
+            mNumberOfLevels++;
+        }
+    }
+
+    /**
+     * Set the number of reduced resolution levels to build.
+     *
+     * @param numberOfLevels the number of levels, from 1 (half resolution only) to 9 (down to 1/512 resolution).
+     */
+    public final void setNumberOfLevels(final int numberOfLevels) {
+        if ((numberOfLevels < 1) || (numberOfLevels > MAXIMUM_LEVEL)) {
+            throw new IllegalArgumentException("Number of levels must be between 1 and " + MAXIMUM_LEVEL + ", got " + numberOfLevels);
+        }
+        mNumberOfLevels = numberOfLevels;
+    }
+
+    /**
+     * Get the number of reduced resolution levels to build.
+     *
+     * @return the number of levels.
+     */
+    public final int getNumberOfLevels() {
+        return mNumberOfLevels;
+    }
+
+    /**
+     * Set the block size for the levels.
+     *
+     * Levels that are smaller than the block size in a direction have a single block in that direction.
+     *
+     * @param blockSize the width and height of the blocks in pixels, from 1 to 8192. The default is 1024.
+     */
+    public final void setBlockSize(final int blockSize) {
+        if ((blockSize < 1) || (blockSize > MAXIMUM_BLOCK_SIZE)) {
+            throw new IllegalArgumentException("Block size must be between 1 and " + MAXIMUM_BLOCK_SIZE + ", got " + blockSize);
+        }
+        mBlockSize = blockSize;
+    }
+
+    /**
+     * Write the levels as reduced resolution sets, with one file per level.
+     *
+     * The file for level n is named with ".rn" appended to the source file name (e.g. image.ntf.r1 for the half
+     * resolution level), and contains one image segment. Any existing files with those names are replaced.
+     *
+     * @param sourceFile the file that contains the source image segment.
+     * @return the files that were written, in level order.
+     * @throws IOException on read or write problems.
+     * @throws NitfFormatException if the source image segment could not be rendered.
+     */
+    public final List<File> writeReducedResolutionSets(final File sourceFile) throws IOException, NitfFormatException {
+        List<File> levelFiles = new ArrayList<>();
+        for (int level = 1; level <= mNumberOfLevels; ++level) {
+            levelFiles.add(ImagePyramid.getReducedResolutionSetFile(sourceFile, level));
+        }
+        writeLevels(levelFiles);
+        return levelFiles;
+    }
+
+    /**
+     * Write a copy of the source file with the levels added as extra image segments.
+     *
+     * The level image segments follow the image segments of the source file, and are displayed above them. The
+     * segments of the source file are copied unchanged.
+     *
+     * @param sourceFile the file that contains the source image segment.
+     * @param outputFile the file to write to. Any existing content is replaced. This must not be the source file.
+     * @throws IOException on read or write problems.
+     * @throws NitfFormatException if the source image segment could not be rendered, or the files could not be merged.
+     */
+    public final void writeWithLevelSegments(final File sourceFile, final File outputFile) throws IOException, NitfFormatException {
+        List<File> levelFiles = new ArrayList<>();
+        try {
+            for (int level = 1; level <= mNumberOfLevels; ++level) {
+                levelFiles.add(File.createTempFile("nitf", (String) null));
+            }
+            writeLevels(levelFiles);
+            List<File> inputFiles = new ArrayList<>();
+            inputFiles.add(sourceFile);
+            inputFiles.addAll(levelFiles);
+            new NitfFileMerger(inputFiles).write(outputFile);
+        } finally {
+            for (File levelFile : levelFiles) {
+                if (!levelFile.delete()) {
+                    levelFile.deleteOnExit();
+                }
+            }
+        }
+    }
+
+    private void writeLevels(final List<File> levelFiles) throws IOException, NitfFormatException {
+        File dataFile = File.createTempFile("nitf", (String) null);
+        File previousDataFile = File.createTempFile("nitf", (String) null);
+        ImageSegment previousLevel = mSource;
+        long sourcePosition = mSource.getData().getStreamPosition();
+        try {
+            for (int i = 0; i < levelFiles.size(); ++i) {
+                ImageSegment level = buildLevel(previousLevel, i + 1, dataFile);
+                SlottedStorage dataSource = new SlottedStorage();
+                dataSource.setNitfHeader(mHeader);
+                dataSource.getImageSegments().add(level);
+                new NitfFileWriter(dataSource, levelFiles.get(i).getPath()).write();
+
+                if (previousLevel != mSource) {
+                    previousLevel.getData().close();
+                }
+                previousLevel = level;
+                File swap = previousDataFile;
+                previousDataFile = dataFile;
+                dataFile = swap;
+            }
+        } finally {
+            // leave the source ready to be rendered again
+            mSource.getData().seek(sourcePosition);
+            if (previousLevel != mSource) {
+                previousLevel.getData().close();
+            }
+            deleteTemporaryFile(dataFile);
+            deleteTemporaryFile(previousDataFile);
+        }
+    }
+
+    private static void deleteTemporaryFile(final File file) {
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    /**
+     * Build one level from the level above it.
+     *
+     * @param parent the level above (or the source image segment).
+     * @param level the level number, from 1.
+     * @param dataFile the file to write the image data for the level to.
+     * @return the image segment for the level, with its image data read from the data file.
+     */
+    private ImageSegment buildLevel(final ImageSegment parent, final int level, final File dataFile)
+            throws IOException, NitfFormatException {
+        int parentColumns = (int) parent.getNumberOfColumns();
+        int parentRows = (int) parent.getNumberOfRows();
+        int columns = BlockDispatcher.ceilDiv(parentColumns, 2);
+        int rows = BlockDispatcher.ceilDiv(parentRows, 2);
+        int blockWidth = Math.min(mBlockSize, columns);
+        int blockHeight = Math.min(mBlockSize, rows);
+        int blocksPerRow = BlockDispatcher.ceilDiv(columns, blockWidth);
+        int blocksPerColumn = BlockDispatcher.ceilDiv(rows, blockHeight);
+        boolean isMonochrome = mSource.getImageRepresentation() == ImageRepresentation.MONOCHROME;
+        int numBands = getNumBands(isMonochrome);
+
+        int[] parentPixels = new int[parentColumns * 2];
+        try (OutputStream output = new BufferedOutputStream(new FileOutputStream(dataFile))) {
+            for (int blockRow = 0; blockRow < blocksPerColumn; ++blockRow) {
+                int firstRow = blockRow * blockHeight;
+                int parentFirstRow = firstRow * 2;
+                int parentStripHeight = Math.min(blockHeight * 2, parentRows - parentFirstRow);
+                BufferedImage strip = mRenderer.renderRegion(parent, new Rectangle(0, parentFirstRow, parentColumns, parentStripHeight));
+                byte[][] stripData = new byte[blocksPerRow][blockWidth * blockHeight * numBands];
+                for (int row = 0; (row < blockHeight) && (firstRow + row < rows); ++row) {
+                    int parentRowsUsed = Math.min(2, parentStripHeight - row * 2);
+                    strip.getRGB(0, row * 2, parentColumns, parentRowsUsed, parentPixels, 0, parentColumns);
+                    for (int column = 0; column < columns; ++column) {
+                        int pixelIndex = (row * blockWidth + column % blockWidth) * numBands;
+                        averagePixels(parentPixels, parentColumns, column * 2, parentRowsUsed, isMonochrome,
+                                stripData[column / blockWidth], pixelIndex);
+                    }
+                }
+                for (byte[] block : stripData) {
+                    output.write(block);
+                }
+            }
+        }
+
+        ImageSegment segment = ImageSegmentFactory.getDefault(mSource.getFileType());
+        segment.setIdentifier(mSource.getIdentifier());
+        segment.setImageDateTime(mSource.getImageDateTime());
+        segment.setImageTargetId(mSource.getImageTargetId());
+        segment.setImageIdentifier2(mSource.getImageIdentifier2());
+        segment.setSecurityMetadata(mSource.getSecurityMetadata());
+        segment.setImageSource(mSource.getImageSource());
+        segment.setImageCategory(mSource.getImageCategory());
+        segment.setImageCoordinatesRepresentation(mSource.getImageCoordinatesRepresentation());
+        segment.setImageCoordinates(mSource.getImageCoordinates());
+        segment.setNumberOfRows(rows);
+        segment.setNumberOfColumns(columns);
+        segment.setPixelValueType(PixelValueType.INTEGER);
+        segment.setActualBitsPerPixelPerBand(Byte.SIZE);
+        segment.setNumberOfBitsPerPixelPerBand(Byte.SIZE);
+        segment.setPixelJustification(PixelJustification.RIGHT);
+        String[] bandRepresentations = RGB_BAND_REPRESENTATIONS;
+        if (isMonochrome) {
+            segment.setImageRepresentation(ImageRepresentation.MONOCHROME);
+            segment.setImageMode(ImageMode.BLOCKINTERLEVE);
+            bandRepresentations = MONO_BAND_REPRESENTATIONS;
+        } else {
+            segment.setImageRepresentation(ImageRepresentation.RGBTRUECOLOUR);
+            segment.setImageMode(ImageMode.PIXELINTERLEVE);
+        }
+        for (String bandRepresentation : bandRepresentations) {
+            ImageBandImpl band = new ImageBandImpl();
+            band.setImageRepresentation(bandRepresentation);
+            band.setImageSubcategory("");
+            segment.addImageBand(band);
+        }
+        segment.setNumberOfBlocksPerRow(blocksPerRow);
+        segment.setNumberOfBlocksPerColumn(blocksPerColumn);
+        segment.setNumberOfPixelsPerBlockHorizontalRaw(blockWidth);
+        segment.setNumberOfPixelsPerBlockVerticalRaw(blockHeight);
+        segment.setImageDisplayLevel(1);
+        segment.setImageMagnification("/" + (1 << level));
+        segment.setDataLength(dataFile.length());
+        segment.setData(new FileImageInputStream(dataFile));
+        return segment;
+    }
+
+    /**
+     * Average the non-transparent pixels in a 2x2 area of ARGB pixels into one output pixel.
+     */
+    private static void averagePixels(final int[] pixels, final int scanlineStride, final int firstColumn, final int numRows,
+            final boolean isMonochrome, final byte[] output, final int outputIndex) {
+        int[] sums = new int[RGB_BANDS];
+        int count = 0;
+        for (int row = 0; row < numRows; ++row) {
+            for (int column = firstColumn; column < Math.min(firstColumn + 2, scanlineStride); ++column) {
+                int argb = pixels[row * scanlineStride + column];
+                if ((argb >>> ALPHA_SHIFT) != 0) {
+                    sums[0] += (argb >> RED_SHIFT) & BYTE_MASK;
+                    sums[1] += (argb >> GREEN_SHIFT) & BYTE_MASK;
+                    sums[2] += argb & BYTE_MASK;
+                    count++;
+                }
+            }
+        }
+        if (count == 0) {
+            Arrays.fill(output, outputIndex, outputIndex + getNumBands(isMonochrome), (byte) 0);
+            return;
+        }
+        if (isMonochrome) {
+            output[outputIndex] = (byte) ((sums[0] + count / 2) / count);
+            return;
+        }
+        for (int band = 0; band < RGB_BANDS; ++band) {
+            output[outputIndex + band] = (byte) ((sums[band] + count / 2) / count);
+        }
+    }
+
+    private static int getNumBands(final boolean isMonochrome) {
+        if (isMonochrome) {
+            return 1;
+        }
+        return RGB_BANDS;
+    }
+}
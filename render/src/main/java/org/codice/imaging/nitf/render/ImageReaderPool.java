@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+
+/**
+ * Pool of ImageReader instances, by media type.
+ *
+ * Looking up a reader through the ImageIO registry, and creating it, is slow compared to decoding a small block, so
+ * readers are reset and reused. Readers that cannot be reset are disposed instead. Each reader is only used by one
+ * thread at a time.
+ */
+final class ImageReaderPool {
+
+    /**
+     * The pool shared by all renderers, which keeps up to one idle reader of each media type per processor.
+     */
+    static final ImageReaderPool SHARED = new ImageReaderPool(Runtime.getRuntime().availableProcessors());
+
+    private final int mMaximumIdleReaders;
+
+    private final Map<String, ConcurrentLinkedDeque<ImageReader>> mIdleReaders = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param maximumIdleReaders the maximum number of readers of each media type that are kept for reuse.
+     */
+    ImageReaderPool(final int maximumIdleReaders) {
+        mMaximumIdleReaders = maximumIdleReaders;
+    }
+
+    /**
+     * Get a reader for a media type.
+     *
+     * The reader must be passed back to release() once it is no longer used.
+     *
+     * @param mediaType the MIME type of the data to read.
+     * @return a reader that has no input set.
+     * @throws UnsupportedOperationException if there is no reader for the media type.
+     */
+    ImageReader acquire(final String mediaType) {
+        ImageReader reader = getIdleReaders(mediaType).pollFirst();
+        if (reader != null) {
+            return reader;
+        }
+        Iterator<ImageReader> imageReaders = ImageIO.getImageReadersByMIMEType(mediaType);
+
+        if (imageReaders == null || !imageReaders.hasNext()) {
+            throw new UnsupportedOperationException(
+                    String.format("NitfRenderer.render(): no ImageReader found for media type '%s'.", mediaType));
+        }
+
+        return imageReaders.next();
+    }
+
+    /**
+     * Return a reader to the pool.
+     *
+     * @param mediaType the media type that the reader was acquired for.
+     * @param reader the reader, which must not be used by the caller after this.
+     */
+    void release(final String mediaType, final ImageReader reader) {
+        try {
+            reader.reset();
+        } catch (RuntimeException e) {
+            // some readers (e.g. the JAI JPEG 2000 reader) fail to reset, so they cannot be reused
+            reader.dispose();
+            return;
+        }
+        ConcurrentLinkedDeque<ImageReader> idleReaders = getIdleReaders(mediaType);
+        if (idleReaders.size() < mMaximumIdleReaders) {
+            idleReaders.offerFirst(reader);
+        } else {
+            reader.dispose();
+        }
+    }
+
+    private ConcurrentLinkedDeque<ImageReader> getIdleReaders(final String mediaType) {
+        return mIdleReaders.computeIfAbsent(mediaType, type -> new ConcurrentLinkedDeque<>());
+    }
+}
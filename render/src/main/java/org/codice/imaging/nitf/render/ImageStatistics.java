@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import javax.imageio.stream.ImageInputStream;
+import org.codice.imaging.nitf.core.image.ImageCompression;
+import org.codice.imaging.nitf.core.image.ImageMode;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.core.image.PixelJustification;
+import org.codice.imaging.nitf.core.image.PixelValueType;
+import org.codice.imaging.nitf.render.datareader.DataReaderFactory;
+import org.codice.imaging.nitf.render.datareader.SampleReader;
+
+/**
+ * Per-band statistics (minimum, maximum, mean, standard deviation and histogram) for an image segment.
+ *
+ * The statistics are computed in a single pass over the image data, without rendering. Each block is read in one
+ * operation and accumulated into partial statistics, which are merged at the end, so the blocks can be processed in
+ * parallel on a fork join pool (with one run of blocks, and one set of partial statistics, for each worker thread).
+ * Masked blocks, pad pixels, and the fill at the right and bottom of the edge blocks are not included. The image data
+ * stream is left where it was, so the image segment can be rendered afterwards.
+ *
+ * The statistics are for the actual bits per pixel (ABPP) of the samples, so left justified samples are shifted down,
+ * and any bits above the actual bits of right justified samples are ignored.
+ *
+ * Only uncompressed (NC and NM) integer image segments of up to 16 bits per band are supported.
+ */
+public final class ImageStatistics {
+
+    private static final int INT_BITS = Integer.SIZE;
+
+    private final ImageSegment mImageSegment;
+    private final ImageInputStream mImageData;
+    private final UncompressedSampleLayout mLayout;
+    private final ImageMask mImageMask;
+    private final SampleReader mSampleReader;
+    private final ImageMode mImageMode;
+    private final int mNumberOfBands;
+    private final int mBitsPerSample;
+    private final int mActualBitsPerSample;
+    private final int mSampleShift;
+    private final int mSampleMask;
+    private final int mBlockWidth;
+    private final int mBlockHeight;
+    private final int mNumberOfBlocks;
+    private final int mSignShift;
+    private final BandStatistics[] mBandStatistics;
+
+    /**
+     * Constructor.
+     *
+     * The statistics are computed sequentially.
+     *
+     * @param imageSegment the image segment to compute statistics for.
+     * @throws IOException if the image data could not be read.
+     */
+    public ImageStatistics(final ImageSegment imageSegment) throws IOException {
+        this(imageSegment, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param imageSegment the image segment to compute statistics for.
+     * @param pool the pool to process blocks on in parallel, or null to process blocks sequentially.
+     * @throws IOException if the image data could not be read.
+     */
+    public ImageStatistics(final ImageSegment imageSegment, final ForkJoinPool pool) throws IOException {
+        mImageSegment = imageSegment;
+        mImageData = imageSegment.getData();
+        mBitsPerSample = imageSegment.getNumberOfBitsPerPixelPerBand();
+        PixelValueType pixelValueType = imageSegment.getPixelValueType();
+        if ((pixelValueType == PixelValueType.REAL) || (pixelValueType == PixelValueType.COMPLEX) || (mBitsPerSample > Short.SIZE)) {
+            throw new UnsupportedOperationException(String.format("Unsupported pixel type for statistics: %s, %d bits",
+                    pixelValueType, mBitsPerSample));
+        }
+        if (!ImageCompression.NOTCOMPRESSEDMASK.equals(imageSegment.getImageCompression())
+                && !ImageCompression.NOTCOMPRESSED.equals(imageSegment.getImageCompression())) {
+            throw new UnsupportedOperationException("Unsupported image compression for statistics: "
+                    + imageSegment.getImageCompression());
+        }
+        mLayout = new UncompressedSampleLayout(imageSegment);
+        mImageMask = mLayout.getImageMask();
+        mSampleReader = DataReaderFactory.samplesForBitsPerSample(mBitsPerSample);
+        int actualBitsPerSample = imageSegment.getActualBitsPerPixelPerBand();
+        if ((actualBitsPerSample <= 0) || (actualBitsPerSample > mBitsPerSample)) {
+            actualBitsPerSample = mBitsPerSample;
+        }
+        mActualBitsPerSample = actualBitsPerSample;
+        if (imageSegment.getPixelJustification() == PixelJustification.LEFT) {
+            mSampleShift = mBitsPerSample - mActualBitsPerSample;
+        } else {
+            mSampleShift = 0;
+        }
+        mSampleMask = (1 << mActualBitsPerSample) - 1;
+        mImageMode = imageSegment.getImageMode();
+        mNumberOfBands = imageSegment.getNumBands();
+        mBlockWidth = (int) imageSegment.getNumberOfPixelsPerBlockHorizontal();
+        mBlockHeight = (int) imageSegment.getNumberOfPixelsPerBlockVertical();
+        mNumberOfBlocks = mLayout.getNumberOfBlocks();
+        if (pixelValueType == PixelValueType.SIGNEDINTEGER) {
+            mSignShift = INT_BITS - mActualBitsPerSample;
+        } else {
+            mSignShift = 0;
+        }
+        mBandStatistics = compute(pool);
+    }
+
+    /**
+     * Get the number of bands.
+     *
+     * @return the number of bands that have statistics.
+     */
+    public int getNumberOfBands() {
+        return mNumberOfBands;
+    }
+
+    /**
+     * Get the statistics for one band.
+     *
+     * @param band the band, counting from zero.
+     * @return the statistics for the band.
+     */
+    public BandStatistics getBandStatistics(final int band) {
+        if ((band < 0) || (band >= mNumberOfBands)) {
+            throw new IllegalArgumentException(String.format("Band %d is outside the %d band image", band, mNumberOfBands));
+        }
+        return mBandStatistics[band];
+    }
+
+    private BandStatistics[] compute(final ForkJoinPool pool) throws IOException {
+        // one task for each block, or for band sequential images, each block of each band
+        int numberOfTasks = mNumberOfBlocks;
+        if (mImageMode == ImageMode.BANDSEQUENTIAL) {
+            numberOfTasks *= mNumberOfBands;
+        }
+        // one run of tasks for each worker, so there is only one set of partial statistics per worker
+        int numberOfRuns = 1;
+        if (pool != null) {
+            numberOfRuns = Math.max(Math.min(pool.getParallelism(), numberOfTasks), 1);
+        }
+        final int tasks = numberOfTasks;
+        final int runs = numberOfRuns;
+        IntStream taskRuns = IntStream.range(0, runs);
+        long position;
+        synchronized (mImageData) {
+            position = mImageData.getStreamPosition();
+        }
+        try {
+            if (pool == null) {
+                return taskRuns.collect(this::createPartial, (partial, run) -> addRun(partial, run, runs, tasks), this::mergePartial);
+            }
+            return pool.submit(() -> taskRuns.parallel()
+                    .collect(this::createPartial, (partial, run) -> addRun(partial, run, runs, tasks), this::mergePartial)).join();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            synchronized (mImageData) {
+                mImageData.seek(position);
+            }
+        }
+    }
+
+    private BandStatistics[] createPartial() {
+        BandStatistics[] partial = new BandStatistics[mNumberOfBands];
+        for (int band = 0; band < mNumberOfBands; ++band) {
+            partial[band] = new BandStatistics(mActualBitsPerSample, mSignShift != 0);
+        }
+        return partial;
+    }
+
+    private void mergePartial(final BandStatistics[] partial, final BandStatistics[] other) {
+        for (int band = 0; band < mNumberOfBands; ++band) {
+            partial[band].merge(other[band]);
+        }
+    }
+
+    /**
+     * Add one run of tasks (blocks, or blocks of a band) to partial statistics.
+     */
+    private void addRun(final BandStatistics[] partial, final int run, final int numberOfRuns, final int numberOfTasks) {
+        int bandsInBlock = mNumberOfBands;
+        if (mImageMode == ImageMode.BANDSEQUENTIAL) {
+            bandsInBlock = 1;
+        }
+        int[] samples = new int[mBlockWidth * mBlockHeight * bandsInBlock];
+        int lastTask = (int) ((long) numberOfTasks * (run + 1) / numberOfRuns);
+        for (int task = (int) ((long) numberOfTasks * run / numberOfRuns); task < lastTask; ++task) {
+            try {
+                addBlock(partial, task, samples);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void addBlock(final BandStatistics[] partial, final int task, final int[] samples) throws IOException {
+        int blockIndex = task % mNumberOfBlocks;
+        int firstBand = 0;
+        int bandsInBlock = mNumberOfBands;
+        if (mImageMode == ImageMode.BANDSEQUENTIAL) {
+            firstBand = task / mNumberOfBlocks;
+            bandsInBlock = 1;
+        }
+        long blockBit = mLayout.getBlockBit(blockIndex, firstBand);
+        if (blockBit < 0) {
+            return;
+        }
+        synchronized (mImageData) {
+            mImageData.seek(blockBit / Byte.SIZE);
+            mImageData.setBitOffset((int) (blockBit % Byte.SIZE));
+            mSampleReader.read(mImageData, samples, 0, samples.length);
+        }
+        int blocksPerRow = mImageSegment.getNumberOfBlocksPerRow();
+        int width = (int) Math.min(mBlockWidth, mImageSegment.getNumberOfColumns() - (long) (blockIndex % blocksPerRow) * mBlockWidth);
+        int height = (int) Math.min(mBlockHeight, mImageSegment.getNumberOfRows() - (long) (blockIndex / blocksPerRow) * mBlockHeight);
+        for (int i = 0; i < bandsInBlock; ++i) {
+            BandStatistics bandStatistics = partial[firstBand + i];
+            for (int y = 0; y < height; ++y) {
+                for (int x = 0; x < width; ++x) {
+                    int sample = samples[(int) mLayout.getSampleIndex(i, y, x)];
+                    if ((mImageMask != null) && mImageMask.isPadPixelBits(sample)) {
+                        continue;
+                    }
+                    int value = (sample >>> mSampleShift) & mSampleMask;
+                    bandStatistics.add((value << mSignShift) >> mSignShift);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.nio.ByteOrder;
+
+import javax.imageio.stream.ImageInputStream;
+
+import org.codice.imaging.nitf.core.image.ImageSegment;
+
+/**
+ * The main header values of a JPEG 2000 codestream.
+ *
+ * The image and tile sizes are read from the image and tile size (SIZ) marker segment, and the number of resolution
+ * levels from the coding style default (COD) marker segment, at the start of the codestream (which may be wrapped in
+ * JP2 file format boxes). The header is read once, and the result is kept for as long as the image segment is in use.
+ */
+final class Jpeg2000Codestream {
+
+    private static final SegmentMetadataCache<Jpeg2000Codestream> SEGMENT_CODESTREAMS = new SegmentMetadataCache<>();
+
+    private static final int START_OF_CODESTREAM = 0xFF4F;
+    private static final int IMAGE_AND_TILE_SIZE = 0xFF51;
+    private static final int CODING_STYLE_DEFAULT = 0xFF52;
+    private static final int START_OF_TILE_PART = 0xFF90;
+    private static final int CODESTREAM_SIGNATURE = (START_OF_CODESTREAM << Short.SIZE) | IMAGE_AND_TILE_SIZE;
+    private static final int CONTIGUOUS_CODESTREAM_BOX = 0x6A703263;
+    private static final int BOX_HEADER_LENGTH = 8;
+    private static final int EXTENDED_BOX_HEADER_LENGTH = 16;
+    private static final int EXTENDED_BOX_LENGTH = 1;
+    private static final int MARKER_LENGTH = 2;
+    // Scod, progression order, number of layers and multiple component transform come before the number of levels
+    private static final int COD_BYTES_BEFORE_LEVELS = 5;
+
+    private int mWidth;
+    private int mHeight;
+    private int mTileWidth;
+    private int mTileHeight;
+    private boolean mHasAlignedTileGrid;
+    private int mDecompositionLevels = -1;
+
+    /**
+     * Get the codestream header for an image segment.
+     *
+     * The first call for an image segment reads the header from the current position of the image data stream (which
+     * must be the start of the JPEG 2000 data, after any image mask), and then seeks back to that position. Later calls
+     * for the same image segment (with the same image data stream) return the same result without reading anything. The
+     * header is read while holding the lock on the image data stream, so concurrent first calls read it once.
+     *
+     * @param imageSegment the JPEG 2000 compressed image segment.
+     * @return the codestream header values.
+     * @throws IOException if the stream could not be read, or does not start with a JPEG 2000 codestream or JP2 file.
+     */
+    static Jpeg2000Codestream forImageSegment(final ImageSegment imageSegment) throws IOException {
+        return SEGMENT_CODESTREAMS.get(imageSegment, (segment, imageData) -> new Jpeg2000Codestream(imageData));
+    }
+
+    private Jpeg2000Codestream(final ImageInputStream imageData) throws IOException {
+        long start = imageData.getStreamPosition();
+        ByteOrder byteOrder = imageData.getByteOrder();
+        try {
+            imageData.setByteOrder(ByteOrder.BIG_ENDIAN);
+            skipToCodestream(imageData);
+            readMainHeader(imageData);
+        } finally {
+            imageData.setByteOrder(byteOrder);
+            imageData.seek(start);
+        }
+    }
+
+    private static void skipToCodestream(final ImageInputStream imageData) throws IOException {
+        long position = imageData.getStreamPosition();
+        if (imageData.readInt() == CODESTREAM_SIGNATURE) {
+            imageData.seek(position);
+            return;
+        }
+        imageData.seek(position);
+        while (true) {
+            long boxLength = imageData.readUnsignedInt();
+            int boxType = imageData.readInt();
+            long headerLength = BOX_HEADER_LENGTH;
+            if (boxLength == EXTENDED_BOX_LENGTH) {
+                boxLength = imageData.readLong();
+                headerLength = EXTENDED_BOX_HEADER_LENGTH;
+            }
+            if (boxType == CONTIGUOUS_CODESTREAM_BOX) {
+                return;
+            }
+            if (boxLength < headerLength) {
+                throw new IOException("No JPEG 2000 codestream found in JP2 data");
+            }
+            position += boxLength;
+            imageData.seek(position);
+        }
+    }
+
+    private void readMainHeader(final ImageInputStream imageData) throws IOException {
+        if (imageData.readUnsignedShort() != START_OF_CODESTREAM) {
+            throw new IOException("JPEG 2000 codestream does not start with SOC marker");
+        }
+        while ((mWidth == 0) || (mDecompositionLevels < 0)) {
+            int marker = imageData.readUnsignedShort();
+            if (marker == START_OF_TILE_PART) {
+                break;
+            }
+            int length = imageData.readUnsignedShort();
+            long next = imageData.getStreamPosition() + length - MARKER_LENGTH;
+            if (marker == IMAGE_AND_TILE_SIZE) {
+                readImageAndTileSize(imageData);
+            } else if (marker == CODING_STYLE_DEFAULT) {
+                imageData.skipBytes(COD_BYTES_BEFORE_LEVELS);
+                mDecompositionLevels = imageData.readUnsignedByte();
+            }
+            imageData.seek(next);
+        }
+        if ((mWidth == 0) || (mDecompositionLevels < 0)) {
+            throw new IOException("JPEG 2000 main header is missing the SIZ or COD marker");
+        }
+    }
+
+    private void readImageAndTileSize(final ImageInputStream imageData) throws IOException {
+        // Rsiz, capabilities
+        imageData.readUnsignedShort();
+        int referenceGridWidth = imageData.readInt();
+        int referenceGridHeight = imageData.readInt();
+        int imageOffsetX = imageData.readInt();
+        int imageOffsetY = imageData.readInt();
+        mTileWidth = imageData.readInt();
+        mTileHeight = imageData.readInt();
+        int tileOffsetX = imageData.readInt();
+        int tileOffsetY = imageData.readInt();
+        mWidth = referenceGridWidth - imageOffsetX;
+        mHeight = referenceGridHeight - imageOffsetY;
+        mHasAlignedTileGrid = (imageOffsetX == 0) && (imageOffsetY == 0) && (tileOffsetX == 0) && (tileOffsetY == 0);
+        int numberOfComponents = imageData.readUnsignedShort();
+        for (int i = 0; i < numberOfComponents; ++i) {
+            // Ssiz, the component precision
+            imageData.readUnsignedByte();
+            int horizontalSeparation = imageData.readUnsignedByte();
+            int verticalSeparation = imageData.readUnsignedByte();
+            if ((horizontalSeparation != 1) || (verticalSeparation != 1)) {
+                mHasAlignedTileGrid = false;
+            }
+        }
+    }
+
+    /**
+     * Get the number of wavelet decomposition levels.
+     *
+     * This is from the coding style default in the main header, so tiles with their own coding style may have more or
+     * fewer levels.
+     *
+     * @return the number of times the resolution can be halved, from 0 up to 32.
+     */
+    int getDecompositionLevels() {
+        return mDecompositionLevels;
+    }
+
+    /**
+     * Test whether the codestream has more than one tile, and the tiles can be decoded by image pixel region.
+     *
+     * The tiles can be decoded by image pixel region when the image and tile grid both start at the reference grid
+     * origin, and no component is subsampled, so the image pixel and reference grid coordinates are the same.
+     *
+     * @return true if the image can be decoded one tile at a time, otherwise false.
+     */
+    boolean hasPixelAlignedTiles() {
+        return mHasAlignedTileGrid && ((mTileWidth < mWidth) || (mTileHeight < mHeight));
+    }
+
+    /**
+     * Get the tiles that intersect a region.
+     *
+     * @param region the region, in image pixels.
+     * @return the range of tiles, with x as the tile column index and y as the tile row index.
+     */
+    Rectangle getTileRange(final Rectangle region) {
+        Rectangle allTiles = new Rectangle(0, 0, BlockDispatcher.ceilDiv(mWidth, mTileWidth), BlockDispatcher.ceilDiv(mHeight, mTileHeight));
+        Rectangle imageRegion = region.intersection(new Rectangle(0, 0, mWidth, mHeight));
+        if (imageRegion.isEmpty()) {
+            return new Rectangle();
+        }
+        int firstColumn = imageRegion.x / mTileWidth;
+        int firstRow = imageRegion.y / mTileHeight;
+        int lastColumn = (imageRegion.x + imageRegion.width - 1) / mTileWidth;
+        int lastRow = (imageRegion.y + imageRegion.height - 1) / mTileHeight;
+        return allTiles.intersection(new Rectangle(firstColumn, firstRow, lastColumn - firstColumn + 1, lastRow - firstRow + 1));
+    }
+
+    /**
+     * Get the pixels covered by a tile.
+     *
+     * @param rowIndex the tile row index.
+     * @param columnIndex the tile column index.
+     * @return the tile, in image pixels, clipped to the image.
+     */
+    Rectangle getTile(final int rowIndex, final int columnIndex) {
+        int x = columnIndex * mTileWidth;
+        int y = rowIndex * mTileHeight;
+        return new Rectangle(x, y, Math.min(mTileWidth, mWidth - x), Math.min(mTileHeight, mHeight - y));
+    }
+
+    /**
+     * Convert a full resolution coordinate to a reduced resolution coordinate.
+     *
+     * @param coordinate the full resolution coordinate.
+     * @param discardLevels the number of resolution levels that are discarded.
+     * @return the coordinate divided by 2 to the power of discardLevels, rounded up, as for the JPEG 2000 resolution
+     * levels.
+     */
+    static int reduce(final int coordinate, final int discardLevels) {
+        return -((-coordinate) >> discardLevels);
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import org.codice.imaging.nitf.core.image.ImageSegment;
+
+/**
+ * Renders JPEG 2000 (C8/M8) image segments.
+ *
+ * Each block is a codestream tile (masked blocks are left out of the codestream), and the tiles are decoded with a
+ * Jpeg2000TileDecoder, which uses a separate reader from the shared ImageReaderPool on each thread.
+ */
+final class Jpeg2000ImageRenderer {
+
+    private static final String JPEG2000_MEDIA_TYPE = "image/jp2";
+
+    private final BlockDispatcher mDispatcher;
+    private final ImageSegment mImageSegment;
+    private final int[] mSourceBands;
+    private final int mBlockWidth;
+    private final int mBlockHeight;
+
+    /**
+     * Constructor.
+     *
+     * @param dispatcher the dispatcher for the blocks.
+     * @param imageSegment the JPEG 2000 image segment.
+     * @param sourceBands the bands to decode, or null for the default bands of the codestream.
+     */
+    Jpeg2000ImageRenderer(final BlockDispatcher dispatcher, final ImageSegment imageSegment, final int[] sourceBands) {
+        mDispatcher = dispatcher;
+        mImageSegment = imageSegment;
+        mSourceBands = sourceBands;
+        mBlockWidth = (int) imageSegment.getNumberOfPixelsPerBlockHorizontal();
+        mBlockHeight = (int) imageSegment.getNumberOfPixelsPerBlockVertical();
+    }
+
+    /**
+     * Render the part of the image segment that intersects a region.
+     *
+     * A single block image with pixel aligned codestream tiles is decoded one tile at a time in parallel (unless blocks
+     * are cached), and other images are decoded one block at a time.
+     *
+     * @param target the target to draw the blocks on.
+     * @param imageMask the image mask for M8 images, or null.
+     * @param region the region to render, or null for the whole image.
+     * @param subsampling the subsampling factor, which is applied as source subsampling when decoding.
+     * @param discardLevels the number of resolution levels to discard.
+     * @param cachedBlocks the cached blocks for the image segment, or null.
+     * @throws IOException if the source data could not be read from.
+     */
+    void render(final RenderTarget target, final ImageMask imageMask, final Rectangle region, final int subsampling,
+            final int discardLevels, final BlockCache.SegmentBlocks cachedBlocks) throws IOException {
+        final Jpeg2000Codestream codestream = Jpeg2000Codestream.forImageSegment(mImageSegment);
+        try (Jpeg2000TileDecoder decoder = createDecoder(codestream, discardLevels)) {
+            if (mDispatcher.isParallel() && (cachedBlocks == null) && (mImageSegment.getNumberOfBlocksPerRow() == 1)
+                    && (mImageSegment.getNumberOfBlocksPerColumn() == 1) && codestream.hasPixelAlignedTiles()) {
+                // a single block is split up by codestream tile, so the tiles can be decoded in parallel
+                Rectangle imageRegion = new Rectangle(0, 0, (int) mImageSegment.getNumberOfColumns(), (int) mImageSegment.getNumberOfRows());
+                if (region != null) {
+                    imageRegion = imageRegion.intersection(region);
+                }
+                mDispatcher.forEachBlock(codestream.getTileRange(imageRegion), (rowIndex, columnIndex) -> {
+                    Rectangle tile = codestream.getTile(rowIndex, columnIndex);
+                    drawRegion(decoder, target, tile, tile.getLocation(), subsampling, null, 0);
+                });
+                return;
+            }
+            final int[] tileIndexes = getTileIndexes(imageMask);
+            mDispatcher.forEachBlock(BlockDispatcher.getBlockRange(mImageSegment, region), (rowIndex, columnIndex) -> {
+                int blockIndex = rowIndex * mImageSegment.getNumberOfBlocksPerRow() + columnIndex;
+                if (tileIndexes[blockIndex] < 0) {
+                    return;
+                }
+                drawRegion(decoder, target, getTile(tileIndexes[blockIndex]),
+                        new Point(columnIndex * mBlockWidth, rowIndex * mBlockHeight), subsampling, cachedBlocks, blockIndex);
+            });
+        }
+    }
+
+    /**
+     * Decode every unmasked block of the image segment at full resolution, one block at a time in row major order.
+     *
+     * @param imageMask the image mask for M8 images, or null.
+     * @param consumer the consumer for the decoded blocks.
+     * @throws IOException if the source data could not be read from, or the consumer failed.
+     */
+    void decodeBlocks(final ImageMask imageMask, final DecodedBlockConsumer consumer) throws IOException {
+        final int[] tileIndexes = getTileIndexes(imageMask);
+        try (Jpeg2000TileDecoder decoder = createDecoder(Jpeg2000Codestream.forImageSegment(mImageSegment), 0)) {
+            BlockDispatcher.forEachBlockInOrder(BlockDispatcher.getBlockRange(mImageSegment, null), (rowIndex, columnIndex) -> {
+                int blockIndex = rowIndex * mImageSegment.getNumberOfBlocksPerRow() + columnIndex;
+                if (tileIndexes[blockIndex] < 0) {
+                    return;
+                }
+                consumer.accept(rowIndex, columnIndex, decoder.read(getTile(tileIndexes[blockIndex]), 1, 0, 0));
+            });
+        }
+    }
+
+    /**
+     * Decode a region of a JPEG 2000 image, and draw it at its position in the image.
+     *
+     * @param tile the region, in full resolution codestream pixels.
+     * @param position the position of the first pixel of the region in the image, at full resolution.
+     */
+    private static void drawRegion(final Jpeg2000TileDecoder decoder, final RenderTarget target, final Rectangle tile,
+            final Point position, final int subsampling, final BlockCache.SegmentBlocks cachedBlocks, final int blockIndex)
+            throws IOException {
+        int firstColumn = Math.floorMod(-position.x, subsampling);
+        int firstRow = Math.floorMod(-position.y, subsampling);
+        if ((firstColumn >= tile.width) || (firstRow >= tile.height)) {
+            return;
+        }
+        BufferedImage img = null;
+        if (cachedBlocks != null) {
+            img = cachedBlocks.get(blockIndex);
+        }
+        if (img == null) {
+            img = decoder.read(tile, subsampling, firstColumn, firstRow);
+            if (img == null) {
+                return;
+            }
+            BlockDispatcher.putBlock(cachedBlocks, blockIndex, img);
+        }
+        target.drawImage(img, Jpeg2000Codestream.reduce((position.x + firstColumn) / subsampling, decoder.getDiscardLevels()),
+                Jpeg2000Codestream.reduce((position.y + firstRow) / subsampling, decoder.getDiscardLevels()));
+    }
+
+    private Jpeg2000TileDecoder createDecoder(final Jpeg2000Codestream codestream, final int discardLevels) throws IOException {
+        return new Jpeg2000TileDecoder(ImageReaderPool.SHARED, JPEG2000_MEDIA_TYPE, mImageSegment.getData(), codestream, mSourceBands,
+                discardLevels);
+    }
+
+    /**
+     * Get the codestream tile that holds each block.
+     *
+     * Masked blocks are left out of the codestream, so the later blocks are in the tile with the next lower index.
+     *
+     * @return the index of the codestream tile for each block, in row major order, or -1 for masked blocks.
+     */
+    private int[] getTileIndexes(final ImageMask imageMask) {
+        int[] tileIndexes = new int[mImageSegment.getNumberOfBlocksPerRow() * mImageSegment.getNumberOfBlocksPerColumn()];
+        int tileIndex = 0;
+        for (int blockIndex = 0; blockIndex < tileIndexes.length; ++blockIndex) {
+            if ((imageMask != null) && imageMask.isMaskedBlock(blockIndex, 0)) {
+                tileIndexes[blockIndex] = -1;
+            } else {
+                tileIndexes[blockIndex] = tileIndex++;
+            }
+        }
+        return tileIndexes;
+    }
+
+    private Rectangle getTile(final int tileIndex) {
+        return new Rectangle((tileIndex % mImageSegment.getNumberOfBlocksPerRow()) * mBlockWidth,
+                (tileIndex / mImageSegment.getNumberOfBlocksPerRow()) * mBlockHeight, mBlockWidth, mBlockHeight);
+    }
+}
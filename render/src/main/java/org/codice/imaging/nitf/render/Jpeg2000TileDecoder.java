@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.codice.imaging.nitf.render.datareader.ImageDataStreamView;
+
+/**
+ * Decodes regions of a JPEG 2000 codestream, with one reader for each thread.
+ *
+ * Each reader reads the codestream through its own view of the image data stream, so regions (e.g. codestream tiles)
+ * can be decoded on several threads at once. Regions can be decoded at a reduced resolution level, which only decodes
+ * the lower resolution wavelet subbands. The readers are returned to the pool when the decoder is closed.
+ */
+final class Jpeg2000TileDecoder implements Closeable {
+
+    private static final String SET_RESOLUTION = "setResolution";
+
+    private final ImageReaderPool mReaderPool;
+    private final String mMediaType;
+    private final ImageInputStream mImageData;
+    private final long mStart;
+    private final int[] mSourceBands;
+    private final int mDiscardLevels;
+    private final int mResolution;
+    private final Map<Thread, ImageReader> mReaders = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param readerPool the pool to get readers from.
+     * @param mediaType the media type to get JPEG 2000 readers for.
+     * @param imageData the image data stream, positioned at the start of the JPEG 2000 data.
+     * @param codestream the codestream header values.
+     * @param sourceBands the bands to decode, or null for all bands.
+     * @param discardLevels the number of resolution levels to discard, from 0 (full resolution) up to the number of
+     * decomposition levels.
+     * @throws IOException if the image data stream position could not be read.
+     */
+    Jpeg2000TileDecoder(final ImageReaderPool readerPool, final String mediaType, final ImageInputStream imageData,
+            final Jpeg2000Codestream codestream, final int[] sourceBands, final int discardLevels) throws IOException {
+        if ((discardLevels < 0) || (discardLevels > codestream.getDecompositionLevels())) {
+            throw new IllegalArgumentException(String.format("Cannot discard %d resolution levels, codestream has %d",
+                    discardLevels, codestream.getDecompositionLevels()));
+        }
+        mReaderPool = readerPool;
+        mMediaType = mediaType;
+        mImageData = imageData;
+        mStart = imageData.getStreamPosition();
+        mSourceBands = sourceBands;
+        mDiscardLevels = discardLevels;
+        mResolution = codestream.getDecompositionLevels() - discardLevels;
+    }
+
+    /**
+     * Decode a region of the image.
+     *
+     * This can be called from several threads at once.
+     *
+     * @param region the region to decode, in full resolution codestream pixels.
+     * @param subsampling the distance between the decoded pixels that are kept.
+     * @param firstColumn the first column of the region that is kept, when subsampling.
+     * @param firstRow the first row of the region that is kept, when subsampling.
+     * @return the decoded region, at the reduced resolution if resolution levels are discarded, or null if the region
+     * is empty at that resolution.
+     * @throws IOException if the region could not be decoded.
+     */
+    BufferedImage read(final Rectangle region, final int subsampling, final int firstColumn, final int firstRow)
+            throws IOException {
+        int x = Jpeg2000Codestream.reduce(region.x, mDiscardLevels);
+        int y = Jpeg2000Codestream.reduce(region.y, mDiscardLevels);
+        int width = Jpeg2000Codestream.reduce(region.x + region.width, mDiscardLevels) - x;
+        int height = Jpeg2000Codestream.reduce(region.y + region.height, mDiscardLevels) - y;
+        if ((width <= 0) || (height <= 0)) {
+            return null;
+        }
+        ImageReader reader = getReader();
+        ImageReadParam param = reader.getDefaultReadParam();
+        if (mSourceBands != null) {
+            param.setSourceBands(mSourceBands);
+        }
+        if (mDiscardLevels > 0) {
+            setResolution(param, mResolution);
+        }
+        param.setSourceRegion(new Rectangle(x, y, width, height));
+        if (subsampling > 1) {
+            param.setSourceSubsampling(subsampling, subsampling, firstColumn, firstRow);
+        }
+        return reader.read(0, param);
+    }
+
+    /**
+     * Get the number of resolution levels that are discarded.
+     *
+     * @return the number of times that the resolution of the decoded regions is halved.
+     */
+    int getDiscardLevels() {
+        return mDiscardLevels;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (ImageReader reader : mReaders.values()) {
+            ImageInputStream view = (ImageInputStream) reader.getInput();
+            mReaderPool.release(mMediaType, reader);
+            view.close();
+        }
+        mReaders.clear();
+    }
+
+    private ImageReader getReader() {
+        return mReaders.computeIfAbsent(Thread.currentThread(), thread -> {
+            ImageReader reader = mReaderPool.acquire(mMediaType);
+            reader.setInput(new ImageDataStreamView(mImageData, mStart), true, true);
+            return reader;
+        });
+    }
+
+    /**
+     * Set the resolution level to decode.
+     *
+     * The JPEG 2000 reader's parameters are only known at runtime, since the reader is found through the ImageIO
+     * registry.
+     */
+    private static void setResolution(final ImageReadParam param, final int resolution) {
+        try {
+            Method setResolution = param.getClass().getMethod(SET_RESOLUTION, int.class);
+            setResolution.invoke(param, resolution);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            throw new UnsupportedOperationException("JPEG 2000 reader does not support decoding resolution levels", e);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import java.io.EOFException;
+import java.io.IOException;
+
+import javax.imageio.stream.ImageInputStream;
+
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.render.datareader.BlockDataReader;
+
+/**
+ * The location of each JPEG block in the image data.
+ *
+ * Each block of a JPEG compressed image segment is a complete JPEG stream (start of image marker to end of image
+ * marker). The blocks are found once, by walking the marker segments and scanning the entropy coded data for the next
+ * marker without decoding anything, and the result is kept for as long as the image segment is in use. Any block can
+ * then be decoded on its own.
+ */
+final class JpegBlockOffsets {
+
+    private static final SegmentMetadataCache<JpegBlockOffsets> SEGMENT_OFFSETS = new SegmentMetadataCache<>();
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int BYTE_MASK = 0xFF;
+    private static final int MARKER_PREFIX = 0xFF;
+    private static final int TEMPORARY = 0x01;
+    private static final int START_OF_IMAGE = JpegMarkerCode.START_OF_IMAGE.getValue() & BYTE_MASK;
+    private static final int END_OF_IMAGE = JpegMarkerCode.END_OF_IMAGE.getValue() & BYTE_MASK;
+    private static final int START_OF_SCAN = JpegMarkerCode.START_OF_SCAN.getValue() & BYTE_MASK;
+    private static final int FIRST_RESTART = JpegMarkerCode.RESTART_WITH_MODULO_8_COUNT_0.getValue() & BYTE_MASK;
+    private static final int LAST_RESTART = JpegMarkerCode.RESTART_WITH_MODULO_8_COUNT_7.getValue() & BYTE_MASK;
+    private static final int MARKER_LENGTH = 2;
+
+    private final ImageInputStream mImageData;
+    private final long[] mStarts;
+    private final int[] mLengths;
+
+    /**
+     * Get the block locations for an image segment.
+     *
+     * The first call for an image segment scans the image data from the current position of the image data stream
+     * (which must be the start of the first JPEG stream, or fill bytes before it), and leaves the stream at the end of
+     * the last block. Later calls for the same image segment (with the same image data stream) return the same result
+     * without reading anything. The scan holds the lock on the image data stream, so concurrent first calls scan once.
+     *
+     * @param imageSegment the JPEG compressed image segment.
+     * @param imageMask the image mask, or null if no blocks are masked. Masked blocks are not in the image data.
+     * @return the block locations.
+     * @throws IOException if the stream could not be read, or ended before all of the blocks were found.
+     */
+    static JpegBlockOffsets forImageSegment(final ImageSegment imageSegment, final ImageMask imageMask) throws IOException {
+        return SEGMENT_OFFSETS.get(imageSegment, (segment, imageData) -> new JpegBlockOffsets(segment, imageData, imageMask));
+    }
+
+    private JpegBlockOffsets(final ImageSegment imageSegment, final ImageInputStream imageData, final ImageMask imageMask)
+            throws IOException {
+        mImageData = imageData;
+        int numberOfBlocks = imageSegment.getNumberOfBlocksPerRow() * imageSegment.getNumberOfBlocksPerColumn();
+        mStarts = new long[numberOfBlocks];
+        mLengths = new int[numberOfBlocks];
+        MarkerScanner scanner = new MarkerScanner(mImageData);
+        for (int blockIndex = 0; blockIndex < numberOfBlocks; ++blockIndex) {
+            if ((imageMask != null) && imageMask.isMaskedBlock(blockIndex, 0)) {
+                mStarts[blockIndex] = -1;
+                continue;
+            }
+            mStarts[blockIndex] = scanner.findStartOfImage();
+            mLengths[blockIndex] = (int) (scanner.findEndOfImage() - mStarts[blockIndex]);
+        }
+        mImageData.seek(scanner.getPosition());
+    }
+
+    /**
+     * Test whether a block is masked.
+     *
+     * @param blockIndex the index of the block, in row major order.
+     * @return true if the block is not in the image data, otherwise false.
+     */
+    boolean isMaskedBlock(final int blockIndex) {
+        return mStarts[blockIndex] < 0;
+    }
+
+    /**
+     * Get the start of a block.
+     *
+     * @param blockIndex the index of the block, in row major order.
+     * @return the stream position of the start of image marker, or -1 if the block is masked.
+     */
+    long getStart(final int blockIndex) {
+        return mStarts[blockIndex];
+    }
+
+    /**
+     * Get the length of a block.
+     *
+     * @param blockIndex the index of the block, in row major order.
+     * @return the number of bytes from the start of the start of image marker to the end of the end of image marker.
+     */
+    int getLength(final int blockIndex) {
+        return mLengths[blockIndex];
+    }
+
+    /**
+     * Read the data for a block.
+     *
+     * This can be called from several threads at once.
+     *
+     * @param blockIndex the index of an unmasked block, in row major order.
+     * @return a stream containing only the JPEG stream for the block.
+     * @throws IOException if the block data could not be read.
+     */
+    ImageInputStream getBlockData(final int blockIndex) throws IOException {
+        return BlockDataReader.readBlock(mImageData, mStarts[blockIndex], mLengths[blockIndex]);
+    }
+
+    /**
+     * Buffered forward scan through the markers of the image data.
+     */
+    private static final class MarkerScanner {
+
+        private final ImageInputStream mStream;
+        private final byte[] mBuffer = new byte[BUFFER_SIZE];
+        private long mBufferStart = 0;
+        private int mBufferLength = 0;
+        private long mPosition;
+
+        MarkerScanner(final ImageInputStream stream) throws IOException {
+            mStream = stream;
+            mPosition = stream.getStreamPosition();
+        }
+
+        long getPosition() {
+            return mPosition;
+        }
+
+        long findStartOfImage() throws IOException {
+            while (true) {
+                if ((next() == MARKER_PREFIX) && (nextMarker() == START_OF_IMAGE)) {
+                    return mPosition - MARKER_LENGTH;
+                }
+            }
+        }
+
+        long findEndOfImage() throws IOException {
+            while (true) {
+                if (next() != MARKER_PREFIX) {
+                    continue;
+                }
+                int marker = nextMarker();
+                if (marker == END_OF_IMAGE) {
+                    return mPosition;
+                }
+                if ((marker == TEMPORARY) || isRestart(marker)) {
+                    continue;
+                }
+                int length = (next() << Byte.SIZE) | next();
+                mPosition += length - MARKER_LENGTH;
+                if (marker == START_OF_SCAN) {
+                    skipEntropyCodedData();
+                }
+            }
+        }
+
+        /**
+         * Skip to the next marker that is not a restart marker, leaving the position at that marker.
+         */
+        private void skipEntropyCodedData() throws IOException {
+            while (true) {
+                if (next() != MARKER_PREFIX) {
+                    continue;
+                }
+                int marker = nextMarker();
+                if ((marker != 0) && !isRestart(marker)) {
+                    mPosition -= MARKER_LENGTH;
+                    return;
+                }
+            }
+        }
+
+        private static boolean isRestart(final int marker) {
+            return (marker >= FIRST_RESTART) && (marker <= LAST_RESTART);
+        }
+
+        /**
+         * Read the marker code after a marker prefix, skipping any fill bytes.
+         */
+        private int nextMarker() throws IOException {
+            int marker = next();
+            while (marker == MARKER_PREFIX) {
+                marker = next();
+            }
+            return marker;
+        }
+
+        private int next() throws IOException {
+            if ((mPosition < mBufferStart) || (mPosition >= mBufferStart + mBufferLength)) {
+                mBufferStart = mPosition;
+                mStream.seek(mPosition);
+                mBufferLength = Math.max(mStream.read(mBuffer), 0);
+                if (mBufferLength == 0) {
+                    throw new EOFException("Image data ended before the end of the JPEG blocks");
+                }
+            }
+            int value = mBuffer[(int) (mPosition - mBufferStart)] & BYTE_MASK;
+            mPosition++;
+            return value;
+        }
+    }
+}
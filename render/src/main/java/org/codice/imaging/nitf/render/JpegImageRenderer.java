@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+
+import org.codice.imaging.nitf.core.image.ImageSegment;
+
+/**
+ * Renders JPEG (C3/M3) image segments, one JPEG stream per block.
+ *
+ * The blocks are located with JpegBlockOffsets, and each block is decoded from its own copy of the block data with a
+ * reader from the shared ImageReaderPool, so blocks can be decoded in parallel.
+ */
+final class JpegImageRenderer {
+
+    private static final String JPEG_MEDIA_TYPE = "image/jpeg";
+
+    private final BlockDispatcher mDispatcher;
+    private final ImageSegment mImageSegment;
+    private final int mBlockWidth;
+    private final int mBlockHeight;
+
+    /**
+     * Constructor.
+     *
+     * @param dispatcher the dispatcher for the blocks.
+     * @param imageSegment the JPEG image segment.
+     */
+    JpegImageRenderer(final BlockDispatcher dispatcher, final ImageSegment imageSegment) {
+        mDispatcher = dispatcher;
+        mImageSegment = imageSegment;
+        mBlockWidth = (int) imageSegment.getNumberOfPixelsPerBlockHorizontal();
+        mBlockHeight = (int) imageSegment.getNumberOfPixelsPerBlockVertical();
+    }
+
+    /**
+     * Render the blocks of the image segment.
+     *
+     * @param target the target to draw the blocks on.
+     * @param imageMask the image mask for M3 images, or null.
+     * @param blockRange the blocks to render.
+     * @param subsampling the subsampling factor, which is applied as source subsampling when decoding.
+     * @param cachedBlocks the cached blocks for the image segment, or null.
+     * @throws IOException if the source data could not be read from.
+     */
+    void render(final RenderTarget target, final ImageMask imageMask, final Rectangle blockRange, final int subsampling,
+            final BlockCache.SegmentBlocks cachedBlocks) throws IOException {
+        final JpegBlockOffsets blockOffsets = JpegBlockOffsets.forImageSegment(mImageSegment, imageMask);
+
+        mDispatcher.forEachBlock(blockRange, (rowIndex, columnIndex) -> {
+            int blockIndex = columnIndex + rowIndex * mImageSegment.getNumberOfBlocksPerRow();
+            if (blockOffsets.isMaskedBlock(blockIndex)) {
+                return;
+            }
+            BufferedImage img = null;
+            if (cachedBlocks != null) {
+                img = cachedBlocks.get(blockIndex);
+            }
+            if (subsampling == 1) {
+                if (img == null) {
+                    img = readBlock(blockOffsets, blockIndex, null);
+                    BlockDispatcher.putBlock(cachedBlocks, blockIndex, img);
+                }
+
+                target.drawImage(img,
+                        columnIndex * mBlockWidth,
+                        rowIndex * mBlockHeight);
+                return;
+            }
+            int firstColumn = Math.floorMod(-columnIndex * mBlockWidth, subsampling);
+            int firstRow = Math.floorMod(-rowIndex * mBlockHeight, subsampling);
+            if ((firstColumn >= mBlockWidth) || (firstRow >= mBlockHeight)) {
+                return;
+            }
+            if (img == null) {
+                ImageReadParam param = new ImageReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, firstColumn, firstRow);
+                img = readBlock(blockOffsets, blockIndex, param);
+                BlockDispatcher.putBlock(cachedBlocks, blockIndex, img);
+            }
+            target.drawImage(img,
+                    (columnIndex * mBlockWidth + firstColumn) / subsampling,
+                    (rowIndex * mBlockHeight + firstRow) / subsampling);
+        });
+    }
+
+    /**
+     * Decode every unmasked block of the image segment, one block at a time in row major order.
+     *
+     * @param imageMask the image mask for M3 images, or null.
+     * @param consumer the consumer for the decoded blocks.
+     * @throws IOException if the source data could not be read from, or the consumer failed.
+     */
+    void decodeBlocks(final ImageMask imageMask, final DecodedBlockConsumer consumer) throws IOException {
+        final JpegBlockOffsets blockOffsets = JpegBlockOffsets.forImageSegment(mImageSegment, imageMask);
+        BlockDispatcher.forEachBlockInOrder(BlockDispatcher.getBlockRange(mImageSegment, null), (rowIndex, columnIndex) -> {
+            int blockIndex = rowIndex * mImageSegment.getNumberOfBlocksPerRow() + columnIndex;
+            if (blockOffsets.isMaskedBlock(blockIndex)) {
+                return;
+            }
+            consumer.accept(rowIndex, columnIndex, readBlock(blockOffsets, blockIndex, null));
+        });
+    }
+
+    /**
+     * Decode one JPEG block.
+     *
+     * Each block is decoded from its own copy of the block data, with a reader from the pool, so this can be called
+     * from several threads at once.
+     */
+    private static BufferedImage readBlock(final JpegBlockOffsets blockOffsets, final int blockIndex,
+            final ImageReadParam param) throws IOException {
+        ImageReader reader = ImageReaderPool.SHARED.acquire(JPEG_MEDIA_TYPE);
+        try {
+            reader.setInput(blockOffsets.getBlockData(blockIndex));
+            return reader.read(0, param);
+        } finally {
+            ImageReaderPool.SHARED.release(JPEG_MEDIA_TYPE, reader);
+        }
+    }
+}
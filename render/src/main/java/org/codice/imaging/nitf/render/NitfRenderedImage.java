@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import java.awt.Image;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Vector;
+
+import org.codice.imaging.nitf.core.image.ImageSegment;
+
+/**
+ * A RenderedImage view of an image segment, which decodes each tile only when it is requested.
+ *
+ * The tiles are the blocks of the image segment, and each tile is rendered as for NitfRenderer.render(imageSegment,
+ * region) when getTile() is called, so only the requested block is decoded. Tiles are not retained, so memory use does
+ * not depend on the size of the image. Use a block cache on the renderer to avoid decoding blocks again when tiles are
+ * requested more than once.
+ *
+ * Bilevel (C1) images, and vector quantized (C4/M4) images whose blocks do not start on a byte boundary, can only be
+ * decoded from the first block. These images are decoded in full the first time a tile is requested, and the decoded
+ * image is kept to provide all of the tiles.
+ *
+ * Like NitfRenderer.renderRegion(imageSegment, region), the image location is not included, so the image starts at (0, 0).
+ * Tiles on the right and bottom edges can extend past the image, and those pixels are transparent.
+ *
+ * The image data stream of the image segment is returned to its starting position before each tile is rendered, so
+ * the image segment must not be rendered by anything else while this view is in use. Requests for tiles are handled
+ * one at a time.
+ */
+public class NitfRenderedImage implements RenderedImage {
+
+    private final ImageSegment mImageSegment;
+    private final NitfRenderer mRenderer;
+    private final long mDataStart;
+    private final ColorModel mColorModel = ColorModel.getRGBdefault();
+    private final SampleModel mSampleModel;
+    private final boolean mRandomBlockAccess;
+    private BufferedImage mSequentialImage = null;
+
+    /**
+     * Constructor.
+     *
+     * @param imageSegment the image segment to view, which must have its image data.
+     * @throws IOException if the image data position could not be read.
+     */
+    public NitfRenderedImage(final ImageSegment imageSegment) throws IOException {
+        this(imageSegment, new NitfRenderer());
+    }
+
+    /**
+     * Constructor using a configured renderer.
+     *
+     * @param imageSegment the image segment to view, which must have its image data.
+     * @param renderer the renderer to render tiles with (e.g. with a block cache set).
+     * @throws IOException if the image data position could not be read.
+     */
+    public NitfRenderedImage(final ImageSegment imageSegment, final NitfRenderer renderer) throws IOException {
+        mImageSegment = imageSegment;
+        mRenderer = renderer;
+        mDataStart = imageSegment.getData().getStreamPosition();
+        mSampleModel = mColorModel.createCompatibleSampleModel(getTileWidth(), getTileHeight());
+        try {
+            mRandomBlockAccess = NitfRenderer.hasRandomBlockAccess(imageSegment);
+        } finally {
+            imageSegment.getData().seek(mDataStart);
+        }
+    }
+
+    @Override
+    public final Vector<RenderedImage> getSources() {
+        return null;
+    }
+
+    @Override
+    public final Object getProperty(final String name) {
+        return Image.UndefinedProperty;
+    }
+
+    @Override
+    public final String[] getPropertyNames() {
+        return null;
+    }
+
+    @Override
+    public final ColorModel getColorModel() {
+        return mColorModel;
+    }
+
+    @Override
+    public final SampleModel getSampleModel() {
+        return mSampleModel;
+    }
+
+    @Override
+    public final int getWidth() {
+        return (int) mImageSegment.getNumberOfColumns();
+    }
+
+    @Override
+    public final int getHeight() {
+        return (int) mImageSegment.getNumberOfRows();
+    }
+
+    @Override
+    public final int getMinX() {
+        return 0;
+    }
+
+    @Override
+    public final int getMinY() {
+        return 0;
+    }
+
+    @Override
+    public final int getNumXTiles() {
+        return mImageSegment.getNumberOfBlocksPerRow();
+    }
+
+    @Override
+    public final int getNumYTiles() {
+        return mImageSegment.getNumberOfBlocksPerColumn();
+    }
+
+    @Override
+    public final int getMinTileX() {
+        return 0;
+    }
+
+    @Override
+    public final int getMinTileY() {
+        return 0;
+    }
+
+    @Override
+    public final int getTileWidth() {
+        return (int) mImageSegment.getNumberOfPixelsPerBlockHorizontal();
+    }
+
+    @Override
+    public final int getTileHeight() {
+        return (int) mImageSegment.getNumberOfPixelsPerBlockVertical();
+    }
+
+    @Override
+    public final int getTileGridXOffset() {
+        return 0;
+    }
+
+    @Override
+    public final int getTileGridYOffset() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalArgumentException if the tile is outside the tile grid.
+     * @throws UncheckedIOException if the image data could not be read.
+     */
+    @Override
+    public final Raster getTile(final int tileX, final int tileY) {
+        if ((tileX < 0) || (tileX >= getNumXTiles()) || (tileY < 0) || (tileY >= getNumYTiles())) {
+            throw new IllegalArgumentException(String.format("Tile (%d, %d) is outside the %d x %d tile grid", tileX, tileY,
+                    getNumXTiles(), getNumYTiles()));
+        }
+        Rectangle tileBounds = new Rectangle(tileX * getTileWidth(), tileY * getTileHeight(), getTileWidth(), getTileHeight());
+        if (!mRandomBlockAccess) {
+            return getSequentialImage().getRaster().createChild(tileBounds.x, tileBounds.y, tileBounds.width, tileBounds.height,
+                    tileBounds.x, tileBounds.y, null);
+        }
+        return render(tileBounds).getRaster().createTranslatedChild(tileBounds.x, tileBounds.y);
+    }
+
+    @Override
+    public final Raster getData() {
+        return copyData(null);
+    }
+
+    @Override
+    public final Raster getData(final Rectangle rect) {
+        WritableRaster raster = Raster.createWritableRaster(mSampleModel.createCompatibleSampleModel(rect.width, rect.height),
+                new Point(rect.x, rect.y));
+        return copyData(raster);
+    }
+
+    @Override
+    public final WritableRaster copyData(final WritableRaster raster) {
+        WritableRaster target = raster;
+        if (target == null) {
+            target = Raster.createWritableRaster(mSampleModel.createCompatibleSampleModel(getWidth(), getHeight()), null);
+        }
+        Rectangle bounds = target.getBounds();
+        int firstTileX = Math.max(Math.floorDiv(bounds.x, getTileWidth()), 0);
+        int firstTileY = Math.max(Math.floorDiv(bounds.y, getTileHeight()), 0);
+        int lastTileX = Math.min(Math.floorDiv(bounds.x + bounds.width - 1, getTileWidth()), getNumXTiles() - 1);
+        int lastTileY = Math.min(Math.floorDiv(bounds.y + bounds.height - 1, getTileHeight()), getNumYTiles() - 1);
+        for (int tileY = firstTileY; tileY <= lastTileY; ++tileY) {
+            for (int tileX = firstTileX; tileX <= lastTileX; ++tileX) {
+                target.setRect(getTile(tileX, tileY));
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Get the whole image, for images that can only be decoded from the first block.
+     *
+     * @return the rendered image, which covers every tile.
+     */
+    private synchronized BufferedImage getSequentialImage() {
+        if (mSequentialImage == null) {
+            mSequentialImage = render(new Rectangle(0, 0, getNumXTiles() * getTileWidth(), getNumYTiles() * getTileHeight()));
+        }
+        return mSequentialImage;
+    }
+
+    private synchronized BufferedImage render(final Rectangle region) {
+        try {
+            mImageSegment.getData().seek(mDataStart);
+            return mRenderer.renderRegion(mImageSegment, region);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -14,25 +14,31 @@
  */
 package org.codice.imaging.nitf.render;
 
+import java.awt.Dimension;
 import java.awt.Graphics2D;
+import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
 
-import javax.imageio.ImageIO;
-import javax.imageio.ImageReadParam;
-import javax.imageio.ImageReader;
 import javax.imageio.stream.ImageInputStream;
 
 import org.codice.imaging.nitf.core.image.ImageBand;
+import org.codice.imaging.nitf.core.image.ImageCompression;
 import org.codice.imaging.nitf.core.image.ImageRepresentation;
 import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.core.image.PixelValueType;
+import org.codice.imaging.nitf.render.datareader.DisplayLookupTable;
+import org.codice.imaging.nitf.render.datareader.FloatDisplayMapping;
 import org.codice.imaging.nitf.render.imagemode.ImageModeHandler;
 import org.codice.imaging.nitf.render.imagemode.ImageModeHandlerFactory;
+import org.codice.imaging.nitf.render.imagemode.RenderOptions;
 import org.codice.imaging.nitf.render.imagerep.ImageRepresentationHandler;
 import org.codice.imaging.nitf.render.imagerep.ImageRepresentationHandlerFactory;
 
@@ -41,20 +47,105 @@ import org.codice.imaging.nitf.render.imagerep.ImageRepresentationHandlerFactory
  */
 public class NitfRenderer {
 
-    private static final int BYTE_MASK = 0xFF;
-
     static final String[][] BAND_PRIORITY = {
             {"R", "G", "B"},
             {"LU"},
             {"M"}
     };
 
+    private static final SegmentMetadataCache<FloatDisplayMapping> SEGMENT_FLOAT_DISPLAY_MAPPINGS = new SegmentMetadataCache<>();
+
+    private ForkJoinPool mForkJoinPool = null;
+
+    private BlockCache mBlockCache = null;
+    private Object mFileIdentity = null;
+    private ToIntFunction<ImageSegment> mSegmentIndex = null;
+
+    private Function<ImageSegment, DisplayLookupTable> mDisplayLookupTables = null;
+
+    private Function<ImageSegment, FloatDisplayMapping> mFloatDisplayMappings = null;
+
     /**
      * Constructor.
      */
     public NitfRenderer() {
     }
 
+    /**
+     * Set the pool used to decode image blocks in parallel.
+     *
+     * Blocks are decoded in parallel for uncompressed (NC/NM) and vector quantized (C4/M4) images, where the position of
+     * each block in the image data can be determined without decoding the earlier blocks, and for JPEG (C3/M3) images,
+     * where the blocks are located by scanning the JPEG markers the first time the segment is rendered. JPEG 2000
+     * (C8/M8) images are decoded with a separate reader on each thread, one block at a time, or one codestream tile at a
+     * time for images with a single tiled block (unless blocks are cached). Other images are always decoded one block
+     * after another.
+     *
+     * @param pool the pool to decode blocks on, or null to decode blocks sequentially (the default).
+     */
+    public final void setForkJoinPool(final ForkJoinPool pool) {
+        mForkJoinPool = pool;
+    }
+
+    /**
+     * Set the cache used to hold decoded image blocks between renders.
+     *
+     * The cache is used for uncompressed (NC/NM) images with whole byte blocks, monochrome vector quantized (C4/M4)
+     * images, and JPEG and JPEG 2000 images. Blocks are cached with the bands (see getSourceBands()) and subsampling
+     * factor that they were rendered with, so a block that was rendered at full resolution is decoded again for a
+     * subsampled render, and a renderer that selects different bands does not share blocks with this one.
+     *
+     * The cache can be shared between renderers, and the file identity and segment index tell the cache which image
+     * segment is being rendered.
+     *
+     * @param cache the cache, or null to not cache blocks (the default).
+     * @param fileIdentity the identity of the file that the rendered image segments come from (e.g. the path to the
+     * file).
+     * @param segmentIndex gets the index of an image segment within the file (e.g.
+     * dataSource.getImageSegments()::indexOf). Segments with a negative index are not cached.
+     */
+    public final void setBlockCache(final BlockCache cache, final Object fileIdentity,
+            final ToIntFunction<ImageSegment> segmentIndex) {
+        mBlockCache = cache;
+        mFileIdentity = fileIdentity;
+        mSegmentIndex = segmentIndex;
+    }
+
+    /**
+     * Set the lookup tables used to map integer samples to display values.
+     *
+     * The lookup table is applied to each sample as it is decoded, so a display stretch (e.g. a percentile or gamma
+     * stretch of 11, 12 or 16 bit data) does not need another pass over the rendered image. It is used for uncompressed
+     * (NC/NM) mono (greyscale) integer images of up to 16 bits, which are then rendered as 8 bit greyscale (including by
+     * renderToClosestDataModel()). Blocks of images that are rendered through a lookup table are not cached.
+     *
+     * @param displayLookupTables gets the lookup table for an image segment, which must be for the actual bits per pixel
+     * (ABPP) of the segment, or null to render the segment without a lookup table. Setting null (the default) renders all
+     * segments without a lookup table.
+     */
+    public final void setDisplayLookupTables(final Function<ImageSegment, DisplayLookupTable> displayLookupTables) {
+        mDisplayLookupTables = displayLookupTables;
+    }
+
+    /**
+     * Set the mappings used to map floating point (R) and complex (C) samples to display values.
+     *
+     * The mapping is applied to each sample (or, for complex samples, to its magnitude) as it is decoded. It is used for
+     * uncompressed (NC/NM) mono (greyscale) floating point and complex images, which are rendered as 8 bit greyscale.
+     * Blocks of these images are not cached.
+     *
+     * Where no mapping is set for a segment, the range of the rendered band over the whole image (leaving out masked
+     * blocks, pad pixels and values that are not finite numbers) is mapped linearly for floating point images, and
+     * logarithmically for complex images (see FloatDisplayMapping.forImageSegment()). The range is read once for each
+     * image segment, so every region (e.g. each tile of a NitfRenderedImage) is mapped the same way.
+     *
+     * @param floatDisplayMappings gets the mapping for an image segment, or null to use the range of the rendered values.
+     * Setting null (the default) uses the range of the rendered values for all segments.
+     */
+    public final void setFloatDisplayMappings(final Function<ImageSegment, FloatDisplayMapping> floatDisplayMappings) {
+        mFloatDisplayMappings = floatDisplayMappings;
+    }
+
     /**
      * Render to the specified Graphics2D target.
      *
@@ -63,16 +154,135 @@ public class NitfRenderer {
      * @throws IOException if the source data could not be read from
      */
     public final void render(final ImageSegment imageSegment, final Graphics2D targetGraphic) throws IOException {
+        render(imageSegment, new GraphicsRenderTarget(targetGraphic), null, 1,
+                new Point(imageSegment.getImageLocationColumn(), imageSegment.getImageLocationRow()));
+    }
+
+    /**
+     * Render part of the segment as a BufferedImage.
+     *
+     * Only the blocks that intersect the region are decoded, where the location of those blocks in the image data can be
+     * found without decoding the earlier blocks (i.e. uncompressed images with whole byte blocks, and monochrome vector
+     * quantized images). JPEG blocks are read directly, using the block locations found the first time the segment is
+     * rendered. For JPEG 2000 images, the other blocks are skipped without being decoded. Other images are decoded in
+     * full, and only the region is drawn.
+     *
+     * @param imageSegment the image segment header for the segment to be rendered
+     * @param region the region to render, in pixels from the first pixel of the image segment (i.e. not including the
+     * image location). Parts of the region that are outside the image are transparent.
+     * @return rendered image, which is the same size as the region
+     * @throws IOException if the source data could not be read from
+     */
+    public final BufferedImage renderRegion(final ImageSegment imageSegment, final Rectangle region) throws IOException {
+        BufferedImage img = new BufferedImage(region.width, region.height, BufferedImage.TYPE_INT_ARGB);
+
+        render(imageSegment, new RasterRenderTarget(img, -region.x, -region.y, (int) imageSegment.getNumberOfColumns(),
+                (int) imageSegment.getNumberOfRows()), region, 1, new Point(0, 0));
+        return img;
+    }
+
+    /**
+     * Render the segment as a BufferedImage at reduced resolution.
+     *
+     * Only every subsampling'th pixel is kept in each direction, starting from the first pixel of the image segment.
+     * For uncompressed images, the rows that are not kept are skipped without being decoded, and each kept row is read
+     * and unpacked in one operation, with only every subsampling'th value being stored. JPEG and JPEG 2000 images are
+     * decoded with source subsampling. Other images are decoded at full resolution, and subsampled one block at a time.
+     *
+     * @param imageSegment the image segment header for the segment to be rendered
+     * @param subsampling the distance between the pixels that are kept, which must be at least 1.
+     * @return rendered image, which is the size of the image segment divided by the subsampling factor (rounded up), and
+     * does not include the image location
+     * @throws IOException if the source data could not be read from
+     */
+    public final BufferedImage render(final ImageSegment imageSegment, final int subsampling) throws IOException {
+        if (subsampling < 1) {
+            throw new IllegalArgumentException("Subsampling factor must be at least 1, got " + subsampling);
+        }
+        BufferedImage img = new BufferedImage(BlockDispatcher.ceilDiv((int) imageSegment.getNumberOfColumns(), subsampling),
+                BlockDispatcher.ceilDiv((int) imageSegment.getNumberOfRows(), subsampling),
+                BufferedImage.TYPE_INT_ARGB);
+
+        render(imageSegment, new RasterRenderTarget(img), null, subsampling, new Point(0, 0));
+        return img;
+    }
+
+    /**
+     * Render part of the segment as a BufferedImage at reduced resolution.
+     *
+     * The same pixels are kept as for render(imageSegment, subsampling), and the result is the part of that reduced
+     * resolution image that covers the region. Only the blocks that intersect the region are decoded, as for
+     * renderRegion(imageSegment, region).
+     *
+     * @param imageSegment the image segment header for the segment to be rendered
+     * @param region the region to render, in full resolution pixels from the first pixel of the image segment (i.e. not
+     * including the image location). This must include at least one kept column and row. Parts of the region that are
+     * outside the image are transparent.
+     * @param subsampling the distance between the pixels that are kept, which must be at least 1.
+     * @return rendered image, which covers the kept pixels from the first kept column and row at or after the top left
+     * of the region, up to the bottom right of the region
+     * @throws IOException if the source data could not be read from
+     */
+    public final BufferedImage renderRegion(final ImageSegment imageSegment, final Rectangle region, final int subsampling)
+            throws IOException {
+        if (subsampling < 1) {
+            throw new IllegalArgumentException("Subsampling factor must be at least 1, got " + subsampling);
+        }
+        int firstColumn = -Math.floorDiv(-region.x, subsampling);
+        int firstRow = -Math.floorDiv(-region.y, subsampling);
+        BufferedImage img = new BufferedImage(
+                -Math.floorDiv(-(region.x + region.width), subsampling) - firstColumn,
+                -Math.floorDiv(-(region.y + region.height), subsampling) - firstRow,
+                BufferedImage.TYPE_INT_ARGB);
+
+        render(imageSegment, new RasterRenderTarget(img, -firstColumn, -firstRow,
+                BlockDispatcher.ceilDiv((int) imageSegment.getNumberOfColumns(), subsampling),
+                BlockDispatcher.ceilDiv((int) imageSegment.getNumberOfRows(), subsampling)), region, subsampling, new Point(0, 0));
+        return img;
+    }
+
+    /**
+     * Render the segment as a BufferedImage that fits within a target size.
+     *
+     * This uses the smallest subsampling factor that makes the image fit, as for render(imageSegment, subsampling).
+     *
+     * @param imageSegment the image segment header for the segment to be rendered
+     * @param maximumSize the maximum width and height of the rendered image.
+     * @return rendered image
+     * @throws IOException if the source data could not be read from
+     */
+    public final BufferedImage renderToFit(final ImageSegment imageSegment, final Dimension maximumSize) throws IOException {
+        int subsampling = Math.max(BlockDispatcher.ceilDiv((int) imageSegment.getNumberOfColumns(), Math.max(maximumSize.width, 1)),
+                BlockDispatcher.ceilDiv((int) imageSegment.getNumberOfRows(), Math.max(maximumSize.height, 1)));
+        return render(imageSegment, Math.max(subsampling, 1));
+    }
+
+    private void render(final ImageSegment imageSegment, final RenderTarget targetGraphic, final Rectangle region,
+            final int subsampling, final Point origin) throws IOException {
+        render(imageSegment, targetGraphic, region, subsampling, origin, getFloatDisplayMapping(imageSegment));
+    }
+
+    private void render(final ImageSegment imageSegment, final RenderTarget targetGraphic, final Rectangle region,
+            final int subsampling, final Point origin, final FloatDisplayMapping floatDisplayMapping) throws IOException {
+        final Rectangle blockRange = BlockDispatcher.getBlockRange(imageSegment, region);
+        final DisplayLookupTable displayLookupTable = getDisplayLookupTable(imageSegment);
+        BlockCache.SegmentBlocks segmentBlocks = null;
+        if ((displayLookupTable == null) && (floatDisplayMapping == null)) {
+            segmentBlocks = getCachedBlocks(imageSegment, subsampling);
+        }
+        final BlockCache.SegmentBlocks cachedBlocks = segmentBlocks;
         switch (imageSegment.getImageCompression()) {
         case BILEVEL:
-            render(new BilevelBlockRenderer(), imageSegment, targetGraphic);
+            new BlockDispatcher(mForkJoinPool).render(new BilevelBlockRenderer(), imageSegment, targetGraphic, blockRange, subsampling,
+                    origin, cachedBlocks);
             break;
         case NOTCOMPRESSED:
         case NOTCOMPRESSEDMASK:
-            ImageModeHandler modeHandler = ImageModeHandlerFactory.forImageSegment(imageSegment);
+            ImageModeHandler modeHandler = ImageModeHandlerFactory.forImageSegment(imageSegment, displayLookupTable, floatDisplayMapping,
+                    getMappedPadPixelMask(imageSegment, displayLookupTable, floatDisplayMapping));
 
             if (modeHandler != null) {
-                modeHandler.handleImage(imageSegment, targetGraphic);
+                modeHandler.handleImage(imageSegment, targetGraphic, new RenderOptions(mForkJoinPool, region, subsampling, cachedBlocks));
             } else {
                 throw new UnsupportedOperationException("Unhandled NC/NM format");
             }
@@ -80,23 +290,24 @@ public class NitfRenderer {
             break;
         case DOWNSAMPLEDJPEG:
         case JPEG:
-            skipToMarker(imageSegment.getData(), JpegMarkerCode.START_OF_IMAGE);
-            renderJPEG(imageSegment, targetGraphic, null);
+            new JpegImageRenderer(new BlockDispatcher(mForkJoinPool), imageSegment).render(targetGraphic, null, blockRange, subsampling,
+                    cachedBlocks);
             break;
         case VECTORQUANTIZATION:
         case VECTORQUANTIZATIONMASK:
-            render(new VectorQuantizationBlockRenderer(),
-                    imageSegment,
-                    targetGraphic);
+            new BlockDispatcher(mForkJoinPool).render(new VectorQuantizationBlockRenderer(), imageSegment, targetGraphic, blockRange,
+                    subsampling, origin, cachedBlocks);
             break;
         case JPEGMASK:
-            renderJPEG(imageSegment, targetGraphic, new ImageMask(imageSegment, imageSegment.getData()));
+            new JpegImageRenderer(new BlockDispatcher(mForkJoinPool), imageSegment).render(targetGraphic,
+                    new ImageMask(imageSegment, imageSegment.getData()), blockRange, subsampling, cachedBlocks);
             break;
         case JPEG2000:
-            renderJPEG2k(imageSegment, targetGraphic, null);
+            getJPEG2kRenderer(imageSegment).render(targetGraphic, null, region, subsampling, 0, cachedBlocks);
             break;
         case JPEG2000MASK:
-            renderJPEG2k(imageSegment, targetGraphic, new ImageMask(imageSegment, imageSegment.getData()));
+            getJPEG2kRenderer(imageSegment).render(targetGraphic, new ImageMask(imageSegment, imageSegment.getData()), region,
+                    subsampling, 0, cachedBlocks);
             break;
         default:
             throw new UnsupportedOperationException("Unhandled image compression format: "
@@ -117,9 +328,9 @@ public class NitfRenderer {
                 imageSegment.getImageLocationRow()
                         + (int) imageSegment.getNumberOfRows(),
                 BufferedImage.TYPE_INT_ARGB);
-        Graphics2D targetGraphic = img.createGraphics();
 
-        render(imageSegment, targetGraphic);
+        render(imageSegment, new RasterRenderTarget(img), null, 1,
+                new Point(imageSegment.getImageLocationColumn(), imageSegment.getImageLocationRow()));
         return img;
     }
 
@@ -131,92 +342,169 @@ public class NitfRenderer {
      * @throws IOException if the source data could not be read from
      */
     public final BufferedImage renderToClosestDataModel(final ImageSegment imageSegment) throws IOException {
-        ImageRepresentationHandler handler =
-                ImageRepresentationHandlerFactory.forImageSegment(imageSegment);
+        FloatDisplayMapping floatDisplayMapping = getFloatDisplayMapping(imageSegment);
+        DisplayLookupTable displayLookupTable = getDisplayLookupTable(imageSegment);
+        ImageRepresentationHandler handler = ImageRepresentationHandlerFactory.forImageSegment(imageSegment, displayLookupTable,
+                floatDisplayMapping, getMappedPadPixelMask(imageSegment, displayLookupTable, floatDisplayMapping));
 
         BufferedImage img = handler.createBufferedImage(imageSegment.getImageLocationColumn()
                         + (int) imageSegment.getNumberOfColumns(),
                 imageSegment.getImageLocationRow()
                         + (int) imageSegment.getNumberOfRows());
 
-        Graphics2D targetGraphic = img.createGraphics();
-
-        render(imageSegment, targetGraphic);
+        render(imageSegment, new RasterRenderTarget(img), null, 1,
+                new Point(imageSegment.getImageLocationColumn(), imageSegment.getImageLocationRow()), floatDisplayMapping);
         return img;
     }
 
-    private void render(final BlockRenderer renderer, final ImageSegment imageSegment, final Graphics2D target) throws IOException {
-        renderer.setImageSegment(imageSegment, imageSegment.getData());
-
-        processBlocks(imageSegment, (rowIndex, columnIndex) -> {
-            BufferedImage img = renderer.getImageBlock(rowIndex, columnIndex);
-            target.drawImage(img,
-                    imageSegment.getImageLocationColumn() + columnIndex
-                            * (int) imageSegment.getNumberOfPixelsPerBlockHorizontal(),
-                    imageSegment.getImageLocationRow()
-                            + rowIndex * (int) imageSegment.getNumberOfPixelsPerBlockVertical(),
-                    null);
-        });
+    /**
+     * Get the number of reduced resolution levels that a JPEG 2000 image segment can be rendered at.
+     *
+     * This is the number of wavelet decomposition levels in the codestream main header. The header is read the first time
+     * this is called for an image segment, and the image data stream is left where it was.
+     *
+     * @param imageSegment the JPEG 2000 (C8/M8) image segment.
+     * @return the number of times that the resolution can be halved, which is 0 if only the full resolution image is
+     * available.
+     * @throws IOException if the source data could not be read from
+     */
+    public final int getResolutionLevels(final ImageSegment imageSegment) throws IOException {
+        checkJPEG2k(imageSegment);
+        ImageInputStream imageData = imageSegment.getData();
+        long start = imageData.getStreamPosition();
+        try {
+            if (imageSegment.getImageCompression() == ImageCompression.JPEG2000MASK) {
+                // reading the mask leaves the stream at the start of the codestream
+                new ImageMask(imageSegment, imageData);
+            }
+            return Jpeg2000Codestream.forImageSegment(imageSegment).getDecompositionLevels();
+        } finally {
+            imageData.seek(start);
+        }
+    }
+
+    /**
+     * Render a JPEG 2000 image segment at a reduced resolution level, for overviews.
+     *
+     * Each level halves the width and height of the image. The image is decoded from the lower resolution wavelet
+     * subbands of the codestream, so the higher resolution data is not decoded at all (unlike subsampling, which decodes
+     * the full resolution image and then drops pixels). The blocks, or the codestream tiles for a single block image, are
+     * decoded in parallel if a fork join pool is set. Reduced resolution blocks are not cached.
+     *
+     * @param imageSegment the JPEG 2000 (C8/M8) image segment to be rendered.
+     * @param discardLevels the number of resolution levels to discard, from 0 (full resolution) to
+     * getResolutionLevels(imageSegment).
+     * @return rendered image, which is the size of the image segment divided by 2 to the power of discardLevels (rounded
+     * up), and does not include the image location
+     * @throws IOException if the source data could not be read from
+     */
+    public final BufferedImage renderResolutionLevel(final ImageSegment imageSegment, final int discardLevels) throws IOException {
+        checkJPEG2k(imageSegment);
+        BufferedImage img = new BufferedImage(Jpeg2000Codestream.reduce((int) imageSegment.getNumberOfColumns(), discardLevels),
+                Jpeg2000Codestream.reduce((int) imageSegment.getNumberOfRows(), discardLevels),
+                BufferedImage.TYPE_INT_ARGB);
+        ImageMask imageMask = null;
+        if (imageSegment.getImageCompression() == ImageCompression.JPEG2000MASK) {
+            imageMask = new ImageMask(imageSegment, imageSegment.getData());
+        }
+        getJPEG2kRenderer(imageSegment).render(new RasterRenderTarget(img), imageMask, null, 1, discardLevels, null);
+        return img;
     }
 
-    private void renderJPEG(final ImageSegment imageSegment, final Graphics2D targetGraphic, final ImageMask imageMask) throws IOException {
-        ImageReader reader = getImageReader("image/jpeg");
-        reader.setInput(imageSegment.getData());
-        ThreadLocal<Integer> maskedBlocks = new ThreadLocal<Integer>();
-        maskedBlocks.set(0);
+    /**
+     * Decode the segment one block at a time, passing each block to a consumer.
+     *
+     * Blocks are decoded in the order they appear in the image data (row by row, except for band sequential images
+     * where blocks are passed in the order of their first band), and only one block is held in memory at a time (except
+     * for band sequential images where the blocks do not start on a byte boundary). Masked blocks are not passed to the
+     * consumer. The blocks are not transformed for display (e.g. by a lookup table or JPEG 2000 band selection) any
+     * further than for the other render methods, but are not drawn onto a common image, so they keep their decoded data
+     * model.
+     *
+     * @param imageSegment the image segment header for the segment to be decoded.
+     * @param consumer the consumer for the decoded blocks.
+     * @throws IOException if the source data could not be read from, or the consumer failed.
+     */
+    public final void renderBlocks(final ImageSegment imageSegment, final DecodedBlockConsumer consumer) throws IOException {
+        switch (imageSegment.getImageCompression()) {
+        case BILEVEL:
+            BlockDispatcher.decodeBlocks(new BilevelBlockRenderer(), imageSegment, consumer);
+            break;
+        case NOTCOMPRESSED:
+        case NOTCOMPRESSEDMASK:
+            DisplayLookupTable displayLookupTable = getDisplayLookupTable(imageSegment);
+            FloatDisplayMapping floatDisplayMapping = getFloatDisplayMapping(imageSegment);
+            ImageModeHandler modeHandler = ImageModeHandlerFactory.forImageSegment(imageSegment, displayLookupTable, floatDisplayMapping,
+                    getMappedPadPixelMask(imageSegment, displayLookupTable, floatDisplayMapping));
 
-        processBlocks(imageSegment, (rowIndex, columnIndex) -> {
-            if (imageMask != null && imageMask.isMaskedBlock((rowIndex * imageSegment.getNumberOfBlocksPerRow() + columnIndex), 0)) {
-                maskedBlocks.set(maskedBlocks.get() + 1);
-                return;
+            if (modeHandler != null) {
+                modeHandler.handleBlocks(imageSegment, consumer);
+            } else {
+                throw new UnsupportedOperationException("Unhandled NC/NM format");
             }
 
-            BufferedImage img = reader.read(
-                    (columnIndex + rowIndex * imageSegment.getNumberOfBlocksPerRow()) - maskedBlocks.get());
-
-            targetGraphic.drawImage(img,
-                    columnIndex * (int) imageSegment.getNumberOfPixelsPerBlockHorizontal(),
-                    rowIndex * (int) imageSegment.getNumberOfPixelsPerBlockVertical(),
-                    null);
-        });
+            break;
+        case DOWNSAMPLEDJPEG:
+        case JPEG:
+            new JpegImageRenderer(new BlockDispatcher(null), imageSegment).decodeBlocks(null, consumer);
+            break;
+        case VECTORQUANTIZATION:
+        case VECTORQUANTIZATIONMASK:
+            BlockDispatcher.decodeBlocks(new VectorQuantizationBlockRenderer(), imageSegment, consumer);
+            break;
+        case JPEGMASK:
+            new JpegImageRenderer(new BlockDispatcher(null), imageSegment).decodeBlocks(new ImageMask(imageSegment, imageSegment.getData()),
+                    consumer);
+            break;
+        case JPEG2000:
+            getJPEG2kRenderer(imageSegment).decodeBlocks(null, consumer);
+            break;
+        case JPEG2000MASK:
+            getJPEG2kRenderer(imageSegment).decodeBlocks(new ImageMask(imageSegment, imageSegment.getData()), consumer);
+            break;
+        default:
+            throw new UnsupportedOperationException("Unhandled image compression format: "
+                    + imageSegment.getImageCompression());
+        }
     }
 
-    private void renderJPEG2k(final ImageSegment imageSegment, final Graphics2D targetGraphic, final ImageMask imageMask) throws IOException {
-        final ImageReader reader = getImageReader("image/jp2");
-        reader.setInput(imageSegment.getData(), true, true);
-        ThreadLocal<Integer> maskedBlocks = new ThreadLocal<Integer>();
-        maskedBlocks.set(0);
-
-        final ImageReadParam param = reader.getDefaultReadParam();
-
+    private Jpeg2000ImageRenderer getJPEG2kRenderer(final ImageSegment imageSegment) {
+        int[] sourceBands = null;
         if (ImageRepresentation.MULTIBAND.equals(imageSegment.getImageRepresentation())) {
-            final int[] sourceBands = getSourceBands(imageSegment);
-            param.setSourceBands(sourceBands);
+            sourceBands = getSourceBands(imageSegment);
         }
+        return new Jpeg2000ImageRenderer(new BlockDispatcher(mForkJoinPool), imageSegment, sourceBands);
+    }
 
-        processBlocks(imageSegment, (r, c) -> {
-                    if (imageMask != null && imageMask.isMaskedBlock((r * imageSegment.getNumberOfBlocksPerRow() + c), 0)) {
-                        maskedBlocks.set(maskedBlocks.get() + 1);
-                        return;
-                    }
-                    int column = (r * imageSegment.getNumberOfBlocksPerRow() + c  - maskedBlocks.get()) % imageSegment.getNumberOfBlocksPerRow();
-                    int row = (r * imageSegment.getNumberOfBlocksPerRow() + c - maskedBlocks.get()) / imageSegment.getNumberOfBlocksPerRow();
-
-                    Rectangle rect = new Rectangle((int) (column * imageSegment.getNumberOfPixelsPerBlockHorizontal()),
-                            (int) (row * imageSegment.getNumberOfPixelsPerBlockVertical()),
-                            (int) imageSegment.getNumberOfPixelsPerBlockHorizontal(),
-                            (int) imageSegment.getNumberOfPixelsPerBlockVertical());
-                    param.setSourceRegion(rect);
-
-                    BufferedImage renderedBlock = reader.read(0, param);
-
-                    param.setDestination(renderedBlock);
-                    targetGraphic.drawImage(renderedBlock, (int) (c * imageSegment.getNumberOfPixelsPerBlockVertical()),
-                            (int) (r * imageSegment.getNumberOfPixelsPerBlockHorizontal()),
-                            null);
+    private static void checkJPEG2k(final ImageSegment imageSegment) {
+        if ((imageSegment.getImageCompression() != ImageCompression.JPEG2000)
+                && (imageSegment.getImageCompression() != ImageCompression.JPEG2000MASK)) {
+            throw new UnsupportedOperationException("Resolution levels are only available for JPEG 2000 images, not "
+                    + imageSegment.getImageCompression());
+        }
+    }
 
-                }
-        );
+    /**
+     * Check whether any block of an image segment can be decoded without decoding the earlier blocks.
+     *
+     * @param imageSegment the image segment, which must have its image data.
+     * @return false for bilevel images and vector quantized images with blocks that do not start on a byte boundary,
+     * otherwise true.
+     * @throws IOException if the source data could not be read from. The image data stream is left at an unspecified
+     * position.
+     */
+    static boolean hasRandomBlockAccess(final ImageSegment imageSegment) throws IOException {
+        switch (imageSegment.getImageCompression()) {
+        case BILEVEL:
+            return false;
+        case VECTORQUANTIZATION:
+        case VECTORQUANTIZATIONMASK:
+            BlockRenderer renderer = new VectorQuantizationBlockRenderer();
+            renderer.setImageSegment(imageSegment, imageSegment.getData());
+            return renderer.hasRandomBlockAccess();
+        default:
+            return true;
+        }
     }
 
     // CSOFF: DesignForExtension
@@ -256,44 +544,117 @@ public class NitfRenderer {
         return imageBandAry;
     }
 
-    private void processBlocks(final ImageSegment imageSegment, final BlockConsumer consumer)
-            throws IOException {
-        for (int rowIndex = 0; rowIndex < imageSegment.getNumberOfBlocksPerColumn(); ++rowIndex) {
-            for (int columnIndex = 0; columnIndex < imageSegment.getNumberOfBlocksPerRow(); ++columnIndex) {
-                consumer.acccept(rowIndex, columnIndex);
-            }
+    /**
+     * Get the lookup table for mapping integer samples to display values.
+     *
+     * @param imageSegment the image segment being rendered.
+     * @return the lookup table set for the image segment, or null if the samples are rendered unmapped.
+     */
+    private DisplayLookupTable getDisplayLookupTable(final ImageSegment imageSegment) {
+        if ((mDisplayLookupTables == null) || !(ImageCompression.NOTCOMPRESSED.equals(imageSegment.getImageCompression())
+                || ImageCompression.NOTCOMPRESSEDMASK.equals(imageSegment.getImageCompression()))) {
+            return null;
         }
+        return mDisplayLookupTables.apply(imageSegment);
     }
 
-    private void skipToMarker(final ImageInputStream imageInputStream, final JpegMarkerCode markerCode) throws IOException {
-        imageInputStream.mark();
-        byte fillByte = (byte) ((markerCode.getValue() >> Byte.SIZE) & BYTE_MASK);
-        byte markerByte = (byte) (markerCode.getValue() & BYTE_MASK);
-
-        int i = 0;
-        byte a = imageInputStream.readByte();
-
-        while (a == fillByte) {
-            i++;
-            a = imageInputStream.readByte();
+    /**
+     * Get the mapping for floating point and complex samples.
+     *
+     * @param imageSegment the image segment being rendered.
+     * @return the mapping set for the image segment, or the default mapping for the range of the values in the image,
+     * or null if the image segment is not an uncompressed floating point or complex image.
+     * @throws IOException if the values could not be read.
+     */
+    private FloatDisplayMapping getFloatDisplayMapping(final ImageSegment imageSegment) throws IOException {
+        if (!(PixelValueType.REAL.equals(imageSegment.getPixelValueType()) || PixelValueType.COMPLEX.equals(imageSegment.getPixelValueType()))
+                || !(ImageCompression.NOTCOMPRESSED.equals(imageSegment.getImageCompression())
+                || ImageCompression.NOTCOMPRESSEDMASK.equals(imageSegment.getImageCompression()))) {
+            return null;
         }
-
-        imageInputStream.reset();
-
-        if (a == markerByte) {
-            imageInputStream.skipBytes(i - 1);
+        if (mFloatDisplayMappings != null) {
+            FloatDisplayMapping mapping = mFloatDisplayMappings.apply(imageSegment);
+            if (mapping != null) {
+                return mapping;
+            }
         }
+        return SEGMENT_FLOAT_DISPLAY_MAPPINGS.get(imageSegment, (segment, imageData) -> readDefaultFloatDisplayMapping(segment));
     }
 
+    /**
+     * Read the default mapping for the range of the values in a floating point or complex image segment.
+     *
+     * The range is read from the band that is rendered (the first mono (M) band of a multiband segment, otherwise the
+     * first band). If there are no values, every value maps to black.
+     *
+     * @param imageSegment the uncompressed (NC/NM) floating point or complex image segment.
+     * @return the mapping, as for FloatDisplayMapping.forImageSegment().
+     * @throws IOException if the values could not be read.
+     */
+    private static FloatDisplayMapping readDefaultFloatDisplayMapping(final ImageSegment imageSegment) throws IOException {
+        Rectangle window = new Rectangle(0, 0, (int) imageSegment.getNumberOfColumns(), (int) imageSegment.getNumberOfRows());
+        double minimum = 0;
+        double maximum = 0;
+        if (!window.isEmpty()) {
+            double[] range = new SpectralCube(imageSegment).readValueRange(getFloatDisplayBand(imageSegment), window);
+            if (range[0] <= range[1]) {
+                minimum = range[0];
+                maximum = range[1];
+            }
+        }
+        return FloatDisplayMapping.forImageSegment(imageSegment, minimum, maximum);
+    }
 
-    private ImageReader getImageReader(final String mediaType) {
-        Iterator<ImageReader> imageReaders = ImageIO.getImageReadersByMIMEType(mediaType);
+    private static int getFloatDisplayBand(final ImageSegment imageSegment) {
+        if (ImageRepresentation.MULTIBAND.equals(imageSegment.getImageRepresentation())) {
+            for (int band = 0; band < imageSegment.getNumBands(); ++band) {
+                if ("M".equals(imageSegment.getImageBandZeroBase(band).getImageRepresentation())) {
+                    return band;
+                }
+            }
+        }
+        return 0;
+    }
 
-        if (imageReaders == null || !imageReaders.hasNext()) {
-            throw new UnsupportedOperationException(
-                    String.format("NitfRenderer.render(): no ImageReader found for media type '%s'.", mediaType));
+    /**
+     * Get the image mask for detecting pad pixels on the raw samples, before they are mapped to display values.
+     *
+     * @param imageSegment the image segment being rendered.
+     * @param displayLookupTable the lookup table for the render, or null.
+     * @param floatDisplayMapping the floating point mapping for the render, or null.
+     * @return the image mask, or null if the samples are not mapped or the image segment has no image mask.
+     * @throws IOException if the image mask could not be read.
+     */
+    private static ImageMask getMappedPadPixelMask(final ImageSegment imageSegment, final DisplayLookupTable displayLookupTable,
+            final FloatDisplayMapping floatDisplayMapping) throws IOException {
+        if (((displayLookupTable == null) && (floatDisplayMapping == null))
+                || !ImageCompression.NOTCOMPRESSEDMASK.equals(imageSegment.getImageCompression())) {
+            return null;
+        }
+        ImageInputStream imageData = imageSegment.getData();
+        long position = imageData.getStreamPosition();
+        try {
+            return new ImageMask(imageSegment, imageData);
+        } finally {
+            imageData.seek(position);
         }
+    }
 
-        return imageReaders.next();
+    /**
+     * Get the cached blocks for an image segment.
+     *
+     * @param imageSegment the image segment being rendered.
+     * @param subsampling the subsampling factor for the render.
+     * @return the cached blocks, or null if blocks are not cached for the image segment.
+     */
+    private BlockCache.SegmentBlocks getCachedBlocks(final ImageSegment imageSegment, final int subsampling) {
+        if (mBlockCache == null) {
+            return null;
+        }
+        int segmentIndex = mSegmentIndex.applyAsInt(imageSegment);
+        if (segmentIndex < 0) {
+            return null;
+        }
+        return mBlockCache.forSegment(mFileIdentity, segmentIndex, getSourceBands(imageSegment), subsampling);
     }
 }
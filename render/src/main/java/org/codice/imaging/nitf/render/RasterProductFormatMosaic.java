@@ -0,0 +1,342 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.common.impl.FileReader;
+import org.codice.imaging.nitf.core.header.impl.NitfParser;
+import org.codice.imaging.nitf.core.image.ImageCoordinates;
+import org.codice.imaging.nitf.core.image.ImageCoordinatesRepresentation;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.core.impl.SlottedParseStrategy;
+
+/**
+ * A seamless view of a set of Raster Product Format (RPF) frame files, such as CADRG or ECRG frames.
+ *
+ * Each frame is placed using the geographic corner coordinates (IGEOLO) of its image segment, which give the outside
+ * edges of the frame. RPF frames of the same zone and scale share a pixel grid, so neighbouring frames are drawn next to
+ * each other without gaps or overlaps. Views are areas in degrees, where x is longitude and y is latitude (so the
+ * bottom of the area is its southern edge). Frames that cross the 180 degree meridian are placed with an eastern edge
+ * greater than 180 degrees.
+ *
+ * Only the headers of a frame are read when it is added. When a view is rendered, only the frames that intersect the
+ * view are read, and only the blocks of those frames that intersect the view are decoded (at the largest subsampling
+ * factor that keeps at least one frame pixel per view pixel). Up to a maximum number of frames are kept open between
+ * renders, which keeps their image data, and for vector quantized frames the colour table and expanded codebook, so the
+ * frames that neighbouring map tiles share are only read once. The decoded blocks are kept in the block cache, if
+ * there is one.
+ *
+ * Frames are drawn in the order that they were added, so later frames are drawn over earlier ones where they overlap.
+ * Views can be rendered from several threads at once.
+ */
+public final class RasterProductFormatMosaic {
+
+    private static final double FULL_CIRCLE = 360.0;
+
+    private final List<Frame> mFrames = new ArrayList<>();
+
+    private final BlockCache mBlockCache;
+
+    private final int mMaximumOpenFrames;
+
+    private final LinkedHashMap<File, OpenFrame> mOpenFrames = new LinkedHashMap<File, OpenFrame>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<File, OpenFrame> eldest) {
+            return size() > mMaximumOpenFrames;
+        }
+    };
+
+    private ForkJoinPool mForkJoinPool = null;
+
+    /**
+     * Constructor.
+     *
+     * @param blockCache the cache for decoded blocks, or null to not cache blocks. The cache can be shared with other
+     * renderers.
+     * @param maximumOpenFrames the maximum number of frames to keep open between renders, which must be at least 1.
+     */
+    public RasterProductFormatMosaic(final BlockCache blockCache, final int maximumOpenFrames) {
+        if (maximumOpenFrames < 1) {
+            throw new IllegalArgumentException("Maximum number of open frames must be at least 1, got " + maximumOpenFrames);
+        }
+        mBlockCache = blockCache;
+        mMaximumOpenFrames = maximumOpenFrames;
+    }
+
+    /**
+     * Set the fork/join pool used to decode the blocks of each frame in parallel.
+     *
+     * @param pool the pool, or null to decode blocks in the calling thread (the default).
+     */
+    public synchronized void setForkJoinPool(final ForkJoinPool pool) {
+        mForkJoinPool = pool;
+        for (OpenFrame openFrame : mOpenFrames.values()) {
+            openFrame.mRenderer.setForkJoinPool(pool);
+        }
+    }
+
+    /**
+     * Add a frame file.
+     *
+     * Only the headers are read. The frame is the first image segment of the file.
+     *
+     * @param frameFile the RPF frame file.
+     * @throws NitfFormatException if the file could not be parsed, or the image segment does not have geographic corner
+     * coordinates.
+     */
+    public void addFrame(final File frameFile) throws NitfFormatException {
+        ImageSegment imageSegment = parse(frameFile, SlottedParseStrategy.HEADERS_ONLY);
+        ImageCoordinatesRepresentation representation = imageSegment.getImageCoordinatesRepresentation();
+        ImageCoordinates coordinates = imageSegment.getImageCoordinates();
+        if ((coordinates == null) || ((representation != ImageCoordinatesRepresentation.GEOGRAPHIC)
+                && (representation != ImageCoordinatesRepresentation.DECIMALDEGREES))) {
+            throw new NitfFormatException("RPF frame does not have geographic corner coordinates: " + frameFile.getName());
+        }
+        Frame frame = new Frame(frameFile, imageSegment, coordinates);
+        synchronized (this) {
+            mFrames.add(frame);
+        }
+    }
+
+    /**
+     * Get the number of frames.
+     *
+     * @return the number of frames that have been added.
+     */
+    public synchronized int getNumberOfFrames() {
+        return mFrames.size();
+    }
+
+    /**
+     * Get the number of frames that are open.
+     *
+     * @return the number of frames whose image data is held, which is at most the maximum number of open frames.
+     */
+    public synchronized int getNumberOfOpenFrames() {
+        return mOpenFrames.size();
+    }
+
+    /**
+     * Get the area covered by the frames.
+     *
+     * @return the smallest area that contains all of the frames, in degrees, or null if there are no frames.
+     */
+    public synchronized Rectangle2D getBounds() {
+        Rectangle2D bounds = null;
+        for (Frame frame : mFrames) {
+            if (bounds == null) {
+                bounds = frame.getBounds();
+            } else {
+                bounds.add(frame.getBounds());
+            }
+        }
+        return bounds;
+    }
+
+    /**
+     * Render a view.
+     *
+     * @param area the area to render, in degrees.
+     * @param size the size of the rendered image, in pixels.
+     * @return the rendered image. Parts of the view that are not covered by a frame are transparent.
+     * @throws IOException if a frame could not be read or decoded.
+     */
+    public BufferedImage render(final Rectangle2D area, final Dimension size) throws IOException {
+        BufferedImage img = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_ARGB);
+        List<Frame> frames;
+        synchronized (this) {
+            frames = new ArrayList<>(mFrames);
+        }
+        Graphics2D graphics = img.createGraphics();
+        try {
+            for (Frame frame : frames) {
+                if (frame.getBounds().intersects(area)) {
+                    drawFrame(frame, area, size, graphics);
+                }
+            }
+        } finally {
+            graphics.dispose();
+        }
+        return img;
+    }
+
+    private void drawFrame(final Frame frame, final Rectangle2D area, final Dimension size, final Graphics2D graphics)
+            throws IOException {
+        double viewColumnsPerDegree = size.width / area.getWidth();
+        double viewRowsPerDegree = size.height / area.getHeight();
+        int subsampling = (int) Math.max(Math.floor(Math.min(frame.mColumnsPerDegree / viewColumnsPerDegree,
+                frame.mRowsPerDegree / viewRowsPerDegree)), 1);
+
+        // the frame pixels under the view, starting from a kept pixel
+        Rectangle2D overlap = frame.getBounds().createIntersection(area);
+        int firstColumn = frame.getColumn(overlap.getMinX(), false) / subsampling * subsampling;
+        int endColumn = frame.getColumn(overlap.getMaxX(), true);
+        int firstRow = frame.getRow(overlap.getMaxY(), false) / subsampling * subsampling;
+        int endRow = frame.getRow(overlap.getMinY(), true);
+        if ((endColumn <= firstColumn) || (endRow <= firstRow)) {
+            return;
+        }
+        BufferedImage part = getOpenFrame(frame).render(
+                new Rectangle(firstColumn, firstRow, endColumn - firstColumn, endRow - firstRow), subsampling);
+
+        // the last kept pixel can cover fewer than subsampling frame pixels at the edge of the frame
+        int lastColumn = Math.min(firstColumn + part.getWidth() * subsampling, frame.mColumns);
+        int lastRow = Math.min(firstRow + part.getHeight() * subsampling, frame.mRows);
+        graphics.drawImage(part,
+                (int) Math.round((frame.getLongitude(firstColumn) - area.getMinX()) * viewColumnsPerDegree),
+                (int) Math.round((area.getMaxY() - frame.getLatitude(firstRow)) * viewRowsPerDegree),
+                (int) Math.round((frame.getLongitude(lastColumn) - area.getMinX()) * viewColumnsPerDegree),
+                (int) Math.round((area.getMaxY() - frame.getLatitude(lastRow)) * viewRowsPerDegree),
+                0, 0, part.getWidth(), part.getHeight(), null);
+    }
+
+    private synchronized OpenFrame getOpenFrame(final Frame frame) throws IOException {
+        OpenFrame openFrame = mOpenFrames.get(frame.mFile);
+        if (openFrame == null) {
+            try {
+                openFrame = new OpenFrame(parse(frame.mFile, SlottedParseStrategy.IMAGE_DATA), mBlockCache, frame.mFile,
+                        mForkJoinPool);
+            } catch (NitfFormatException e) {
+                throw new IOException("Could not read RPF frame " + frame.mFile.getName(), e);
+            }
+            mOpenFrames.put(frame.mFile, openFrame);
+        }
+        return openFrame;
+    }
+
+    private static ImageSegment parse(final File frameFile, final int segmentsToExtract) throws NitfFormatException {
+        FileReader reader = new FileReader(frameFile);
+        try {
+            SlottedParseStrategy parseStrategy = new SlottedParseStrategy(segmentsToExtract);
+            NitfParser.parse(reader, parseStrategy);
+            List<ImageSegment> imageSegments = parseStrategy.getDataSource().getImageSegments();
+            if (imageSegments.isEmpty()) {
+                throw new NitfFormatException("RPF frame does not have an image segment: " + frameFile.getName());
+            }
+            return imageSegments.get(0);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * The placement of a frame.
+     */
+    private static final class Frame {
+        private final File mFile;
+        private final int mColumns;
+        private final int mRows;
+        private final double mWest;
+        private final double mEast;
+        private final double mNorth;
+        private final double mSouth;
+        private final double mColumnsPerDegree;
+        private final double mRowsPerDegree;
+
+        Frame(final File file, final ImageSegment imageSegment, final ImageCoordinates coordinates) {
+            mFile = file;
+            mColumns = (int) imageSegment.getNumberOfColumns();
+            mRows = (int) imageSegment.getNumberOfRows();
+            mWest = coordinates.getCoordinate00().getLongitude();
+            mNorth = coordinates.getCoordinate00().getLatitude();
+            mSouth = coordinates.getCoordinateMaxRowMaxCol().getLatitude();
+            double east = coordinates.getCoordinateMaxRowMaxCol().getLongitude();
+            if (east <= mWest) {
+                east += FULL_CIRCLE;
+            }
+            mEast = east;
+            mColumnsPerDegree = mColumns / (mEast - mWest);
+            mRowsPerDegree = mRows / (mNorth - mSouth);
+        }
+
+        Rectangle2D getBounds() {
+            return new Rectangle2D.Double(mWest, mSouth, mEast - mWest, mNorth - mSouth);
+        }
+
+        int getColumn(final double longitude, final boolean roundUp) {
+            return clamp(toPixel((longitude - mWest) * mColumnsPerDegree, roundUp), mColumns);
+        }
+
+        int getRow(final double latitude, final boolean roundUp) {
+            return clamp(toPixel((mNorth - latitude) * mRowsPerDegree, roundUp), mRows);
+        }
+
+        /**
+         * Get the longitude of the left edge of a column, where the edges of the frame are exactly the frame corners.
+         */
+        double getLongitude(final int column) {
+            if (column >= mColumns) {
+                return mEast;
+            }
+            return mWest + column / mColumnsPerDegree;
+        }
+
+        double getLatitude(final int row) {
+            if (row >= mRows) {
+                return mSouth;
+            }
+            return mNorth - row / mRowsPerDegree;
+        }
+
+        private static int toPixel(final double position, final boolean roundUp) {
+            if (roundUp) {
+                return (int) Math.ceil(position);
+            }
+            return (int) Math.floor(position);
+        }
+
+        private static int clamp(final int pixel, final int size) {
+            return Math.min(Math.max(pixel, 0), size);
+        }
+    }
+
+    /**
+     * A frame with its image data, ready to render.
+     */
+    private static final class OpenFrame {
+        private final ImageSegment mImageSegment;
+        private final NitfRenderer mRenderer;
+        private final long mDataStart;
+
+        OpenFrame(final ImageSegment imageSegment, final BlockCache blockCache, final File file, final ForkJoinPool pool)
+                throws IOException {
+            mImageSegment = imageSegment;
+            mRenderer = new NitfRenderer();
+            mRenderer.setForkJoinPool(pool);
+            if (blockCache != null) {
+                mRenderer.setBlockCache(blockCache, file, segment -> 0);
+            }
+            mDataStart = imageSegment.getData().getStreamPosition();
+        }
+
+        synchronized BufferedImage render(final Rectangle region, final int subsampling) throws IOException {
+            mImageSegment.getData().seek(mDataStart);
+            return mRenderer.renderRegion(mImageSegment, region, subsampling);
+        }
+    }
+}
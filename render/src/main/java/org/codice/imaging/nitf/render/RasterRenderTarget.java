@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+/**
+ * A RenderTarget that writes block samples straight into the raster of a BufferedImage.
+ *
+ * Blocks are copied with WritableRaster.setDataElements when the block has the same colour model (including the colour
+ * map, for indexed images) as the target image and is opaque. Blocks of the common decoded types (8 bit grey, indexed,
+ * RGB and ARGB) are converted a row at a time when the target image is TYPE_INT_ARGB. Other blocks are drawn through a
+ * Graphics2D, so the result is always the same as drawing the block with Graphics2D.drawImage.
+ */
+public final class RasterRenderTarget implements RenderTarget {
+
+    private static final int OPAQUE = 0xFF000000;
+    private static final int ALPHA_SHIFT = 24;
+    private static final int FULL_ALPHA = 0xFF;
+    private static final int PARTIAL_ALPHA = 0x01000000;
+    private static final int BYTE_MASK = 0xFF;
+    private static final int GREY_TO_RGB = 0x010101;
+    private static final int RED_SHIFT = 16;
+    private static final int GREEN_SHIFT = 8;
+    private static final int RGB_BANDS = 3;
+
+    private final BufferedImage mImage;
+    private final WritableRaster mRaster;
+    private final Rectangle mBounds;
+    private final int mTranslateX;
+    private final int mTranslateY;
+    private Graphics2D mGraphics = null;
+
+    /**
+     * Constructor.
+     *
+     * @param image the image to write blocks into.
+     */
+    public RasterRenderTarget(final BufferedImage image) {
+        this(image, 0, 0);
+    }
+
+    /**
+     * Constructor, for drawing with translated coordinates.
+     *
+     * @param image the image to write blocks into.
+     * @param translateX the amount added to x positions to get the image column.
+     * @param translateY the amount added to y positions to get the image row.
+     */
+    public RasterRenderTarget(final BufferedImage image, final int translateX, final int translateY) {
+        this(image, translateX, translateY, new Rectangle(0, 0, image.getWidth(), image.getHeight()));
+    }
+
+    /**
+     * Constructor, for drawing with translated coordinates, clipped to the extent of the rendered image.
+     *
+     * Nothing is drawn outside the extent, so blocks on the right and bottom edges of the rendered image do not draw
+     * their pad pixels into the target.
+     *
+     * @param image the image to write blocks into.
+     * @param translateX the amount added to x positions to get the image column.
+     * @param translateY the amount added to y positions to get the image row.
+     * @param width the width of the rendered image, from x position 0.
+     * @param height the height of the rendered image, from y position 0.
+     */
+    public RasterRenderTarget(final BufferedImage image, final int translateX, final int translateY, final int width,
+            final int height) {
+        this(image, translateX, translateY, new Rectangle(0, 0, image.getWidth(), image.getHeight())
+                .intersection(new Rectangle(translateX, translateY, width, height)));
+    }
+
+    private RasterRenderTarget(final BufferedImage image, final int translateX, final int translateY, final Rectangle bounds) {
+        mImage = image;
+        mRaster = image.getRaster();
+        if (bounds.isEmpty()) {
+            mBounds = new Rectangle();
+        } else {
+            mBounds = bounds;
+        }
+        mTranslateX = translateX;
+        mTranslateY = translateY;
+    }
+
+    @Override
+    public void drawImage(final BufferedImage image, final int x, final int y) {
+        if (image == null) {
+            return;
+        }
+        int targetX = x + mTranslateX;
+        int targetY = y + mTranslateY;
+        Rectangle area = mBounds.intersection(new Rectangle(targetX, targetY, image.getWidth(), image.getHeight()));
+        if (area.isEmpty()) {
+            return;
+        }
+        Raster source = image.getRaster().createChild(area.x - targetX, area.y - targetY, area.width, area.height, 0, 0, null);
+        if (!copy(image, source, area)) {
+            // anything already copied is opaque, so drawing the whole block again gives the same result
+            Graphics2D graphics = getGraphics();
+            synchronized (graphics) {
+                graphics.drawImage(image, x, y, null);
+            }
+        }
+    }
+
+    @Override
+    public synchronized Graphics2D getGraphics() {
+        if (mGraphics == null) {
+            mGraphics = mImage.createGraphics();
+            mGraphics.clip(mBounds);
+            mGraphics.translate(mTranslateX, mTranslateY);
+        }
+        return mGraphics;
+    }
+
+    /**
+     * Copy the block samples directly, if the block type allows it.
+     *
+     * @return true if the block was copied, false if it has to be drawn through Java2D.
+     */
+    private boolean copy(final BufferedImage image, final Raster source, final Rectangle area) {
+        if ((image.getTransparency() == Transparency.OPAQUE) && hasTargetColourModel(image)) {
+            mRaster.setDataElements(area.x, area.y, source);
+            return true;
+        }
+        if (mImage.getType() != BufferedImage.TYPE_INT_ARGB) {
+            return false;
+        }
+        switch (image.getType()) {
+            case BufferedImage.TYPE_BYTE_GRAY:
+                return copyRows(source, area, (row, column) -> OPAQUE | (((byte[]) row)[column] & BYTE_MASK) * GREY_TO_RGB);
+            case BufferedImage.TYPE_BYTE_INDEXED:
+                return copyIndexed((IndexColorModel) image.getColorModel(), source, area);
+            case BufferedImage.TYPE_3BYTE_BGR:
+                // the data elements are in band (R, G, B) order
+                return copyRows(source, area, (row, column) -> OPAQUE
+                        | ((((byte[]) row)[column * RGB_BANDS] & BYTE_MASK) << RED_SHIFT)
+                        | ((((byte[]) row)[column * RGB_BANDS + 1] & BYTE_MASK) << GREEN_SHIFT)
+                        | (((byte[]) row)[column * RGB_BANDS + 2] & BYTE_MASK));
+            case BufferedImage.TYPE_INT_RGB:
+                return copyRows(source, area, (row, column) -> OPAQUE | ((int[]) row)[column]);
+            case BufferedImage.TYPE_INT_ARGB:
+                return copyRows(source, area, (row, column) -> ((int[]) row)[column]);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Check whether a block has the same colour model as the target, so its data elements can be copied.
+     *
+     * IndexColorModel.equals() does not compare the colour maps (before Java 9), so the maps are compared here.
+     */
+    private boolean hasTargetColourModel(final BufferedImage image) {
+        ColorModel colourModel = image.getColorModel();
+        ColorModel targetColourModel = mImage.getColorModel();
+        if (!colourModel.equals(targetColourModel)) {
+            return false;
+        }
+        if (!(colourModel instanceof IndexColorModel)) {
+            return true;
+        }
+        IndexColorModel indexColourModel = (IndexColorModel) colourModel;
+        IndexColorModel targetIndexColourModel = (IndexColorModel) targetColourModel;
+        if (indexColourModel.getMapSize() != targetIndexColourModel.getMapSize()) {
+            return false;
+        }
+        int[] colourMap = new int[indexColourModel.getMapSize()];
+        int[] targetColourMap = new int[targetIndexColourModel.getMapSize()];
+        indexColourModel.getRGBs(colourMap);
+        targetIndexColourModel.getRGBs(targetColourMap);
+        return Arrays.equals(colourMap, targetColourMap);
+    }
+
+    private boolean copyIndexed(final IndexColorModel colourModel, final Raster source, final Rectangle area) {
+        final int[] lookup = new int[colourModel.getMapSize()];
+        colourModel.getRGBs(lookup);
+        return copyRows(source, area, (row, column) -> {
+            int index = ((byte[]) row)[column] & BYTE_MASK;
+            if (index >= lookup.length) {
+                // leave indexes outside the colour map to Java2D
+                return PARTIAL_ALPHA;
+            }
+            return lookup[index];
+        });
+    }
+
+    /**
+     * Write ARGB values into the target a row at a time, as Java2D SrcOver compositing would.
+     *
+     * Fully opaque values replace the target pixel, and fully transparent values leave it unchanged. A partially
+     * transparent value stops the copy, because it would need to be blended.
+     *
+     * @return true if every value was copied, false if a partially transparent value was found.
+     */
+    private boolean copyRows(final Raster source, final Rectangle area, final ArgbSource argbSource) {
+        Object sourceRow = null;
+        int[] argbRow = new int[area.width];
+        int[] targetRow = new int[area.width];
+        for (int y = 0; y < area.height; ++y) {
+            sourceRow = source.getDataElements(0, y, area.width, 1, sourceRow);
+            boolean hasTransparent = false;
+            for (int x = 0; x < area.width; ++x) {
+                argbRow[x] = argbSource.getArgb(sourceRow, x);
+                int alpha = argbRow[x] >>> ALPHA_SHIFT;
+                if (alpha == 0) {
+                    hasTransparent = true;
+                } else if (alpha != FULL_ALPHA) {
+                    return false;
+                }
+            }
+            if (hasTransparent) {
+                mRaster.getDataElements(area.x, area.y + y, area.width, 1, targetRow);
+                for (int x = 0; x < area.width; ++x) {
+                    if ((argbRow[x] >>> ALPHA_SHIFT) != 0) {
+                        targetRow[x] = argbRow[x];
+                    }
+                }
+                mRaster.setDataElements(area.x, area.y + y, area.width, 1, targetRow);
+            } else {
+                mRaster.setDataElements(area.x, area.y + y, area.width, 1, argbRow);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Converts one value of a row of source data elements to non-premultiplied ARGB.
+     */
+    @FunctionalInterface
+    private interface ArgbSource {
+        int getArgb(Object row, int column);
+    }
+}
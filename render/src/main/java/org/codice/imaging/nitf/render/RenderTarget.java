@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * The destination that decoded blocks are drawn to.
+ *
+ * Implementations must allow blocks to be drawn from several threads at once.
+ */
+public interface RenderTarget {
+
+    /**
+     * Draw a block image onto the target, as for Graphics2D.drawImage(image, x, y, null).
+     *
+     * @param image the block image.
+     * @param x the x position of the top left of the block, in target coordinates.
+     * @param y the y position of the top left of the block, in target coordinates.
+     */
+    void drawImage(BufferedImage image, int x, int y);
+
+    /**
+     * Get a Graphics2D that draws to this target, using the same coordinates as drawImage.
+     *
+     * @return the graphics for this target.
+     */
+    Graphics2D getGraphics();
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.imageio.stream.ImageInputStream;
+
+import org.codice.imaging.nitf.core.image.ImageSegment;
+
+/**
+ * Values that are read once from the image data of an image segment, and kept for as long as the image segment is in
+ * use.
+ *
+ * A value is read while holding the lock on the image data stream, so it is only read once even if several threads
+ * ask for it at the same time, and no other reader that locks the stream moves it while the value is being read. A
+ * value is read again if the image segment has a different image data stream to the one that it was read from.
+ *
+ * @param <T> the type of the values.
+ */
+final class SegmentMetadataCache<T> {
+
+    /**
+     * Reads the value for an image segment.
+     *
+     * @param <T> the type of the value.
+     */
+    @FunctionalInterface
+    interface ValueReader<T> {
+
+        /**
+         * Read the value.
+         *
+         * @param imageSegment the image segment.
+         * @param imageData the image data stream of the image segment, which the caller holds the lock on.
+         * @return the value.
+         * @throws IOException if the image data could not be read.
+         */
+        T read(ImageSegment imageSegment, ImageInputStream imageData) throws IOException;
+    }
+
+    private final Map<ImageSegment, Entry<T>> mEntries = new WeakHashMap<>();
+
+    /**
+     * Get the value for an image segment, reading it if it has not been read from the current image data stream.
+     *
+     * @param imageSegment the image segment.
+     * @param reader reads the value, if it is not already known.
+     * @return the value.
+     * @throws IOException if the value could not be read.
+     */
+    T get(final ImageSegment imageSegment, final ValueReader<T> reader) throws IOException {
+        ImageInputStream imageData = imageSegment.getData();
+        T value = getEntry(imageSegment, imageData);
+        if (value != null) {
+            return value;
+        }
+        synchronized (imageData) {
+            // another thread may have read the value while this one waited for the stream
+            value = getEntry(imageSegment, imageData);
+            if (value == null) {
+                value = reader.read(imageSegment, imageData);
+                synchronized (mEntries) {
+                    mEntries.put(imageSegment, new Entry<>(imageData, value));
+                }
+            }
+            return value;
+        }
+    }
+
+    private T getEntry(final ImageSegment imageSegment, final ImageInputStream imageData) {
+        Entry<T> entry;
+        synchronized (mEntries) {
+            entry = mEntries.get(imageSegment);
+        }
+        if ((entry == null) || (entry.mImageData != imageData)) {
+            return null;
+        }
+        return entry.mValue;
+    }
+
+    /**
+     * A value, with the stream that it was read from.
+     */
+    private static final class Entry<T> {
+        private final ImageInputStream mImageData;
+        private final T mValue;
+
+        Entry(final ImageInputStream imageData, final T value) {
+            mImageData = imageData;
+            mValue = value;
+        }
+    }
+}
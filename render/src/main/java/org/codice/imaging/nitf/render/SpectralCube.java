@@ -0,0 +1,451 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import java.awt.Rectangle;
+import java.io.IOException;
+import javax.imageio.stream.ImageInputStream;
+import org.codice.imaging.nitf.core.image.ImageCompression;
+import org.codice.imaging.nitf.core.image.ImageMode;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.core.image.PixelValueType;
+import org.codice.imaging.nitf.render.datareader.DataReaderFactory;
+import org.codice.imaging.nitf.render.datareader.FloatSampleReader;
+import org.codice.imaging.nitf.render.datareader.SampleReader;
+
+/**
+ * Access to the sample values of an uncompressed image segment, as an image cube of rows, columns and bands.
+ *
+ * The values are returned as primitive arrays, without rendering. Each value is the stored sample value (signed
+ * integers are sign extended), so nothing is lost for images of more than 8 bits per band. Samples in masked blocks
+ * read as zero.
+ *
+ * The reads are arranged for the image mode. Runs of samples that are next to each other in the image data are read
+ * in one operation, and the decoder seeks directly to each run, so only the bands and the part of the image that is
+ * asked for are read (except for pixel interleved images, where all of the bands of a pixel are read together).
+ *
+ * Only uncompressed (NC and NM) image segments are supported. Integer images of up to 16 bits per band can be read
+ * with readBand(), readWindow() and readSpectrum(). Floating point (32 or 64 bit) and complex (64 bit) images can only
+ * be read with readBandValues(), readWindowValues() and readSpectrumValues(), which return the magnitude of complex
+ * samples, and which can also be used for integer images. The methods can be called from several threads at once.
+ */
+public final class SpectralCube {
+
+    private static final int INT_BITS = Integer.SIZE;
+
+    private final ImageSegment mImageSegment;
+    private final ImageInputStream mImageData;
+    private final UncompressedSampleLayout mLayout;
+    private final ImageMask mImageMask;
+    private final SampleReader mSampleReader;
+    private final FloatSampleReader mFloatSampleReader;
+    private final ImageMode mImageMode;
+    private final int mNumberOfRows;
+    private final int mNumberOfColumns;
+    private final int mNumberOfBands;
+    private final int mBitsPerSample;
+    private final int mBlockWidth;
+    private final int mSignShift;
+
+    /**
+     * Reads the samples for one run of pixels in a block row.
+     */
+    @FunctionalInterface
+    private interface RunReader {
+
+        void read(int row, int column, int runLength, int offset) throws IOException;
+    }
+
+    /**
+     * Constructor.
+     *
+     * The image data stream of the image segment is used for every read, and is returned to its position after each
+     * read. For masked (NM) images, the image mask is read from the start of the image data.
+     *
+     * @param imageSegment the image segment to read.
+     * @throws IOException if the image mask could not be read.
+     */
+    public SpectralCube(final ImageSegment imageSegment) throws IOException {
+        mImageSegment = imageSegment;
+        mImageData = imageSegment.getData();
+        mBitsPerSample = imageSegment.getNumberOfBitsPerPixelPerBand();
+        if (!ImageCompression.NOTCOMPRESSEDMASK.equals(imageSegment.getImageCompression())
+                && !ImageCompression.NOTCOMPRESSED.equals(imageSegment.getImageCompression())) {
+            throw new UnsupportedOperationException("Unsupported image compression for spectral access: "
+                    + imageSegment.getImageCompression());
+        }
+        mLayout = new UncompressedSampleLayout(imageSegment);
+        mImageMask = mLayout.getImageMask();
+        PixelValueType pixelValueType = imageSegment.getPixelValueType();
+        if ((pixelValueType == PixelValueType.REAL) || (pixelValueType == PixelValueType.COMPLEX)) {
+            mFloatSampleReader = DataReaderFactory.floatValuesForImageSegment(imageSegment, mImageMask);
+            mSampleReader = null;
+            if (mFloatSampleReader == null) {
+                throw new UnsupportedOperationException(String.format("Unsupported pixel type for spectral access: %s, %d bits",
+                        pixelValueType, mBitsPerSample));
+            }
+        } else if (mBitsPerSample > Short.SIZE) {
+            throw new UnsupportedOperationException(String.format("Unsupported pixel type for spectral access: %s, %d bits",
+                    pixelValueType, mBitsPerSample));
+        } else {
+            mFloatSampleReader = null;
+            mSampleReader = DataReaderFactory.samplesForBitsPerSample(mBitsPerSample);
+        }
+        mImageMode = imageSegment.getImageMode();
+        mNumberOfRows = (int) imageSegment.getNumberOfRows();
+        mNumberOfColumns = (int) imageSegment.getNumberOfColumns();
+        mNumberOfBands = imageSegment.getNumBands();
+        mBlockWidth = (int) imageSegment.getNumberOfPixelsPerBlockHorizontal();
+        if (pixelValueType == PixelValueType.SIGNEDINTEGER) {
+            mSignShift = INT_BITS - mBitsPerSample;
+        } else {
+            mSignShift = 0;
+        }
+    }
+
+    /**
+     * Get the number of rows.
+     *
+     * @return the height of the image, in pixels.
+     */
+    public int getNumberOfRows() {
+        return mNumberOfRows;
+    }
+
+    /**
+     * Get the number of columns.
+     *
+     * @return the width of the image, in pixels.
+     */
+    public int getNumberOfColumns() {
+        return mNumberOfColumns;
+    }
+
+    /**
+     * Get the number of bands.
+     *
+     * @return the number of values for each pixel.
+     */
+    public int getNumberOfBands() {
+        return mNumberOfBands;
+    }
+
+    /**
+     * Read every value of one band.
+     *
+     * @param band the band to read, counting from zero.
+     * @return the values, in row major order (so the value for (row, column) is at row * getNumberOfColumns() + column).
+     * @throws IOException if the image data could not be read.
+     * @throws UnsupportedOperationException if the image has floating point or complex samples.
+     */
+    public int[] readBand(final int band) throws IOException {
+        return readWindow(0, 0, mNumberOfRows, mNumberOfColumns, new int[] {band});
+    }
+
+    /**
+     * Read the values of selected bands for a rectangular part of the image.
+     *
+     * @param row the first row to read.
+     * @param column the first column to read.
+     * @param height the number of rows to read.
+     * @param width the number of columns to read.
+     * @param bands the bands to read, counting from zero, in the order that they are returned.
+     * @return the values for each band in turn, and for each band in row major order (so the value for (row + y, column
+     * + x) of bands[i] is at (i * height + y) * width + x).
+     * @throws IOException if the image data could not be read.
+     * @throws UnsupportedOperationException if the image has floating point or complex samples.
+     */
+    public int[] readWindow(final int row, final int column, final int height, final int width, final int[] bands)
+            throws IOException {
+        checkIntegerSamples();
+        checkWindow(row, column, height, width, bands);
+        final int[] values = new int[bands.length * height * width];
+        final int bandStride = height * width;
+        readRuns(row, column, height, width, (runRow, runColumn, runLength, offset) -> {
+            if (mImageMode == ImageMode.PIXELINTERLEVE) {
+                readPixelRun(runRow, runColumn, runLength, bands, values, offset, bandStride);
+            } else {
+                for (int i = 0; i < bands.length; ++i) {
+                    readSamples(mLayout.getSampleBit(bands[i], runRow, runColumn), values, i * bandStride + offset, runLength);
+                }
+            }
+        });
+        return values;
+    }
+
+    /**
+     * Read every band of one pixel.
+     *
+     * @param row the row of the pixel.
+     * @param column the column of the pixel.
+     * @return the values for each band in turn.
+     * @throws IOException if the image data could not be read.
+     * @throws UnsupportedOperationException if the image has floating point or complex samples.
+     */
+    public int[] readSpectrum(final int row, final int column) throws IOException {
+        checkIntegerSamples();
+        checkPixel(row, column);
+        final int[] values = new int[mNumberOfBands];
+        readRuns(row, column, 1, 1, (runRow, runColumn, runLength, offset) -> {
+            if (mImageMode == ImageMode.PIXELINTERLEVE) {
+                readSamples(mLayout.getSampleBit(0, runRow, runColumn), values, 0, mNumberOfBands);
+            } else {
+                for (int band = 0; band < mNumberOfBands; ++band) {
+                    readSamples(mLayout.getSampleBit(band, runRow, runColumn), values, band, 1);
+                }
+            }
+        });
+        return values;
+    }
+
+    /**
+     * Read every value of one band, as floating point values.
+     *
+     * @param band the band to read, counting from zero.
+     * @return the values (or, for complex samples, the magnitudes), in the same order as readBand().
+     * @throws IOException if the image data could not be read.
+     */
+    public double[] readBandValues(final int band) throws IOException {
+        return readWindowValues(0, 0, mNumberOfRows, mNumberOfColumns, new int[] {band});
+    }
+
+    /**
+     * Read the values of selected bands for a rectangular part of the image, as floating point values.
+     *
+     * @param row the first row to read.
+     * @param column the first column to read.
+     * @param height the number of rows to read.
+     * @param width the number of columns to read.
+     * @param bands the bands to read, counting from zero, in the order that they are returned.
+     * @return the values (or, for complex samples, the magnitudes), in the same order as readWindow().
+     * @throws IOException if the image data could not be read.
+     */
+    public double[] readWindowValues(final int row, final int column, final int height, final int width, final int[] bands)
+            throws IOException {
+        checkWindow(row, column, height, width, bands);
+        final double[] values = new double[bands.length * height * width];
+        final int bandStride = height * width;
+        readRuns(row, column, height, width, (runRow, runColumn, runLength, offset) -> {
+            if (mImageMode == ImageMode.PIXELINTERLEVE) {
+                readPixelRun(runRow, runColumn, runLength, bands, values, offset, bandStride);
+            } else {
+                for (int i = 0; i < bands.length; ++i) {
+                    readSamples(mLayout.getSampleBit(bands[i], runRow, runColumn), values, i * bandStride + offset, runLength);
+                }
+            }
+        });
+        return values;
+    }
+
+    /**
+     * Read every band of one pixel, as floating point values.
+     *
+     * @param row the row of the pixel.
+     * @param column the column of the pixel.
+     * @return the values (or, for complex samples, the magnitudes) for each band in turn.
+     * @throws IOException if the image data could not be read.
+     */
+    public double[] readSpectrumValues(final int row, final int column) throws IOException {
+        checkPixel(row, column);
+        final double[] values = new double[mNumberOfBands];
+        readRuns(row, column, 1, 1, (runRow, runColumn, runLength, offset) -> {
+            if (mImageMode == ImageMode.PIXELINTERLEVE) {
+                readSamples(mLayout.getSampleBit(0, runRow, runColumn), values, 0, mNumberOfBands);
+            } else {
+                for (int band = 0; band < mNumberOfBands; ++band) {
+                    readSamples(mLayout.getSampleBit(band, runRow, runColumn), values, band, 1);
+                }
+            }
+        });
+        return values;
+    }
+
+    /**
+     * Find the range of the values of one band in a rectangular part of the image.
+     *
+     * Samples in masked blocks, pad pixels, and values that are not finite numbers are not included.
+     *
+     * @param band the band, counting from zero.
+     * @param window the part of the image, which must be inside the image.
+     * @return the minimum and maximum values (or, for complex samples, magnitudes), or positive and negative infinity if
+     * there are no values.
+     * @throws IOException if the image data could not be read.
+     */
+    public double[] readValueRange(final int band, final Rectangle window) throws IOException {
+        checkWindow(window.y, window.x, window.height, window.width, new int[] {band});
+        final double[] range = {Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        readRuns(window.y, window.x, window.height, window.width, (runRow, runColumn, runLength, offset) -> {
+            int firstBand = band;
+            int bandStride = 1;
+            if (mImageMode == ImageMode.PIXELINTERLEVE) {
+                firstBand = 0;
+                bandStride = mNumberOfBands;
+            }
+            long bit = mLayout.getSampleBit(firstBand, runRow, runColumn);
+            if (bit < 0) {
+                return;
+            }
+            double[] samples = new double[runLength * bandStride];
+            boolean[] padPixels = new boolean[samples.length];
+            readSamples(bit, samples, padPixels, samples.length);
+            for (int i = band - firstBand; i < samples.length; i += bandStride) {
+                double value = samples[i];
+                if (!Double.isInfinite(value) && !Double.isNaN(value) && !padPixels[i]) {
+                    range[0] = Math.min(range[0], value);
+                    range[1] = Math.max(range[1], value);
+                }
+            }
+        });
+        return range;
+    }
+
+    private void checkIntegerSamples() {
+        if (mSampleReader == null) {
+            throw new UnsupportedOperationException(String.format("%s samples can only be read as floating point values",
+                    mImageSegment.getPixelValueType()));
+        }
+    }
+
+    private void checkWindow(final int row, final int column, final int height, final int width, final int[] bands) {
+        if ((row < 0) || (column < 0) || (height < 0) || (width < 0) || (row + height > mNumberOfRows)
+                || (column + width > mNumberOfColumns)) {
+            throw new IllegalArgumentException(String.format("Window (%d, %d) %dx%d is outside the %dx%d image", row, column,
+                    width, height, mNumberOfColumns, mNumberOfRows));
+        }
+        for (int band : bands) {
+            checkBand(band);
+        }
+    }
+
+    private void checkPixel(final int row, final int column) {
+        if ((row < 0) || (column < 0) || (row >= mNumberOfRows) || (column >= mNumberOfColumns)) {
+            throw new IllegalArgumentException(String.format("Pixel (%d, %d) is outside the %dx%d image", row, column,
+                    mNumberOfColumns, mNumberOfRows));
+        }
+    }
+
+    private void checkBand(final int band) {
+        if ((band < 0) || (band >= mNumberOfBands)) {
+            throw new IllegalArgumentException(String.format("Band %d is outside the %d band image", band, mNumberOfBands));
+        }
+    }
+
+    /**
+     * Read a window as runs of pixels that do not cross a block boundary.
+     *
+     * The reader is passed the image row and column of the start of each run, and the offset of the run within the
+     * values for one band of the window. The image data stream is returned to its position afterwards.
+     */
+    private void readRuns(final int row, final int column, final int height, final int width, final RunReader reader)
+            throws IOException {
+        synchronized (mImageData) {
+            long start = mImageData.getStreamPosition();
+            try {
+                for (int y = 0; y < height; ++y) {
+                    int x = 0;
+                    while (x < width) {
+                        // a run of pixels in one block row
+                        int runLength = Math.min(width - x, mBlockWidth - (column + x) % mBlockWidth);
+                        reader.read(row + y, column + x, runLength, y * width + x);
+                        x += runLength;
+                    }
+                }
+            } finally {
+                mImageData.seek(start);
+            }
+        }
+    }
+
+    private void readPixelRun(final int row, final int column, final int runLength, final int[] bands, final int[] values,
+            final int offset, final int bandStride) throws IOException {
+        long bit = mLayout.getSampleBit(0, row, column);
+        if (bit < 0) {
+            return;
+        }
+        int[] samples = new int[runLength * mNumberOfBands];
+        readSamples(bit, samples, 0, samples.length);
+        for (int i = 0; i < bands.length; ++i) {
+            for (int x = 0; x < runLength; ++x) {
+                values[i * bandStride + offset + x] = samples[x * mNumberOfBands + bands[i]];
+            }
+        }
+    }
+
+    private void readPixelRun(final int row, final int column, final int runLength, final int[] bands, final double[] values,
+            final int offset, final int bandStride) throws IOException {
+        long bit = mLayout.getSampleBit(0, row, column);
+        if (bit < 0) {
+            return;
+        }
+        double[] samples = new double[runLength * mNumberOfBands];
+        readSamples(bit, samples, 0, samples.length);
+        for (int i = 0; i < bands.length; ++i) {
+            for (int x = 0; x < runLength; ++x) {
+                values[i * bandStride + offset + x] = samples[x * mNumberOfBands + bands[i]];
+            }
+        }
+    }
+
+    private void readSamples(final long bit, final int[] values, final int offset, final int count) throws IOException {
+        if (bit < 0) {
+            return;
+        }
+        mImageData.seek(bit / Byte.SIZE);
+        mImageData.setBitOffset((int) (bit % Byte.SIZE));
+        mSampleReader.read(mImageData, values, offset, count);
+        if (mSignShift != 0) {
+            for (int i = offset; i < offset + count; ++i) {
+                values[i] = (values[i] << mSignShift) >> mSignShift;
+            }
+        }
+    }
+
+    private void readSamples(final long bit, final double[] values, final int offset, final int count) throws IOException {
+        if (bit < 0) {
+            return;
+        }
+        if (mFloatSampleReader == null) {
+            int[] samples = new int[count];
+            readSamples(bit, samples, 0, count);
+            for (int i = 0; i < count; ++i) {
+                values[offset + i] = samples[i];
+            }
+            return;
+        }
+        // floating point samples are always whole bytes
+        mImageData.seek(bit / Byte.SIZE);
+        mFloatSampleReader.readValues(mImageData, values, offset, count);
+    }
+
+    /**
+     * Read samples from the start of the array, and find the pad pixels.
+     *
+     * Pad pixels are found on the stored bits of each sample, so integer samples are compared without sign extension.
+     */
+    private void readSamples(final long bit, final double[] values, final boolean[] padPixels, final int count) throws IOException {
+        if (mFloatSampleReader == null) {
+            int[] samples = new int[count];
+            readSamples(bit, samples, 0, count);
+            long sampleBitsMask = (1L << mBitsPerSample) - 1;
+            for (int i = 0; i < count; ++i) {
+                values[i] = samples[i];
+                padPixels[i] = (mImageMask != null) && mImageMask.isPadPixelBits(samples[i] & sampleBitsMask);
+            }
+            return;
+        }
+        mImageData.seek(bit / Byte.SIZE);
+        mFloatSampleReader.readValues(mImageData, values, 0, count, padPixels);
+    }
+}
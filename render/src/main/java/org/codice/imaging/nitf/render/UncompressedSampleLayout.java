@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import java.io.IOException;
+import javax.imageio.stream.ImageInputStream;
+import org.codice.imaging.nitf.core.image.ImageCompression;
+import org.codice.imaging.nitf.core.image.ImageMode;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+
+/**
+ * The position of each sample in the image data of an uncompressed (NC or NM) image segment.
+ *
+ * Blocks are found through the image mask for masked (NM) images, and are otherwise assumed to follow each other in
+ * the image data (for band sequential images, all of the blocks of the first band, then all of the blocks of the next
+ * band, and so on). Within a block, the samples are arranged for the image mode.
+ */
+final class UncompressedSampleLayout {
+
+    private final ImageMask mImageMask;
+    private final ImageMode mImageMode;
+    private final int mNumberOfBands;
+    private final int mBitsPerSample;
+    private final int mBlockWidth;
+    private final int mBlockHeight;
+    private final int mBlocksPerRow;
+    private final int mNumberOfBlocks;
+    private final long mBlockBits;
+
+    /**
+     * Constructor.
+     *
+     * For masked (NM) images, the image mask is read from the start of the image data, and the image data stream is
+     * returned to its position afterwards.
+     *
+     * @param imageSegment the uncompressed image segment.
+     * @throws IOException if the image mask could not be read.
+     */
+    UncompressedSampleLayout(final ImageSegment imageSegment) throws IOException {
+        if (ImageCompression.NOTCOMPRESSEDMASK.equals(imageSegment.getImageCompression())) {
+            ImageInputStream imageData = imageSegment.getData();
+            synchronized (imageData) {
+                long start = imageData.getStreamPosition();
+                try {
+                    imageData.seek(0);
+                    mImageMask = new ImageMask(imageSegment, imageData);
+                } finally {
+                    imageData.seek(start);
+                }
+            }
+        } else {
+            mImageMask = null;
+        }
+        mImageMode = imageSegment.getImageMode();
+        mNumberOfBands = imageSegment.getNumBands();
+        mBitsPerSample = imageSegment.getNumberOfBitsPerPixelPerBand();
+        mBlockWidth = (int) imageSegment.getNumberOfPixelsPerBlockHorizontal();
+        mBlockHeight = (int) imageSegment.getNumberOfPixelsPerBlockVertical();
+        mBlocksPerRow = imageSegment.getNumberOfBlocksPerRow();
+        mNumberOfBlocks = mBlocksPerRow * imageSegment.getNumberOfBlocksPerColumn();
+        long blockBits = (long) mBlockWidth * mBlockHeight * mBitsPerSample;
+        if (mImageMode != ImageMode.BANDSEQUENTIAL) {
+            blockBits *= mNumberOfBands;
+        }
+        mBlockBits = blockBits;
+    }
+
+    /**
+     * Get the image mask.
+     *
+     * @return the image mask for masked (NM) images, or null for images without a mask.
+     */
+    ImageMask getImageMask() {
+        return mImageMask;
+    }
+
+    /**
+     * Get the number of blocks in each band.
+     *
+     * @return the number of blocks per row times the number of blocks per column.
+     */
+    int getNumberOfBlocks() {
+        return mNumberOfBlocks;
+    }
+
+    /**
+     * Get the position of a sample within the samples of a block.
+     *
+     * For band sequential images, each block holds one band, so the band is not used.
+     *
+     * @param band the band of the sample, counting from zero.
+     * @param blockRow the row within the block.
+     * @param blockColumn the column within the block.
+     * @return the number of samples before the sample, from the start of the block.
+     */
+    long getSampleIndex(final int band, final int blockRow, final int blockColumn) {
+        switch (mImageMode) {
+            case BLOCKINTERLEVE:
+                return ((long) band * mBlockHeight + blockRow) * mBlockWidth + blockColumn;
+            case PIXELINTERLEVE:
+                return ((long) blockRow * mBlockWidth + blockColumn) * mNumberOfBands + band;
+            case ROWINTERLEVE:
+                return ((long) blockRow * mNumberOfBands + band) * mBlockWidth + blockColumn;
+            default:
+                return (long) blockRow * mBlockWidth + blockColumn;
+        }
+    }
+
+    /**
+     * Get the position of a block in the image data.
+     *
+     * @param blockIndex the block, counted in row major order.
+     * @param band the band (only used for band sequential images).
+     * @return the position, in bits from the start of the image data, or -1 if the block is masked.
+     */
+    long getBlockBit(final int blockIndex, final int band) {
+        if (mImageMask != null) {
+            long location = mImageMask.getBlockLocation(blockIndex, band);
+            if (location < 0) {
+                return -1;
+            }
+            return location * Byte.SIZE;
+        }
+        if (mImageMode == ImageMode.BANDSEQUENTIAL) {
+            return ((long) band * mNumberOfBlocks + blockIndex) * mBlockBits;
+        }
+        return blockIndex * mBlockBits;
+    }
+
+    /**
+     * Get the position of a sample in the image data.
+     *
+     * @param band the band of the sample, counting from zero.
+     * @param row the image row of the sample.
+     * @param column the image column of the sample.
+     * @return the position, in bits from the start of the image data, or -1 if the sample is in a masked block.
+     */
+    long getSampleBit(final int band, final int row, final int column) {
+        int blockIndex = (row / mBlockHeight) * mBlocksPerRow + column / mBlockWidth;
+        long blockBit = getBlockBit(blockIndex, band);
+        if (blockBit < 0) {
+            return -1;
+        }
+        return blockBit + getSampleIndex(band, row % mBlockHeight, column % mBlockWidth) * mBitsPerSample;
+    }
+}
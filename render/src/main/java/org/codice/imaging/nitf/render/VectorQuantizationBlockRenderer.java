@@ -15,199 +15,175 @@
 package org.codice.imaging.nitf.render;
 
 import java.awt.image.BufferedImage;
-import java.awt.image.IndexColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
 import java.awt.image.WritableRaster;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 import javax.imageio.stream.ImageInputStream;
-import org.codice.imaging.nitf.core.image.ImageCompression;
 import org.codice.imaging.nitf.core.image.ImageRepresentation;
 import org.codice.imaging.nitf.core.image.ImageSegment;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.codice.imaging.nitf.render.datareader.BlockDataReader;
 
+/**
+ * Renderer for Vector Quantization (C4 / M4) compressed image blocks.
+ *
+ * Each image code selects a kernel of pixel values, made up of one row from each of the compression lookup tables. The
+ * kernels are expanded once per image segment (see VectorQuantizationCodebook), so rendering a block is a bulk read of
+ * the packed image codes followed by a copy of each kernel row into the image.
+ */
 class VectorQuantizationBlockRenderer implements BlockRenderer {
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(VectorQuantizationBlockRenderer.class);
+    private static final int BYTE_MASK = 0xFF;
     private ImageSegment mImageSegment = null;
     private ImageInputStream mImageData = null;
+    private VectorQuantizationCodebook mCodebook = null;
     private ImageMask mMask = null;
 
     private int mNumberOfImageRows = 0;
     private int mNumberOfImageCodesPerRow = 0;
     private int mImageCodeBitLength = 0;
-    private int mCompressionAlgorithmId = 0;
-    private int mNumberOfCompressionLookupOffsetRecords = 0;
-    private int mNumberOfCompressionParameterOffsetRecords = 0;
-    private int mCompressionLookupOffsetTableOffset = 0;
-    private int mCompressionLookupTableOffsetRecordLength = 0;
 
     private int nextImageBlockToRead = 0;
 
-    private final List<VQCompressionLookupOffsetRecord> mCompressionLookupOffsetRecords = new ArrayList<>();
-
-    private int[][][] mCodebook;
-
     @Override
     public final void setImageSegment(final ImageSegment imageSegment, final ImageInputStream imageInputStream) throws IOException {
         mImageSegment = imageSegment;
         mImageData = imageInputStream;
-
-        if (mImageSegment.getImageCompression() == ImageCompression.VECTORQUANTIZATIONMASK) {
-            mMask = new ImageMask(mImageSegment, mImageData);
-        }
-        readVQHeader();
+        mCodebook = VectorQuantizationCodebook.forImageSegment(mImageSegment);
+        mMask = mCodebook.getMask();
+        mNumberOfImageRows = mCodebook.getNumberOfImageRows();
+        mNumberOfImageCodesPerRow = mCodebook.getNumberOfImageCodesPerRow();
+        mImageCodeBitLength = mCodebook.getImageCodeBitLength();
+        // the codebook may have been read by an earlier render
+        mImageData.seek(mCodebook.getImageDataStart());
     }
 
     @Override
     public final BufferedImage getNextImageBlock() throws IOException {
-        if ((mImageSegment.getActualBitsPerPixelPerBand() == Byte.SIZE)
-                && (mImageSegment.getNumberOfBitsPerPixelPerBand() == Byte.SIZE)) {
-            if (mImageSegment.getImageRepresentation() == ImageRepresentation.MONOCHROME) {
-                if ((mMask != null) && (mMask.isMaskedBlock(nextImageBlockToRead++, 0))) {
-                   return null;
-                }
-                return getNextImageBlockMono8();
-            } else if (mImageSegment.getImageRepresentation() == ImageRepresentation.RGBLUT) {
-                if ((mMask != null) && (mMask.isMaskedBlock(nextImageBlockToRead++, 0))) {
-                    return null;
-                }
-                return getNextImageBlockRgbLut8();
-            } else {
-                throw new UnsupportedOperationException("Unhandled image representation:" + mImageSegment.getImageRepresentation());
-            }
-        } else {
-            throw new UnsupportedOperationException("Unhandled BitsPerPixelPerBand: "
-                    + mImageSegment.getActualBitsPerPixelPerBand() + " / " + mImageSegment.getNumberOfBitsPerPixelPerBand());
+        checkImageCharacteristics();
+        if ((mMask != null) && (mMask.isMaskedBlock(nextImageBlockToRead++, 0))) {
+            return getMaskedBlock();
         }
+        return renderBlock(mImageData);
     }
 
     @Override
     public final BufferedImage getImageBlock(final int rowIndex, final int columnIndex) throws IOException {
-        // TODO: seek to image block location
-        return getNextImageBlock();
+        if (!hasRandomBlockAccess()) {
+            return getNextImageBlock();
+        }
+        checkImageCharacteristics();
+        int blockIndex = rowIndex * mImageSegment.getNumberOfBlocksPerRow() + columnIndex;
+        long blockOffset = blockIndex * getBlockLength();
+        if (mMask != null) {
+            if (mMask.isMaskedBlock(blockIndex, 0)) {
+                return getMaskedBlock();
+            }
+            blockOffset = mMask.getBlockOffset(blockIndex, 0);
+        }
+        blockOffset += mCodebook.getImageDataStart();
+        return renderBlock(BlockDataReader.readBlock(mImageData, blockOffset, (int) getBlockLength()));
     }
 
-    private BufferedImage getNextImageBlockMono8() throws IOException {
-        BufferedImage img = new BufferedImage((int) mImageSegment.getNumberOfPixelsPerBlockHorizontal(),
-                (int) mImageSegment.getNumberOfPixelsPerBlockVertical(), BufferedImage.TYPE_BYTE_GRAY);
-        renderToImage(img);
-        return img;
+    @Override
+    public final boolean hasRandomBlockAccess() {
+        return getBlockBits() % Byte.SIZE == 0;
     }
 
-    private BufferedImage getNextImageBlockRgbLut8() throws IOException {
-        IndexColorModel colourModel = new IndexColorModel(mImageSegment.getActualBitsPerPixelPerBand(),
-                                                          mImageSegment.getImageBandZeroBase(0).getNumLUTEntries(),
-                                                          mImageSegment.getImageBandZeroBase(0).getLUTZeroBase(0).getEntries(),
-                                                          mImageSegment.getImageBandZeroBase(0).getLUTZeroBase(1).getEntries(),
-                                                          mImageSegment.getImageBandZeroBase(0).getLUTZeroBase(2).getEntries());
-        BufferedImage img = new BufferedImage((int) mImageSegment.getNumberOfColumns(),
-                (int) mImageSegment.getNumberOfRows(), BufferedImage.TYPE_BYTE_INDEXED, colourModel);
-        renderToImage(img);
-        return img;
+    /**
+     * Get the image for a masked block.
+     *
+     * Masked blocks are not drawn, so whatever is already in the target (e.g. transparency, or a neighbouring RPF frame)
+     * shows through.
+     */
+    private BufferedImage getMaskedBlock() {
+        return null;
     }
 
-    private void renderToImage(final BufferedImage img) throws IOException {
-        WritableRaster imgRaster = img.getRaster();
-        for (int r = 0; r < mNumberOfImageRows; ++r) {
-            for (int c = 0; c < mNumberOfImageCodesPerRow; ++c) {
-                int codebookEntry = (int) mImageData.readBits(mImageCodeBitLength);
-                for (int tableIndex = 0; tableIndex < mNumberOfCompressionLookupOffsetRecords; ++tableIndex) {
-                    VQCompressionLookupOffsetRecord record = mCompressionLookupOffsetRecords.get(tableIndex);
-                    int[] codebookValues = mCodebook[tableIndex][codebookEntry];
-                    imgRaster.setPixels(c * mNumberOfCompressionLookupOffsetRecords,
-                            (r * record.getNumberOfValuesPerCompressionLookupRecord()) + tableIndex,
-                            mNumberOfCompressionLookupOffsetRecords,
-                            1,
-                            codebookValues);
-                }
-            }
-        }
+    private long getBlockBits() {
+        return (long) mNumberOfImageRows * mNumberOfImageCodesPerRow * mImageCodeBitLength;
     }
 
-    private void readVQHeader() throws IOException {
-        readImageDisplayParameterSubheader();
-        readCompressionSection();
+    private long getBlockLength() {
+        return getBlockBits() / Byte.SIZE;
     }
 
-    private void readImageDisplayParameterSubheader() throws IOException {
-        mNumberOfImageRows = mImageData.readInt();
-        LOGGER.debug("mNumberOfImageRows:" + mNumberOfImageRows);
-        mNumberOfImageCodesPerRow = mImageData.readInt();
-        LOGGER.debug("mNumberOfImageCodesPerRow: " + mNumberOfImageCodesPerRow);
-        mImageCodeBitLength = mImageData.readUnsignedByte();
-        LOGGER.debug("mImageCodeBitLength:" + mImageCodeBitLength);
+    private void checkImageCharacteristics() {
+        if ((mImageSegment.getActualBitsPerPixelPerBand() != Byte.SIZE)
+                || (mImageSegment.getNumberOfBitsPerPixelPerBand() != Byte.SIZE)) {
+            throw new UnsupportedOperationException("Unhandled BitsPerPixelPerBand: "
+                    + mImageSegment.getActualBitsPerPixelPerBand() + " / " + mImageSegment.getNumberOfBitsPerPixelPerBand());
+        }
+        if ((mImageSegment.getImageRepresentation() != ImageRepresentation.MONOCHROME)
+                && (mImageSegment.getImageRepresentation() != ImageRepresentation.RGBLUT)) {
+            throw new UnsupportedOperationException("Unhandled image representation:" + mImageSegment.getImageRepresentation());
+        }
     }
 
-    private void readCompressionSection() throws IOException {
-        readCompressionSectionSubheader();
-        readCompressionLookupSubsection();
+    private BufferedImage renderBlock(final ImageInputStream blockData) throws IOException {
+        if (mImageSegment.getImageRepresentation() == ImageRepresentation.MONOCHROME) {
+            return getImageBlockMono8(blockData);
+        }
+        return getImageBlockRgbLut8(blockData);
     }
 
-    private void readCompressionSectionSubheader() throws IOException {
-        mCompressionAlgorithmId = mImageData.readUnsignedShort();
-        LOGGER.debug("mCompressionAlgorithmId:" + mCompressionAlgorithmId);
-        mNumberOfCompressionLookupOffsetRecords = mImageData.readUnsignedShort();
-        LOGGER.debug("mNumberOfCompressionLookupOffsetRecords:" + mNumberOfCompressionLookupOffsetRecords);
-        mNumberOfCompressionParameterOffsetRecords = mImageData.readUnsignedShort();
-        LOGGER.debug("mNumberOfCompressionParameterOffsetRecords:" + mNumberOfCompressionParameterOffsetRecords);
+    private BufferedImage getImageBlockMono8(final ImageInputStream blockData) throws IOException {
+        BufferedImage img = new BufferedImage((int) mImageSegment.getNumberOfPixelsPerBlockHorizontal(),
+                (int) mImageSegment.getNumberOfPixelsPerBlockVertical(), BufferedImage.TYPE_BYTE_GRAY);
+        renderToImage(img, blockData);
+        return img;
     }
 
-    private void readCompressionLookupSubsection() throws IOException {
-        mCompressionLookupOffsetTableOffset = mImageData.readInt();
-        LOGGER.debug("mCompressionLookupOffsetTableOffset:" + mCompressionLookupOffsetTableOffset);
-        mCompressionLookupTableOffsetRecordLength = mImageData.readUnsignedShort();
-        LOGGER.debug("mCompressionLookupTableOffsetRecordLength:" + mCompressionLookupTableOffsetRecordLength);
-        readCompressionLookupOffsetTable();
-        readCompressionLookupTables();
+    private BufferedImage getImageBlockRgbLut8(final ImageInputStream blockData) throws IOException {
+        BufferedImage img = createRgbLut8Image();
+        renderToImage(img, blockData);
+        return img;
     }
 
-    private void readCompressionLookupOffsetTable() throws IOException {
-        readCompressionLookupOffsetRecords();
+    private BufferedImage createRgbLut8Image() {
+        return new BufferedImage((int) mImageSegment.getNumberOfPixelsPerBlockHorizontal(),
+                (int) mImageSegment.getNumberOfPixelsPerBlockVertical(), BufferedImage.TYPE_BYTE_INDEXED, mCodebook.getColourModel());
     }
 
-    private void readCompressionLookupOffsetRecords() throws IOException {
-        LOGGER.debug("mNumberOfCompressionLookupOffsetRecords:" + mNumberOfCompressionLookupOffsetRecords);
-        for (int i = 0; i < mNumberOfCompressionLookupOffsetRecords; ++i) {
-            VQCompressionLookupOffsetRecord record = new VQCompressionLookupOffsetRecord();
-            record.setCompressionLookupTableId(mImageData.readUnsignedShort());
-            record.setNumberOfCompressionLookupRecords(mImageData.readInt());
-            LOGGER.debug("numberOfCompressionLookupRecords:" + record.getNumberOfCompressionLookupRecords());
-            record.setNumberOfValuesPerCompressionLookupRecord(mImageData.readUnsignedShort());
-            LOGGER.debug("numberOfValuesPerCompressionLookupRecord:" + record.getNumberOfValuesPerCompressionLookupRecord());
-            record.setCompressionLookupValueBitLength(mImageData.readUnsignedShort());
-            LOGGER.debug("compressionLookupValueBitLength:" + record.getCompressionLookupValueBitLength());
-            record.setCompressionLookupTableOffset(mImageData.readInt());
-            mCompressionLookupOffsetRecords.add(record);
+    private void renderToImage(final BufferedImage img, final ImageInputStream blockData) throws IOException {
+        if ((mNumberOfImageRows * mCodebook.getKernelHeight() > img.getHeight())
+                || (mNumberOfImageCodesPerRow * mCodebook.getKernelWidth() > img.getWidth())) {
+            throw new IOException(String.format("VQ image codes (%d x %d) do not fit in a %d x %d block",
+                    mNumberOfImageCodesPerRow, mNumberOfImageRows, img.getWidth(), img.getHeight()));
         }
+        WritableRaster imgRaster = img.getRaster();
+        byte[] pixels = ((DataBufferByte) imgRaster.getDataBuffer()).getData();
+        int scanlineStride = ((ComponentSampleModel) imgRaster.getSampleModel()).getScanlineStride();
+        mCodebook.expandKernels(readImageCodes(blockData), pixels, scanlineStride);
     }
 
-    private void readCompressionLookupTables() throws IOException {
-        mCodebook = new int[mNumberOfCompressionLookupOffsetRecords][][];
-        for (int compressionLookupTableIndex = 0;
-                compressionLookupTableIndex < mNumberOfCompressionLookupOffsetRecords;
-                ++compressionLookupTableIndex) {
-            VQCompressionLookupOffsetRecord record = mCompressionLookupOffsetRecords.get(compressionLookupTableIndex);
-
-            // Dimension this codebook entry based on the lookup offset record entry
-            mCodebook[compressionLookupTableIndex]
-                    = new int[record.getNumberOfCompressionLookupRecords()][record.getNumberOfValuesPerCompressionLookupRecord()];
-
-            // Read record entries
-            for (int compressionLookupRecordIndex = 0;
-                    compressionLookupRecordIndex < record.getNumberOfCompressionLookupRecords();
-                    ++compressionLookupRecordIndex) {
-                // Read values for this record entry
-                for (int compressionLookupValueIndex = 0;
-                        compressionLookupValueIndex < record.getNumberOfValuesPerCompressionLookupRecord();
-                        ++compressionLookupValueIndex) {
-                    // Stuff it into the codebook.
-                    mCodebook[compressionLookupTableIndex][compressionLookupRecordIndex][compressionLookupValueIndex] =
- (int) mImageData.readBits(record.getCompressionLookupValueBitLength());
-                }
+    /**
+     * Read all of the image codes for a block.
+     *
+     * When the block starts on a byte boundary, the packed codes are read in one operation and unpacked from memory.
+     */
+    private int[] readImageCodes(final ImageInputStream blockData) throws IOException {
+        int[] imageCodes = new int[mNumberOfImageRows * mNumberOfImageCodesPerRow];
+        if ((blockData.getBitOffset() != 0) || (getBlockBits() % Byte.SIZE != 0)) {
+            for (int i = 0; i < imageCodes.length; ++i) {
+                imageCodes[i] = (int) blockData.readBits(mImageCodeBitLength);
+            }
+            return imageCodes;
+        }
+        byte[] packedCodes = new byte[(int) getBlockLength()];
+        blockData.readFully(packedCodes);
+        int codeMask = (1 << mImageCodeBitLength) - 1;
+        int packedIndex = 0;
+        long bits = 0;
+        int numberOfBits = 0;
+        for (int i = 0; i < imageCodes.length; ++i) {
+            while (numberOfBits < mImageCodeBitLength) {
+                bits = (bits << Byte.SIZE) | (packedCodes[packedIndex++] & BYTE_MASK);
+                numberOfBits += Byte.SIZE;
             }
+            numberOfBits -= mImageCodeBitLength;
+            imageCodes[i] = (int) (bits >>> numberOfBits) & codeMask;
         }
+        return imageCodes;
     }
-
 }
@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import java.awt.image.IndexColorModel;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.imageio.stream.ImageInputStream;
+import org.codice.imaging.nitf.core.image.ImageCompression;
+import org.codice.imaging.nitf.core.image.ImageRepresentation;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The parts of a Vector Quantization (C4 / M4) image segment that are shared by all of the blocks.
+ *
+ * This is the image mask (for M4), the image display parameters, the kernels expanded from the compression lookup
+ * tables, and the colour model for RGB/LUT images. These are read once per image segment and shared by every render
+ * of that image segment, so rendering a few blocks of a frame (e.g. for a map tile) does not read and expand the
+ * lookup tables each time.
+ */
+final class VectorQuantizationCodebook {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(VectorQuantizationCodebook.class);
+
+    private static final SegmentMetadataCache<VectorQuantizationCodebook> SEGMENT_CODEBOOKS = new SegmentMetadataCache<>();
+
+    private ImageMask mMask = null;
+
+    private int mNumberOfImageRows = 0;
+    private int mNumberOfImageCodesPerRow = 0;
+    private int mImageCodeBitLength = 0;
+    private int mCompressionAlgorithmId = 0;
+    private int mNumberOfCompressionLookupOffsetRecords = 0;
+    private int mNumberOfCompressionParameterOffsetRecords = 0;
+    private int mCompressionLookupOffsetTableOffset = 0;
+    private int mCompressionLookupTableOffsetRecordLength = 0;
+
+    private final long mImageDataStart;
+
+    private final List<VQCompressionLookupOffsetRecord> mCompressionLookupOffsetRecords = new ArrayList<>();
+
+    // the kernel for each image code, one kernel row after another
+    private byte[] mKernels;
+    private int mKernelWidth = 0;
+    private int mKernelHeight = 0;
+
+    private IndexColorModel mColourModel = null;
+
+    /**
+     * Get the codebook for an image segment.
+     *
+     * The first call for an image segment reads the image data from the current position of the image data stream
+     * (which must be the start of the image data), and leaves the stream at the first image block. Later calls for the
+     * same image segment (with the same image data stream) return the same result without reading anything. The codebook
+     * is read while holding the lock on the image data stream, so concurrent first calls read it once.
+     *
+     * @param imageSegment the vector quantized image segment.
+     * @return the codebook.
+     * @throws IOException if the image data could not be read.
+     */
+    static VectorQuantizationCodebook forImageSegment(final ImageSegment imageSegment) throws IOException {
+        return SEGMENT_CODEBOOKS.get(imageSegment, VectorQuantizationCodebook::new);
+    }
+
+    private VectorQuantizationCodebook(final ImageSegment imageSegment, final ImageInputStream imageData) throws IOException {
+        if (imageSegment.getImageCompression() == ImageCompression.VECTORQUANTIZATIONMASK) {
+            mMask = new ImageMask(imageSegment, imageData);
+        }
+        readVQHeader(imageData);
+        mImageDataStart = imageData.getStreamPosition();
+        if (imageSegment.getImageRepresentation() == ImageRepresentation.RGBLUT) {
+            mColourModel = new IndexColorModel(imageSegment.getActualBitsPerPixelPerBand(),
+                                               imageSegment.getImageBandZeroBase(0).getNumLUTEntries(),
+                                               imageSegment.getImageBandZeroBase(0).getLUTZeroBase(0).getEntries(),
+                                               imageSegment.getImageBandZeroBase(0).getLUTZeroBase(1).getEntries(),
+                                               imageSegment.getImageBandZeroBase(0).getLUTZeroBase(2).getEntries());
+        }
+    }
+
+    /**
+     * Get the image mask.
+     *
+     * @return the mask, or null if the image segment is not masked.
+     */
+    ImageMask getMask() {
+        return mMask;
+    }
+
+    int getNumberOfImageRows() {
+        return mNumberOfImageRows;
+    }
+
+    int getNumberOfImageCodesPerRow() {
+        return mNumberOfImageCodesPerRow;
+    }
+
+    int getImageCodeBitLength() {
+        return mImageCodeBitLength;
+    }
+
+    /**
+     * Get the position of the first image block in the image data stream.
+     *
+     * @return the stream position.
+     */
+    long getImageDataStart() {
+        return mImageDataStart;
+    }
+
+    /**
+     * Get the colour model for RGB/LUT images.
+     *
+     * @return the colour model, or null for monochrome images.
+     */
+    IndexColorModel getColourModel() {
+        return mColourModel;
+    }
+
+    int getKernelWidth() {
+        return mKernelWidth;
+    }
+
+    int getKernelHeight() {
+        return mKernelHeight;
+    }
+
+    /**
+     * Copy each row of the kernels for a block into the pixels of the block image.
+     *
+     * @param imageCodes the image codes of the block, in row major order.
+     * @param pixels the pixels of the block image, one byte per pixel.
+     * @param scanlineStride the distance between the start of each row in the pixels.
+     */
+    void expandKernels(final int[] imageCodes, final byte[] pixels, final int scanlineStride) {
+        int kernelSize = mKernelWidth * mKernelHeight;
+        int codeIndex = 0;
+        for (int r = 0; r < mNumberOfImageRows; ++r) {
+            int rowStart = r * mKernelHeight * scanlineStride;
+            for (int c = 0; c < mNumberOfImageCodesPerRow; ++c) {
+                int kernelStart = imageCodes[codeIndex++] * kernelSize;
+                int pixelStart = rowStart + c * mKernelWidth;
+                for (int kernelRow = 0; kernelRow < mKernelHeight; ++kernelRow) {
+                    System.arraycopy(mKernels, kernelStart + kernelRow * mKernelWidth,
+                            pixels, pixelStart + kernelRow * scanlineStride,
+                            mKernelWidth);
+                }
+            }
+        }
+    }
+
+    private void readVQHeader(final ImageInputStream imageData) throws IOException {
+        readImageDisplayParameterSubheader(imageData);
+        readCompressionSection(imageData);
+    }
+
+    private void readImageDisplayParameterSubheader(final ImageInputStream imageData) throws IOException {
+        mNumberOfImageRows = imageData.readInt();
+        LOGGER.debug("mNumberOfImageRows:" + mNumberOfImageRows);
+        mNumberOfImageCodesPerRow = imageData.readInt();
+        LOGGER.debug("mNumberOfImageCodesPerRow: " + mNumberOfImageCodesPerRow);
+        mImageCodeBitLength = imageData.readUnsignedByte();
+        LOGGER.debug("mImageCodeBitLength:" + mImageCodeBitLength);
+    }
+
+    private void readCompressionSection(final ImageInputStream imageData) throws IOException {
+        readCompressionSectionSubheader(imageData);
+        readCompressionLookupSubsection(imageData);
+    }
+
+    private void readCompressionSectionSubheader(final ImageInputStream imageData) throws IOException {
+        mCompressionAlgorithmId = imageData.readUnsignedShort();
+        LOGGER.debug("mCompressionAlgorithmId:" + mCompressionAlgorithmId);
+        mNumberOfCompressionLookupOffsetRecords = imageData.readUnsignedShort();
+        LOGGER.debug("mNumberOfCompressionLookupOffsetRecords:" + mNumberOfCompressionLookupOffsetRecords);
+        mNumberOfCompressionParameterOffsetRecords = imageData.readUnsignedShort();
+        LOGGER.debug("mNumberOfCompressionParameterOffsetRecords:" + mNumberOfCompressionParameterOffsetRecords);
+    }
+
+    private void readCompressionLookupSubsection(final ImageInputStream imageData) throws IOException {
+        mCompressionLookupOffsetTableOffset = imageData.readInt();
+        LOGGER.debug("mCompressionLookupOffsetTableOffset:" + mCompressionLookupOffsetTableOffset);
+        mCompressionLookupTableOffsetRecordLength = imageData.readUnsignedShort();
+        LOGGER.debug("mCompressionLookupTableOffsetRecordLength:" + mCompressionLookupTableOffsetRecordLength);
+        readCompressionLookupOffsetTable(imageData);
+        readCompressionLookupTables(imageData);
+    }
+
+    private void readCompressionLookupOffsetTable(final ImageInputStream imageData) throws IOException {
+        readCompressionLookupOffsetRecords(imageData);
+    }
+
+    private void readCompressionLookupOffsetRecords(final ImageInputStream imageData) throws IOException {
+        LOGGER.debug("mNumberOfCompressionLookupOffsetRecords:" + mNumberOfCompressionLookupOffsetRecords);
+        for (int i = 0; i < mNumberOfCompressionLookupOffsetRecords; ++i) {
+            VQCompressionLookupOffsetRecord record = new VQCompressionLookupOffsetRecord();
+            record.setCompressionLookupTableId(imageData.readUnsignedShort());
+            record.setNumberOfCompressionLookupRecords(imageData.readInt());
+            LOGGER.debug("numberOfCompressionLookupRecords:" + record.getNumberOfCompressionLookupRecords());
+            record.setNumberOfValuesPerCompressionLookupRecord(imageData.readUnsignedShort());
+            LOGGER.debug("numberOfValuesPerCompressionLookupRecord:" + record.getNumberOfValuesPerCompressionLookupRecord());
+            record.setCompressionLookupValueBitLength(imageData.readUnsignedShort());
+            LOGGER.debug("compressionLookupValueBitLength:" + record.getCompressionLookupValueBitLength());
+            record.setCompressionLookupTableOffset(imageData.readInt());
+            mCompressionLookupOffsetRecords.add(record);
+        }
+    }
+
+    private void readCompressionLookupTables(final ImageInputStream imageData) throws IOException {
+        if (mCompressionLookupOffsetRecords.isEmpty()) {
+            throw new IOException("No VQ compression lookup tables");
+        }
+        // each table holds one row of every kernel
+        mKernelWidth = mCompressionLookupOffsetRecords.get(0).getNumberOfValuesPerCompressionLookupRecord();
+        mKernelHeight = mNumberOfCompressionLookupOffsetRecords;
+        int numberOfKernels = 0;
+        for (VQCompressionLookupOffsetRecord record : mCompressionLookupOffsetRecords) {
+            if (record.getNumberOfValuesPerCompressionLookupRecord() != mKernelWidth) {
+                throw new IOException("Unhandled VQ compression lookup tables with different numbers of values per record");
+            }
+            numberOfKernels = Math.max(numberOfKernels, record.getNumberOfCompressionLookupRecords());
+        }
+        int kernelSize = mKernelWidth * mKernelHeight;
+        mKernels = new byte[numberOfKernels * kernelSize];
+        for (int compressionLookupTableIndex = 0;
+                compressionLookupTableIndex < mNumberOfCompressionLookupOffsetRecords;
+                ++compressionLookupTableIndex) {
+            VQCompressionLookupOffsetRecord record = mCompressionLookupOffsetRecords.get(compressionLookupTableIndex);
+
+            // Read record entries
+            for (int compressionLookupRecordIndex = 0;
+                    compressionLookupRecordIndex < record.getNumberOfCompressionLookupRecords();
+                    ++compressionLookupRecordIndex) {
+                int kernelRowStart = compressionLookupRecordIndex * kernelSize + compressionLookupTableIndex * mKernelWidth;
+                // Read values for this record entry, and stuff them into the kernel row.
+                for (int compressionLookupValueIndex = 0;
+                        compressionLookupValueIndex < mKernelWidth;
+                        ++compressionLookupValueIndex) {
+                    mKernels[kernelRowStart + compressionLookupValueIndex] =
+                            (byte) imageData.readBits(record.getCompressionLookupValueBitLength());
+                }
+            }
+        }
+    }
+}
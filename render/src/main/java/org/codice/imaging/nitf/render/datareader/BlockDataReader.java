@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render.datareader;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+/**
+ * Reader for the data of a single image block.
+ *
+ * This supports decoding blocks concurrently. The block data is read from the shared image data stream in one
+ * operation (while holding the lock on that stream), and each block then gets its own stream to decode from.
+ */
+public final class BlockDataReader {
+
+    private BlockDataReader() {
+    }
+
+    /**
+     * Read the data for one block.
+     *
+     * @param imageData the image data stream, which must be seekable. This is locked during the read, so other threads
+     * can read blocks from the same stream.
+     * @param offset the offset of the block within the image data stream.
+     * @param length the number of bytes in the block.
+     * @return a stream containing only the block data, positioned at the start of the block.
+     * @throws IOException if the block data could not be read.
+     */
+    public static ImageInputStream readBlock(final ImageInputStream imageData, final long offset, final int length)
+            throws IOException {
+        byte[] blockData = new byte[length];
+        synchronized (imageData) {
+            imageData.seek(offset);
+            imageData.readFully(blockData);
+        }
+        return new MemoryCacheImageInputStream(new ByteArrayInputStream(blockData));
+    }
+}
@@ -17,6 +17,8 @@ package org.codice.imaging.nitf.render.datareader;
 import javax.imageio.stream.ImageInputStream;
 import org.codice.imaging.nitf.core.image.ImageSegment;
 import org.codice.imaging.nitf.core.image.PixelJustification;
+import org.codice.imaging.nitf.core.image.PixelValueType;
+import org.codice.imaging.nitf.render.ImageMask;
 
 /**
  * Factory class for creating data readers.
@@ -58,6 +60,155 @@ public final class DataReaderFactory {
         }
     }
 
+    /**
+     * Get an appropriate sample reader for the specified image segment.
+     *
+     * This reads the same values as the reader from forImageSegment(), but for a run of samples at a time.
+     *
+     * @param segment the image segment specifying the image characteristics to
+     * be read.
+     * @return a sample reader for the segment data, or null if an appropriate
+     * reader could not be found.
+     */
+    public static SampleReader samplesForImageSegment(final ImageSegment segment) {
+        int bitsPerSample = segment.getNumberOfBitsPerPixelPerBand();
+        if ((segment.getActualBitsPerPixelPerBand() != bitsPerSample)
+                && (segment.getPixelJustification() == PixelJustification.RIGHT)) {
+            if (bitsPerSample <= Byte.SIZE) {
+                return samplesForBitsPerSample(bitsPerSample, Byte.SIZE - segment.getActualBitsPerPixelPerBand());
+            } else if (bitsPerSample <= Short.SIZE) {
+                return samplesForBitsPerSample(bitsPerSample, Short.SIZE - segment.getActualBitsPerPixelPerBand());
+            }
+            return null;
+        }
+        switch (bitsPerSample) {
+            case 1:
+            case Byte.SIZE:
+            case Short.SIZE:
+                return samplesForBitsPerSample(bitsPerSample, 0);
+            case TWELVE_BIT_IMAGE:
+                return samplesForBitsPerSample(bitsPerSample, Short.SIZE - bitsPerSample);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Get a sample reader for floating point (R) or complex (C) image data.
+     *
+     * The reader maps the values (or, for complex data, the magnitudes) to 8 bit display values, and pad pixels to zero.
+     *
+     * @param segment the image segment specifying the image characteristics to be read.
+     * @param mapping the mapping to display values.
+     * @param imageMask the image mask for the pad pixel value, or null if there are no pad pixels.
+     * @return a sample reader for the segment data, or null if the sample size is not supported (32 or 64 bits for
+     * floating point, and 64 bits for complex).
+     */
+    public static SampleReader floatSamplesForImageSegment(final ImageSegment segment, final FloatDisplayMapping mapping,
+            final ImageMask imageMask) {
+        return createFloatSampleReader(segment, mapping, imageMask);
+    }
+
+    /**
+     * Get a reader for the values of floating point (R) or complex (C) image data, without mapping to display values.
+     *
+     * @param segment the image segment specifying the image characteristics to be read.
+     * @return a reader for the segment data values (or, for complex data, the magnitudes), to be read with readValues(),
+     * or null if the sample size is not supported (32 or 64 bits for floating point, and 64 bits for complex).
+     */
+    public static FloatSampleReader floatValuesForImageSegment(final ImageSegment segment) {
+        return floatValuesForImageSegment(segment, null);
+    }
+
+    /**
+     * Get a reader for the values of floating point (R) or complex (C) image data, without mapping to display values,
+     * that finds the pad pixels.
+     *
+     * @param segment the image segment specifying the image characteristics to be read.
+     * @param imageMask the image mask for the pad pixel code, or null if there are no pad pixels.
+     * @return a reader for the segment data values (or, for complex data, the magnitudes), to be read with readValues(),
+     * or null if the sample size is not supported (32 or 64 bits for floating point, and 64 bits for complex).
+     */
+    public static FloatSampleReader floatValuesForImageSegment(final ImageSegment segment, final ImageMask imageMask) {
+        return createFloatSampleReader(segment, null, imageMask);
+    }
+
+    /**
+     * Get a sample reader that maps integer samples to 8 bit display values through a lookup table.
+     *
+     * @param segment the image segment specifying the image characteristics to be read.
+     * @param lookupTable the lookup table, which must be for the actual bits per pixel (ABPP) of the segment.
+     * @param imageMask the image mask for the pad pixel value (which is read as zero), or null if there are no pad pixels.
+     * @return a sample reader for the segment data, or null if the sample size is not supported (more than 16 bits).
+     */
+    public static SampleReader lookupSamplesForImageSegment(final ImageSegment segment, final DisplayLookupTable lookupTable,
+            final ImageMask imageMask) {
+        int bitsPerSample = segment.getNumberOfBitsPerPixelPerBand();
+        int actualBitsPerSample = segment.getActualBitsPerPixelPerBand();
+        if (lookupTable.getBitsPerSample() != actualBitsPerSample) {
+            throw new IllegalArgumentException(String.format("Display lookup table is for %d bit samples, image has %d bit samples",
+                    lookupTable.getBitsPerSample(), actualBitsPerSample));
+        }
+        if (bitsPerSample > Short.SIZE) {
+            return null;
+        }
+        int sampleShift = 0;
+        if (segment.getPixelJustification() == PixelJustification.LEFT) {
+            sampleShift = bitsPerSample - actualBitsPerSample;
+        }
+        return new LookupSampleReader(samplesForBitsPerSample(bitsPerSample), sampleShift, lookupTable, imageMask);
+    }
+
+    /**
+     * Get a data reader function that reads one sample at a time with a sample reader.
+     *
+     * @param sampleReader the sample reader.
+     * @return a reader function that returns the value of one sample.
+     */
+    public static IOReaderFunction<Integer, ImageInputStream> forSampleReader(final SampleReader sampleReader) {
+        return (imageInputStream) -> {
+            int[] sample = new int[1];
+            sampleReader.read(imageInputStream, sample, 0, 1);
+            return sample[0];
+        };
+    }
+
+    /**
+     * Get a sample reader that returns the raw (unshifted) sample values.
+     *
+     * @param bitsPerSample the number of bits for each sample, up to 16.
+     * @return a sample reader for samples of the specified size.
+     */
+    public static SampleReader samplesForBitsPerSample(final int bitsPerSample) {
+        return samplesForBitsPerSample(bitsPerSample, 0);
+    }
+
+    private static SampleReader samplesForBitsPerSample(final int bitsPerSample, final int bitShift) {
+        switch (bitsPerSample) {
+            case Byte.SIZE:
+                return new ByteSampleReader(bitShift);
+            case Short.SIZE:
+                return new ShortSampleReader(bitShift);
+            default:
+                return new PackedSampleReader(bitsPerSample, bitShift);
+        }
+    }
+
+    private static FloatSampleReader createFloatSampleReader(final ImageSegment segment, final FloatDisplayMapping mapping,
+            final ImageMask imageMask) {
+        int bitsPerSample = segment.getNumberOfBitsPerPixelPerBand();
+        if (segment.getPixelValueType() == PixelValueType.COMPLEX) {
+            if (bitsPerSample != Double.SIZE) {
+                return null;
+            }
+            return new FloatSampleReader(bitsPerSample, true, mapping, imageMask);
+        }
+        if ((bitsPerSample != Float.SIZE) && (bitsPerSample != Double.SIZE)) {
+            return null;
+        }
+        return new FloatSampleReader(bitsPerSample, false, mapping, imageMask);
+    }
+
     private static IOReaderFunction getBitshiftReader(final ImageSegment segment) {
         if (segment.getNumberOfBitsPerPixelPerBand() <= Byte.SIZE) {
             return new Bitshift8IOReaderFunction(segment);
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render.datareader;
+
+import org.codice.imaging.nitf.core.image.ImageBand;
+import org.codice.imaging.nitf.core.image.ImageBandLUT;
+
+/**
+ * Lookup table from integer sample values to 8 bit display values.
+ *
+ * The table has an entry for every possible sample value, so a stretch of high bit depth (e.g. 11, 12 or 16 bit)
+ * data is worked out once, when the table is created, and mapping a sample is a single array access. The table is
+ * indexed by the actual sample value (ABPP bits), not by the value scaled to the full range of the stored sample.
+ */
+public final class DisplayLookupTable {
+
+    private static final int MAXIMUM_DISPLAY_VALUE = 255;
+
+    private static final double PERCENT = 100.0;
+
+    private final byte[] mTable;
+
+    private final int mBitsPerSample;
+
+    private DisplayLookupTable(final int bitsPerSample) {
+        if ((bitsPerSample < 1) || (bitsPerSample > Short.SIZE)) {
+            throw new IllegalArgumentException("Display lookup tables are only supported for 1 to 16 bit samples, not " + bitsPerSample);
+        }
+        mBitsPerSample = bitsPerSample;
+        mTable = new byte[1 << bitsPerSample];
+    }
+
+    /**
+     * Create a linear stretch.
+     *
+     * @param bitsPerSample the number of bits in each sample (ABPP).
+     * @param low the sample value that maps to black. Smaller values also map to black.
+     * @param high the sample value that maps to white. Larger values also map to white.
+     * @return the lookup table.
+     */
+    public static DisplayLookupTable linear(final int bitsPerSample, final int low, final int high) {
+        return gamma(bitsPerSample, low, high, 1.0);
+    }
+
+    /**
+     * Create a linear stretch between two percentiles of a histogram.
+     *
+     * This clips the given fraction of the samples at each end, so a few very dark or very bright samples do not take up
+     * most of the display range.
+     *
+     * @param bitsPerSample the number of bits in each sample (ABPP).
+     * @param histogram the number of samples with each value (e.g. from the band statistics of the image).
+     * @param lowPercentile the percentage of samples that map to black (e.g. 2.0).
+     * @param highPercentile the percentage of samples that map to anything other than white (e.g. 98.0).
+     * @return the lookup table.
+     */
+    public static DisplayLookupTable percentile(final int bitsPerSample, final long[] histogram, final double lowPercentile,
+            final double highPercentile) {
+        long total = 0;
+        for (long count : histogram) {
+            total += count;
+        }
+        double lowCount = total * lowPercentile / PERCENT;
+        double highCount = total * highPercentile / PERCENT;
+        int low = -1;
+        int high = histogram.length - 1;
+        long cumulativeCount = 0;
+        for (int value = 0; value < histogram.length; ++value) {
+            cumulativeCount += histogram[value];
+            if ((low < 0) && (cumulativeCount > lowCount)) {
+                low = value;
+            }
+            if (cumulativeCount >= highCount) {
+                high = value;
+                break;
+            }
+        }
+        return linear(bitsPerSample, Math.max(low, 0), high);
+    }
+
+    /**
+     * Create a gamma stretch.
+     *
+     * The sample value is first scaled to the range 0 to 1 (as for a linear stretch), and then raised to the power of
+     * 1 / gamma, so gamma values greater than 1 brighten the mid tones.
+     *
+     * @param bitsPerSample the number of bits in each sample (ABPP).
+     * @param low the sample value that maps to black. Smaller values also map to black.
+     * @param high the sample value that maps to white. Larger values also map to white.
+     * @param gamma the display gamma, which must be greater than zero.
+     * @return the lookup table.
+     */
+    public static DisplayLookupTable gamma(final int bitsPerSample, final int low, final int high, final double gamma) {
+        if (!(gamma > 0)) {
+            throw new IllegalArgumentException("Gamma must be greater than zero: " + gamma);
+        }
+        DisplayLookupTable lookupTable = new DisplayLookupTable(bitsPerSample);
+        double exponent = 1.0 / gamma;
+        for (int value = 0; value < lookupTable.mTable.length; ++value) {
+            double scaled;
+            if (value >= high) {
+                scaled = 1.0;
+            } else if (value <= low) {
+                scaled = 0.0;
+            } else {
+                scaled = Math.pow((double) (value - low) / (high - low), exponent);
+            }
+            lookupTable.mTable[value] = (byte) Math.round(scaled * MAXIMUM_DISPLAY_VALUE);
+        }
+        return lookupTable;
+    }
+
+    /**
+     * Create a lookup table from the first lookup table (LUT) of an image band.
+     *
+     * Sample values beyond the end of the band LUT map to the last entry.
+     *
+     * @param bitsPerSample the number of bits in each sample (ABPP).
+     * @param imageBand the image band, which must have at least one LUT.
+     * @return the lookup table.
+     */
+    public static DisplayLookupTable forImageBand(final int bitsPerSample, final ImageBand imageBand) {
+        if (imageBand.getNumLUTs() == 0) {
+            throw new IllegalArgumentException("Image band does not have a lookup table");
+        }
+        ImageBandLUT bandLookupTable = imageBand.getLUTZeroBase(0);
+        int numberOfEntries = bandLookupTable.getNumberOfEntries();
+        DisplayLookupTable lookupTable = new DisplayLookupTable(bitsPerSample);
+        for (int value = 0; value < lookupTable.mTable.length; ++value) {
+            lookupTable.mTable[value] = bandLookupTable.getEntry(Math.min(value, numberOfEntries - 1));
+        }
+        return lookupTable;
+    }
+
+    /**
+     * Get the number of bits in the samples that the table maps.
+     *
+     * @return the sample size, in bits.
+     */
+    public int getBitsPerSample() {
+        return mBitsPerSample;
+    }
+
+    /**
+     * Get the display value for a sample.
+     *
+     * @param sample the sample value, which must be in the range of the table.
+     * @return the display value, from 0 to 255.
+     */
+    public int lookup(final int sample) {
+        return mTable[sample] & MAXIMUM_DISPLAY_VALUE;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render.datareader;
+
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.core.image.PixelValueType;
+
+/**
+ * Mapping from floating point sample values to 8 bit display values.
+ *
+ * The mapping is either linear, or logarithmic (which suits the magnitudes of complex SAR data, where a few strong
+ * returns would otherwise leave the rest of the image black). The range is converted to an offset and a scale when the
+ * mapping is created, so mapping a value is a subtraction and a multiplication (plus a logarithm, for logarithmic
+ * mappings). Values outside the range are clamped, and values that are not numbers map to zero.
+ */
+public final class FloatDisplayMapping {
+
+    private static final int MAXIMUM_DISPLAY_VALUE = 255;
+
+    private final boolean mLogarithmic;
+    private final double mOffset;
+    private final double mScale;
+
+    private FloatDisplayMapping(final boolean logarithmic, final double minimum, final double maximum) {
+        mLogarithmic = logarithmic;
+        double low = minimum;
+        double high = maximum;
+        if (logarithmic) {
+            low = Math.log1p(Math.max(minimum, 0));
+            high = Math.log1p(Math.max(maximum, 0));
+        }
+        mOffset = low;
+        if (high > low) {
+            mScale = MAXIMUM_DISPLAY_VALUE / (high - low);
+        } else {
+            mScale = 0;
+        }
+    }
+
+    /**
+     * Create a linear mapping.
+     *
+     * @param minimum the value that maps to black.
+     * @param maximum the value that maps to white.
+     * @return the mapping.
+     */
+    public static FloatDisplayMapping linear(final double minimum, final double maximum) {
+        return new FloatDisplayMapping(false, minimum, maximum);
+    }
+
+    /**
+     * Create a logarithmic mapping.
+     *
+     * Values are mapped by the logarithm of one more than the value, so zero maps to zero. Negative values are treated as
+     * zero.
+     *
+     * @param minimum the value that maps to black.
+     * @param maximum the value that maps to white.
+     * @return the mapping.
+     */
+    public static FloatDisplayMapping logarithmic(final double minimum, final double maximum) {
+        return new FloatDisplayMapping(true, minimum, maximum);
+    }
+
+    /**
+     * Create the default mapping for a floating point or complex image segment.
+     *
+     * This is a linear mapping for real (R) segments, and a logarithmic mapping for complex (C) segments, where the
+     * values are the magnitudes.
+     *
+     * @param imageSegment the image segment.
+     * @param minimum the value that maps to black.
+     * @param maximum the value that maps to white.
+     * @return the mapping.
+     */
+    public static FloatDisplayMapping forImageSegment(final ImageSegment imageSegment, final double minimum, final double maximum) {
+        if (imageSegment.getPixelValueType() == PixelValueType.COMPLEX) {
+            return logarithmic(minimum, maximum);
+        }
+        return linear(minimum, maximum);
+    }
+
+    /**
+     * Map a value to a display value.
+     *
+     * @param value the sample value.
+     * @return the display value, between 0 and 255.
+     */
+    public int map(final double value) {
+        double scaled;
+        if (mLogarithmic) {
+            scaled = (Math.log1p(Math.max(value, 0)) - mOffset) * mScale;
+        } else {
+            scaled = (value - mOffset) * mScale;
+        }
+        if (!(scaled > 0)) {
+            return 0;
+        }
+        if (scaled >= MAXIMUM_DISPLAY_VALUE) {
+            return MAXIMUM_DISPLAY_VALUE;
+        }
+        return (int) Math.round(scaled);
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render.datareader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import javax.imageio.stream.ImageInputStream;
+import org.codice.imaging.nitf.render.ImageMask;
+
+/**
+ * SampleReader for floating point (32 or 64 bit) and complex (two 32 bit floating point parts) samples.
+ *
+ * Runs of samples are read with a single readFully, and converted in bulk through a FloatBuffer or DoubleBuffer view
+ * (using the byte order of the stream). Complex samples are converted to their magnitude. The values are then mapped
+ * to display values by a FloatDisplayMapping, or returned unmapped by readValues(). Pad pixels are detected on the
+ * stored bits of each sample, before they are converted to values, since the pad pixel code is a bit pattern (which
+ * need not be an integer value), and are read as zero.
+ */
+public final class FloatSampleReader implements SampleReader {
+
+    private static final int FLOAT64_BITS = Double.SIZE;
+    private static final long UNSIGNED_INT_MASK = 0xFFFFFFFFL;
+
+    private final int bytesPerSample;
+    private final boolean isComplex;
+    private final FloatDisplayMapping displayMapping;
+    private final ImageMask padPixelMask;
+
+    /**
+     * Constructor.
+     *
+     * @param bitsPerSample the number of bits for each sample (32 or 64).
+     * @param complex true if each sample is a pair of 32 bit floating point values (real and imaginary parts).
+     * @param mapping the mapping from values (or magnitudes) to display values, or null if only readValues() is used.
+     * @param imageMask the image mask for the pad pixel value, or null if there are no pad pixels.
+     */
+    FloatSampleReader(final int bitsPerSample, final boolean complex, final FloatDisplayMapping mapping, final ImageMask imageMask) {
+        this.bytesPerSample = bitsPerSample / Byte.SIZE;
+        this.isComplex = complex;
+        this.displayMapping = mapping;
+        if ((imageMask != null) && imageMask.hasPixelMasks()) {
+            this.padPixelMask = imageMask;
+        } else {
+            this.padPixelMask = null;
+        }
+    }
+
+    @Override
+    public void read(final ImageInputStream imageInputStream, final int[] samples, final int offset, final int count)
+            throws IOException {
+        double[] values = new double[count];
+        boolean[] padPixels = new boolean[count];
+        readValues(imageInputStream, values, 0, count, padPixels);
+        for (int i = 0; i < count; ++i) {
+            if (padPixels[i]) {
+                samples[offset + i] = 0;
+            } else {
+                samples[offset + i] = displayMapping.map(values[i]);
+            }
+        }
+    }
+
+    /**
+     * Read consecutive sample values, without mapping them to display values.
+     *
+     * @param imageInputStream the stream to read from.
+     * @param values the array to store the values (or, for complex samples, the magnitudes) into.
+     * @param offset the index in values of the first sample.
+     * @param count the number of samples to read.
+     * @throws IOException if reading fails.
+     */
+    public void readValues(final ImageInputStream imageInputStream, final double[] values, final int offset, final int count)
+            throws IOException {
+        readValues(imageInputStream, values, offset, count, null);
+    }
+
+    /**
+     * Read consecutive sample values, without mapping them to display values, and find the pad pixels.
+     *
+     * Pad pixels are found by comparing the stored bits of each sample (both parts, for complex samples) with the pad
+     * pixel code of the image mask that the reader was created with.
+     *
+     * @param imageInputStream the stream to read from.
+     * @param values the array to store the values (or, for complex samples, the magnitudes) into.
+     * @param offset the index in values (and padPixels) of the first sample.
+     * @param count the number of samples to read.
+     * @param padPixels the array to store whether each sample is a pad pixel into, or null. Every sample is stored as
+     * false if the reader has no image mask.
+     * @throws IOException if reading fails.
+     */
+    public void readValues(final ImageInputStream imageInputStream, final double[] values, final int offset, final int count,
+            final boolean[] padPixels) throws IOException {
+        byte[] bytes = new byte[count * bytesPerSample];
+        imageInputStream.readFully(bytes);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(imageInputStream.getByteOrder());
+        if (isComplex) {
+            FloatBuffer parts = buffer.asFloatBuffer();
+            for (int i = 0; i < count; ++i) {
+                double real = parts.get(2 * i);
+                double imaginary = parts.get(2 * i + 1);
+                values[offset + i] = Math.sqrt(real * real + imaginary * imaginary);
+            }
+        } else if (bytesPerSample * Byte.SIZE == FLOAT64_BITS) {
+            DoubleBuffer doubles = buffer.asDoubleBuffer();
+            doubles.get(values, offset, count);
+        } else {
+            FloatBuffer floats = buffer.asFloatBuffer();
+            for (int i = 0; i < count; ++i) {
+                values[offset + i] = floats.get(i);
+            }
+        }
+        if (padPixels != null) {
+            for (int i = 0; i < count; ++i) {
+                padPixels[offset + i] = isPadPixel(buffer, i);
+            }
+        }
+    }
+
+    private boolean isPadPixel(final ByteBuffer buffer, final int index) {
+        if (padPixelMask == null) {
+            return false;
+        }
+        if (bytesPerSample == Long.BYTES) {
+            return padPixelMask.isPadPixelBits(buffer.getLong(index * bytesPerSample));
+        }
+        return padPixelMask.isPadPixelBits(buffer.getInt(index * bytesPerSample) & UNSIGNED_INT_MASK);
+    }
+
+    @Override
+    public void skip(final ImageInputStream imageInputStream, final int count) throws IOException {
+        imageInputStream.seek(imageInputStream.getStreamPosition() + (long) count * bytesPerSample);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render.datareader;
+
+import java.io.IOException;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageInputStreamImpl;
+
+/**
+ * A view of the image data stream with its own stream position.
+ *
+ * This supports decoders that seek around in the image data, and so cannot share the image data stream with other
+ * threads (e.g. JPEG 2000 readers decoding different tiles of the same codestream). Each view reads the shared stream a
+ * buffer at a time, while holding the lock on that stream, so several views of the same stream can be read
+ * concurrently. Closing the view does not close the shared stream.
+ */
+public final class ImageDataStreamView extends ImageInputStreamImpl {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int BYTE_MASK = 0xFF;
+
+    private final ImageInputStream mImageData;
+    private final long mStart;
+    private final byte[] mBuffer = new byte[BUFFER_SIZE];
+    private long mBufferStart = 0;
+    private int mBufferLength = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param imageData the image data stream, which must be seekable.
+     * @param start the position in the image data stream that is position 0 of the view.
+     */
+    public ImageDataStreamView(final ImageInputStream imageData, final long start) {
+        mImageData = imageData;
+        mStart = start;
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkClosed();
+        bitOffset = 0;
+        if (!fillBuffer()) {
+            return -1;
+        }
+        int value = mBuffer[(int) (streamPos - mBufferStart)] & BYTE_MASK;
+        streamPos++;
+        return value;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        checkClosed();
+        if ((off < 0) || (len < 0) || (off + len > b.length)) {
+            throw new IndexOutOfBoundsException(String.format("Cannot read %d bytes at offset %d of %d", len, off, b.length));
+        }
+        bitOffset = 0;
+        if (len == 0) {
+            return 0;
+        }
+        if (!isBuffered() && (len >= BUFFER_SIZE)) {
+            // no point copying large reads through the buffer
+            int count = readImageData(b, off, len);
+            if (count <= 0) {
+                return -1;
+            }
+            streamPos += count;
+            return count;
+        }
+        if (!fillBuffer()) {
+            return -1;
+        }
+        int count = Math.min(len, (int) (mBufferStart + mBufferLength - streamPos));
+        System.arraycopy(mBuffer, (int) (streamPos - mBufferStart), b, off, count);
+        streamPos += count;
+        return count;
+    }
+
+    @Override
+    public long length() {
+        try {
+            long length = mImageData.length();
+            if (length < 0) {
+                return -1;
+            }
+            return length - mStart;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private boolean isBuffered() {
+        return (streamPos >= mBufferStart) && (streamPos < mBufferStart + mBufferLength);
+    }
+
+    private boolean fillBuffer() throws IOException {
+        if (isBuffered()) {
+            return true;
+        }
+        mBufferStart = streamPos;
+        mBufferLength = Math.max(readImageData(mBuffer, 0, BUFFER_SIZE), 0);
+        return mBufferLength > 0;
+    }
+
+    private int readImageData(final byte[] b, final int off, final int len) throws IOException {
+        synchronized (mImageData) {
+            mImageData.seek(mStart + streamPos);
+            return mImageData.read(b, off, len);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render.datareader;
+
+import java.io.IOException;
+import javax.imageio.stream.ImageInputStream;
+import org.codice.imaging.nitf.render.ImageMask;
+
+/**
+ * SampleReader that maps the samples to display values through a lookup table, as they are read.
+ *
+ * The samples are read with a reader for the raw stored values, and the actual sample value (without any padding bits)
+ * is then used to index the table. Pad pixels are detected on the raw stored values, before they are mapped, and are
+ * read as zero.
+ */
+final class LookupSampleReader implements SampleReader {
+
+    private final SampleReader rawReader;
+    private final int sampleShift;
+    private final int sampleMask;
+    private final DisplayLookupTable lookupTable;
+    private final ImageMask padPixelMask;
+
+    LookupSampleReader(final SampleReader rawSampleReader, final int rawSampleShift, final DisplayLookupTable displayLookupTable,
+            final ImageMask imageMask) {
+        this.rawReader = rawSampleReader;
+        this.sampleShift = rawSampleShift;
+        this.sampleMask = (1 << displayLookupTable.getBitsPerSample()) - 1;
+        this.lookupTable = displayLookupTable;
+        if ((imageMask != null) && imageMask.hasPixelMasks()) {
+            this.padPixelMask = imageMask;
+        } else {
+            this.padPixelMask = null;
+        }
+    }
+
+    @Override
+    public void read(final ImageInputStream imageInputStream, final int[] samples, final int offset, final int count)
+            throws IOException {
+        rawReader.read(imageInputStream, samples, offset, count);
+        for (int i = offset; i < offset + count; ++i) {
+            if ((padPixelMask != null) && padPixelMask.isPadPixel(samples[i])) {
+                samples[i] = 0;
+            } else {
+                samples[i] = lookupTable.lookup((samples[i] >>> sampleShift) & sampleMask);
+            }
+        }
+    }
+
+    @Override
+    public void skip(final ImageInputStream imageInputStream, final int count) throws IOException {
+        rawReader.skip(imageInputStream, count);
+    }
+}
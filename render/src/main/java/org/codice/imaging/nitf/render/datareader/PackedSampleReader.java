@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render.datareader;
+
+import java.io.IOException;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * SampleReader for samples of any size up to 16 bits, that are not necessarily byte aligned (e.g. 1 or 12 bit images).
+ *
+ * The samples are read with a single readFully, and unpacked from a bit accumulator. The stream is left at the bit
+ * following the last sample, in the same way as ImageInputStream.readBits().
+ */
+final class PackedSampleReader implements SampleReader {
+
+    private static final int BYTE_MASK = 0xFF;
+
+    private final int bitsPerSample;
+    private final long sampleMask;
+    private final int bitShift;
+
+    PackedSampleReader(final int numBitsPerSample, final int sampleBitShift) {
+        this.bitsPerSample = numBitsPerSample;
+        this.sampleMask = (1L << numBitsPerSample) - 1;
+        this.bitShift = sampleBitShift;
+    }
+
+    @Override
+    public void read(final ImageInputStream imageInputStream, final int[] samples, final int offset, final int count)
+            throws IOException {
+        if (count == 0) {
+            return;
+        }
+        int startBit = imageInputStream.getBitOffset();
+        long totalBits = startBit + (long) bitsPerSample * count;
+        byte[] bytes = new byte[(int) ((totalBits + Byte.SIZE - 1) / Byte.SIZE)];
+        imageInputStream.readFully(bytes);
+
+        long accumulator = bytes[0] & BYTE_MASK;
+        int accumulatorBits = Byte.SIZE - startBit;
+        int byteIndex = 1;
+        for (int i = offset; i < offset + count; ++i) {
+            while (accumulatorBits < bitsPerSample) {
+                accumulator = (accumulator << Byte.SIZE) | (bytes[byteIndex] & BYTE_MASK);
+                byteIndex++;
+                accumulatorBits += Byte.SIZE;
+            }
+            accumulatorBits -= bitsPerSample;
+            samples[i] = (int) (((accumulator >>> accumulatorBits) & sampleMask) << bitShift);
+            accumulator &= (1L << accumulatorBits) - 1;
+        }
+        setEndBit(imageInputStream, totalBits);
+    }
+
+    @Override
+    public void skip(final ImageInputStream imageInputStream, final int count) throws IOException {
+        long totalBits = imageInputStream.getBitOffset() + (long) bitsPerSample * count;
+        imageInputStream.seek(imageInputStream.getStreamPosition() + totalBits / Byte.SIZE);
+        imageInputStream.setBitOffset((int) (totalBits % Byte.SIZE));
+    }
+
+    private static void setEndBit(final ImageInputStream imageInputStream, final long totalBits) throws IOException {
+        int endBit = (int) (totalBits % Byte.SIZE);
+        if (endBit != 0) {
+            imageInputStream.seek(imageInputStream.getStreamPosition() - 1);
+            imageInputStream.setBitOffset(endBit);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render.datareader;
+
+import java.io.IOException;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Interface for reading runs of samples from an ImageInputStream.
+ *
+ * This is the bulk equivalent of IOReaderFunction. Implementations read the data for a number of consecutive samples
+ * (which may be several pixels of one band, or several bands of interleaved pixels) in one read, and unpack the values
+ * into a primitive array.
+ */
+public interface SampleReader {
+
+    /**
+     * Read consecutive samples.
+     *
+     * @param imageInputStream the stream to read from.
+     * @param samples the array to unpack the sample values into.
+     * @param offset the index in samples of the first sample.
+     * @param count the number of samples to read.
+     * @throws IOException if reading fails.
+     */
+    void read(ImageInputStream imageInputStream, int[] samples, int offset, int count) throws IOException;
+
+    /**
+     * Skip over consecutive samples.
+     *
+     * @param imageInputStream the stream to skip within.
+     * @param count the number of samples to skip.
+     * @throws IOException if seeking fails.
+     */
+    void skip(ImageInputStream imageInputStream, int count) throws IOException;
+}
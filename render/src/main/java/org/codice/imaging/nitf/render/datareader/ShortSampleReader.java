@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render.datareader;
+
+import java.io.IOException;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * SampleReader for 16 bit samples.
+ *
+ * Byte aligned runs are read directly into a short array (using the byte order of the stream). If the stream is part
+ * way through a byte, this falls back to bit unpacking.
+ */
+final class ShortSampleReader implements SampleReader {
+
+    private static final int SHORT_MASK = 0xFFFF;
+
+    private final int bitShift;
+    private final PackedSampleReader unalignedReader;
+
+    ShortSampleReader(final int sampleBitShift) {
+        this.bitShift = sampleBitShift;
+        this.unalignedReader = new PackedSampleReader(Short.SIZE, sampleBitShift);
+    }
+
+    @Override
+    public void read(final ImageInputStream imageInputStream, final int[] samples, final int offset, final int count)
+            throws IOException {
+        if (imageInputStream.getBitOffset() != 0) {
+            unalignedReader.read(imageInputStream, samples, offset, count);
+            return;
+        }
+        short[] shorts = new short[count];
+        imageInputStream.readFully(shorts, 0, count);
+        for (int i = 0; i < count; ++i) {
+            samples[offset + i] = (shorts[i] & SHORT_MASK) << bitShift;
+        }
+    }
+
+    @Override
+    public void skip(final ImageInputStream imageInputStream, final int count) throws IOException {
+        unalignedReader.skip(imageInputStream, count);
+    }
+}
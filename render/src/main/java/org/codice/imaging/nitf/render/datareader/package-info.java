@@ -22,6 +22,9 @@
  * and actual) and pixel justification (whether valid bits are left or right
  * justified within nominal bits).
  *
+ * SampleReader is the bulk equivalent, which reads a run of samples into a
+ * primitive array instead of returning one boxed value per sample.
+ *
  */
 
 package org.codice.imaging.nitf.render.datareader;
@@ -16,14 +16,29 @@
 package org.codice.imaging.nitf.render.imagemode;
 
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.image.DataBuffer;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 import javax.imageio.stream.ImageInputStream;
 import org.codice.imaging.nitf.core.image.ImageMode;
 import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.render.BlockCache;
+import org.codice.imaging.nitf.render.DecodedBlockConsumer;
+import org.codice.imaging.nitf.render.GraphicsRenderTarget;
 import org.codice.imaging.nitf.render.ImageMask;
+import org.codice.imaging.nitf.render.RenderTarget;
 import org.codice.imaging.nitf.render.imagerep.ImageRepresentationHandler;
 
+/**
+ * ImageModeHandler for Band Sequential mode.
+ *
+ * All of the blocks for the first band come first in the image data, followed by all of the blocks for the second band,
+ * and so on. Where each block starts on a byte boundary, the decoder seeks over the bands that are not rendered.
+ */
 class BandSequentialImageModeHandler extends BaseImageModeHandler implements ImageModeHandler {
 
     BandSequentialImageModeHandler(final ImageRepresentationHandler imageRepresentationHandler) {
@@ -37,44 +52,153 @@ class BandSequentialImageModeHandler extends BaseImageModeHandler implements Ima
      */
     @Override
     public void handleImage(final ImageSegment imageSegment, final Graphics2D targetImage) throws IOException {
+        checkNull(targetImage, "targetImage");
+        handleImage(imageSegment, new GraphicsRenderTarget(targetImage), new RenderOptions(null, null, 1, null));
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void handleImage(final ImageSegment imageSegment, final RenderTarget targetImage, final RenderOptions options)
+            throws IOException {
 
         checkNull(imageSegment, "imageSegment");
         checkNull(targetImage, "targetImage");
+        checkNull(options, "options");
         checkImageMode(imageSegment);
 
-        final ImageMask imageMask = getImageMask(imageSegment);
+        final Rectangle region = options.getRegion();
+        final int subsampling = options.getSubsampling();
 
-        ImageBlockMatrix matrix = new ImageBlockMatrix(imageSegment, ()
-                -> imageRepresentationHandler.createBufferedImage((int) imageSegment.getNumberOfPixelsPerBlockHorizontal(),
-                (int) imageSegment.getNumberOfPixelsPerBlockVertical()));
+        final ImageMask imageMask = getImageMask(imageSegment);
 
-        for (int bandIndex = 0; bandIndex < imageSegment.getNumBands(); bandIndex++) {
-            final int index = bandIndex;
+        ImageBlockMatrix matrix = new ImageBlockMatrix(imageSegment, imageRepresentationHandler::createBufferedImage, subsampling);
+
+        final ForkJoinPool blockPool = getBlockPool(imageSegment, options.getPool());
+        final Rectangle decodeRegion = getDecodeRegion(imageSegment, region);
+        final BlockCache.SegmentBlocks blockCache = getBlockCache(imageSegment, options.getCachedBlocks());
+        final boolean seekToBlocks = canSeekToBlocks(imageSegment) && ((region != null) || (subsampling > 1) || (blockCache != null)
+                || imageMask.hasBlockMaskRecords() || hasUnrenderedBands(imageSegment));
+        final Set<Integer> cachedBlockIndexes = ConcurrentHashMap.newKeySet();
+        if (blockCache != null) {
+            matrix.forEachBlock(null, decodeRegion, block -> {
+                block.setImage(blockCache.get(block.getBlockIndex()));
+                if (block.getImage() != null) {
+                    cachedBlockIndexes.add(block.getBlockIndex());
+                }
+            });
+        }
+        try {
+            for (int bandIndex = 0; bandIndex < imageSegment.getNumBands(); bandIndex++) {
+                if (seekToBlocks && !imageRepresentationHandler.isRenderedBand(bandIndex)) {
+                    continue;
+                }
+                final int index = bandIndex;
+
+                matrix.forEachBlock(blockPool, decodeRegion, block -> {
+                    if (!imageMask.isMaskedBlock(block.getBlockIndex(), index) && !(seekToBlocks && block.isEmpty())
+                            && !cachedBlockIndexes.contains(block.getBlockIndex())) {
+                        try {
+                            readBlock(block, imageSegment, getBlockData(imageSegment, imageMask, block.getBlockIndex(), index,
+                                    blockPool, seekToBlocks), index);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        applyMask(block, imageMask);
+                    }
+                });
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
 
-            matrix.forEachBlock(block -> {
-                if (!imageMask.isMaskedBlock(block.getBlockIndex(), index)) {
-                    readBlock(block, imageSegment.getData(), index);
-                    applyMask(block, imageMask);
+        if (blockCache != null) {
+            matrix.forEachBlock(null, decodeRegion, block -> {
+                if ((block.getImage() != null) && !cachedBlockIndexes.contains(block.getBlockIndex())) {
+                    blockCache.put(block.getBlockIndex(), block.getImage());
                 }
             });
         }
 
-        matrix.forEachBlock((block) -> block.render(targetImage, true));
+        matrix.forEachBlock(null, region, (block) -> block.render(targetImage, true));
     }
 
-    private void readBlock(final ImageBlock block, final ImageInputStream imageInputStream, final int bandIndex) {
+    /**
+     * {@inheritDoc}
+     *
+     * Each band of an image block is in a different part of the image data. If every block starts on a byte boundary,
+     * the decoder seeks to each rendered band of a block in turn, so only one block is held in memory, and the blocks are
+     * passed to the consumer in block order. Otherwise, every block has to be decoded before any are passed to the
+     * consumer.
+     */
+    @Override
+    public void handleBlocks(final ImageSegment imageSegment, final DecodedBlockConsumer consumer) throws IOException {
+        checkNull(imageSegment, "imageSegment");
+        checkNull(consumer, "consumer");
+        checkImageMode(imageSegment);
+
+        final ImageMask imageMask = getImageMask(imageSegment);
+
+        ImageBlockMatrix matrix = new ImageBlockMatrix(imageSegment, imageRepresentationHandler::createBufferedImage, 1);
+        final boolean seekToBlocks = canSeekToBlocks(imageSegment);
+        try {
+            if (!seekToBlocks) {
+                for (int bandIndex = 0; bandIndex < imageSegment.getNumBands(); bandIndex++) {
+                    final int index = bandIndex;
+                    matrix.forEachBlock(block -> readBlock(block, imageSegment, imageMask, index, false));
+                }
+            }
+            for (int row = 0; row < matrix.getMatrixWidth(); row++) {
+                for (int column = 0; column < matrix.getMatrixHeight(); column++) {
+                    ImageBlock block = matrix.getImageBlock(row, column);
+                    if (seekToBlocks) {
+                        for (int bandIndex = 0; bandIndex < imageSegment.getNumBands(); bandIndex++) {
+                            if (!imageRepresentationHandler.isRenderedBand(bandIndex)) {
+                                continue;
+                            }
+                            readBlock(block, imageSegment, imageMask, bandIndex, true);
+                        }
+                    }
+                    if (block.getImage() != null) {
+                        applyMask(block, imageMask);
+                        consumer.accept(row, column, block.getImage());
+                        block.setImage(null);
+                    }
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
 
-        final DataBuffer data = block.getDataBuffer();
+    private void readBlock(final ImageBlock block, final ImageSegment imageSegment, final ImageMask imageMask,
+            final int bandIndex, final boolean seekToBlock) {
+        if (imageMask.isMaskedBlock(block.getBlockIndex(), bandIndex)) {
+            return;
+        }
+        try {
+            readBlock(block, imageSegment, getBlockData(imageSegment, imageMask, block.getBlockIndex(), bandIndex, null,
+                    seekToBlock), bandIndex);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
+    private void readBlock(final ImageBlock block, final ImageSegment imageSegment, final ImageInputStream imageInputStream,
+            final int bandIndex) {
         try {
-            for (int row = 0; row < block.getHeight(); row++) {
-                for (int column = 0; column < block.getWidth(); column++) {
-                    int i = row * block.getWidth() + column;
-                    imageRepresentationHandler.renderPixelBand(data, i, imageInputStream, bandIndex);
+            if (block.getSubsampling() > 1) {
+                for (int row = 0; row < block.getSourceHeight(); row++) {
+                    readSubsampledBandRow(block, imageSegment, imageInputStream, row, bandIndex);
                 }
+                return;
             }
+            final DataBuffer data = block.getDataBuffer();
+            imageRepresentationHandler.renderBand(data, 0, block.getWidth() * block.getHeight(), imageInputStream, bandIndex);
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            throw new UncheckedIOException(e);
         }
     }
 
@@ -14,11 +14,16 @@
  */
 package org.codice.imaging.nitf.render.imagemode;
 
+import java.awt.Rectangle;
 import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import javax.imageio.stream.ImageInputStream;
 import org.codice.imaging.nitf.core.image.ImageCompression;
 import org.codice.imaging.nitf.core.image.ImageMode;
 import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.render.BlockCache;
 import org.codice.imaging.nitf.render.ImageMask;
+import org.codice.imaging.nitf.render.datareader.BlockDataReader;
 import org.codice.imaging.nitf.render.imagerep.ImageRepresentationHandler;
 
 abstract class BaseImageModeHandler implements ImageModeHandler {
@@ -53,8 +58,176 @@ abstract class BaseImageModeHandler implements ImageModeHandler {
         }
     }
 
+    /**
+     * Get the pool to decode blocks on for this image segment.
+     *
+     * Parallel decoding needs every block to start on a byte boundary, so it can be read independently.
+     *
+     * @param imageSegment the image segment being rendered.
+     * @param pool the requested pool, or null for sequential decoding.
+     * @return the pool, or null if the blocks have to be decoded sequentially.
+     */
+    protected ForkJoinPool getBlockPool(final ImageSegment imageSegment, final ForkJoinPool pool) {
+        if (getBlockBits(imageSegment) % Byte.SIZE != 0) {
+            return null;
+        }
+        return pool;
+    }
+
+    /**
+     * Check whether the decoder can seek to the start of each block.
+     *
+     * @param imageSegment the image segment being rendered.
+     * @return true if every block starts on a byte boundary, otherwise false.
+     */
+    protected boolean canSeekToBlocks(final ImageSegment imageSegment) {
+        return getBlockBits(imageSegment) % Byte.SIZE == 0;
+    }
+
+    /**
+     * Check whether any band of the image segment is not rendered.
+     *
+     * Where the image mode stores each band separately, the decoder seeks over the bands that are not rendered.
+     *
+     * @param imageSegment the image segment being rendered.
+     * @return true if at least one band does not contribute to the rendered pixels, otherwise false.
+     */
+    protected boolean hasUnrenderedBands(final ImageSegment imageSegment) {
+        for (int bandIndex = 0; bandIndex < imageSegment.getNumBands(); bandIndex++) {
+            if (!imageRepresentationHandler.isRenderedBand(bandIndex)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the block cache to use for an image segment.
+     *
+     * Cached blocks can only be used if the decoder can seek to the blocks that are not in the cache.
+     *
+     * @param imageSegment the image segment being rendered.
+     * @param cachedBlocks the requested block cache, or null to not use a cache.
+     * @return the block cache, or null if the cache cannot be used.
+     */
+    protected BlockCache.SegmentBlocks getBlockCache(final ImageSegment imageSegment, final BlockCache.SegmentBlocks cachedBlocks) {
+        if (!canSeekToBlocks(imageSegment)) {
+            return null;
+        }
+        return cachedBlocks;
+    }
+
+    /**
+     * Get the region to decode blocks for.
+     *
+     * Skipping blocks needs every block to start on a byte boundary, so the decoder can seek to the blocks in the region.
+     *
+     * @param imageSegment the image segment being rendered.
+     * @param region the requested region, or null for the whole image.
+     * @return the region, or null if every block has to be decoded.
+     */
+    protected Rectangle getDecodeRegion(final ImageSegment imageSegment, final Rectangle region) {
+        if (!canSeekToBlocks(imageSegment)) {
+            return null;
+        }
+        return region;
+    }
+
+    /**
+     * Get the data stream to decode a block from.
+     *
+     * For sequential decoding, this is the image data stream, which is either positioned at the start of the next block,
+     * or is moved to the start of the block if seekToBlock is set. For parallel decoding, this is a new stream that only
+     * contains the data for the block.
+     *
+     * @param imageSegment the image segment being rendered.
+     * @param imageMask the image mask, which locates the blocks.
+     * @param blockIndex the index of the block.
+     * @param bandIndex the band (only used for Band Sequential).
+     * @param pool the pool from getBlockPool().
+     * @param seekToBlock true if the image data stream needs to be moved to the block for sequential decoding.
+     * @return the stream to decode the block from.
+     * @throws IOException if the block data could not be read.
+     */
+    protected ImageInputStream getBlockData(final ImageSegment imageSegment, final ImageMask imageMask, final int blockIndex,
+            final int bandIndex, final ForkJoinPool pool, final boolean seekToBlock) throws IOException {
+        long blockOffset = imageMask.getBlockLocation(blockIndex, bandIndex);
+        if (pool != null) {
+            return BlockDataReader.readBlock(imageSegment.getData(), blockOffset, (int) (getBlockBits(imageSegment) / Byte.SIZE));
+        }
+        if (seekToBlock) {
+            imageSegment.getData().seek(blockOffset);
+        }
+        return imageSegment.getData();
+    }
+
+    /**
+     * Read one row of values for one band of a subsampled block.
+     *
+     * Rows that are not kept, and the columns before the first kept column, are skipped without being decoded.
+     *
+     * @param block the block being read.
+     * @param imageSegment the image segment being rendered.
+     * @param imageInputStream the stream to read from, positioned at the start of the row.
+     * @param sourceRow the index of the row within the block, before subsampling.
+     * @param bandIndex the band that the values are for.
+     * @throws IOException if the values could not be read.
+     */
+    protected void readSubsampledBandRow(final ImageBlock block, final ImageSegment imageSegment,
+            final ImageInputStream imageInputStream, final int sourceRow, final int bandIndex) throws IOException {
+        int row = block.getSubsampledRow(sourceRow);
+        if ((row < 0) || block.isEmpty()) {
+            skipSamples(imageSegment, imageInputStream, block.getSourceWidth());
+            return;
+        }
+        skipSamples(imageSegment, imageInputStream, block.getFirstSourceColumn());
+        imageRepresentationHandler.renderBandSubsampled(block.getDataBuffer(), row * block.getWidth(),
+                block.getSourceWidth() - block.getFirstSourceColumn(), block.getSubsampling(), imageInputStream, bandIndex);
+    }
+
+    /**
+     * Read one row of pixel interleved values of a subsampled block.
+     *
+     * Rows that are not kept, and the pixels before the first kept column, are skipped without being decoded.
+     *
+     * @param block the block being read.
+     * @param imageSegment the image segment being rendered.
+     * @param imageInputStream the stream to read from, positioned at the start of the row.
+     * @param sourceRow the index of the row within the block, before subsampling.
+     * @throws IOException if the values could not be read.
+     */
+    protected void readSubsampledPixelRow(final ImageBlock block, final ImageSegment imageSegment,
+            final ImageInputStream imageInputStream, final int sourceRow) throws IOException {
+        int numBands = imageSegment.getNumBands();
+        int row = block.getSubsampledRow(sourceRow);
+        if ((row < 0) || block.isEmpty()) {
+            skipSamples(imageSegment, imageInputStream, (long) block.getSourceWidth() * numBands);
+            return;
+        }
+        skipSamples(imageSegment, imageInputStream, (long) block.getFirstSourceColumn() * numBands);
+        imageRepresentationHandler.renderPixelsSubsampled(block.getDataBuffer(), row * block.getWidth(),
+                block.getSourceWidth() - block.getFirstSourceColumn(), block.getSubsampling(), imageInputStream, numBands);
+    }
+
+    private void skipSamples(final ImageSegment imageSegment, final ImageInputStream imageInputStream, final long numSamples)
+            throws IOException {
+        long bitPosition = imageInputStream.getStreamPosition() * Byte.SIZE + imageInputStream.getBitOffset()
+                + numSamples * imageSegment.getNumberOfBitsPerPixelPerBand();
+        imageInputStream.seek(bitPosition / Byte.SIZE);
+        imageInputStream.setBitOffset((int) (bitPosition % Byte.SIZE));
+    }
+
+    private long getBlockBits(final ImageSegment imageSegment) {
+        long numberOfBits = imageSegment.getNumberOfPixelsPerBlockHorizontal() * imageSegment.getNumberOfPixelsPerBlockVertical()
+                * imageSegment.getNumberOfBitsPerPixelPerBand();
+        if (imageSegment.getImageMode() == ImageMode.BANDSEQUENTIAL) {
+            return numberOfBits;
+        }
+        return numberOfBits * imageSegment.getNumBands();
+    }
+
     protected void applyMask(final ImageBlock block, final ImageMask imageMask) {
-        if ((imageMask != null) && (imageMask.hasPixelMasks())) {
+        if ((imageMask != null) && (imageMask.hasPixelMasks()) && !block.isEmpty()) {
             final int dataSize = block.getWidth() * block.getHeight();
 
             for (int pixelIndex = 0; pixelIndex < dataSize; ++pixelIndex) {
@@ -14,14 +14,21 @@
  */
 package org.codice.imaging.nitf.render.imagemode;
 
-import java.awt.image.DataBuffer;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ForkJoinPool;
+import javax.imageio.stream.ImageInputStream;
 import org.codice.imaging.nitf.core.image.ImageMode;
 import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.render.ImageMask;
+import org.codice.imaging.nitf.render.datareader.BlockDataReader;
 import org.codice.imaging.nitf.render.imagerep.ImageRepresentationHandler;
 
 /**
  * ImageModeHandler for Block Interleve mode.
+ *
+ * Each block holds the values for the first band, followed by the values for the second band, and so on. Where each
+ * band starts on a byte boundary, only the bands that are rendered are read.
  */
 class BlockInterleveImageModeHandler extends SharedImageModeHandler implements ImageModeHandler {
 
@@ -41,22 +48,59 @@ class BlockInterleveImageModeHandler extends SharedImageModeHandler implements I
     }
 
     @Override
-    protected void readBlock(final ImageBlock block, final ImageSegment imageSegment) {
+    protected boolean canSkipBands(final ImageSegment imageSegment) {
+        return getBandBits(imageSegment) % Byte.SIZE == 0;
+    }
 
-        final DataBuffer data = block.getDataBuffer();
+    @Override
+    protected void readBlock(final ImageBlock block, final ImageSegment imageSegment, final ImageMask imageMask,
+            final ForkJoinPool pool, final boolean seekToBlock) throws IOException {
+        if (!canSkipBands(imageSegment) || !hasUnrenderedBands(imageSegment)) {
+            super.readBlock(block, imageSegment, imageMask, pool, seekToBlock);
+            return;
+        }
+        final int bandLength = (int) (getBandBits(imageSegment) / Byte.SIZE);
+        final long blockLocation = imageMask.getBlockLocation(block.getBlockIndex(), 0);
+        for (int bandIndex = 0; bandIndex < imageSegment.getNumBands(); bandIndex++) {
+            if (!imageRepresentationHandler.isRenderedBand(bandIndex)) {
+                continue;
+            }
+            long bandLocation = blockLocation + (long) bandIndex * bandLength;
+            if (pool != null) {
+                readBand(block, imageSegment, BlockDataReader.readBlock(imageSegment.getData(), bandLocation, bandLength), bandIndex);
+            } else {
+                imageSegment.getData().seek(bandLocation);
+                readBand(block, imageSegment, imageSegment.getData(), bandIndex);
+            }
+        }
+    }
 
+    @Override
+    protected void readBlock(final ImageBlock block, final ImageSegment imageSegment, final ImageInputStream imageInputStream) {
         try {
             for (int bandIndex = 0; bandIndex < imageSegment.getNumBands(); bandIndex++) {
-                for (int row = 0; row < block.getHeight(); row++) {
-                    for (int column = 0; column < block.getWidth(); column++) {
-                        int i = row * block.getWidth() + column;
-                        imageRepresentationHandler.renderPixelBand(data, i, imageSegment.getData(), bandIndex);
-                    }
-                }
+                readBand(block, imageSegment, imageInputStream, bandIndex);
             }
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            throw new UncheckedIOException(e);
         }
     }
 
+    private void readBand(final ImageBlock block, final ImageSegment imageSegment, final ImageInputStream imageInputStream,
+            final int bandIndex) throws IOException {
+        if (block.getSubsampling() > 1) {
+            for (int row = 0; row < block.getSourceHeight(); row++) {
+                readSubsampledBandRow(block, imageSegment, imageInputStream, row, bandIndex);
+            }
+            return;
+        }
+        imageRepresentationHandler.renderBand(block.getDataBuffer(), 0, block.getWidth() * block.getHeight(), imageInputStream,
+                bandIndex);
+    }
+
+    private static long getBandBits(final ImageSegment imageSegment) {
+        return imageSegment.getNumberOfPixelsPerBlockHorizontal() * imageSegment.getNumberOfPixelsPerBlockVertical()
+                * imageSegment.getNumberOfBitsPerPixelPerBand();
+    }
+
 }
@@ -14,10 +14,11 @@
  */
 package org.codice.imaging.nitf.render.imagemode;
 
-import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBuffer;
-import java.util.function.Supplier;
+import java.util.function.BiFunction;
+import org.codice.imaging.nitf.render.RenderTarget;
 
 /**
  * An ImageBlock represents a single block of a larger image.
@@ -33,29 +34,35 @@ class ImageBlock {
     private final int blocksInOneRow;
     private final int blockWidth;
     private final int blockHeight;
-    private final Supplier<BufferedImage> supplier;
+    private final int subsampling;
+    private final BiFunction<Integer, Integer, BufferedImage> imageFactory;
     private BufferedImage blockImage;
 
     /**
      * Constructor.
      *
+     * Only every subsamplingFactor'th pixel (counting from the first pixel of the larger image) is kept, in each
+     * direction.
+     *
      * @param row the row position in blocks of this ImageBlock in the larger
      * image.
      * @param column the column position in blocks of this ImageBlock in the
      * larger image.
      * @param numColumns the number of columns in the larger image.
-     * @param width the width in pixels of this ImageBlock.
-     * @param height the height in pixels of this ImageBlock.
-     * @param imageSupplier the underlying image source.
+     * @param width the width in pixels of this ImageBlock, before subsampling.
+     * @param height the height in pixels of this ImageBlock, before subsampling.
+     * @param subsamplingFactor the distance between the pixels that are kept.
+     * @param blockImageFactory creates the underlying image, given the width and height after subsampling.
      */
     ImageBlock(final int row, final int column, final int numColumns, final int width, final int height,
-            final Supplier<BufferedImage> imageSupplier) {
+            final int subsamplingFactor, final BiFunction<Integer, Integer, BufferedImage> blockImageFactory) {
         this.blockRowIndex = row;
         this.blockColumnIndex = column;
         this.blocksInOneRow = numColumns;
         this.blockWidth = width;
         this.blockHeight = height;
-        this.supplier = imageSupplier;
+        this.subsampling = subsamplingFactor;
+        this.imageFactory = blockImageFactory;
     }
 
     /**
@@ -65,45 +72,141 @@ class ImageBlock {
      */
     public DataBuffer getDataBuffer() {
         if (blockImage == null) {
-            blockImage = supplier.get();
+            blockImage = imageFactory.apply(getWidth(), getHeight());
         }
 
         return blockImage.getRaster().getDataBuffer();
     }
 
+    /**
+     * Get the image for this block.
+     *
+     * @return the image, or null if no data has been decoded into this block.
+     */
+    public BufferedImage getImage() {
+        return blockImage;
+    }
+
+    /**
+     * Set the image for this block, instead of decoding the block data.
+     *
+     * @param image the image, which must have the width and height of this block.
+     */
+    public void setImage(final BufferedImage image) {
+        blockImage = image;
+    }
+
     /**
      * Render this image block into a target image.
      *
-     * @param targetImage the image to draw into.
+     * @param targetImage the target to draw into.
      * @param disposeAfterRender set to true if this block should be disposed of
      * after the rendering is complete.
      */
-    public void render(final Graphics2D targetImage, final boolean disposeAfterRender) {
-        targetImage.drawImage(blockImage, this.blockColumnIndex * this.blockHeight, this.blockRowIndex * this.blockWidth, null);
+    public void render(final RenderTarget targetImage, final boolean disposeAfterRender) {
+        targetImage.drawImage(blockImage, ceilDiv(this.blockColumnIndex * this.blockWidth),
+                ceilDiv(this.blockRowIndex * this.blockHeight));
 
         if (disposeAfterRender) {
             this.blockImage = null;
         }
     }
 
+    /**
+     * Test whether this image block intersects a region of the larger image.
+     *
+     * @param region the region, in pixels, or null for the whole of the larger image.
+     * @return true if any pixel of this block is in the region, otherwise false.
+     */
+    public boolean intersects(final Rectangle region) {
+        if (region == null) {
+            return true;
+        }
+        return region.intersects(this.blockColumnIndex * this.blockWidth, this.blockRowIndex * this.blockHeight,
+                this.blockWidth, this.blockHeight);
+    }
+
     /**
      * Get the width of this image block.
      *
-     * @return the width (x dimension) of the block in pixels.
+     * @return the width (x dimension) of the block in pixels, after subsampling.
      */
     public int getWidth() {
-        return blockWidth;
+        return ceilDiv((this.blockColumnIndex + 1) * this.blockWidth) - ceilDiv(this.blockColumnIndex * this.blockWidth);
     }
 
     /**
      * Get the height of this image block.
      *
-     * @return the height (y dimension) of the block in pixels.
+     * @return the height (y dimension) of the block in pixels, after subsampling.
      */
     public int getHeight() {
+        return ceilDiv((this.blockRowIndex + 1) * this.blockHeight) - ceilDiv(this.blockRowIndex * this.blockHeight);
+    }
+
+    /**
+     * Get the width of this image block in the image data.
+     *
+     * @return the width (x dimension) of the block in pixels, before subsampling.
+     */
+    public int getSourceWidth() {
+        return blockWidth;
+    }
+
+    /**
+     * Get the height of this image block in the image data.
+     *
+     * @return the height (y dimension) of the block in pixels, before subsampling.
+     */
+    public int getSourceHeight() {
         return blockHeight;
     }
 
+    /**
+     * Get the distance between the pixels that are kept.
+     *
+     * @return the subsampling factor, which is 1 if every pixel is kept.
+     */
+    public int getSubsampling() {
+        return subsampling;
+    }
+
+    /**
+     * Test whether the block has no pixels after subsampling.
+     *
+     * @return true if none of the pixels in the block are kept, otherwise false.
+     */
+    public boolean isEmpty() {
+        return (getWidth() == 0) || (getHeight() == 0);
+    }
+
+    /**
+     * Get the first column of the block image data that is kept.
+     *
+     * @return the column index within the block, before subsampling.
+     */
+    public int getFirstSourceColumn() {
+        return Math.floorMod(-this.blockColumnIndex * this.blockWidth, subsampling);
+    }
+
+    /**
+     * Get the row of the block image that a row of the block image data is kept as.
+     *
+     * @param sourceRow the row index within the block, before subsampling.
+     * @return the row index within the block image, or -1 if the row is not kept.
+     */
+    public int getSubsampledRow(final int sourceRow) {
+        int imageRow = this.blockRowIndex * this.blockHeight + sourceRow;
+        if (imageRow % subsampling != 0) {
+            return -1;
+        }
+        return imageRow / subsampling - ceilDiv(this.blockRowIndex * this.blockHeight);
+    }
+
+    private int ceilDiv(final int pixels) {
+        return (pixels + subsampling - 1) / subsampling;
+    }
+
     /**
      * Get the block index in standard rendering order.
      *
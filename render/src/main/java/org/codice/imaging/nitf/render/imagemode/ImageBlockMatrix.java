@@ -15,9 +15,12 @@
 
 package org.codice.imaging.nitf.render.imagemode;
 
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiFunction;
 import java.util.function.Consumer;
-import java.util.function.Supplier;
 import org.codice.imaging.nitf.core.image.ImageSegment;
 
 /**
@@ -33,9 +36,11 @@ class ImageBlockMatrix {
      *
      * @param imageSegment the Image Segment that this matrix is being created
      * for.
-     * @param imageSupplier the underlying buffered image to store the data.
+     * @param imageFactory creates the buffered image to store the data for a block, given the width and height.
+     * @param subsampling the distance between the pixels that are kept, in each direction.
      */
-    ImageBlockMatrix(final ImageSegment imageSegment, final Supplier<BufferedImage> imageSupplier) {
+    ImageBlockMatrix(final ImageSegment imageSegment, final BiFunction<Integer, Integer, BufferedImage> imageFactory,
+            final int subsampling) {
         this.matrixWidth = (int) imageSegment.getNumberOfBlocksPerColumn();
         this.matrixHeight = (int) imageSegment.getNumberOfBlocksPerRow();
         int blockWidth = (int) imageSegment.getNumberOfPixelsPerBlockHorizontal();
@@ -45,7 +50,7 @@ class ImageBlockMatrix {
 
         for (int i = 0; i < this.getMatrixWidth(); i++) {
             for (int j = 0; j < this.getMatrixHeight(); j++) {
-                blocks[i][j] = new ImageBlock(i, j, getMatrixWidth(), blockWidth, blockHeight, imageSupplier);
+                blocks[i][j] = new ImageBlock(i, j, getMatrixHeight(), blockWidth, blockHeight, subsampling, imageFactory);
             }
         }
     }
@@ -87,4 +92,36 @@ class ImageBlockMatrix {
             }
         }
     }
+
+    /**
+     * Apply an operation to each block, in parallel if a pool is provided.
+     *
+     * Each block is only passed to one invocation of the consumer, so the consumer can modify the block without
+     * further locking.
+     *
+     * @param pool the pool to run the operation on, or null to process the blocks in order on this thread.
+     * @param blockConsumer the operation to apply.
+     */
+    public void forEachBlock(final ForkJoinPool pool, final Consumer<ImageBlock> blockConsumer) {
+        if (pool == null) {
+            forEachBlock(blockConsumer);
+        } else {
+            pool.submit(() -> Arrays.stream(blocks).flatMap(Arrays::stream).parallel().forEach(blockConsumer)).join();
+        }
+    }
+
+    /**
+     * Apply an operation to each block that intersects a region, in parallel if a pool is provided.
+     *
+     * @param pool the pool to run the operation on, or null to process the blocks in order on this thread.
+     * @param region the region, in pixels, or null to process every block.
+     * @param blockConsumer the operation to apply.
+     */
+    public void forEachBlock(final ForkJoinPool pool, final Rectangle region, final Consumer<ImageBlock> blockConsumer) {
+        forEachBlock(pool, (block) -> {
+            if (block.intersects(region)) {
+                blockConsumer.accept(block);
+            }
+        });
+    }
 }
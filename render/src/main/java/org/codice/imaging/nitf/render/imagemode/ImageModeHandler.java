@@ -15,8 +15,14 @@
 package org.codice.imaging.nitf.render.imagemode;
 
 import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
+import javax.imageio.stream.ImageInputStream;
+import org.codice.imaging.nitf.core.image.ImageCompression;
 import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.render.DecodedBlockConsumer;
+import org.codice.imaging.nitf.render.ImageMask;
+import org.codice.imaging.nitf.render.RenderTarget;
 
 /**
  * An ImageModeHandler abstracts the processing of an ImageSegment based on the NITF Image Mode.
@@ -34,4 +40,84 @@ public interface ImageModeHandler {
      */
     void handleImage(ImageSegment imageSegment, Graphics2D targetImage)
             throws IOException;
+
+    /**
+     * Handle rendering of this image segment to the specified target, with the specified options.
+     *
+     * If this is not implemented, the options other than the subsampling factor are ignored, and the image is drawn
+     * through the target graphics as for handleImage(imageSegment, target.getGraphics()). A subsampled image is rendered
+     * at full resolution first, and every subsampling'th pixel of that is drawn.
+     *
+     * @param imageSegment the ImageSegment for the image being rendered.
+     * @param target the target that the blocks will be drawn to.
+     * @param options the pool, region, subsampling factor and cached blocks to render with.
+     * @throws IOException propagated from the ImageInputStream.
+     */
+    default void handleImage(ImageSegment imageSegment, RenderTarget target, RenderOptions options) throws IOException {
+        final int subsampling = options.getSubsampling();
+        if (subsampling == 1) {
+            handleImage(imageSegment, target.getGraphics());
+            return;
+        }
+        BufferedImage full = new BufferedImage((int) imageSegment.getNumberOfColumns(), (int) imageSegment.getNumberOfRows(),
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = full.createGraphics();
+        try {
+            handleImage(imageSegment, graphics);
+        } finally {
+            graphics.dispose();
+        }
+        BufferedImage subsampled = new BufferedImage((full.getWidth() + subsampling - 1) / subsampling,
+                (full.getHeight() + subsampling - 1) / subsampling, BufferedImage.TYPE_INT_ARGB);
+        for (int row = 0; row < subsampled.getHeight(); ++row) {
+            for (int column = 0; column < subsampled.getWidth(); ++column) {
+                subsampled.setRGB(column, row, full.getRGB(column * subsampling, row * subsampling));
+            }
+        }
+        target.drawImage(subsampled, 0, 0);
+    }
+
+    /**
+     * Decode the blocks of this image segment one at a time, in the order they appear in the image data.
+     *
+     * Each block is passed to the consumer as soon as it has been decoded, and is then released, so only one block is
+     * held in memory (except where noted by the implementation). Masked blocks are not passed to the consumer.
+     *
+     * If this is not implemented, the whole image is rendered through handleImage(imageSegment, graphics) first, and the
+     * blocks are cut from that in row major order, as ARGB images. Blocks that are masked in the first band are not
+     * passed to the consumer.
+     *
+     * @param imageSegment the ImageSegment for the image being decoded.
+     * @param consumer the consumer for the decoded blocks.
+     * @throws IOException propagated from the ImageInputStream or the consumer.
+     */
+    default void handleBlocks(ImageSegment imageSegment, DecodedBlockConsumer consumer) throws IOException {
+        ImageMask imageMask = null;
+        if (imageSegment.getImageCompression() == ImageCompression.NOTCOMPRESSEDMASK) {
+            // handleImage reads the mask again, so the stream is put back to the start of the mask
+            ImageInputStream imageData = imageSegment.getData();
+            long position = imageData.getStreamPosition();
+            imageMask = new ImageMask(imageSegment, imageData);
+            imageData.seek(position);
+        }
+        final int blockWidth = (int) imageSegment.getNumberOfPixelsPerBlockHorizontal();
+        final int blockHeight = (int) imageSegment.getNumberOfPixelsPerBlockVertical();
+        BufferedImage image = new BufferedImage(blockWidth * imageSegment.getNumberOfBlocksPerRow(),
+                blockHeight * imageSegment.getNumberOfBlocksPerColumn(), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            handleImage(imageSegment, graphics);
+        } finally {
+            graphics.dispose();
+        }
+        for (int rowIndex = 0; rowIndex < imageSegment.getNumberOfBlocksPerColumn(); ++rowIndex) {
+            for (int columnIndex = 0; columnIndex < imageSegment.getNumberOfBlocksPerRow(); ++columnIndex) {
+                if ((imageMask != null) && imageMask.isMaskedBlock(rowIndex * imageSegment.getNumberOfBlocksPerRow() + columnIndex, 0)) {
+                    continue;
+                }
+                consumer.accept(rowIndex, columnIndex,
+                        image.getSubimage(columnIndex * blockWidth, rowIndex * blockHeight, blockWidth, blockHeight));
+            }
+        }
+    }
 }
@@ -1,6 +1,9 @@
 package org.codice.imaging.nitf.render.imagemode;
 
 import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.render.ImageMask;
+import org.codice.imaging.nitf.render.datareader.DisplayLookupTable;
+import org.codice.imaging.nitf.render.datareader.FloatDisplayMapping;
 import org.codice.imaging.nitf.render.imagerep.ImageRepresentationHandler;
 import org.codice.imaging.nitf.render.imagerep.ImageRepresentationHandlerFactory;
 
@@ -21,8 +24,29 @@ public final class ImageModeHandlerFactory {
      * could not be found.
      */
     public static ImageModeHandler forImageSegment(final ImageSegment imageSegment) {
+        return forImageSegment(imageSegment, null, null, null);
+    }
+
+    /**
+     * Get an appropriate image mode handler for the specified image segment,
+     * mapping mono samples to display values.
+     *
+     * @param imageSegment the image segment specifying the image
+     * characteristics.
+     * @param displayLookupTable the lookup table from integer sample values to
+     * display values, or null to render the sample values.
+     * @param floatDisplayMapping the mapping from floating point values (or
+     * complex magnitudes) to display values, which is required for floating
+     * point and complex images.
+     * @param imageMask the image mask for the pad pixel value of mapped
+     * samples, or null if there are no pad pixels.
+     * @return a handler for the image mode, or null if an appropriate reader
+     * could not be found.
+     */
+    public static ImageModeHandler forImageSegment(final ImageSegment imageSegment, final DisplayLookupTable displayLookupTable,
+            final FloatDisplayMapping floatDisplayMapping, final ImageMask imageMask) {
         ImageRepresentationHandler imageRepresentationHandler =
-                ImageRepresentationHandlerFactory.forImageSegment(imageSegment);
+                ImageRepresentationHandlerFactory.forImageSegment(imageSegment, displayLookupTable, floatDisplayMapping, imageMask);
 
         if (imageRepresentationHandler == null) {
             return null;
@@ -16,6 +16,8 @@ package org.codice.imaging.nitf.render.imagemode;
 
 import java.awt.image.DataBuffer;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import javax.imageio.stream.ImageInputStream;
 import org.codice.imaging.nitf.core.image.ImageMode;
 import org.codice.imaging.nitf.core.image.ImageSegment;
 import org.codice.imaging.nitf.render.imagerep.ImageRepresentationHandler;
@@ -40,21 +42,20 @@ class PixelInterleveImageModeHandler extends SharedImageModeHandler implements I
     }
 
     @Override
-    protected void readBlock(final ImageBlock block, final ImageSegment imageSegment) {
-
-        final DataBuffer data = block.getDataBuffer();
+    protected void readBlock(final ImageBlock block, final ImageSegment imageSegment, final ImageInputStream imageInputStream) {
 
         try {
-            for (int row = 0; row < block.getHeight(); row++) {
-                for (int column = 0; column < block.getWidth(); column++) {
-                    for (int bandIndex = 0; bandIndex < imageSegment.getNumBands(); bandIndex++) {
-                        int i = row * block.getWidth() + column;
-                        imageRepresentationHandler.renderPixelBand(data, i, imageSegment.getData(), bandIndex);
-                    }
+            if (block.getSubsampling() > 1) {
+                for (int row = 0; row < block.getSourceHeight(); row++) {
+                    readSubsampledPixelRow(block, imageSegment, imageInputStream, row);
                 }
+                return;
             }
+            final DataBuffer data = block.getDataBuffer();
+            imageRepresentationHandler.renderPixels(data, 0, block.getWidth() * block.getHeight(), imageInputStream,
+                    imageSegment.getNumBands());
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            throw new UncheckedIOException(e);
         }
     }
 
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render.imagemode;
+
+import java.awt.Rectangle;
+import java.util.concurrent.ForkJoinPool;
+import org.codice.imaging.nitf.render.BlockCache;
+
+/**
+ * The options for rendering an image segment through an ImageModeHandler.
+ */
+public final class RenderOptions {
+
+    private final ForkJoinPool mPool;
+    private final Rectangle mRegion;
+    private final int mSubsampling;
+    private final BlockCache.SegmentBlocks mCachedBlocks;
+
+    /**
+     * Constructor.
+     *
+     * @param pool the pool to decode blocks on, or null to decode blocks sequentially.
+     * @param region the region to render, in image pixel coordinates (before subsampling), or null to render the whole
+     * image.
+     * @param subsampling the distance between the pixels that are kept, in each direction, which must be at least 1.
+     * @param cachedBlocks the cached blocks for the image segment and subsampling factor, or null to not use a cache.
+     */
+    public RenderOptions(final ForkJoinPool pool, final Rectangle region, final int subsampling,
+            final BlockCache.SegmentBlocks cachedBlocks) {
+        if (subsampling < 1) {
+            throw new IllegalArgumentException("Subsampling factor must be at least 1, got " + subsampling);
+        }
+        mPool = pool;
+        mRegion = region;
+        mSubsampling = subsampling;
+        mCachedBlocks = cachedBlocks;
+    }
+
+    /**
+     * Get the pool to decode blocks on.
+     *
+     * Blocks are only decoded in parallel if their location in the image data can be determined without decoding the
+     * earlier blocks.
+     *
+     * @return the pool, or null to decode blocks sequentially.
+     */
+    public ForkJoinPool getPool() {
+        return mPool;
+    }
+
+    /**
+     * Get the region to render.
+     *
+     * Only the blocks that intersect the region are decoded, provided their location in the image data can be
+     * determined without decoding the earlier blocks. The whole of each intersecting block is drawn, so the target
+     * should be clipped to the region if only the region is wanted.
+     *
+     * @return the region, in image pixel coordinates (before subsampling), or null to render the whole image.
+     */
+    public Rectangle getRegion() {
+        return mRegion;
+    }
+
+    /**
+     * Get the subsampling factor.
+     *
+     * The kept pixels are those where the row and column (counting from the first pixel of the image) are multiples of
+     * the subsampling factor, and they are drawn to the target at the row and column divided by the subsampling factor.
+     * Rows that are not kept are skipped without being decoded.
+     *
+     * @return the distance between the pixels that are kept, in each direction.
+     */
+    public int getSubsampling() {
+        return mSubsampling;
+    }
+
+    /**
+     * Get the cached blocks for the image segment.
+     *
+     * Blocks that are in the cache are drawn without being decoded, and decoded blocks are added to the cache. The
+     * cache is only used if the location of each block in the image data can be determined without decoding the
+     * earlier blocks.
+     *
+     * @return the cached blocks for the image segment and subsampling factor, or null to not use a cache.
+     */
+    public BlockCache.SegmentBlocks getCachedBlocks() {
+        return mCachedBlocks;
+    }
+}
@@ -16,6 +16,8 @@ package org.codice.imaging.nitf.render.imagemode;
 
 import java.awt.image.DataBuffer;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import javax.imageio.stream.ImageInputStream;
 import org.codice.imaging.nitf.core.image.ImageMode;
 import org.codice.imaging.nitf.core.image.ImageSegment;
 import org.codice.imaging.nitf.render.imagerep.ImageRepresentationHandler;
@@ -41,21 +43,26 @@ class RowInterleveImageModeHandler extends SharedImageModeHandler implements Ima
     }
 
     @Override
-    protected void readBlock(final ImageBlock block, final ImageSegment imageSegment) {
-
-        final DataBuffer data = block.getDataBuffer();
+    protected void readBlock(final ImageBlock block, final ImageSegment imageSegment, final ImageInputStream imageInputStream) {
 
         try {
+            if (block.getSubsampling() > 1) {
+                for (int row = 0; row < block.getSourceHeight(); row++) {
+                    for (int bandIndex = 0; bandIndex < imageSegment.getNumBands(); bandIndex++) {
+                        readSubsampledBandRow(block, imageSegment, imageInputStream, row, bandIndex);
+                    }
+                }
+                return;
+            }
+            final DataBuffer data = block.getDataBuffer();
             for (int row = 0; row < block.getHeight(); row++) {
                 for (int bandIndex = 0; bandIndex < imageSegment.getNumBands(); bandIndex++) {
-                    for (int column = 0; column < block.getWidth(); column++) {
-                        int i = row * block.getWidth() + column;
-                        imageRepresentationHandler.renderPixelBand(data, i, imageSegment.getData(), bandIndex);
-                    }
+                    imageRepresentationHandler.renderBand(data, row * block.getWidth(), block.getWidth(), imageInputStream,
+                            bandIndex);
                 }
             }
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            throw new UncheckedIOException(e);
         }
     }
 
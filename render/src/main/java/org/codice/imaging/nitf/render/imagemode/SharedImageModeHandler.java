@@ -15,9 +15,17 @@
 package org.codice.imaging.nitf.render.imagemode;
 
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ForkJoinPool;
+import javax.imageio.stream.ImageInputStream;
 import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.render.BlockCache;
+import org.codice.imaging.nitf.render.DecodedBlockConsumer;
+import org.codice.imaging.nitf.render.GraphicsRenderTarget;
 import org.codice.imaging.nitf.render.ImageMask;
+import org.codice.imaging.nitf.render.RenderTarget;
 import org.codice.imaging.nitf.render.imagerep.ImageRepresentationHandler;
 
 /**
@@ -35,26 +43,127 @@ abstract class SharedImageModeHandler extends BaseImageModeHandler implements Im
      */
     @Override
     public void handleImage(final ImageSegment imageSegment, final Graphics2D targetImage) throws IOException {
+        checkNull(targetImage, "targetImage");
+        handleImage(imageSegment, new GraphicsRenderTarget(targetImage), new RenderOptions(null, null, 1, null));
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void handleImage(final ImageSegment imageSegment, final RenderTarget targetImage, final RenderOptions options)
+            throws IOException {
         checkNull(imageSegment, "imageSegment");
         checkNull(targetImage, "targetImage");
+        checkNull(options, "options");
         checkImageMode(imageSegment);
 
+        final Rectangle region = options.getRegion();
+        final int subsampling = options.getSubsampling();
+
         final ImageMask imageMask = getImageMask(imageSegment);
 
-        ImageBlockMatrix matrix = new ImageBlockMatrix(imageSegment,
-                () -> imageRepresentationHandler.createBufferedImage((int) imageSegment.getNumberOfPixelsPerBlockHorizontal(),
-                        (int) imageSegment.getNumberOfPixelsPerBlockVertical()));
+        ImageBlockMatrix matrix = new ImageBlockMatrix(imageSegment, imageRepresentationHandler::createBufferedImage, subsampling);
+
+        final ForkJoinPool blockPool = getBlockPool(imageSegment, options.getPool());
+        final Rectangle decodeRegion = getDecodeRegion(imageSegment, region);
+        final BlockCache.SegmentBlocks blockCache = getBlockCache(imageSegment, options.getCachedBlocks());
+        final boolean skipBands = canSkipBands(imageSegment) && hasUnrenderedBands(imageSegment);
+        final boolean seekToBlocks = canSeekToBlocks(imageSegment) && ((region != null) || (subsampling > 1) || (blockCache != null)
+                || imageMask.hasBlockMaskRecords() || skipBands);
+        try {
+            // each block is drawn as soon as it is decoded, into its own part of the target
+            matrix.forEachBlock(blockPool, decodeRegion, block -> {
+                if (imageMask.isMaskedBlock(block.getBlockIndex(), 0) || (seekToBlocks && block.isEmpty())) {
+                    return;
+                }
+                if (blockCache != null) {
+                    block.setImage(blockCache.get(block.getBlockIndex()));
+                }
+                if (block.getImage() == null) {
+                    try {
+                        readBlock(block, imageSegment, imageMask, blockPool, seekToBlocks);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    applyMask(block, imageMask);
+                    if (blockCache != null) {
+                        blockCache.put(block.getBlockIndex(), block.getImage());
+                    }
+                }
+                if (block.intersects(region)) {
+                    block.render(targetImage, true);
+                } else {
+                    block.setImage(null);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void handleBlocks(final ImageSegment imageSegment, final DecodedBlockConsumer consumer) throws IOException {
+        checkNull(imageSegment, "imageSegment");
+        checkNull(consumer, "consumer");
+        checkImageMode(imageSegment);
+
+        final ImageMask imageMask = getImageMask(imageSegment);
 
-        matrix.forEachBlock(block -> {
-            if (!imageMask.isMaskedBlock(block.getBlockIndex(), 0)) {
-                readBlock(block, imageSegment);
-                applyMask(block, imageMask);
+        ImageBlockMatrix matrix = new ImageBlockMatrix(imageSegment, imageRepresentationHandler::createBufferedImage, 1);
+        final boolean seekToBlocks = canSeekToBlocks(imageSegment)
+                && (imageMask.hasBlockMaskRecords() || (canSkipBands(imageSegment) && hasUnrenderedBands(imageSegment)));
+        try {
+            for (int row = 0; row < matrix.getMatrixWidth(); row++) {
+                for (int column = 0; column < matrix.getMatrixHeight(); column++) {
+                    ImageBlock block = matrix.getImageBlock(row, column);
+                    if (imageMask.isMaskedBlock(block.getBlockIndex(), 0)) {
+                        continue;
+                    }
+                    readBlock(block, imageSegment, imageMask, null, seekToBlocks);
+                    applyMask(block, imageMask);
+                    consumer.accept(row, column, block.getImage());
+                    block.setImage(null);
+                }
             }
-        });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
 
-        matrix.forEachBlock((block) -> block.render(targetImage, true));
+    /**
+     * Check whether the decoder can seek over the bands of a block that are not rendered.
+     *
+     * @param imageSegment the image segment being rendered.
+     * @return true if each band of a block is stored separately, and starts on a byte boundary, otherwise false.
+     */
+    protected boolean canSkipBands(final ImageSegment imageSegment) {
+        return false;
+    }
+
+    /**
+     * Read a block from the image data.
+     *
+     * The default implementation decodes the whole block from the stream returned by getBlockData().
+     *
+     * @param block the block to read.
+     * @param imageSegment the image segment being rendered.
+     * @param imageMask the image mask, which locates the blocks.
+     * @param pool the pool from getBlockPool().
+     * @param seekToBlock true if the image data stream needs to be moved to the block for sequential decoding. This is
+     * always true if bands are skipped.
+     * @throws IOException if the block data could not be read.
+     */
+    protected void readBlock(final ImageBlock block, final ImageSegment imageSegment, final ImageMask imageMask,
+            final ForkJoinPool pool, final boolean seekToBlock) throws IOException {
+        readBlock(block, imageSegment, getBlockData(imageSegment, imageMask, block.getBlockIndex(), 0, pool, seekToBlock));
     }
 
-    protected abstract void readBlock(final ImageBlock block, final ImageSegment imageSegment);
+    protected abstract void readBlock(final ImageBlock block, final ImageSegment imageSegment, final ImageInputStream imageInputStream);
 
 }
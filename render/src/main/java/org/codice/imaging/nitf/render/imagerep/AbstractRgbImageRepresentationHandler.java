@@ -22,8 +22,9 @@ import java.util.Map;
 import javax.imageio.stream.ImageInputStream;
 
 import org.codice.imaging.nitf.render.ImageMask;
+import org.codice.imaging.nitf.render.datareader.SampleReader;
 
-abstract class AbstractRgbImageRepresentationHandler implements ImageRepresentationHandler {
+abstract class AbstractRgbImageRepresentationHandler extends BulkImageRepresentationHandler implements ImageRepresentationHandler {
     protected final Map<Integer, Integer> bandMapping;
 
     protected final int numOfReadsPerBand;
@@ -31,7 +32,8 @@ abstract class AbstractRgbImageRepresentationHandler implements ImageRepresentat
     protected static final int ALPHA_MASK = 0xFF000000;
 
     AbstractRgbImageRepresentationHandler(final Map<Integer, Integer> bandMap,
-            final int actualBitsPerPixelPerBand) {
+            final int actualBitsPerPixelPerBand, final SampleReader sampleReader) {
+        super(sampleReader);
         this.bandMapping = bandMap;
         this.numOfReadsPerBand = (int) Math.ceil(actualBitsPerPixelPerBand / ((double) Byte.SIZE));
     }
@@ -40,6 +42,11 @@ abstract class AbstractRgbImageRepresentationHandler implements ImageRepresentat
     public abstract void renderPixelBand(final DataBuffer data, final int pixelIndex,
             final ImageInputStream imageInputStream, final int bandIndex) throws IOException;
 
+    @Override
+    public final boolean isRenderedBand(final int bandIndex) {
+        return bandMapping.get(bandIndex) >= 0;
+    }
+
     @Override
     public final BufferedImage createBufferedImage(final int blockWidth, final int blockHeight) {
         return new BufferedImage(blockWidth, blockHeight, BufferedImage.TYPE_INT_ARGB);
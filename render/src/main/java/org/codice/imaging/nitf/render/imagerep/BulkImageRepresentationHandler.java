@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render.imagerep;
+
+import java.awt.image.DataBuffer;
+import java.io.IOException;
+import javax.imageio.stream.ImageInputStream;
+import org.codice.imaging.nitf.render.datareader.SampleReader;
+
+/**
+ * A shared implementation of the bulk rendering methods, for handlers that can read their band values with a
+ * SampleReader.
+ *
+ * Runs of samples are read into an int array, and then stored into the data buffer by storeBand(), which each handler
+ * implements for its data buffer type. Bands that are not rendered are skipped without unpacking.
+ */
+abstract class BulkImageRepresentationHandler implements ImageRepresentationHandler {
+
+    private final SampleReader sampleReader;
+
+    BulkImageRepresentationHandler(final SampleReader bulkReader) {
+        this.sampleReader = bulkReader;
+    }
+
+    @Override
+    public final void renderBand(final DataBuffer dataBuffer, final int pixelIndex, final int pixelCount,
+            final ImageInputStream imageInputStream, final int bandIndex) throws IOException {
+        if (sampleReader == null) {
+            ImageRepresentationHandler.super.renderBand(dataBuffer, pixelIndex, pixelCount, imageInputStream, bandIndex);
+        } else if (isRenderedBand(bandIndex)) {
+            int[] samples = new int[pixelCount];
+            sampleReader.read(imageInputStream, samples, 0, pixelCount);
+            storeBand(dataBuffer, pixelIndex, samples, 0, 1, pixelCount, bandIndex);
+        } else {
+            sampleReader.skip(imageInputStream, pixelCount);
+        }
+    }
+
+    @Override
+    public final void renderPixels(final DataBuffer dataBuffer, final int pixelIndex, final int pixelCount,
+            final ImageInputStream imageInputStream, final int numBands) throws IOException {
+        if (sampleReader == null) {
+            ImageRepresentationHandler.super.renderPixels(dataBuffer, pixelIndex, pixelCount, imageInputStream, numBands);
+            return;
+        }
+        int[] samples = new int[pixelCount * numBands];
+        sampleReader.read(imageInputStream, samples, 0, samples.length);
+        for (int bandIndex = 0; bandIndex < numBands; bandIndex++) {
+            if (isRenderedBand(bandIndex)) {
+                storeBand(dataBuffer, pixelIndex, samples, bandIndex, numBands, pixelCount, bandIndex);
+            }
+        }
+    }
+
+    @Override
+    public final void renderBandSubsampled(final DataBuffer dataBuffer, final int pixelIndex, final int sampleCount,
+            final int sampleStep, final ImageInputStream imageInputStream, final int bandIndex) throws IOException {
+        if (sampleReader == null) {
+            ImageRepresentationHandler.super.renderBandSubsampled(dataBuffer, pixelIndex, sampleCount, sampleStep, imageInputStream,
+                    bandIndex);
+        } else if (isRenderedBand(bandIndex)) {
+            int[] samples = new int[sampleCount];
+            sampleReader.read(imageInputStream, samples, 0, sampleCount);
+            storeBand(dataBuffer, pixelIndex, samples, 0, sampleStep, (sampleCount + sampleStep - 1) / sampleStep, bandIndex);
+        } else {
+            sampleReader.skip(imageInputStream, sampleCount);
+        }
+    }
+
+    @Override
+    public final void renderPixelsSubsampled(final DataBuffer dataBuffer, final int pixelIndex, final int sampleCount,
+            final int sampleStep, final ImageInputStream imageInputStream, final int numBands) throws IOException {
+        if (sampleReader == null) {
+            ImageRepresentationHandler.super.renderPixelsSubsampled(dataBuffer, pixelIndex, sampleCount, sampleStep,
+                    imageInputStream, numBands);
+            return;
+        }
+        int[] samples = new int[sampleCount * numBands];
+        sampleReader.read(imageInputStream, samples, 0, samples.length);
+        for (int bandIndex = 0; bandIndex < numBands; bandIndex++) {
+            if (isRenderedBand(bandIndex)) {
+                storeBand(dataBuffer, pixelIndex, samples, bandIndex, numBands * sampleStep, (sampleCount + sampleStep - 1) / sampleStep,
+                        bandIndex);
+            }
+        }
+    }
+
+    @Override
+    public abstract boolean isRenderedBand(int bandIndex);
+
+    /**
+     * Store unpacked band values into consecutive pixels.
+     *
+     * @param dataBuffer the buffer that contains the pixel data.
+     * @param pixelIndex the index of the first pixel being rendered.
+     * @param samples the unpacked sample values.
+     * @param sampleOffset the index in samples of the value for the first pixel.
+     * @param sampleStride the distance in samples between the values for consecutive pixels.
+     * @param pixelCount the number of pixels to render.
+     * @param bandIndex the index of the band being applied, zero-based.
+     */
+    protected abstract void storeBand(DataBuffer dataBuffer, int pixelIndex, int[] samples, int sampleOffset,
+            int sampleStride, int pixelCount, int bandIndex);
+}
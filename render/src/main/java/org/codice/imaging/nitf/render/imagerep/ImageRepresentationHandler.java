@@ -43,6 +43,121 @@ public interface ImageRepresentationHandler {
     void renderPixelBand(DataBuffer dataBuffer, int pixelIndex, ImageInputStream imageInputStream, int bandIndex)
             throws IOException;
 
+    /**
+     * Applies a run of values for one band to consecutive pixels.
+     *
+     * This is equivalent to calling renderPixelBand() for each pixel in turn, and is used where the band values are
+     * stored sequentially (i.e. block interleve, band sequential and row interleve modes). Implementations can override
+     * this to read the whole run at once.
+     *
+     * @param dataBuffer the buffer that contains the pixel data.
+     * @param pixelIndex the index of the first pixel being rendered.
+     * @param pixelCount the number of pixels to render.
+     * @param imageInputStream the stream that contains the image data.
+     * @param bandIndex the index of the band being applied, zero-based.
+     *
+     * @throws java.io.IOException if there is a problem reading from the imageInputStream
+     */
+    default void renderBand(DataBuffer dataBuffer, int pixelIndex, int pixelCount, ImageInputStream imageInputStream,
+            int bandIndex) throws IOException {
+        for (int i = pixelIndex; i < pixelIndex + pixelCount; i++) {
+            renderPixelBand(dataBuffer, i, imageInputStream, bandIndex);
+        }
+    }
+
+    /**
+     * Applies all band values to consecutive pixels.
+     *
+     * This is equivalent to calling renderPixelBand() for each band of each pixel in turn, and is used where the band
+     * values are interleaved by pixel (i.e. pixel interleve mode). Implementations can override this to read the whole
+     * run at once.
+     *
+     * @param dataBuffer the buffer that contains the pixel data.
+     * @param pixelIndex the index of the first pixel being rendered.
+     * @param pixelCount the number of pixels to render.
+     * @param imageInputStream the stream that contains the image data.
+     * @param numBands the number of bands for each pixel.
+     *
+     * @throws java.io.IOException if there is a problem reading from the imageInputStream
+     */
+    default void renderPixels(DataBuffer dataBuffer, int pixelIndex, int pixelCount, ImageInputStream imageInputStream,
+            int numBands) throws IOException {
+        for (int i = pixelIndex; i < pixelIndex + pixelCount; i++) {
+            for (int bandIndex = 0; bandIndex < numBands; bandIndex++) {
+                renderPixelBand(dataBuffer, i, imageInputStream, bandIndex);
+            }
+        }
+    }
+
+    /**
+     * Applies every sampleStep'th value from a run of values for one band to consecutive pixels.
+     *
+     * This reads sampleCount values, and applies the first value, and then each sampleStep'th value after it, so
+     * (sampleCount + sampleStep - 1) / sampleStep pixels are rendered. It is used for subsampled rendering of block
+     * interleve, band sequential and row interleve modes. Implementations can override this to read the whole run at
+     * once.
+     *
+     * @param dataBuffer the buffer that contains the pixel data.
+     * @param pixelIndex the index of the first pixel being rendered.
+     * @param sampleCount the number of values to read.
+     * @param sampleStep the distance between the values that are applied.
+     * @param imageInputStream the stream that contains the image data.
+     * @param bandIndex the index of the band being applied, zero-based.
+     *
+     * @throws java.io.IOException if there is a problem reading from the imageInputStream
+     */
+    default void renderBandSubsampled(DataBuffer dataBuffer, int pixelIndex, int sampleCount, int sampleStep,
+            ImageInputStream imageInputStream, int bandIndex) throws IOException {
+        DataBuffer discardBuffer = createBufferedImage(1, 1).getRaster().getDataBuffer();
+        for (int i = 0; i < sampleCount; i++) {
+            if (i % sampleStep == 0) {
+                renderPixelBand(dataBuffer, pixelIndex + i / sampleStep, imageInputStream, bandIndex);
+            } else {
+                renderPixelBand(discardBuffer, 0, imageInputStream, bandIndex);
+            }
+        }
+    }
+
+    /**
+     * Applies all band values of every sampleStep'th pixel from a run of pixels to consecutive pixels.
+     *
+     * This is the pixel interleve equivalent of renderBandSubsampled(). Implementations can override this to read the
+     * whole run at once.
+     *
+     * @param dataBuffer the buffer that contains the pixel data.
+     * @param pixelIndex the index of the first pixel being rendered.
+     * @param sampleCount the number of pixels to read.
+     * @param sampleStep the distance between the pixels that are applied.
+     * @param imageInputStream the stream that contains the image data.
+     * @param numBands the number of bands for each pixel.
+     *
+     * @throws java.io.IOException if there is a problem reading from the imageInputStream
+     */
+    default void renderPixelsSubsampled(DataBuffer dataBuffer, int pixelIndex, int sampleCount, int sampleStep,
+            ImageInputStream imageInputStream, int numBands) throws IOException {
+        DataBuffer discardBuffer = createBufferedImage(1, 1).getRaster().getDataBuffer();
+        for (int i = 0; i < sampleCount; i++) {
+            for (int bandIndex = 0; bandIndex < numBands; bandIndex++) {
+                if (i % sampleStep == 0) {
+                    renderPixelBand(dataBuffer, pixelIndex + i / sampleStep, imageInputStream, bandIndex);
+                } else {
+                    renderPixelBand(discardBuffer, 0, imageInputStream, bandIndex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Check whether values for the specified band contribute to the rendered pixels.
+     * Image mode handlers use this to avoid reading the bands that are not rendered, where the image mode stores each
+     * band separately.
+     * @param bandIndex the index of the band, zero-based.
+     * @return true if the band is rendered, false if the band values are ignored.
+     */
+    default boolean isRenderedBand(int bandIndex) {
+        return true;
+    }
+
     /**
      * Create a new image of the right type for this image handler.
      *
@@ -19,8 +19,12 @@ import java.util.Map;
 
 import org.codice.imaging.nitf.core.image.ImageBand;
 import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.render.ImageMask;
 import org.codice.imaging.nitf.render.datareader.DataReaderFactory;
+import org.codice.imaging.nitf.render.datareader.DisplayLookupTable;
+import org.codice.imaging.nitf.render.datareader.FloatDisplayMapping;
 import org.codice.imaging.nitf.render.datareader.IOReaderFunction;
+import org.codice.imaging.nitf.render.datareader.SampleReader;
 
 /**
  * Factory class for creating image representation handlers.
@@ -43,14 +47,43 @@ public final class ImageRepresentationHandlerFactory {
      * appropriate handler could not be found.
      */
     public static ImageRepresentationHandler forImageSegment(final ImageSegment segment) {
+        return forImageSegment(segment, null, null, null);
+    }
+
+    /**
+     * Get an appropriate ImageRepresentationHandler for the specified image
+     * segment, mapping mono samples to display values.
+     *
+     * The lookup table is only used for mono (greyscale) integer images of up
+     * to 16 bits, which are then rendered as 8 bit greyscale. Mono floating
+     * point and complex images are always rendered as 8 bit greyscale through
+     * the floating point mapping, and are not handled without one. Other
+     * images are handled as for forImageSegment(ImageSegment).
+     *
+     * Pad pixels in mapped samples are detected on the sample values before
+     * they are mapped, so the image mask is needed to render them.
+     *
+     * @param segment the image segment specifying the image characteristics to
+     * be read.
+     * @param displayLookupTable the lookup table from sample values to display
+     * values, or null to render the sample values.
+     * @param floatDisplayMapping the mapping from floating point values (or
+     * complex magnitudes) to display values, or null.
+     * @param imageMask the image mask for the pad pixel value of mapped
+     * samples, or null if there are no pad pixels.
+     * @return a handler for the segment, or a "no render" handler if an
+     * appropriate handler could not be found.
+     */
+    public static ImageRepresentationHandler forImageSegment(final ImageSegment segment,
+            final DisplayLookupTable displayLookupTable, final FloatDisplayMapping floatDisplayMapping, final ImageMask imageMask) {
 
         switch (segment.getImageRepresentation()) {
             case MONOCHROME:
-                return getMonoImageRepresentationHandler(segment, 0);
+                return getMonoImageRepresentationHandler(segment, 0, displayLookupTable, floatDisplayMapping, imageMask);
             case RGBTRUECOLOUR:
                 return getRgbImageRepresentationHandler(segment);
             case MULTIBAND:
-                return getHandlerForMultiband(segment);
+                return getHandlerForMultiband(segment, displayLookupTable, floatDisplayMapping, imageMask);
             case RGBLUT:
                 return getRgbLUTImageRepresentationHandler(segment, 0);
             //add other (more complex) cases here
@@ -101,7 +134,8 @@ public final class ImageRepresentationHandlerFactory {
         return mapping;
     }
 
-    private static ImageRepresentationHandler getHandlerForMultiband(final ImageSegment segment) {
+    private static ImageRepresentationHandler getHandlerForMultiband(final ImageSegment segment,
+            final DisplayLookupTable displayLookupTable, final FloatDisplayMapping floatDisplayMapping, final ImageMask imageMask) {
         if (irepbandsHasRgb(segment)) {
             return getRgbImageRepresentationHandler(segment);
         }
@@ -111,10 +145,10 @@ public final class ImageRepresentationHandlerFactory {
         }
         int firstMonoBandZeroBase = getFirstMonoBandZeroBase(segment);
         if (firstMonoBandZeroBase != BAND_NOT_FOUND) {
-            return getMonoImageRepresentationHandler(segment, firstMonoBandZeroBase);
+            return getMonoImageRepresentationHandler(segment, firstMonoBandZeroBase, displayLookupTable, floatDisplayMapping, imageMask);
         }
         // No representation, try showing first band
-        return getMonoImageRepresentationHandler(segment, 0);
+        return getMonoImageRepresentationHandler(segment, 0, displayLookupTable, floatDisplayMapping, imageMask);
     }
 
     private static boolean irepbandsHasRgb(final ImageSegment segment) {
@@ -162,21 +196,19 @@ public final class ImageRepresentationHandlerFactory {
         return BAND_NOT_FOUND;
     }
 
-    private static ImageRepresentationHandler getMonoImageRepresentationHandler(final ImageSegment segment, final int selectedBandZeroBase) {
+    private static ImageRepresentationHandler getMonoImageRepresentationHandler(final ImageSegment segment, final int selectedBandZeroBase,
+            final DisplayLookupTable displayLookupTable, final FloatDisplayMapping floatDisplayMapping, final ImageMask imageMask) {
         switch (segment.getPixelValueType()) {
             case BILEVEL:
                 return getMonoBilevelImageRepresentationHandler(segment, selectedBandZeroBase);
             case INTEGER:
-                return getMonoIntegerImageRepresentationHandler(segment, selectedBandZeroBase);
+                return getMonoIntegerImageRepresentationHandler(segment, selectedBandZeroBase, displayLookupTable, imageMask);
             case SIGNEDINTEGER:
                 // TODO: [IMG-108] implement this
                 return null;
             case REAL:
-                // TODO: [IMG-107] implement this
-                return null;
             case COMPLEX:
-                // TODO: [IMG-109] implement this
-                return null;
+                return getMonoFloatImageRepresentationHandler(segment, selectedBandZeroBase, floatDisplayMapping, imageMask);
             default:
                 throw new UnsupportedOperationException("Unsupported pixel value type:" + segment.getPixelValueType().getTextEquivalent());
         }
@@ -186,24 +218,50 @@ public final class ImageRepresentationHandlerFactory {
         if (segment.getNumberOfBitsPerPixelPerBand() != 1) {
             throw new UnsupportedOperationException("Pixel Value of bilevel (B) must be 1 bit per pixel (NBPP = 1)");
         }
-        return new Mono1ImageRepresentationHandler(selectedBandZeroBase, DataReaderFactory.forImageSegment(segment));
+        return new Mono1ImageRepresentationHandler(selectedBandZeroBase, DataReaderFactory.forImageSegment(segment),
+                DataReaderFactory.samplesForImageSegment(segment));
     }
 
-    private static ImageRepresentationHandler getMonoIntegerImageRepresentationHandler(final ImageSegment segment, final int selectedBandZeroBase) {
+    private static ImageRepresentationHandler getMonoIntegerImageRepresentationHandler(final ImageSegment segment, final int selectedBandZeroBase,
+            final DisplayLookupTable displayLookupTable, final ImageMask imageMask) {
+        if (displayLookupTable != null) {
+            SampleReader sampleReader = DataReaderFactory.lookupSamplesForImageSegment(segment, displayLookupTable, imageMask);
+            if (sampleReader == null) {
+                return null;
+            }
+            return new Mono8IntegerImageRepresentationHandler(selectedBandZeroBase, DataReaderFactory.forSampleReader(sampleReader),
+                    sampleReader, true);
+        }
         if (segment.getNumberOfBitsPerPixelPerBand() == Byte.SIZE) {
-            return new Mono8IntegerImageRepresentationHandler(selectedBandZeroBase, DataReaderFactory.forImageSegment(segment));
+            return new Mono8IntegerImageRepresentationHandler(selectedBandZeroBase, DataReaderFactory.forImageSegment(segment),
+                    DataReaderFactory.samplesForImageSegment(segment));
         } else if (segment.getNumberOfBitsPerPixelPerBand() <= Short.SIZE) {
-            return new Mono16IntegerImageRepresentationHandler(selectedBandZeroBase, DataReaderFactory.forImageSegment(segment));
+            return new Mono16IntegerImageRepresentationHandler(selectedBandZeroBase, DataReaderFactory.forImageSegment(segment),
+                    DataReaderFactory.samplesForImageSegment(segment));
         } else {
             // TODO: add 32 [IMG-110] and 64 [IMG-111] NBPP cases
             return null;
         }
     }
 
+    private static ImageRepresentationHandler getMonoFloatImageRepresentationHandler(final ImageSegment segment, final int selectedBandZeroBase,
+            final FloatDisplayMapping floatDisplayMapping, final ImageMask imageMask) {
+        if (floatDisplayMapping == null) {
+            return null;
+        }
+        SampleReader sampleReader = DataReaderFactory.floatSamplesForImageSegment(segment, floatDisplayMapping, imageMask);
+        if (sampleReader == null) {
+            return null;
+        }
+        return new Mono8IntegerImageRepresentationHandler(selectedBandZeroBase, DataReaderFactory.forSampleReader(sampleReader),
+                sampleReader, true);
+    }
+
     private static ImageRepresentationHandler getRgbLUTImageRepresentationHandler(final ImageSegment segment, final int selectedBandZeroBase) {
         IOReaderFunction readerFunc = DataReaderFactory.forImageSegment(segment);
         if (readerFunc != null) {
-            return new RGBLUTImageRepresentationHandler(selectedBandZeroBase, segment, readerFunc);
+            return new RGBLUTImageRepresentationHandler(selectedBandZeroBase, segment, readerFunc,
+                    DataReaderFactory.samplesForImageSegment(segment));
         } else {
             return null;
         }
@@ -16,17 +16,20 @@ package org.codice.imaging.nitf.render.imagerep;
 
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferUShort;
 import java.io.IOException;
 import javax.imageio.stream.ImageInputStream;
 import org.codice.imaging.nitf.render.datareader.IOReaderFunction;
+import org.codice.imaging.nitf.render.datareader.SampleReader;
 
 /**
  * Image representation handler for 12 and 16 bit mono (greyscale) images.
  */
 class Mono16IntegerImageRepresentationHandler extends SharedMonoImageRepresentationHandler implements ImageRepresentationHandler {
 
-    Mono16IntegerImageRepresentationHandler(final int selectedBandZeroBase, final IOReaderFunction readerFunc) {
-        super(selectedBandZeroBase, readerFunc);
+    Mono16IntegerImageRepresentationHandler(final int selectedBandZeroBase, final IOReaderFunction readerFunc,
+            final SampleReader sampleReader) {
+        super(selectedBandZeroBase, readerFunc, sampleReader);
     }
 
     @Override
@@ -39,6 +42,17 @@ class Mono16IntegerImageRepresentationHandler extends SharedMonoImageRepresentat
         }
     }
 
+    @Override
+    protected final void storeBand(final DataBuffer dataBuffer, final int pixelIndex, final int[] samples,
+            final int sampleOffset, final int sampleStride, final int pixelCount, final int bandIndex) {
+        short[] pixels = ((DataBufferUShort) dataBuffer).getData();
+        int pixel = dataBuffer.getOffset() + pixelIndex;
+        for (int i = sampleOffset; i < sampleOffset + pixelCount * sampleStride; i += sampleStride) {
+            pixels[pixel] = (short) samples[i];
+            pixel++;
+        }
+    }
+
     @Override
     public BufferedImage createBufferedImage(final int width, final int height) {
         return new BufferedImage(width, height, BufferedImage.TYPE_USHORT_GRAY);
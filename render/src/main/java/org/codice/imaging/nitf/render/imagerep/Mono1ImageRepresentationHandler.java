@@ -16,9 +16,11 @@ package org.codice.imaging.nitf.render.imagerep;
 
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
 import java.io.IOException;
 import javax.imageio.stream.ImageInputStream;
 import org.codice.imaging.nitf.render.datareader.IOReaderFunction;
+import org.codice.imaging.nitf.render.datareader.SampleReader;
 
 /**
  * Image representation handler for 1 bit mono (greyscale) images.
@@ -27,8 +29,9 @@ class Mono1ImageRepresentationHandler extends SharedMonoImageRepresentationHandl
 
     private static final int MAX_WHITE_BYTE_VALUE = 0xFF;
 
-    Mono1ImageRepresentationHandler(final int selectedBandZeroBase, final IOReaderFunction readerFunc) {
-        super(selectedBandZeroBase, readerFunc);
+    Mono1ImageRepresentationHandler(final int selectedBandZeroBase, final IOReaderFunction readerFunc,
+            final SampleReader sampleReader) {
+        super(selectedBandZeroBase, readerFunc, sampleReader);
     }
 
     @Override
@@ -45,6 +48,21 @@ class Mono1ImageRepresentationHandler extends SharedMonoImageRepresentationHandl
         }
     }
 
+    @Override
+    protected final void storeBand(final DataBuffer dataBuffer, final int pixelIndex, final int[] samples,
+            final int sampleOffset, final int sampleStride, final int pixelCount, final int bandIndex) {
+        byte[] pixels = ((DataBufferByte) dataBuffer).getData();
+        int pixel = dataBuffer.getOffset() + pixelIndex;
+        for (int i = sampleOffset; i < sampleOffset + pixelCount * sampleStride; i += sampleStride) {
+            if (samples[i] == 1) {
+                pixels[pixel] = (byte) MAX_WHITE_BYTE_VALUE;
+            } else {
+                pixels[pixel] = 0x00;
+            }
+            pixel++;
+        }
+    }
+
     @Override
     public BufferedImage createBufferedImage(final int width, final int height) {
         return new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
@@ -16,17 +16,33 @@ package org.codice.imaging.nitf.render.imagerep;
 
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
 import java.io.IOException;
 import javax.imageio.stream.ImageInputStream;
+import org.codice.imaging.nitf.render.ImageMask;
 import org.codice.imaging.nitf.render.datareader.IOReaderFunction;
+import org.codice.imaging.nitf.render.datareader.SampleReader;
 
 /**
  * Image representation handler for 8 bit mono (greyscale) images.
+ *
+ * This is also used for samples that the reader maps to 8 bit display values. The pad pixels of mapped samples have
+ * to be detected by the reader, on the raw values, so they are not tested again after they are read.
  */
 class Mono8IntegerImageRepresentationHandler extends SharedMonoImageRepresentationHandler implements ImageRepresentationHandler {
 
-    Mono8IntegerImageRepresentationHandler(final int selectedBandZeroBase, final IOReaderFunction readerFunc) {
-        super(selectedBandZeroBase, readerFunc);
+    private final boolean mappedSamples;
+
+    Mono8IntegerImageRepresentationHandler(final int selectedBandZeroBase, final IOReaderFunction readerFunc,
+            final SampleReader sampleReader) {
+        super(selectedBandZeroBase, readerFunc, sampleReader);
+        this.mappedSamples = false;
+    }
+
+    Mono8IntegerImageRepresentationHandler(final int selectedBandZeroBase, final IOReaderFunction<Integer, ImageInputStream> readerFunc,
+            final SampleReader sampleReader, final boolean mapped) {
+        super(selectedBandZeroBase, readerFunc, sampleReader);
+        this.mappedSamples = mapped;
     }
 
     @Override
@@ -39,6 +55,24 @@ class Mono8IntegerImageRepresentationHandler extends SharedMonoImageRepresentati
         }
     }
 
+    @Override
+    public final void renderPadPixel(final ImageMask imageMask, final DataBuffer data, final int pixelIndex) {
+        if (!mappedSamples) {
+            super.renderPadPixel(imageMask, data, pixelIndex);
+        }
+    }
+
+    @Override
+    protected final void storeBand(final DataBuffer dataBuffer, final int pixelIndex, final int[] samples,
+            final int sampleOffset, final int sampleStride, final int pixelCount, final int bandIndex) {
+        byte[] pixels = ((DataBufferByte) dataBuffer).getData();
+        int pixel = dataBuffer.getOffset() + pixelIndex;
+        for (int i = sampleOffset; i < sampleOffset + pixelCount * sampleStride; i += sampleStride) {
+            pixels[pixel] = (byte) samples[i];
+            pixel++;
+        }
+    }
+
     @Override
     public BufferedImage createBufferedImage(final int width, final int height) {
         return new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
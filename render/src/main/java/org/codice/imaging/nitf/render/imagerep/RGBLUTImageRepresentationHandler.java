@@ -16,6 +16,7 @@ package org.codice.imaging.nitf.render.imagerep;
 
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
 import java.awt.image.IndexColorModel;
 import java.io.IOException;
 import javax.imageio.stream.ImageInputStream;
@@ -23,17 +24,20 @@ import org.codice.imaging.nitf.core.image.ImageCompression;
 import org.codice.imaging.nitf.core.image.ImageSegment;
 import org.codice.imaging.nitf.render.ImageMask;
 import org.codice.imaging.nitf.render.datareader.IOReaderFunction;
+import org.codice.imaging.nitf.render.datareader.SampleReader;
 
 /**
  * Image representation handler for LUT (RGB) images.
  */
-class RGBLUTImageRepresentationHandler implements ImageRepresentationHandler {
+class RGBLUTImageRepresentationHandler extends BulkImageRepresentationHandler implements ImageRepresentationHandler {
 
     private final int selectedBand;
     private final IOReaderFunction reader;
     private final IndexColorModel colourModel;
 
-    RGBLUTImageRepresentationHandler(final int selectedBandZeroBase, final ImageSegment segment, final IOReaderFunction readerFunc) {
+    RGBLUTImageRepresentationHandler(final int selectedBandZeroBase, final ImageSegment segment, final IOReaderFunction readerFunc,
+            final SampleReader sampleReader) {
+        super(sampleReader);
         selectedBand = selectedBandZeroBase;
         if (segment.getImageCompression().equals(ImageCompression.NOTCOMPRESSEDMASK)) {
             colourModel = new IndexColorModel(segment.getActualBitsPerPixelPerBand(),
@@ -62,6 +66,22 @@ class RGBLUTImageRepresentationHandler implements ImageRepresentationHandler {
         }
     }
 
+    @Override
+    public final boolean isRenderedBand(final int bandIndex) {
+        return bandIndex == selectedBand;
+    }
+
+    @Override
+    protected final void storeBand(final DataBuffer dataBuffer, final int pixelIndex, final int[] samples,
+            final int sampleOffset, final int sampleStride, final int pixelCount, final int bandIndex) {
+        byte[] pixels = ((DataBufferByte) dataBuffer).getData();
+        int pixel = dataBuffer.getOffset() + pixelIndex;
+        for (int i = sampleOffset; i < sampleOffset + pixelCount * sampleStride; i += sampleStride) {
+            pixels[pixel] = (byte) samples[i];
+            pixel++;
+        }
+    }
+
     @Override
     public void renderPadPixel(final ImageMask imageMask, final DataBuffer data, final int pixelIndex) {
         // Handled by the colour model.
@@ -15,16 +15,19 @@
 package org.codice.imaging.nitf.render.imagerep;
 
 import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
 import java.io.IOException;
 import java.util.Map;
 
 import javax.imageio.stream.ImageInputStream;
 
+import org.codice.imaging.nitf.render.datareader.DataReaderFactory;
+
 class Rgb24ImageRepresentationHandler extends AbstractRgbImageRepresentationHandler {
 
     Rgb24ImageRepresentationHandler(final Map<Integer, Integer> bandMap,
             final int actualBitsPerPixelPerBand) {
-        super(bandMap, actualBitsPerPixelPerBand);
+        super(bandMap, actualBitsPerPixelPerBand, DataReaderFactory.samplesForBitsPerSample(Byte.SIZE));
     }
 
     @Override
@@ -34,4 +37,16 @@ class Rgb24ImageRepresentationHandler extends AbstractRgbImageRepresentationHand
         data.setElem(pixelIndex,
                 ALPHA_MASK | data.getElem(pixelIndex) | (imageInputStream.read() << bandMapping.get(bandIndex)));
     }
+
+    @Override
+    protected final void storeBand(final DataBuffer data, final int pixelIndex, final int[] samples,
+            final int sampleOffset, final int sampleStride, final int pixelCount, final int bandIndex) {
+        int[] pixels = ((DataBufferInt) data).getData();
+        int shift = bandMapping.get(bandIndex);
+        int pixel = data.getOffset() + pixelIndex;
+        for (int i = sampleOffset; i < sampleOffset + pixelCount * sampleStride; i += sampleStride) {
+            pixels[pixel] = ALPHA_MASK | pixels[pixel] | (samples[i] << shift);
+            pixel++;
+        }
+    }
 }
@@ -15,19 +15,21 @@
 package org.codice.imaging.nitf.render.imagerep;
 
 import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
 import java.io.IOException;
 import java.util.Map;
 
 import javax.imageio.stream.ImageInputStream;
 
 import org.codice.imaging.nitf.core.image.PixelJustification;
+import org.codice.imaging.nitf.render.datareader.DataReaderFactory;
 
 class Rgb48ImageRepresentationHandler extends AbstractRgbImageRepresentationHandler {
     private final int bitsToDiscard;
 
     Rgb48ImageRepresentationHandler(final Map<Integer, Integer> bandMap,
             final int actualBitsPerPixelPerBand, final PixelJustification pixelJustification, final int numBitsPerPixelPerBand) {
-        super(bandMap, actualBitsPerPixelPerBand);
+        super(bandMap, actualBitsPerPixelPerBand, DataReaderFactory.samplesForBitsPerSample(Short.SIZE));
 
         if (actualBitsPerPixelPerBand - Byte.SIZE < 0) {
             if (pixelJustification.equals(PixelJustification.RIGHT)) {
@@ -56,4 +58,16 @@ class Rgb48ImageRepresentationHandler extends AbstractRgbImageRepresentationHand
                 ALPHA_MASK | data.getElem(pixelIndex) | (pixelBandValue
                         << bandMapping.get(bandIndex)));
     }
+
+    @Override
+    protected final void storeBand(final DataBuffer data, final int pixelIndex, final int[] samples,
+            final int sampleOffset, final int sampleStride, final int pixelCount, final int bandIndex) {
+        int[] pixels = ((DataBufferInt) data).getData();
+        int shift = bandMapping.get(bandIndex);
+        int pixel = data.getOffset() + pixelIndex;
+        for (int i = sampleOffset; i < sampleOffset + pixelCount * sampleStride; i += sampleStride) {
+            pixels[pixel] = ALPHA_MASK | pixels[pixel] | ((samples[i] >> bitsToDiscard) << shift);
+            pixel++;
+        }
+    }
 }
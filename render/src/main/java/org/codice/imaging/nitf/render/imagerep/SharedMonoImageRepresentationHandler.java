@@ -17,19 +17,27 @@ package org.codice.imaging.nitf.render.imagerep;
 import java.awt.image.DataBuffer;
 import org.codice.imaging.nitf.render.ImageMask;
 import org.codice.imaging.nitf.render.datareader.IOReaderFunction;
+import org.codice.imaging.nitf.render.datareader.SampleReader;
 
 /**
  * Shared implementation details for the MONO image handler implementations.
  */
-abstract class SharedMonoImageRepresentationHandler implements ImageRepresentationHandler {
+abstract class SharedMonoImageRepresentationHandler extends BulkImageRepresentationHandler implements ImageRepresentationHandler {
     protected final int selectedBandZeroBase;
     protected final IOReaderFunction reader;
 
-    SharedMonoImageRepresentationHandler(final int selectedBand, final IOReaderFunction readerFunc) {
+    SharedMonoImageRepresentationHandler(final int selectedBand, final IOReaderFunction readerFunc,
+            final SampleReader sampleReader) {
+        super(sampleReader);
         this.selectedBandZeroBase = selectedBand;
         this.reader = readerFunc;
     }
 
+    @Override
+    public final boolean isRenderedBand(final int bandIndex) {
+        return bandIndex == selectedBandZeroBase;
+    }
+
     @Override
     public void renderPadPixel(final ImageMask imageMask, final DataBuffer data, final int pixelIndex) {
         if (imageMask.isPadPixel(data.getElem(pixelIndex))) {
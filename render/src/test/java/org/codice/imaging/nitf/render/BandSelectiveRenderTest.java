@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import javax.imageio.stream.ImageInputStreamImpl;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.image.ImageRepresentation;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import static org.codice.imaging.nitf.render.RenderTestSupport.parseImageSegment;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+/**
+ * Tests that only the rendered bands of band sequential and block interleved images are read.
+ */
+public class BandSelectiveRenderTest {
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    @Test
+    public void checkBlockInterleveReadsRenderedBand() throws IOException, NitfFormatException {
+        // three band image, where only the second band is displayed
+        checkOneBandRead("/Codice/merlionM.ntf", false);
+    }
+
+    @Test
+    public void checkBandSequentialReadsRenderedBand() throws IOException, NitfFormatException {
+        checkOneBandRead("/JitcNitf21Samples/i_3301a.ntf", true);
+    }
+
+    private void checkOneBandRead(final String resourceName, final boolean showFirstBandOnly)
+            throws IOException, NitfFormatException {
+        ImageSegment segment = parseImageSegment(resourceName);
+        if (showFirstBandOnly) {
+            segment.setImageRepresentation(ImageRepresentation.MONOCHROME);
+        }
+        byte[] imageData = new byte[(int) segment.getDataLength()];
+        segment.getData().seek(0);
+        segment.getData().readFully(imageData);
+
+        CountingImageInputStream sequentialData = new CountingImageInputStream(imageData);
+        segment.setData(sequentialData);
+        BufferedImage expected = new NitfRenderer().render(segment);
+        assertThat(sequentialData.getBytesRead(), is(imageData.length / segment.getNumBands()));
+
+        CountingImageInputStream parallelData = new CountingImageInputStream(imageData);
+        segment.setData(parallelData);
+        NitfRenderer parallelRenderer = new NitfRenderer();
+        parallelRenderer.setForkJoinPool(POOL);
+        BufferedImage actual = parallelRenderer.render(segment);
+        assertThat(parallelData.getBytesRead(), is(imageData.length / segment.getNumBands()));
+
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertThat(actual.getRGB(x, y), is(expected.getRGB(x, y)));
+            }
+        }
+    }
+
+    /**
+     * An image data stream that counts the bytes that are read from it.
+     */
+    private static final class CountingImageInputStream extends ImageInputStreamImpl {
+        private final byte[] mData;
+        private int mBytesRead = 0;
+
+        CountingImageInputStream(final byte[] data) {
+            mData = data;
+        }
+
+        int getBytesRead() {
+            return mBytesRead;
+        }
+
+        @Override
+        public int read() throws IOException {
+            bitOffset = 0;
+            if (streamPos >= mData.length) {
+                return -1;
+            }
+            mBytesRead++;
+            return mData[(int) streamPos++] & 0xFF;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            bitOffset = 0;
+            int count = (int) Math.min(len, mData.length - streamPos);
+            if (count <= 0) {
+                return -1;
+            }
+            System.arraycopy(mData, (int) streamPos, b, off, count);
+            streamPos += count;
+            mBytesRead += count;
+            return count;
+        }
+
+        @Override
+        public long length() {
+            return mData.length;
+        }
+    }
+}
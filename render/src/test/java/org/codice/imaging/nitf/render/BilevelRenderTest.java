@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+import org.codice.imaging.nitf.core.image.ImageCompression;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * Tests for decoding bi-level (C1) image blocks.
+ */
+public class BilevelRenderTest {
+
+    private static final String EOL = "000000000001";
+
+    @Test
+    public void checkBlocksContinueMidByte() throws IOException {
+        // 17 bits for the first block, so the second block starts part way through the third byte
+        String firstBlock = EOL + "10011";
+        String secondBlock = EOL + "1000" + "0011";
+        ImageSegment imageSegment = mockImageSegment(2, 8, 1, "1D", firstBlock + secondBlock);
+
+        List<BufferedImage> blocks = renderBlocks(imageSegment);
+        assertEquals(2, blocks.size());
+        assertArrayEquals(new int[] {1, 1, 1, 1, 1, 1, 1, 1}, getSamples(blocks.get(0), 0));
+        assertArrayEquals(new int[] {1, 1, 1, 0, 0, 0, 0, 0}, getSamples(blocks.get(1), 0));
+    }
+
+    @Test
+    public void checkTwoDimensionalCoding() throws IOException {
+        // one dimensional: white 3, black 5
+        String firstLine = EOL + "1" + "1000" + "0011";
+        // two dimensional: vertical 0, vertical 0
+        String secondLine = EOL + "0" + "1" + "1";
+        // two dimensional: horizontal white 2 black 6
+        String thirdLine = EOL + "0" + "001" + "0111" + "0010";
+        // two dimensional: pass, which carries white on past the reference line's black run, then vertical 0
+        String fourthLine = EOL + "0" + "0001" + "1";
+        ImageSegment imageSegment = mockImageSegment(1, 8, 4, "2DS", firstLine + secondLine + thirdLine + fourthLine);
+
+        List<BufferedImage> blocks = renderBlocks(imageSegment);
+        assertEquals(1, blocks.size());
+        assertArrayEquals(new int[] {1, 1, 1, 0, 0, 0, 0, 0}, getSamples(blocks.get(0), 0));
+        assertArrayEquals(new int[] {1, 1, 1, 0, 0, 0, 0, 0}, getSamples(blocks.get(0), 1));
+        assertArrayEquals(new int[] {1, 1, 0, 0, 0, 0, 0, 0}, getSamples(blocks.get(0), 2));
+        assertArrayEquals(new int[] {1, 1, 1, 1, 1, 1, 1, 1}, getSamples(blocks.get(0), 3));
+    }
+
+    private static ImageSegment mockImageSegment(final int blocksPerRow, final int blockWidth, final int blockHeight,
+            final String compressionRate, final String bits) {
+        ImageSegment imageSegment = Mockito.mock(ImageSegment.class);
+        Mockito.when(imageSegment.getImageCompression()).thenReturn(ImageCompression.BILEVEL);
+        Mockito.when(imageSegment.getCompressionRate()).thenReturn(compressionRate);
+        Mockito.when(imageSegment.getActualBitsPerPixelPerBand()).thenReturn(1);
+        Mockito.when(imageSegment.getNumberOfBlocksPerRow()).thenReturn(blocksPerRow);
+        Mockito.when(imageSegment.getNumberOfBlocksPerColumn()).thenReturn(1);
+        Mockito.when(imageSegment.getNumberOfPixelsPerBlockHorizontal()).thenReturn((long) blockWidth);
+        Mockito.when(imageSegment.getNumberOfPixelsPerBlockVertical()).thenReturn((long) blockHeight);
+        Mockito.when(imageSegment.getData()).thenReturn(new MemoryCacheImageInputStream(new ByteArrayInputStream(toBytes(bits))));
+        return imageSegment;
+    }
+
+    private static List<BufferedImage> renderBlocks(final ImageSegment imageSegment) throws IOException {
+        List<BufferedImage> blocks = new ArrayList<>();
+        new NitfRenderer().renderBlocks(imageSegment, (rowIndex, columnIndex, block) -> blocks.add(block));
+        return blocks;
+    }
+
+    private static byte[] toBytes(final String bits) {
+        byte[] bytes = new byte[(bits.length() + 7) / 8];
+        for (int i = 0; i < bits.length(); ++i) {
+            if (bits.charAt(i) == '1') {
+                bytes[i / 8] |= 0x80 >>> (i % 8);
+            }
+        }
+        return bytes;
+    }
+
+    private static int[] getSamples(final BufferedImage block, final int row) {
+        return block.getRaster().getSamples(0, row, block.getWidth(), 1, 0, (int[]) null);
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import static org.codice.imaging.nitf.render.RenderTestSupport.getPixels;
+import static org.codice.imaging.nitf.render.RenderTestSupport.parseImageSegments;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.junit.Test;
+
+/**
+ * Tests for the block cache, and that rendering from cached blocks gives the same pixels as an uncached render.
+ */
+public class BlockCacheTest {
+
+    private static final long CACHE_SIZE = 64 * 1024 * 1024;
+
+    @Test
+    public void testLeastRecentlyUsedEviction() {
+        // each block is 100 bytes
+        BlockCache cache = new BlockCache(250);
+        BlockCache.SegmentBlocks blocks = cache.forSegment("file", 0, null, 1);
+        BufferedImage first = new BufferedImage(10, 10, BufferedImage.TYPE_BYTE_GRAY);
+        BufferedImage second = new BufferedImage(10, 10, BufferedImage.TYPE_BYTE_GRAY);
+        BufferedImage third = new BufferedImage(10, 10, BufferedImage.TYPE_BYTE_GRAY);
+        blocks.put(0, first);
+        blocks.put(1, second);
+        assertSame(first, blocks.get(0));
+        blocks.put(2, third);
+
+        assertEquals(2, cache.getBlockCount());
+        assertEquals(200, cache.getSize());
+        assertEquals(1, cache.getEvictionCount());
+        assertSame(first, blocks.get(0));
+        assertNull(blocks.get(1));
+        assertSame(third, blocks.get(2));
+        assertEquals(3, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testKeyParts() {
+        BlockCache cache = new BlockCache(CACHE_SIZE);
+        BufferedImage block = new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB);
+        cache.forSegment("file", 1, new int[] {2, 1, 0}, 1).put(3, block);
+
+        assertEquals(400, cache.getSize());
+        assertSame(block, cache.forSegment("file", 1, new int[] {2, 1, 0}, 1).get(3));
+        assertNull(cache.forSegment("other", 1, new int[] {2, 1, 0}, 1).get(3));
+        assertNull(cache.forSegment("file", 0, new int[] {2, 1, 0}, 1).get(3));
+        assertNull(cache.forSegment("file", 1, null, 1).get(3));
+        assertNull(cache.forSegment("file", 1, new int[] {2, 1, 0}, 2).get(3));
+        assertNull(cache.forSegment("file", 1, new int[] {2, 1, 0}, 1).get(2));
+    }
+
+    @Test
+    public void testOversizeBlockNotCached() {
+        BlockCache cache = new BlockCache(99);
+        cache.forSegment("file", 0, null, 1).put(0, new BufferedImage(10, 10, BufferedImage.TYPE_BYTE_GRAY));
+        assertEquals(0, cache.getBlockCount());
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testClear() {
+        BlockCache cache = new BlockCache(CACHE_SIZE);
+        cache.forSegment("file", 0, null, 1).put(0, new BufferedImage(10, 10, BufferedImage.TYPE_BYTE_GRAY));
+        cache.clear();
+        assertEquals(0, cache.getBlockCount());
+        assertEquals(0, cache.getSize());
+        assertNull(cache.forSegment("file", 0, null, 1).get(0));
+    }
+
+    @Test
+    public void testBlockInterleve() throws IOException, NitfFormatException {
+        checkCachedRender("/JitcNitf20Samples/U_3002A.NTF", 1, null);
+    }
+
+    @Test
+    public void testBlockInterleveParallel() throws IOException, NitfFormatException {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            checkCachedRender("/JitcNitf20Samples/U_3002A.NTF", 1, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testBandSequential() throws IOException, NitfFormatException {
+        checkCachedRender("/JitcNitf21Samples/i_3301a.ntf", 1, null);
+    }
+
+    @Test
+    public void testMaskedPixelInterleve() throws IOException, NitfFormatException {
+        checkCachedRender("/JitcNitf21Samples/v_3301f.ntf", 1, null);
+    }
+
+    @Test
+    public void testSubsampled() throws IOException, NitfFormatException {
+        checkCachedRender("/JitcNitf20Samples/U_4007A.NTF", 3, null);
+    }
+
+    @Test
+    public void testJpeg() throws IOException, NitfFormatException {
+        checkCachedRender("/JitcNitf21Samples/i_3309a.ntf", 1, null);
+    }
+
+    @Test
+    public void testMaskedJpegSubsampled() throws IOException, NitfFormatException {
+        checkCachedRender("/JitcNitf21Samples/ns3301j.nsf", 2, null);
+    }
+
+    @Test
+    public void testJpeg2000() throws IOException, NitfFormatException {
+        checkCachedRender("/JitcJpeg2000/046_512x512_s_8_3_rgb_j2c.ntf", 1, null);
+    }
+
+    @Test
+    public void testBandSelectionNotShared() throws IOException, NitfFormatException {
+        String resourceName = "/JitcNitf21Samples/i_3301a.ntf";
+        BlockCache cache = new BlockCache(CACHE_SIZE);
+        NitfRenderer renderer = new NitfRenderer();
+        List<ImageSegment> firstSegments = parseImageSegments(resourceName);
+        renderer.setBlockCache(cache, resourceName, firstSegments::indexOf);
+        renderer.render(firstSegments.get(0));
+        assertTrue(cache.getBlockCount() > 0);
+
+        NitfRenderer reversedRenderer = new NitfRenderer() {
+            @Override
+            int[] getSourceBands(final ImageSegment imageSegment) {
+                // the red, green and blue bands in the opposite order
+                return new int[] {2, 1, 0};
+            }
+        };
+        List<ImageSegment> secondSegments = parseImageSegments(resourceName);
+        reversedRenderer.setBlockCache(cache, resourceName, secondSegments::indexOf);
+        reversedRenderer.render(secondSegments.get(0));
+        assertEquals(0, cache.getHitCount());
+    }
+
+    private void checkCachedRender(final String resourceName, final int subsampling, final ForkJoinPool pool)
+            throws IOException, NitfFormatException {
+        List<ImageSegment> uncachedSegments = parseImageSegments(resourceName);
+        NitfRenderer uncachedRenderer = new NitfRenderer();
+        uncachedRenderer.setForkJoinPool(pool);
+
+        BlockCache cache = new BlockCache(CACHE_SIZE);
+        NitfRenderer cachedRenderer = new NitfRenderer();
+        cachedRenderer.setForkJoinPool(pool);
+        List<ImageSegment> firstSegments = parseImageSegments(resourceName);
+        cachedRenderer.setBlockCache(cache, resourceName, firstSegments::indexOf);
+        for (ImageSegment segment : firstSegments) {
+            cachedRenderer.render(segment, subsampling);
+        }
+        assertTrue(cache.getBlockCount() > 0);
+        assertEquals(0, cache.getHitCount());
+
+        List<ImageSegment> secondSegments = parseImageSegments(resourceName);
+        cachedRenderer.setBlockCache(cache, resourceName, secondSegments::indexOf);
+        for (int i = 0; i < secondSegments.size(); ++i) {
+            BufferedImage expected = uncachedRenderer.render(uncachedSegments.get(i), subsampling);
+            BufferedImage actual = cachedRenderer.render(secondSegments.get(i), subsampling);
+            assertArrayEquals(getPixels(expected), getPixels(actual));
+        }
+        assertTrue(cache.getHitCount() > 0);
+    }
+}
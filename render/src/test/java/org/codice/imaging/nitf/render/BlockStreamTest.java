@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import static org.codice.imaging.nitf.render.RenderTestSupport.parseImageSegments;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.render.imagemode.ImageModeHandler;
+import org.codice.imaging.nitf.render.imagemode.ImageModeHandlerFactory;
+import org.junit.Test;
+
+/**
+ * Tests that blocks streamed from NitfRenderer.renderBlocks arrive in order and match a full render.
+ */
+public class BlockStreamTest {
+
+    @Test
+    public void testBlockInterleve() throws IOException, NitfFormatException {
+        checkBlocks("/JitcNitf20Samples/U_3002A.NTF", true);
+    }
+
+    @Test
+    public void testBandSequential() throws IOException, NitfFormatException {
+        checkBlocks("/JitcNitf21Samples/i_3301a.ntf", true);
+    }
+
+    @Test
+    public void testMaskedPixelInterleve() throws IOException, NitfFormatException {
+        checkBlocks("/JitcNitf21Samples/v_3301f.ntf", false);
+    }
+
+    @Test
+    public void testNonSquareBlockGrid() throws IOException, NitfFormatException {
+        checkBlocks("/JitcNitf20Samples/U_4007A.NTF", true);
+    }
+
+    @Test
+    public void testBilevel() throws IOException, NitfFormatException {
+        checkBlocks("/JitcNitf21Samples/i_3041a.ntf", true);
+    }
+
+    @Test
+    public void testJpeg() throws IOException, NitfFormatException {
+        checkBlocks("/JitcNitf21Samples/i_3309a.ntf", true);
+    }
+
+    @Test
+    public void testMaskedJpeg() throws IOException, NitfFormatException {
+        checkBlocks("/JitcNitf21Samples/ns3301j.nsf", false);
+    }
+
+    @Test
+    public void testJpeg2000() throws IOException, NitfFormatException {
+        checkBlocks("/JitcJpeg2000/046_512x512_s_8_3_rgb_j2c.ntf", true);
+    }
+
+    @Test
+    public void testMaskedVectorQuantization() throws IOException, NitfFormatException {
+        checkBlocks("/JitcNitf20Samples/U_3058B.NTF", false);
+    }
+
+    @Test
+    public void testDefaultHandlerBlocks() throws IOException, NitfFormatException {
+        String resourceName = "/JitcNitf21Samples/v_3301f.ntf";
+        final List<String> expected = new ArrayList<>();
+        new NitfRenderer().renderBlocks(parseImageSegments(resourceName).get(0),
+                (rowIndex, columnIndex, block) -> expected.add(describe(rowIndex, columnIndex, block)));
+        ImageSegment segment = parseImageSegments(resourceName).get(0);
+        // only handleImage(segment, graphics) is implemented, so the blocks come from the interface default
+        ImageModeHandler modeHandler = ImageModeHandlerFactory.forImageSegment(segment)::handleImage;
+        final List<String> actual = new ArrayList<>();
+        modeHandler.handleBlocks(segment, (rowIndex, columnIndex, block) -> actual.add(describe(rowIndex, columnIndex, block)));
+        assertEquals(expected, actual);
+    }
+
+    private void checkBlocks(final String resourceName, final boolean expectAllBlocks) throws IOException, NitfFormatException {
+        List<ImageSegment> fullSegments = parseImageSegments(resourceName);
+        List<ImageSegment> streamedSegments = parseImageSegments(resourceName);
+        NitfRenderer renderer = new NitfRenderer();
+        for (int i = 0; i < fullSegments.size(); ++i) {
+            ImageSegment segment = streamedSegments.get(i);
+            final BufferedImage full = renderer.renderRegion(fullSegments.get(i),
+                    new Rectangle(0, 0, (int) segment.getNumberOfColumns(), (int) segment.getNumberOfRows()));
+            final int blockWidth = (int) segment.getNumberOfPixelsPerBlockHorizontal();
+            final int blockHeight = (int) segment.getNumberOfPixelsPerBlockVertical();
+            final int[] lastBlock = {-1};
+            final int[] blockCount = {0};
+            renderer.renderBlocks(segment, (rowIndex, columnIndex, block) -> {
+                int blockIndex = rowIndex * segment.getNumberOfBlocksPerRow() + columnIndex;
+                assertTrue(blockIndex > lastBlock[0]);
+                lastBlock[0] = blockIndex;
+                blockCount[0]++;
+                assertTrue(block.getWidth() >= blockWidth);
+                assertTrue(block.getHeight() >= blockHeight);
+                Rectangle area = new Rectangle(columnIndex * blockWidth, rowIndex * blockHeight, blockWidth, blockHeight)
+                        .intersection(new Rectangle(0, 0, full.getWidth(), full.getHeight()));
+                BufferedImage drawn = toArgb(block);
+                for (int y = 0; y < area.height; ++y) {
+                    for (int x = 0; x < area.width; ++x) {
+                        assertEquals(getPixel(full, area.x + x, area.y + y), getPixel(drawn, x, y));
+                    }
+                }
+            });
+            if (expectAllBlocks) {
+                assertEquals(segment.getNumberOfBlocksPerRow() * segment.getNumberOfBlocksPerColumn(), blockCount[0]);
+            } else {
+                assertTrue(blockCount[0] > 0);
+            }
+        }
+    }
+
+    /**
+     * Convert a block the same way that the renderer does (getRGB converts grey levels differently to drawImage).
+     */
+    private static BufferedImage toArgb(final BufferedImage block) {
+        BufferedImage img = new BufferedImage(block.getWidth(), block.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = img.createGraphics();
+        graphics.drawImage(block, 0, 0, null);
+        graphics.dispose();
+        return img;
+    }
+
+    /**
+     * Describe a block by its position and drawn pixels, so blocks with different data models can be compared.
+     */
+    private static String describe(final int rowIndex, final int columnIndex, final BufferedImage block) {
+        BufferedImage drawn = toArgb(block);
+        StringBuilder description = new StringBuilder(rowIndex + "," + columnIndex + ":");
+        for (int y = 0; y < drawn.getHeight(); ++y) {
+            for (int x = 0; x < drawn.getWidth(); ++x) {
+                description.append(' ').append(Integer.toHexString(getPixel(drawn, x, y)));
+            }
+        }
+        return description.toString();
+    }
+
+    private static int getPixel(final BufferedImage image, final int x, final int y) {
+        int argb = image.getRGB(x, y);
+        // fully transparent pixels have no colour
+        if ((argb >>> 24) == 0) {
+            return 0;
+        }
+        return argb;
+    }
+}
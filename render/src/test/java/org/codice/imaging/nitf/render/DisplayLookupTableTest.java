@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.image.ImageBand;
+import org.codice.imaging.nitf.core.image.ImageBandLUT;
+import org.codice.imaging.nitf.core.image.ImageCompression;
+import org.codice.imaging.nitf.core.image.ImageMode;
+import org.codice.imaging.nitf.core.image.ImageRepresentation;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.core.image.PixelJustification;
+import org.codice.imaging.nitf.core.image.PixelValueType;
+import static org.codice.imaging.nitf.render.RenderTestSupport.parseImageSegment;
+import org.codice.imaging.nitf.render.datareader.DisplayLookupTable;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * Tests for rendering through display lookup tables.
+ */
+public class DisplayLookupTableTest {
+
+    @Test
+    public void checkLinearStretch11Bit() throws IOException, NitfFormatException {
+        ImageSegment segment = parseImageSegment("/JitcNitf21Samples/i_3405a.ntf");
+        BandStatistics statistics = new ImageStatistics(segment).getBandStatistics(0);
+        DisplayLookupTable lookupTable = DisplayLookupTable.linear(11, statistics.getMinimum(), statistics.getMaximum());
+        NitfRenderer renderer = new NitfRenderer();
+        renderer.setDisplayLookupTables(imageSegment -> lookupTable);
+        BufferedImage img = renderer.renderToClosestDataModel(segment);
+        assertThat(img.getType(), is(BufferedImage.TYPE_BYTE_GRAY));
+        checkRenderedValues(segment, img, lookupTable);
+        assertThat(lookupTable.lookup(statistics.getMinimum()), is(0));
+        assertThat(lookupTable.lookup(statistics.getMaximum()), is(255));
+    }
+
+    @Test
+    public void checkPercentileStretch12BitParallel() throws IOException, NitfFormatException {
+        ImageSegment segment = parseImageSegment("/JitcNitf21Samples/i_3430a.ntf");
+        BandStatistics statistics = new ImageStatistics(segment).getBandStatistics(0);
+        DisplayLookupTable lookupTable = DisplayLookupTable.percentile(12, statistics.getHistogram(), 2.0, 98.0);
+        NitfRenderer renderer = new NitfRenderer();
+        renderer.setForkJoinPool(ForkJoinPool.commonPool());
+        renderer.setDisplayLookupTables(imageSegment -> lookupTable);
+        checkRenderedValues(segment, renderer.render(segment), lookupTable);
+    }
+
+    @Test
+    public void checkGammaStretch16Bit() throws IOException, NitfFormatException {
+        ImageSegment segment = parseImageSegment("/Codice/headmono16.ntf");
+        BandStatistics statistics = new ImageStatistics(segment).getBandStatistics(0);
+        DisplayLookupTable lookupTable = DisplayLookupTable.gamma(16, statistics.getMinimum(), statistics.getMaximum(), 2.2);
+        NitfRenderer renderer = new NitfRenderer();
+        renderer.setDisplayLookupTables(imageSegment -> lookupTable);
+        checkRenderedValues(segment, renderer.render(segment), lookupTable);
+    }
+
+    @Test
+    public void checkPadPixelsDetectedBeforeLookup() throws IOException {
+        // the pad pixel value is 7, and 14 is looked up as 7
+        byte[] samples = {7, 14, 100, (byte) 200, 7, 7, 14, (byte) 255};
+        DisplayLookupTable lookupTable = DisplayLookupTable.linear(8, 7, 255);
+        assertThat(lookupTable.lookup(14), is(7));
+        NitfRenderer renderer = new NitfRenderer();
+        renderer.setDisplayLookupTables(imageSegment -> lookupTable);
+        Raster raster = renderer.render(mockPadPixelSegment(samples)).getRaster();
+        for (int i = 0; i < samples.length; ++i) {
+            int sample = samples[i] & 0xFF;
+            int expected = lookupTable.lookup(sample);
+            if (sample == 7) {
+                expected = 0;
+            }
+            assertThat(raster.getSample(i % 4, i / 4, 0), is(expected));
+        }
+    }
+
+    @Test
+    public void checkPercentileTable() {
+        long[] histogram = new long[256];
+        histogram[10] = 5;
+        histogram[20] = 90;
+        histogram[200] = 5;
+        DisplayLookupTable lookupTable = DisplayLookupTable.percentile(8, histogram, 10.0, 90.0);
+        assertThat(lookupTable.lookup(10), is(0));
+        assertThat(lookupTable.lookup(20), is(255));
+        assertThat(lookupTable.lookup(200), is(255));
+    }
+
+    @Test
+    public void checkGammaTable() {
+        DisplayLookupTable lookupTable = DisplayLookupTable.gamma(8, 0, 255, 2.0);
+        assertThat(lookupTable.lookup(0), is(0));
+        assertThat(lookupTable.lookup(64), is(128));
+        assertThat(lookupTable.lookup(255), is(255));
+    }
+
+    @Test
+    public void checkImageBandTable() {
+        ImageBandLUT bandLookupTable = Mockito.mock(ImageBandLUT.class);
+        Mockito.when(bandLookupTable.getNumberOfEntries()).thenReturn(3);
+        Mockito.when(bandLookupTable.getEntry(0)).thenReturn((byte) 200);
+        Mockito.when(bandLookupTable.getEntry(1)).thenReturn((byte) 100);
+        Mockito.when(bandLookupTable.getEntry(2)).thenReturn((byte) 0xFF);
+        ImageBand imageBand = Mockito.mock(ImageBand.class);
+        Mockito.when(imageBand.getNumLUTs()).thenReturn(1);
+        Mockito.when(imageBand.getLUTZeroBase(0)).thenReturn(bandLookupTable);
+        DisplayLookupTable lookupTable = DisplayLookupTable.forImageBand(4, imageBand);
+        assertThat(lookupTable.lookup(0), is(200));
+        assertThat(lookupTable.lookup(1), is(100));
+        assertThat(lookupTable.lookup(2), is(255));
+        assertThat(lookupTable.lookup(15), is(255));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void checkTableForWrongSampleSize() throws IOException, NitfFormatException {
+        NitfRenderer renderer = new NitfRenderer();
+        renderer.setDisplayLookupTables(imageSegment -> DisplayLookupTable.linear(8, 0, 255));
+        renderer.render(parseImageSegment("/JitcNitf21Samples/i_3430a.ntf"));
+    }
+
+    private static ImageSegment mockPadPixelSegment(final byte[] samples) {
+        // image mask with no block mask records, and an 8 bit pad pixel value of 7, followed by one 4 x 2 block
+        ByteBuffer data = ByteBuffer.allocate(11 + samples.length);
+        data.putInt(11).putShort((short) 0).putShort((short) 0).putShort((short) 8).put((byte) 7).put(samples);
+        ImageSegment segment = Mockito.mock(ImageSegment.class);
+        Mockito.when(segment.getImageCompression()).thenReturn(ImageCompression.NOTCOMPRESSEDMASK);
+        Mockito.when(segment.getImageMode()).thenReturn(ImageMode.BLOCKINTERLEVE);
+        Mockito.when(segment.getImageRepresentation()).thenReturn(ImageRepresentation.MONOCHROME);
+        Mockito.when(segment.getPixelValueType()).thenReturn(PixelValueType.INTEGER);
+        Mockito.when(segment.getPixelJustification()).thenReturn(PixelJustification.RIGHT);
+        Mockito.when(segment.getNumberOfBitsPerPixelPerBand()).thenReturn(8);
+        Mockito.when(segment.getActualBitsPerPixelPerBand()).thenReturn(8);
+        Mockito.when(segment.getNumBands()).thenReturn(1);
+        Mockito.when(segment.getNumberOfRows()).thenReturn(2L);
+        Mockito.when(segment.getNumberOfColumns()).thenReturn(4L);
+        Mockito.when(segment.getNumberOfBlocksPerRow()).thenReturn(1);
+        Mockito.when(segment.getNumberOfBlocksPerColumn()).thenReturn(1);
+        Mockito.when(segment.getNumberOfPixelsPerBlockHorizontal()).thenReturn(4L);
+        Mockito.when(segment.getNumberOfPixelsPerBlockVertical()).thenReturn(2L);
+        Mockito.when(segment.getNumberOfBytesPerBlock()).thenReturn((long) samples.length);
+        Mockito.when(segment.getDataLength()).thenReturn((long) data.capacity());
+        Mockito.when(segment.getData()).thenReturn(new MemoryCacheImageInputStream(new ByteArrayInputStream(data.array())));
+        return segment;
+    }
+
+    private static void checkRenderedValues(final ImageSegment segment, final BufferedImage img, final DisplayLookupTable lookupTable)
+            throws IOException {
+        int[] values = new SpectralCube(segment).readBand(0);
+        Raster raster = img.getRaster();
+        int width = (int) segment.getNumberOfColumns();
+        for (int row = 0; row < segment.getNumberOfRows(); row += 7) {
+            for (int column = 0; column < width; column += 3) {
+                assertThat(raster.getSample(column, row, 0), is(lookupTable.lookup(values[row * width + column])));
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import org.codice.imaging.nitf.core.image.ImageCompression;
+import org.codice.imaging.nitf.core.image.ImageMode;
+import org.codice.imaging.nitf.core.image.ImageRepresentation;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.core.image.PixelValueType;
+import org.codice.imaging.nitf.render.datareader.FloatDisplayMapping;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * Tests for rendering floating point and complex image segments.
+ */
+public class FloatRenderTest {
+
+    private static final int WIDTH = 4;
+
+    private static final int HEIGHT = 2;
+
+    @Test
+    public void checkFloat32LinearMapping() throws IOException {
+        BufferedImage img = new NitfRenderer().render(mockSegment(PixelValueType.REAL, 32, float32Data()));
+        int[] expected = {0, 51, 102, 153, 204, 255, 0, 51};
+        checkGreyValues(img, expected);
+    }
+
+    @Test
+    public void checkFloat64LinearMapping() throws IOException {
+        ByteBuffer data = ByteBuffer.allocate(WIDTH * HEIGHT * 8);
+        for (int i = 0; i < WIDTH * HEIGHT; ++i) {
+            data.putDouble(1000.0 + i * 0.25);
+        }
+        BufferedImage img = new NitfRenderer().render(mockSegment(PixelValueType.REAL, 64, data.array()));
+        int[] expected = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < expected.length; ++i) {
+            expected[i] = (int) Math.round(i * 255.0 / 7);
+        }
+        checkGreyValues(img, expected);
+    }
+
+    @Test
+    public void checkComplexLogMagnitudeMapping() throws IOException {
+        ByteBuffer data = ByteBuffer.allocate(WIDTH * HEIGHT * 8);
+        float[][] values = {{0, 0}, {3, 4}, {-3, 4}, {0, -99}, {0, 0}, {0, 0}, {0, 0}, {0, 0}};
+        for (float[] value : values) {
+            data.putFloat(value[0]);
+            data.putFloat(value[1]);
+        }
+        BufferedImage img = new NitfRenderer().render(mockSegment(PixelValueType.COMPLEX, 64, data.array()));
+        // magnitudes 0, 5, 5 and 99, where log(1 + 5) / log(1 + 99) = 0.389
+        int[] expected = {0, 99, 99, 255, 0, 0, 0, 0};
+        checkGreyValues(img, expected);
+    }
+
+    @Test
+    public void checkSuppliedMapping() throws IOException {
+        NitfRenderer renderer = new NitfRenderer();
+        renderer.setFloatDisplayMappings((segment) -> FloatDisplayMapping.linear(0.0, 51.0));
+        BufferedImage img = renderer.render(mockSegment(PixelValueType.REAL, 32, float32Data()));
+        int[] expected = {0, 0, 50, 100, 150, 200, 0, 0};
+        checkGreyValues(img, expected);
+    }
+
+    @Test
+    public void checkDefaultMappingUsesWholeImage() throws IOException {
+        ImageSegment segment = mockSegment(PixelValueType.REAL, 32, float32Data());
+        NitfRenderer renderer = new NitfRenderer();
+        // each region is mapped for the -10 to 40 range of the whole image, so neighbouring tiles match
+        BufferedImage left = renderer.renderRegion(segment, new Rectangle(0, 0, 2, 1));
+        assertThat(left.getRGB(0, 0) & 0xFF, is(0));
+        assertThat(left.getRGB(1, 0) & 0xFF, is(51));
+        BufferedImage right = renderer.renderRegion(segment, new Rectangle(2, 0, 2, 1));
+        assertThat(right.getRGB(0, 0) & 0xFF, is(102));
+        assertThat(right.getRGB(1, 0) & 0xFF, is(153));
+    }
+
+    @Test
+    public void checkPadPixelsDetectedBeforeMapping() throws IOException {
+        // image mask with no block mask records, and an 8 bit pad pixel value of 0
+        ByteBuffer data = ByteBuffer.allocate(11 + WIDTH * HEIGHT * 4);
+        data.putInt(11).putShort((short) 0).putShort((short) 0).putShort((short) 8).put((byte) 0).put(float32Data());
+        ImageSegment segment = mockSegment(PixelValueType.REAL, 32, data.array());
+        Mockito.when(segment.getImageCompression()).thenReturn(ImageCompression.NOTCOMPRESSEDMASK);
+        Mockito.when(segment.getNumberOfBytesPerBlock()).thenReturn((long) WIDTH * HEIGHT * 4);
+        NitfRenderer renderer = new NitfRenderer();
+        renderer.setFloatDisplayMappings((imageSegment) -> FloatDisplayMapping.linear(-10.0, 10.0));
+        BufferedImage img = renderer.render(segment);
+        // the pad pixel would otherwise be mapped to 128
+        int[] expected = {0, 0, 255, 255, 255, 255, 0, 128};
+        checkGreyValues(img, expected);
+    }
+
+    @Test
+    public void checkNonIntegralPadPixelDetected() throws IOException {
+        // image mask with no block mask records, and a 32 bit pad pixel value that is the bits of 45.5
+        ByteBuffer data = ByteBuffer.allocate(14 + WIDTH * HEIGHT * 4);
+        data.putInt(14).putShort((short) 0).putShort((short) 0).putShort((short) 32).putFloat(45.5f);
+        float[] values = {-10.0f, 0.0f, 10.0f, 20.0f, 30.0f, 40.0f, Float.NaN, 45.5f};
+        for (float value : values) {
+            data.putFloat(value);
+        }
+        ImageSegment segment = mockSegment(PixelValueType.REAL, 32, data.array());
+        Mockito.when(segment.getImageCompression()).thenReturn(ImageCompression.NOTCOMPRESSEDMASK);
+        Mockito.when(segment.getNumberOfBytesPerBlock()).thenReturn((long) WIDTH * HEIGHT * 4);
+        // the pad pixel is left out of the value range, and drawn as zero
+        BufferedImage img = new NitfRenderer().render(segment);
+        int[] expected = {0, 51, 102, 153, 204, 255, 0, 0};
+        checkGreyValues(img, expected);
+    }
+
+    private static byte[] float32Data() {
+        ByteBuffer data = ByteBuffer.allocate(WIDTH * HEIGHT * 4);
+        float[] values = {-10.0f, 0.0f, 10.0f, 20.0f, 30.0f, 40.0f, Float.NaN, 1.0e-3f};
+        for (float value : values) {
+            data.putFloat(value);
+        }
+        return data.array();
+    }
+
+    private static ImageSegment mockSegment(final PixelValueType pixelValueType, final int bitsPerPixel, final byte[] data) {
+        ImageSegment segment = Mockito.mock(ImageSegment.class);
+        Mockito.when(segment.getImageCompression()).thenReturn(ImageCompression.NOTCOMPRESSED);
+        Mockito.when(segment.getImageMode()).thenReturn(ImageMode.BLOCKINTERLEVE);
+        Mockito.when(segment.getImageRepresentation()).thenReturn(ImageRepresentation.MONOCHROME);
+        Mockito.when(segment.getPixelValueType()).thenReturn(pixelValueType);
+        Mockito.when(segment.getNumberOfBitsPerPixelPerBand()).thenReturn(bitsPerPixel);
+        Mockito.when(segment.getActualBitsPerPixelPerBand()).thenReturn(bitsPerPixel);
+        Mockito.when(segment.getNumBands()).thenReturn(1);
+        Mockito.when(segment.getNumberOfRows()).thenReturn((long) HEIGHT);
+        Mockito.when(segment.getNumberOfColumns()).thenReturn((long) WIDTH);
+        Mockito.when(segment.getNumberOfBlocksPerRow()).thenReturn(1);
+        Mockito.when(segment.getNumberOfBlocksPerColumn()).thenReturn(1);
+        Mockito.when(segment.getNumberOfPixelsPerBlockHorizontal()).thenReturn((long) WIDTH);
+        Mockito.when(segment.getNumberOfPixelsPerBlockVertical()).thenReturn((long) HEIGHT);
+        Mockito.when(segment.getNumberOfBytesPerBlock()).thenReturn((long) data.length);
+        Mockito.when(segment.getDataLength()).thenReturn((long) data.length);
+        Mockito.when(segment.getData()).thenReturn(new MemoryCacheImageInputStream(new ByteArrayInputStream(data)));
+        return segment;
+    }
+
+    private static void checkGreyValues(final BufferedImage img, final int[] expected) {
+        for (int i = 0; i < expected.length; ++i) {
+            assertThat(img.getRGB(i % WIDTH, i / WIDTH) & 0xFF, is(expected[i]));
+        }
+    }
+}
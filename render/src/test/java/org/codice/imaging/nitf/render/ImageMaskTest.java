@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import java.io.IOException;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.image.ImageMode;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import static org.codice.imaging.nitf.render.RenderTestSupport.parseImageSegment;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * Tests for locating blocks with the image mask.
+ */
+public class ImageMaskTest {
+
+    @Test
+    public void checkMaskedBlockLocations() throws IOException, NitfFormatException {
+        ImageSegment segment = parseImageSegment("/JitcNitf21Samples/v_3301f.ntf");
+        ImageMask imageMask = new ImageMask(segment, segment.getData());
+        assertTrue(imageMask.hasBlockMaskRecords());
+        long[] expectedLocations = {-1, -1, -1, -1, -1, 139, 49291, -1, -1, 98443, 147595, -1, -1, -1, -1, -1};
+        for (int blockIndex = 0; blockIndex < expectedLocations.length; ++blockIndex) {
+            assertEquals(expectedLocations[blockIndex], imageMask.getBlockLocation(blockIndex, 0));
+            assertEquals(expectedLocations[blockIndex], imageMask.getBlockLocation(blockIndex / 4, blockIndex % 4, 0));
+            assertEquals(expectedLocations[blockIndex] < 0, imageMask.isMaskedBlock(blockIndex, 0));
+            // pixel and block interleved images have one mask record for all bands
+            assertEquals(expectedLocations[blockIndex], imageMask.getBlockLocation(blockIndex, 2));
+        }
+    }
+
+    @Test
+    public void checkPadPixelMaskBlockLocations() throws IOException, NitfFormatException {
+        ImageSegment segment = parseImageSegment("/JitcNitf21Samples/ns3301e.nsf");
+        ImageMask imageMask = new ImageMask(segment, segment.getData());
+        assertFalse(imageMask.hasBlockMaskRecords());
+        assertTrue(imageMask.hasPixelMasks());
+        for (int blockIndex = 0; blockIndex < 4; ++blockIndex) {
+            assertFalse(imageMask.isMaskedBlock(blockIndex, 0));
+            assertEquals(27 + 49152 * blockIndex, imageMask.getBlockLocation(blockIndex, 0));
+        }
+    }
+
+    @Test
+    public void checkBandSequentialBlockLocations() {
+        ImageSegment segment = Mockito.mock(ImageSegment.class);
+        Mockito.when(segment.getImageMode()).thenReturn(ImageMode.BANDSEQUENTIAL);
+        Mockito.when(segment.getNumBands()).thenReturn(3);
+        Mockito.when(segment.getNumberOfBlocksPerRow()).thenReturn(2);
+        Mockito.when(segment.getNumberOfBlocksPerColumn()).thenReturn(2);
+        Mockito.when(segment.getNumberOfBytesPerBlock()).thenReturn(300L);
+        ImageMask imageMask = new ImageMask(segment);
+        assertFalse(imageMask.hasBlockMaskRecords());
+        for (int band = 0; band < 3; ++band) {
+            for (int blockIndex = 0; blockIndex < 4; ++blockIndex) {
+                assertEquals(100 * (band * 4 + blockIndex), imageMask.getBlockLocation(blockIndex / 2, blockIndex % 2, band));
+                assertEquals(100 * (band * 4 + blockIndex), imageMask.getBlockOffset(blockIndex, band));
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+
+import org.codice.imaging.nitf.core.DataSource;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.common.impl.FileReader;
+import org.codice.imaging.nitf.core.header.impl.NitfParser;
+import org.codice.imaging.nitf.core.image.ImageRepresentation;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.core.impl.SlottedParseStrategy;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for building and reading reduced resolution levels.
+ */
+public class ImagePyramidTest {
+
+    private static final int ALPHA_SHIFT = 24;
+    private static final int RED_SHIFT = 16;
+    private static final int GREEN_SHIFT = 8;
+    private static final int BYTE_MASK = 0xFF;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testReducedResolutionSets() throws IOException, NitfFormatException, URISyntaxException {
+        File sourceFile = copyResource("/JitcNitf21Samples/i_3001a.ntf");
+        DataSource source = parse(sourceFile);
+        ImagePyramidBuilder builder = new ImagePyramidBuilder(source.getNitfHeader(), source.getImageSegments().get(0));
+        assertEquals(2, builder.getNumberOfLevels());
+        builder.setBlockSize(100);
+        List<File> levelFiles = builder.writeReducedResolutionSets(sourceFile);
+        assertEquals(Arrays.asList(new File(sourceFile.getPath() + ".r1"), new File(sourceFile.getPath() + ".r2")), levelFiles);
+
+        NitfRenderer renderer = new NitfRenderer();
+        BufferedImage expected = renderer.render(source.getImageSegments().get(0));
+        for (File levelFile : levelFiles) {
+            ImageSegment level = parse(levelFile).getImageSegments().get(0);
+            assertEquals(ImageRepresentation.MONOCHROME, level.getImageRepresentation());
+            assertEquals((level.getNumberOfColumns() + 99) / 100, level.getNumberOfBlocksPerRow());
+            expected = reduce(expected);
+            assertSameImage(expected, renderer.render(level));
+        }
+        assertEquals("/4  ", parse(levelFiles.get(1)).getImageSegments().get(0).getImageMagnification());
+
+        ImagePyramid pyramid = new ImagePyramid(parse(sourceFile).getImageSegments().get(0));
+        assertEquals(2, pyramid.addReducedResolutionSets(sourceFile, 0));
+        assertEquals(Arrays.asList(1, 2, 4), pyramid.getSubsamplingFactors());
+        assertEquals(1024, pyramid.getLevel(1).getNumberOfColumns());
+        assertEquals(512, pyramid.getLevel(3).getNumberOfColumns());
+        assertEquals(256, pyramid.getLevel(8).getNumberOfColumns());
+
+        BufferedImage overview = pyramid.render(renderer, new Dimension(300, 300));
+        assertSameImage(renderer.render(pyramid.getLevel(4)), overview);
+        overview = pyramid.render(renderer, new Dimension(100, 100));
+        assertSameImage(renderer.render(pyramid.getLevel(4), 3), overview);
+    }
+
+    @Test
+    public void testReducedResolutionSetsWithGaps() throws IOException, NitfFormatException, URISyntaxException {
+        File sourceFile = copyResource("/JitcNitf21Samples/i_3001a.ntf");
+        DataSource source = parse(sourceFile);
+        ImagePyramidBuilder builder = new ImagePyramidBuilder(source.getNitfHeader(), source.getImageSegments().get(0));
+        builder.setNumberOfLevels(3);
+        List<File> levelFiles = builder.writeReducedResolutionSets(sourceFile);
+        assertTrue(levelFiles.get(0).delete());
+
+        ImagePyramid pyramid = new ImagePyramid(source.getImageSegments().get(0));
+        assertEquals(2, pyramid.addReducedResolutionSets(sourceFile, 0));
+        assertEquals(Arrays.asList(1, 4, 8), pyramid.getSubsamplingFactors());
+        assertEquals(0, pyramid.addReducedResolutionSets(sourceFile, 1));
+    }
+
+    @Test
+    public void testLevelSegments() throws IOException, NitfFormatException, URISyntaxException {
+        File sourceFile = copyResource("/JitcNitf20Samples/U_3002A.NTF");
+        File outputFile = temporaryFolder.newFile("withLevels.ntf");
+        DataSource source = parse(sourceFile);
+        ImagePyramidBuilder builder = new ImagePyramidBuilder(source.getNitfHeader(), source.getImageSegments().get(0));
+        assertEquals(0, builder.getNumberOfLevels());
+        builder.setNumberOfLevels(2);
+        builder.writeWithLevelSegments(sourceFile, outputFile);
+
+        DataSource output = parse(outputFile);
+        assertEquals(3, output.getImageSegments().size());
+        ImagePyramid pyramid = new ImagePyramid(output.getImageSegments().get(0));
+        assertEquals(2, pyramid.addLevels(output));
+        assertEquals(Arrays.asList(1, 2, 4), pyramid.getSubsamplingFactors());
+        assertSame(output.getImageSegments().get(2), pyramid.getLevel(4));
+
+        NitfRenderer renderer = new NitfRenderer();
+        BufferedImage expected = renderer.render(output.getImageSegments().get(0));
+        assertSameImage(renderer.render(source.getImageSegments().get(0)), expected);
+        for (int i = 1; i < output.getImageSegments().size(); ++i) {
+            ImageSegment level = output.getImageSegments().get(i);
+            assertEquals(ImageRepresentation.RGBTRUECOLOUR, level.getImageRepresentation());
+            expected = reduce(expected);
+            assertSameImage(expected, renderer.render(level));
+        }
+    }
+
+    @Test
+    public void testUnrelatedLevelIgnored() throws IOException, NitfFormatException, URISyntaxException {
+        ImageSegment full = parse(copyResource("/JitcNitf20Samples/U_3002A.NTF")).getImageSegments().get(0);
+        ImageSegment other = parse(copyResource("/JitcNitf21Samples/i_3001a.ntf")).getImageSegments().get(0);
+        ImagePyramid pyramid = new ImagePyramid(full);
+        assertFalse(pyramid.addLevel(other));
+        assertFalse(pyramid.addLevel(full));
+        assertEquals(Arrays.asList(1), pyramid.getSubsamplingFactors());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidNumberOfLevels() throws IOException, NitfFormatException, URISyntaxException {
+        DataSource source = parse(copyResource("/JitcNitf20Samples/U_3002A.NTF"));
+        new ImagePyramidBuilder(source.getNitfHeader(), source.getImageSegments().get(0)).setNumberOfLevels(10);
+    }
+
+    private static BufferedImage reduce(final BufferedImage img) {
+        BufferedImage reduced = new BufferedImage((img.getWidth() + 1) / 2, (img.getHeight() + 1) / 2, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < reduced.getHeight(); ++y) {
+            for (int x = 0; x < reduced.getWidth(); ++x) {
+                int[] sums = new int[3];
+                int count = 0;
+                for (int sourceY = y * 2; sourceY < Math.min(y * 2 + 2, img.getHeight()); ++sourceY) {
+                    for (int sourceX = x * 2; sourceX < Math.min(x * 2 + 2, img.getWidth()); ++sourceX) {
+                        int argb = img.getRGB(sourceX, sourceY);
+                        sums[0] += (argb >> RED_SHIFT) & BYTE_MASK;
+                        sums[1] += (argb >> GREEN_SHIFT) & BYTE_MASK;
+                        sums[2] += argb & BYTE_MASK;
+                        count++;
+                    }
+                }
+                int argb = BYTE_MASK << ALPHA_SHIFT;
+                argb |= ((sums[0] + count / 2) / count) << RED_SHIFT;
+                argb |= ((sums[1] + count / 2) / count) << GREEN_SHIFT;
+                argb |= (sums[2] + count / 2) / count;
+                reduced.setRGB(x, y, argb);
+            }
+        }
+        return reduced;
+    }
+
+    private static void assertSameImage(final BufferedImage expected, final BufferedImage actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        assertArrayEquals(expected.getRGB(0, 0, expected.getWidth(), expected.getHeight(), null, 0, expected.getWidth()),
+                actual.getRGB(0, 0, actual.getWidth(), actual.getHeight(), null, 0, actual.getWidth()));
+    }
+
+    private File copyResource(final String resourceName) throws IOException, URISyntaxException {
+        assertNotNull("Test file missing: " + resourceName, getClass().getResource(resourceName));
+        File copy = new File(temporaryFolder.newFolder(), new File(resourceName).getName());
+        Files.copy(new File(getClass().getResource(resourceName).toURI()).toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return copy;
+    }
+
+    private static DataSource parse(final File file) throws NitfFormatException {
+        SlottedParseStrategy parseStrategy = new SlottedParseStrategy(SlottedParseStrategy.IMAGE_DATA);
+        NitfParser.parse(new FileReader(file), parseStrategy);
+        return parseStrategy.getDataSource();
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import javax.imageio.ImageReader;
+
+import org.junit.Test;
+
+/**
+ * Tests for reusing ImageReader instances.
+ */
+public class ImageReaderPoolTest {
+
+    private static final String JPEG = "image/jpeg";
+
+    @Test
+    public void testReaderIsReused() {
+        ImageReaderPool pool = new ImageReaderPool(2);
+        ImageReader first = pool.acquire(JPEG);
+        ImageReader second = pool.acquire(JPEG);
+        assertNotSame(first, second);
+        pool.release(JPEG, first);
+        assertNull(first.getInput());
+        assertSame(first, pool.acquire(JPEG));
+    }
+
+    @Test
+    public void testIdleReadersAreLimited() {
+        ImageReaderPool pool = new ImageReaderPool(1);
+        ImageReader first = pool.acquire(JPEG);
+        ImageReader second = pool.acquire(JPEG);
+        pool.release(JPEG, first);
+        pool.release(JPEG, second);
+        assertSame(first, pool.acquire(JPEG));
+        assertNotSame(second, pool.acquire(JPEG));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testUnknownMediaType() {
+        new ImageReaderPool(1).acquire("image/x-not-a-real-type");
+    }
+}
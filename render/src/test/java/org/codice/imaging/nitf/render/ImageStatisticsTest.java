@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.image.ImageCompression;
+import org.codice.imaging.nitf.core.image.ImageMode;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.core.image.PixelJustification;
+import org.codice.imaging.nitf.core.image.PixelValueType;
+import static org.codice.imaging.nitf.render.RenderTestSupport.parseImageSegment;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * Tests for computing per-band image statistics.
+ */
+public class ImageStatisticsTest {
+
+    @Test
+    public void checkBlockInterleve12Bit() throws IOException, NitfFormatException {
+        checkStatisticsMatchCube("/JitcNitf21Samples/i_3430a.ntf");
+    }
+
+    @Test
+    public void checkBlockInterleve16BitPartialBlocks() throws IOException, NitfFormatException {
+        checkStatisticsMatchCube("/JitcNitf20Samples/U_4007A.NTF");
+    }
+
+    @Test
+    public void checkBandSequential() throws IOException, NitfFormatException {
+        checkStatisticsMatchCube("/JitcNitf21Samples/i_3301a.ntf");
+    }
+
+    @Test
+    public void checkRowInterleve() throws IOException, NitfFormatException {
+        checkStatisticsMatchCube("/JitcNitf21Samples/i_3301h.ntf");
+    }
+
+    @Test
+    public void checkMaskedBlocksAndPadPixels() throws IOException, NitfFormatException {
+        ImageStatistics statistics = checkStatisticsMatchCube("/JitcNitf21Samples/v_3301f.ntf");
+        // 4 of the 16 128x128 blocks are recorded, and 6000 of their pixels have the pad code (0x7F) in every band
+        for (int band = 0; band < statistics.getNumberOfBands(); ++band) {
+            assertThat(statistics.getBandStatistics(band).getCount(), is(4L * 128 * 128 - 6000));
+        }
+    }
+
+    @Test
+    public void checkSameImageInDifferentModes() throws IOException, NitfFormatException {
+        ImageStatistics blockInterleved = new ImageStatistics(parseImageSegment("/JitcNitf21Samples/ns3301b.nsf"));
+        ImageStatistics rowInterleved = new ImageStatistics(parseImageSegment("/JitcNitf21Samples/i_3301k.ntf"), ForkJoinPool.commonPool());
+        for (int band = 0; band < 3; ++band) {
+            assertArrayEquals(blockInterleved.getBandStatistics(band).getHistogram(), rowInterleved.getBandStatistics(band).getHistogram());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void checkBandOutsideImage() throws IOException, NitfFormatException {
+        new ImageStatistics(parseImageSegment("/JitcNitf21Samples/i_3430a.ntf")).getBandStatistics(1);
+    }
+
+    @Test
+    public void checkLeftJustifiedActualBits() throws IOException {
+        byte[] data = {(byte) 0x10, (byte) 0x20, (byte) 0x2F, (byte) 0xF0};
+        BandStatistics statistics = new ImageStatistics(mockSegment(PixelJustification.LEFT, 1, data)).getBandStatistics(0);
+        assertArrayEquals(new long[] {0, 1, 2, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1}, statistics.getHistogram());
+    }
+
+    @Test
+    public void checkRightJustifiedActualBits() throws IOException {
+        byte[] data = {(byte) 0x01, (byte) 0x02, (byte) 0xF2, (byte) 0x0F};
+        BandStatistics statistics = new ImageStatistics(mockSegment(PixelJustification.RIGHT, 1, data)).getBandStatistics(0);
+        assertArrayEquals(new long[] {0, 1, 2, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1}, statistics.getHistogram());
+    }
+
+    @Test(expected = EOFException.class)
+    public void checkReadErrorInParallel() throws IOException {
+        // the second block is missing from the image data
+        byte[] data = {(byte) 0x01, (byte) 0x02, (byte) 0x03, (byte) 0x04};
+        new ImageStatistics(mockSegment(PixelJustification.RIGHT, 2, data), ForkJoinPool.commonPool());
+    }
+
+    private static ImageSegment mockSegment(final PixelJustification justification, final int blocksPerRow, final byte[] data) {
+        ImageSegment segment = Mockito.mock(ImageSegment.class);
+        Mockito.when(segment.getImageCompression()).thenReturn(ImageCompression.NOTCOMPRESSED);
+        Mockito.when(segment.getImageMode()).thenReturn(ImageMode.BLOCKINTERLEVE);
+        Mockito.when(segment.getPixelValueType()).thenReturn(PixelValueType.INTEGER);
+        Mockito.when(segment.getPixelJustification()).thenReturn(justification);
+        Mockito.when(segment.getNumberOfBitsPerPixelPerBand()).thenReturn(8);
+        Mockito.when(segment.getActualBitsPerPixelPerBand()).thenReturn(4);
+        Mockito.when(segment.getNumBands()).thenReturn(1);
+        Mockito.when(segment.getNumberOfRows()).thenReturn(2L);
+        Mockito.when(segment.getNumberOfColumns()).thenReturn(2L * blocksPerRow);
+        Mockito.when(segment.getNumberOfBlocksPerRow()).thenReturn(blocksPerRow);
+        Mockito.when(segment.getNumberOfBlocksPerColumn()).thenReturn(1);
+        Mockito.when(segment.getNumberOfPixelsPerBlockHorizontal()).thenReturn(2L);
+        Mockito.when(segment.getNumberOfPixelsPerBlockVertical()).thenReturn(2L);
+        Mockito.when(segment.getData()).thenReturn(new MemoryCacheImageInputStream(new ByteArrayInputStream(data)));
+        return segment;
+    }
+
+    private ImageStatistics checkStatisticsMatchCube(final String resourceName) throws IOException, NitfFormatException {
+        ImageSegment segment = parseImageSegment(resourceName);
+        ImageStatistics statistics = new ImageStatistics(segment);
+        ImageStatistics parallelStatistics = new ImageStatistics(segment, ForkJoinPool.commonPool());
+        SpectralCube cube = new SpectralCube(segment);
+        ImageMask imageMask = null;
+        if (ImageCompression.NOTCOMPRESSEDMASK.equals(segment.getImageCompression())) {
+            segment.getData().seek(0);
+            imageMask = new ImageMask(segment, segment.getData());
+        }
+        int blockWidth = (int) segment.getNumberOfPixelsPerBlockHorizontal();
+        int blockHeight = (int) segment.getNumberOfPixelsPerBlockVertical();
+        assertThat(statistics.getNumberOfBands(), is(cube.getNumberOfBands()));
+        for (int band = 0; band < cube.getNumberOfBands(); ++band) {
+            int[] values = cube.readBand(band);
+            long[] histogram = new long[1 << segment.getActualBitsPerPixelPerBand()];
+            long count = 0;
+            long sum = 0;
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            for (int row = 0; row < cube.getNumberOfRows(); ++row) {
+                for (int column = 0; column < cube.getNumberOfColumns(); ++column) {
+                    int value = values[row * cube.getNumberOfColumns() + column];
+                    if ((imageMask != null) && ((imageMask.getBlockLocation(row / blockHeight, column / blockWidth, band) < 0)
+                            || imageMask.isPadPixelBits(value))) {
+                        continue;
+                    }
+                    histogram[value]++;
+                    count++;
+                    sum += value;
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                }
+            }
+            double mean = (double) sum / count;
+            double sumOfSquares = 0.0;
+            for (int value = 0; value < histogram.length; ++value) {
+                sumOfSquares += histogram[value] * (value - mean) * (value - mean);
+            }
+            BandStatistics bandStatistics = statistics.getBandStatistics(band);
+            assertArrayEquals(histogram, bandStatistics.getHistogram());
+            assertArrayEquals(histogram, parallelStatistics.getBandStatistics(band).getHistogram());
+            assertThat(bandStatistics.getHistogramOffset(), is(0));
+            assertThat(bandStatistics.getCount(), is(count));
+            assertThat(bandStatistics.getMinimum(), is(min));
+            assertThat(bandStatistics.getMaximum(), is(max));
+            assertEquals(mean, bandStatistics.getMean(), 1.0e-9);
+            assertEquals(Math.sqrt(sumOfSquares / count), bandStatistics.getStandardDeviation(), 1.0e-9);
+        }
+        return statistics;
+    }
+}
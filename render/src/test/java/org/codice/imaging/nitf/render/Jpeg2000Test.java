@@ -19,8 +19,14 @@
 package org.codice.imaging.nitf.render;
 
 import static javax.xml.bind.DatatypeConverter.parseHexBinary;
+import static org.codice.imaging.nitf.render.RenderTestSupport.getPixels;
+import static org.codice.imaging.nitf.render.RenderTestSupport.parseImageSegment;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
 
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -28,10 +34,17 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.concurrent.ForkJoinPool;
 
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
 import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
 import javax.imageio.stream.MemoryCacheImageInputStream;
 
+import org.codice.imaging.nitf.core.common.NitfFormatException;
 import org.codice.imaging.nitf.core.image.ImageCompression;
 import org.codice.imaging.nitf.core.image.ImageSegment;
 import org.junit.Test;
@@ -103,4 +116,99 @@ public class Jpeg2000Test {
         renderer.render(mockImageSegment, targetGraphic);
     }
 
+    @Test
+    public void checkResolutionLevels() throws IOException, NitfFormatException {
+        ImageSegment imageSegment = parseImageSegment("/JitcJpeg2000/046_512x512_s_8_3_rgb_j2c.ntf");
+        NitfRenderer renderer = new NitfRenderer();
+        long dataStart = imageSegment.getData().getStreamPosition();
+        assertThat(renderer.getResolutionLevels(imageSegment), is(5));
+        assertThat(imageSegment.getData().getStreamPosition(), is(dataStart));
+
+        BufferedImage fullResolution = renderer.render(imageSegment);
+        imageSegment.getData().seek(dataStart);
+        assertArrayEquals(getPixels(fullResolution), getPixels(renderer.renderResolutionLevel(imageSegment, 0)));
+
+        imageSegment.getData().seek(dataStart);
+        BufferedImage overview = renderer.renderResolutionLevel(imageSegment, 2);
+        assertThat(overview.getWidth(), is(128));
+        assertThat(overview.getHeight(), is(128));
+
+        imageSegment.getData().seek(dataStart);
+        BufferedImage smallest = renderer.renderResolutionLevel(imageSegment, 5);
+        assertThat(smallest.getWidth(), is(16));
+        assertThat(smallest.getHeight(), is(16));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void checkResolutionLevelsNeedJpeg2000() throws IOException {
+        ImageSegment mockImageSegment = Mockito.mock(ImageSegment.class);
+        Mockito.when(mockImageSegment.getImageCompression()).thenReturn(ImageCompression.JPEG);
+        new NitfRenderer().getResolutionLevels(mockImageSegment);
+    }
+
+    @Test
+    public void checkTiledCodestream() throws IOException {
+        BufferedImage source = new BufferedImage(200, 150, BufferedImage.TYPE_BYTE_GRAY);
+        for (int y = 0; y < source.getHeight(); ++y) {
+            for (int x = 0; x < source.getWidth(); ++x) {
+                source.getRaster().setSample(x, y, 0, (x * 3 + y * 5) & 0xFF);
+            }
+        }
+        ImageSegment imageSegment = Mockito.mock(ImageSegment.class);
+        Mockito.when(imageSegment.getImageCompression()).thenReturn(ImageCompression.JPEG2000);
+        Mockito.when(imageSegment.getNumberOfBlocksPerRow()).thenReturn(1);
+        Mockito.when(imageSegment.getNumberOfBlocksPerColumn()).thenReturn(1);
+        Mockito.when(imageSegment.getNumberOfPixelsPerBlockHorizontal()).thenReturn(200L);
+        Mockito.when(imageSegment.getNumberOfPixelsPerBlockVertical()).thenReturn(150L);
+        Mockito.when(imageSegment.getNumberOfColumns()).thenReturn(200L);
+        Mockito.when(imageSegment.getNumberOfRows()).thenReturn(150L);
+        Mockito.when(imageSegment.getNumBands()).thenReturn(1);
+        ImageInputStream imageData = new MemoryCacheImageInputStream(new ByteArrayInputStream(writeTiledCodestream(source, 64)));
+        Mockito.when(imageSegment.getData()).thenReturn(imageData);
+
+        NitfRenderer sequentialRenderer = new NitfRenderer();
+        NitfRenderer parallelRenderer = new NitfRenderer();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            parallelRenderer.setForkJoinPool(pool);
+            BufferedImage expected = new BufferedImage(200, 150, BufferedImage.TYPE_INT_ARGB);
+            expected.createGraphics().drawImage(source, 0, 0, null);
+            assertArrayEquals(getPixels(expected), getPixels(parallelRenderer.render(imageSegment)));
+
+            imageData.seek(0);
+            Rectangle region = new Rectangle(50, 60, 100, 70);
+            assertArrayEquals(getPixels(expected.getSubimage(50, 60, 100, 70)), getPixels(parallelRenderer.renderRegion(imageSegment, region)));
+
+            imageData.seek(0);
+            BufferedImage sequentialOverview = sequentialRenderer.renderResolutionLevel(imageSegment, 1);
+            imageData.seek(0);
+            BufferedImage parallelOverview = parallelRenderer.renderResolutionLevel(imageSegment, 1);
+            assertThat(parallelOverview.getWidth(), is(100));
+            assertThat(parallelOverview.getHeight(), is(75));
+            assertArrayEquals(getPixels(sequentialOverview), getPixels(parallelOverview));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static byte[] writeTiledCodestream(final BufferedImage image, final int tileSize) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg2000").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setTilingMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setTiling(tileSize, tileSize, 0, 0);
+        try {
+            param.getClass().getMethod("setWriteCodeStreamOnly", boolean.class).invoke(param, true);
+            param.getClass().getMethod("setLossless", boolean.class).invoke(param, true);
+        } catch (ReflectiveOperationException e) {
+            throw new IOException(e);
+        }
+        ByteArrayOutputStream codestream = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(codestream)) {
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return codestream.toByteArray();
+    }
 }
@@ -19,18 +19,31 @@
 package org.codice.imaging.nitf.render;
 
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URISyntaxException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import javax.imageio.stream.ImageInputStream;
 import javax.imageio.stream.MemoryCacheImageInputStream;
 import static javax.xml.bind.DatatypeConverter.parseHexBinary;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
 import org.codice.imaging.nitf.core.image.ImageCompression;
 import org.codice.imaging.nitf.core.image.ImageSegment;
+import static org.codice.imaging.nitf.render.RenderTestSupport.parseImageSegment;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import org.junit.Test;
 import org.mockito.Mockito;
 
@@ -96,4 +109,92 @@ public class JpegTest {
         renderer.render(mockImageSegment, targetGraphic);
     }
 
+    @Test
+    public void checkBlockOffsets() throws IOException, NitfFormatException {
+        ImageSegment segment = parseImageSegment("/JitcNitf21Samples/i_3309a.ntf");
+        JpegBlockOffsets blockOffsets = JpegBlockOffsets.forImageSegment(segment, null);
+        int numberOfBlocks = segment.getNumberOfBlocksPerRow() * segment.getNumberOfBlocksPerColumn();
+        long previousStart = -1;
+        for (int blockIndex = 0; blockIndex < numberOfBlocks; ++blockIndex) {
+            assertFalse(blockOffsets.isMaskedBlock(blockIndex));
+            assertTrue(blockOffsets.getStart(blockIndex) > previousStart);
+            previousStart = blockOffsets.getStart(blockIndex);
+            checkJpegStream(segment.getData(), blockOffsets.getStart(blockIndex), blockOffsets.getLength(blockIndex));
+        }
+        assertSame(blockOffsets, JpegBlockOffsets.forImageSegment(segment, null));
+    }
+
+    @Test
+    public void checkConcurrentBlockOffsets() throws Exception {
+        ImageSegment expectedSegment = parseImageSegment("/JitcNitf21Samples/i_3309a.ntf");
+        JpegBlockOffsets expected = JpegBlockOffsets.forImageSegment(expectedSegment, null);
+        ImageSegment segment = parseImageSegment("/JitcNitf21Samples/i_3309a.ntf");
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<JpegBlockOffsets> results = pool.submit(() -> IntStream.range(0, 16).parallel().mapToObj(i -> {
+                try {
+                    return JpegBlockOffsets.forImageSegment(segment, null);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).collect(Collectors.toList())).get();
+            for (JpegBlockOffsets blockOffsets : results) {
+                assertSame(results.get(0), blockOffsets);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        JpegBlockOffsets blockOffsets = JpegBlockOffsets.forImageSegment(segment, null);
+        for (int blockIndex = 0; blockIndex < segment.getNumberOfBlocksPerRow() * segment.getNumberOfBlocksPerColumn(); ++blockIndex) {
+            assertEquals(expected.getStart(blockIndex), blockOffsets.getStart(blockIndex));
+            assertEquals(expected.getLength(blockIndex), blockOffsets.getLength(blockIndex));
+        }
+    }
+
+    @Test
+    public void checkMaskedBlockOffsets() throws IOException, NitfFormatException {
+        ImageSegment segment = parseImageSegment("/JitcNitf21Samples/ns3301j.nsf");
+        ImageMask imageMask = new ImageMask(segment, segment.getData());
+        JpegBlockOffsets blockOffsets = JpegBlockOffsets.forImageSegment(segment, imageMask);
+        int maskedBlocks = 0;
+        for (int blockIndex = 0; blockIndex < segment.getNumberOfBlocksPerRow() * segment.getNumberOfBlocksPerColumn(); ++blockIndex) {
+            assertEquals(imageMask.isMaskedBlock(blockIndex, 0), blockOffsets.isMaskedBlock(blockIndex));
+            assertEquals(imageMask.getBlockLocation(blockIndex, 0), blockOffsets.getStart(blockIndex));
+            if (blockOffsets.isMaskedBlock(blockIndex)) {
+                maskedBlocks++;
+            } else {
+                checkJpegStream(segment.getData(), blockOffsets.getStart(blockIndex), blockOffsets.getLength(blockIndex));
+            }
+        }
+        assertTrue(maskedBlocks > 0);
+    }
+
+    @Test
+    public void checkRandomBlockRender() throws IOException, NitfFormatException {
+        ImageSegment segment = parseImageSegment("/JitcNitf21Samples/i_3309a.ntf");
+        long dataStart = segment.getData().getStreamPosition();
+        NitfRenderer renderer = new NitfRenderer();
+        BufferedImage full = renderer.render(segment);
+        int blockWidth = (int) segment.getNumberOfPixelsPerBlockHorizontal();
+        int blockHeight = (int) segment.getNumberOfPixelsPerBlockVertical();
+        // last block first, then an earlier block, both after the block locations are known
+        Rectangle[] regions = {new Rectangle(7 * blockWidth + 10, 6 * blockHeight + 20, 100, 50),
+            new Rectangle(blockWidth - 30, 2 * blockHeight - 10, 60, 20)};
+        for (Rectangle region : regions) {
+            segment.getData().seek(dataStart);
+            BufferedImage img = renderer.renderRegion(segment, region);
+            assertArrayEquals(full.getRGB(region.x, region.y, region.width, region.height, null, 0, region.width),
+                    img.getRGB(0, 0, region.width, region.height, null, 0, region.width));
+        }
+    }
+
+    private static void checkJpegStream(final ImageInputStream imageData, final long start, final int length) throws IOException {
+        byte[] block = new byte[length];
+        imageData.seek(start);
+        imageData.readFully(block);
+        assertEquals((byte) 0xFF, block[0]);
+        assertEquals((byte) 0xD8, block[1]);
+        assertEquals((byte) 0xFF, block[length - 2]);
+        assertEquals((byte) 0xD9, block[length - 1]);
+    }
 }
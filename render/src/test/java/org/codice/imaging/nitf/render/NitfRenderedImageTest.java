@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import static org.codice.imaging.nitf.render.RenderTestSupport.parseImageSegments;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.IOException;
+import java.util.List;
+
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.junit.Test;
+
+/**
+ * Tests that the tiles of a NitfRenderedImage match the same area of a full render.
+ */
+public class NitfRenderedImageTest {
+
+    private static final int ALPHA_BAND = 3;
+
+    @Test
+    public void testTileLayout() throws IOException, NitfFormatException {
+        ImageSegment segment = parseImageSegments("/JitcNitf20Samples/U_4007A.NTF").get(0);
+        NitfRenderedImage image = new NitfRenderedImage(segment);
+        assertEquals(segment.getNumberOfColumns(), image.getWidth());
+        assertEquals(segment.getNumberOfRows(), image.getHeight());
+        assertEquals(segment.getNumberOfBlocksPerRow(), image.getNumXTiles());
+        assertEquals(segment.getNumberOfBlocksPerColumn(), image.getNumYTiles());
+        assertEquals(segment.getNumberOfPixelsPerBlockHorizontal(), image.getTileWidth());
+        assertEquals(segment.getNumberOfPixelsPerBlockVertical(), image.getTileHeight());
+
+        Raster tile = image.getTile(image.getNumXTiles() - 1, image.getNumYTiles() - 1);
+        assertEquals((image.getNumXTiles() - 1) * image.getTileWidth(), tile.getMinX());
+        assertEquals((image.getNumYTiles() - 1) * image.getTileHeight(), tile.getMinY());
+        assertEquals(image.getTileWidth(), tile.getWidth());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTileOutsideGrid() throws IOException, NitfFormatException {
+        NitfRenderedImage image = new NitfRenderedImage(parseImageSegments("/JitcNitf20Samples/U_3002A.NTF").get(0));
+        image.getTile(image.getNumXTiles(), 0);
+    }
+
+    @Test
+    public void testBlockInterleve() throws IOException, NitfFormatException {
+        checkTiles("/JitcNitf20Samples/U_3002A.NTF");
+    }
+
+    @Test
+    public void testNonSquareBlockGrid() throws IOException, NitfFormatException {
+        checkTiles("/JitcNitf20Samples/U_4007A.NTF");
+    }
+
+    @Test
+    public void testBilevel() throws IOException, NitfFormatException {
+        checkTiles("/JitcNitf21Samples/i_3041a.ntf");
+    }
+
+    @Test
+    public void testJpeg() throws IOException, NitfFormatException {
+        checkTiles("/JitcNitf21Samples/i_3309a.ntf");
+    }
+
+    @Test
+    public void testMaskedJpeg() throws IOException, NitfFormatException {
+        checkTiles("/JitcNitf21Samples/ns3301j.nsf");
+    }
+
+    @Test
+    public void testMaskedVectorQuantization() throws IOException, NitfFormatException {
+        checkTiles("/JitcNitf20Samples/U_3058B.NTF");
+    }
+
+    @Test
+    public void testSequentialImageDecodedOnce() throws IOException, NitfFormatException {
+        // bilevel blocks can only be found by decoding the earlier blocks, so the decoded image is kept
+        NitfRenderedImage image = new NitfRenderedImage(parseImageSegments("/JitcNitf21Samples/i_3041a.ntf").get(0));
+        assertSame(image.getTile(0, 0).getDataBuffer(), image.getTile(0, 0).getDataBuffer());
+    }
+
+    private void checkTiles(final String resourceName) throws IOException, NitfFormatException {
+        List<ImageSegment> fullSegments = parseImageSegments(resourceName);
+        List<ImageSegment> tiledSegments = parseImageSegments(resourceName);
+        NitfRenderer renderer = new NitfRenderer();
+        for (int i = 0; i < fullSegments.size(); ++i) {
+            BufferedImage full = renderer.render(fullSegments.get(i));
+            NitfRenderedImage image = new NitfRenderedImage(tiledSegments.get(i));
+            // last tile first, so that earlier blocks have to be found again
+            for (int tileY = image.getNumYTiles() - 1; tileY >= 0; --tileY) {
+                for (int tileX = image.getNumXTiles() - 1; tileX >= 0; --tileX) {
+                    Raster tile = image.getTile(tileX, tileY);
+                    Rectangle area = tile.getBounds().intersection(new Rectangle(0, 0, full.getWidth(), full.getHeight()));
+                    assertArrayEquals(getPixels(full.getRaster(), area), getPixels(tile, area));
+                    assertTransparentPastImage(tile, area);
+                }
+            }
+            Rectangle area = new Rectangle(image.getTileWidth() / 2, image.getTileHeight() / 2, image.getWidth() / 2,
+                    image.getHeight() / 2);
+            assertArrayEquals(getPixels(full.getRaster(), area), getPixels(image.getData(area), area));
+        }
+    }
+
+    /**
+     * Check that the pixels of an edge tile past the image are transparent, rather than holding the block pad pixels.
+     */
+    private static void assertTransparentPastImage(final Raster tile, final Rectangle imageArea) {
+        Rectangle bounds = tile.getBounds();
+        for (int y = bounds.y; y < bounds.y + bounds.height; ++y) {
+            for (int x = bounds.x; x < bounds.x + bounds.width; ++x) {
+                if (!imageArea.contains(x, y)) {
+                    assertEquals(0, tile.getSample(x, y, ALPHA_BAND));
+                }
+            }
+        }
+    }
+
+    private static int[] getPixels(final Raster raster, final Rectangle area) {
+        return raster.getPixels(area.x, area.y, area.width, area.height, (int[]) null);
+    }
+}
@@ -21,8 +21,10 @@ package org.codice.imaging.nitf.render;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 
+import java.awt.image.BufferedImage;
 import java.io.IOException;
 
+import org.codice.imaging.nitf.core.common.NitfFormatException;
 import org.codice.imaging.nitf.core.image.ImageCompression;
 import org.codice.imaging.nitf.core.image.ImageSegment;
 
@@ -126,4 +128,14 @@ public class NitfRendererTest {
         assertThat(sourceBands.length, is(1));
         assertThat(sourceBands[0], is(0));
     }
+
+    @Test
+    public void checkMaskedVectorQuantizationBlocksAreTransparent() throws IOException, NitfFormatException {
+        ImageSegment imageSegment = RenderTestSupport.parseImageSegment("/fromOSGEO/bugs/bug3337.ntf");
+        BufferedImage img = renderer.render(imageSegment);
+        // only the 256 x 256 blocks in the right three columns of the top three rows have data
+        assertThat(img.getRGB(10, 10) >>> 24, is(0));
+        assertThat(img.getRGB(1500, 1500) >>> 24, is(0));
+        assertThat(img.getRGB(800, 300) >>> 24, is(0xFF));
+    }
 }
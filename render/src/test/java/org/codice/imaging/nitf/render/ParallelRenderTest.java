@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import static org.codice.imaging.nitf.render.RenderTestSupport.getPixels;
+import static org.codice.imaging.nitf.render.RenderTestSupport.parseImageSegments;
+import static org.junit.Assert.assertArrayEquals;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+/**
+ * Tests that decoding blocks in parallel gives the same result as decoding them sequentially.
+ */
+public class ParallelRenderTest {
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    @AfterClass
+    public static void shutdownPool() {
+        POOL.shutdown();
+    }
+
+    @Test
+    public void testBlockInterleve() throws IOException, NitfFormatException {
+        checkParallelRender("/JitcNitf20Samples/U_3002A.NTF");
+    }
+
+    @Test
+    public void testPixelInterleve() throws IOException, NitfFormatException {
+        checkParallelRender("/JitcNitf20Samples/U_3010A.NTF");
+    }
+
+    @Test
+    public void testRowInterleve() throws IOException, NitfFormatException {
+        checkParallelRender("/JitcNitf21Samples/i_3301h.ntf");
+    }
+
+    @Test
+    public void testBandSequential() throws IOException, NitfFormatException {
+        checkParallelRender("/JitcNitf21Samples/i_3301a.ntf");
+    }
+
+    @Test
+    public void testMaskedPixelInterleve() throws IOException, NitfFormatException {
+        checkParallelRender("/JitcNitf21Samples/v_3301f.ntf");
+    }
+
+    @Test
+    public void testTwelveBit() throws IOException, NitfFormatException {
+        checkParallelRender("/JitcNitf21Samples/i_3430a.ntf");
+    }
+
+    @Test
+    public void testNonSquareBlockGrid() throws IOException, NitfFormatException {
+        checkParallelRender("/JitcNitf20Samples/U_4007A.NTF");
+    }
+
+    @Test
+    public void testVectorQuantization() throws IOException, NitfFormatException {
+        checkParallelRender("/fromOSGEO/cadrg/001zc013.on1");
+    }
+
+    @Test
+    public void testMaskedVectorQuantization() throws IOException, NitfFormatException {
+        checkParallelRender("/JitcNitf20Samples/U_3058B.NTF");
+    }
+
+    @Test
+    public void testJpeg() throws IOException, NitfFormatException {
+        checkParallelRender("/JitcNitf21Samples/i_3309a.ntf");
+    }
+
+    @Test
+    public void testJpegSubsampled() throws IOException, NitfFormatException {
+        checkParallelRender("/JitcNitf21Samples/i_3309a.ntf", 3);
+    }
+
+    @Test
+    public void testMaskedJpeg() throws IOException, NitfFormatException {
+        checkParallelRender("/JitcNitf21Samples/ns3301j.nsf");
+    }
+
+    @Test
+    public void testJpegSegments() throws IOException, NitfFormatException {
+        checkParallelRender("/JitcNitf20Samples/U_1122A.NTF");
+    }
+
+    @Test
+    public void testColourJpeg() throws IOException, NitfFormatException {
+        checkParallelRender("/WithBE.ntf");
+    }
+
+    @Test
+    public void testJpeg2000() throws IOException, NitfFormatException {
+        checkParallelRender("/JitcJpeg2000/p1_04a.ntf");
+    }
+
+    @Test
+    public void testJpeg2000Subsampled() throws IOException, NitfFormatException {
+        checkParallelRender("/JitcJpeg2000/p1_04a.ntf", 3);
+    }
+
+    @Test
+    public void testColourJpeg2000() throws IOException, NitfFormatException {
+        checkParallelRender("/JitcJpeg2000/046_512x512_s_8_3_rgb_j2c.ntf");
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadErrorBlockInterleve() throws IOException, NitfFormatException {
+        checkParallelReadError("/JitcNitf20Samples/U_3002A.NTF");
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadErrorBandSequential() throws IOException, NitfFormatException {
+        checkParallelReadError("/JitcNitf21Samples/i_3301a.ntf");
+    }
+
+    private void checkParallelReadError(final String resourceName) throws IOException, NitfFormatException {
+        ImageSegment segment = parseImageSegments(resourceName).get(0);
+        segment.getData().close();
+        NitfRenderer renderer = new NitfRenderer();
+        renderer.setForkJoinPool(POOL);
+        renderer.render(segment);
+    }
+
+    private void checkParallelRender(final String resourceName) throws IOException, NitfFormatException {
+        checkParallelRender(resourceName, 1);
+    }
+
+    private void checkParallelRender(final String resourceName, final int subsampling) throws IOException, NitfFormatException {
+        List<ImageSegment> sequentialSegments = parseImageSegments(resourceName);
+        List<ImageSegment> parallelSegments = parseImageSegments(resourceName);
+        NitfRenderer sequentialRenderer = new NitfRenderer();
+        NitfRenderer parallelRenderer = new NitfRenderer();
+        parallelRenderer.setForkJoinPool(POOL);
+        for (int i = 0; i < sequentialSegments.size(); ++i) {
+            BufferedImage expected = sequentialRenderer.render(sequentialSegments.get(i), subsampling);
+            BufferedImage actual = parallelRenderer.render(parallelSegments.get(i), subsampling);
+            assertArrayEquals(getPixels(expected), getPixels(actual));
+        }
+    }
+}
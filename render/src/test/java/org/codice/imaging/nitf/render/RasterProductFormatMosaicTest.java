@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.common.impl.FileReader;
+import org.codice.imaging.nitf.core.header.impl.NitfParser;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.core.impl.SlottedParseStrategy;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for rendering views across several RPF frames.
+ */
+public class RasterProductFormatMosaicTest {
+
+    private static final String[] FRAMES = {"9s", "9t", "hh", "hj", "r8", "r9"};
+
+    private static final int FRAME_SIZE = 2304;
+
+    private static final double WEST = -85.43138888888889;
+
+    private static final double MIDDLE_LONGITUDE = -84.06083333333333;
+
+    private static final double EAST = -82.69027777777778;
+
+    private static final double SOUTH = 32.13027777777778;
+
+    private static final double HH_SOUTH = 33.16694444444445;
+
+    private static final double HH_NORTH = 34.20333333333333;
+
+    private static final double NORTH = 35.23972222222222;
+
+    private RasterProductFormatMosaic mosaic;
+
+    @Before
+    public void addFrames() throws NitfFormatException, URISyntaxException {
+        mosaic = new RasterProductFormatMosaic(new BlockCache(64L * 1024 * 1024), 2);
+        for (String frame : FRAMES) {
+            mosaic.addFrame(getFrameFile(frame));
+        }
+    }
+
+    @Test
+    public void checkBounds() {
+        assertThat(mosaic.getNumberOfFrames(), is(6));
+        Rectangle2D bounds = mosaic.getBounds();
+        assertEquals(WEST, bounds.getMinX(), 1e-9);
+        assertEquals(EAST, bounds.getMaxX(), 1e-9);
+        assertEquals(SOUTH, bounds.getMinY(), 1e-9);
+        assertEquals(NORTH, bounds.getMaxY(), 1e-9);
+        assertThat(mosaic.getNumberOfOpenFrames(), is(0));
+    }
+
+    @Test
+    public void checkSubsampledFrame() throws IOException, NitfFormatException, URISyntaxException {
+        Rectangle2D area = new Rectangle2D.Double(WEST, HH_SOUTH, MIDDLE_LONGITUDE - WEST, HH_NORTH - HH_SOUTH);
+        BufferedImage view = mosaic.render(area, new Dimension(FRAME_SIZE / 2, FRAME_SIZE / 2));
+        assertThat(mosaic.getNumberOfOpenFrames(), is(1));
+
+        ImageSegment hh = parseFrame("hh");
+        assertThat(view.getRGB(0, 0), is(getFramePixel(hh, 0, 0)));
+        assertThat(view.getRGB(100, 200), is(getFramePixel(hh, 200, 400)));
+        assertThat(view.getRGB(1151, 1151), is(getFramePixel(hh, 2302, 2302)));
+    }
+
+    @Test
+    public void checkViewAcrossFrameCorner() throws IOException, NitfFormatException, URISyntaxException {
+        double halfWidth = 128 * (MIDDLE_LONGITUDE - WEST) / FRAME_SIZE;
+        double halfHeight = 128 * (HH_NORTH - HH_SOUTH) / FRAME_SIZE;
+        Rectangle2D area = new Rectangle2D.Double(MIDDLE_LONGITUDE - halfWidth, HH_SOUTH - halfHeight, 2 * halfWidth,
+                2 * halfHeight);
+        BufferedImage view = mosaic.render(area, new Dimension(256, 256));
+        assertThat(mosaic.getNumberOfOpenFrames(), is(2));
+
+        assertThat(view.getRGB(64, 64), is(getFramePixel(parseFrame("hh"), FRAME_SIZE - 64, FRAME_SIZE - 64)));
+        assertThat(view.getRGB(192, 64), is(getFramePixel(parseFrame("hj"), 64, FRAME_SIZE - 64)));
+        assertThat(view.getRGB(64, 192), is(getFramePixel(parseFrame("9s"), FRAME_SIZE - 64, 64)));
+        assertThat(view.getRGB(192, 192), is(getFramePixel(parseFrame("9t"), 64, 64)));
+        assertThat(view.getRGB(127, 127), is(getFramePixel(parseFrame("hh"), FRAME_SIZE - 1, FRAME_SIZE - 1)));
+        assertThat(view.getRGB(128, 128), is(getFramePixel(parseFrame("9t"), 0, 0)));
+    }
+
+    @Test
+    public void checkUncoveredAreaIsTransparent() throws IOException {
+        BufferedImage view = mosaic.render(new Rectangle2D.Double(EAST + 1.0, SOUTH, 1.0, 1.0), new Dimension(16, 16));
+        assertThat(view.getRGB(8, 8), is(0));
+        assertThat(mosaic.getNumberOfOpenFrames(), is(0));
+    }
+
+    private File getFrameFile(final String frame) throws URISyntaxException {
+        return new File(getClass().getResource("/ECRG/00000000" + frame + "0013.lf2").toURI());
+    }
+
+    private ImageSegment parseFrame(final String frame) throws NitfFormatException, URISyntaxException {
+        FileReader reader = new FileReader(getFrameFile(frame));
+        try {
+            SlottedParseStrategy parseStrategy = new SlottedParseStrategy(SlottedParseStrategy.IMAGE_DATA);
+            NitfParser.parse(reader, parseStrategy);
+            return parseStrategy.getDataSource().getImageSegments().get(0);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static int getFramePixel(final ImageSegment frame, final int column, final int row) throws IOException {
+        frame.getData().seek(0);
+        return new NitfRenderer().renderRegion(frame, new Rectangle(column, row, 1, 1), 1).getRGB(0, 0);
+    }
+}
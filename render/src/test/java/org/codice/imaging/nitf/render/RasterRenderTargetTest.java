@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import static org.codice.imaging.nitf.render.RenderTestSupport.getPixels;
+import static org.junit.Assert.assertArrayEquals;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.awt.image.WritableRaster;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests that RasterRenderTarget gives the same result as drawing with Graphics2D.
+ */
+public class RasterRenderTargetTest {
+
+    private static final int TARGET_SIZE = 40;
+    private static final int BLOCK_SIZE = 16;
+    private static final int[] ALPHAS = {0, 0xFF, 0xFF, 0xFF};
+
+    @Test
+    public void testGrey() {
+        checkAllPositions(randomBlock(BufferedImage.TYPE_BYTE_GRAY));
+    }
+
+    @Test
+    public void testGreyRamp() {
+        BufferedImage block = new BufferedImage(256, 1, BufferedImage.TYPE_BYTE_GRAY);
+        for (int x = 0; x < block.getWidth(); ++x) {
+            block.getRaster().setSample(x, 0, 0, x);
+        }
+        BufferedImage expected = new BufferedImage(256, 1, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage actual = new BufferedImage(256, 1, BufferedImage.TYPE_INT_ARGB);
+        draw(expected, block, 0, 0);
+        new RasterRenderTarget(actual).drawImage(block, 0, 0);
+        assertArrayEquals(getPixels(expected), getPixels(actual));
+    }
+
+    @Test
+    public void testRgb() {
+        checkAllPositions(randomBlock(BufferedImage.TYPE_INT_RGB));
+    }
+
+    @Test
+    public void testBgr() {
+        checkAllPositions(randomBlock(BufferedImage.TYPE_3BYTE_BGR));
+    }
+
+    @Test
+    public void testArgbWithTransparentPixels() {
+        BufferedImage block = new BufferedImage(BLOCK_SIZE, BLOCK_SIZE, BufferedImage.TYPE_INT_ARGB);
+        Random random = new Random(1);
+        for (int y = 0; y < BLOCK_SIZE; ++y) {
+            for (int x = 0; x < BLOCK_SIZE; ++x) {
+                block.setRGB(x, y, (ALPHAS[random.nextInt(ALPHAS.length)] << 24) | random.nextInt(0x1000000));
+            }
+        }
+        checkAllPositions(block);
+    }
+
+    @Test
+    public void testArgbWithPartialAlpha() {
+        BufferedImage block = randomBlock(BufferedImage.TYPE_INT_ARGB);
+        block.setRGB(BLOCK_SIZE - 1, BLOCK_SIZE - 1, 0x80123456);
+        checkAllPositions(block);
+    }
+
+    @Test
+    public void testIndexedWithTransparentEntry() {
+        byte[] red = new byte[] {0, (byte) 0xFF, 0x10, (byte) 0x80};
+        byte[] green = new byte[] {0, 0x20, (byte) 0xFF, (byte) 0x80};
+        byte[] blue = new byte[] {0, 0x30, 0x40, (byte) 0xFF};
+        IndexColorModel colourModel = new IndexColorModel(8, red.length, red, green, blue, 0);
+        BufferedImage block = new BufferedImage(BLOCK_SIZE, BLOCK_SIZE, BufferedImage.TYPE_BYTE_INDEXED, colourModel);
+        Random random = new Random(2);
+        WritableRaster raster = block.getRaster();
+        for (int y = 0; y < BLOCK_SIZE; ++y) {
+            for (int x = 0; x < BLOCK_SIZE; ++x) {
+                raster.setSample(x, y, 0, random.nextInt(red.length));
+            }
+        }
+        checkAllPositions(block);
+    }
+
+    @Test
+    public void testMatchingColourModel() {
+        BufferedImage block = randomBlock(BufferedImage.TYPE_BYTE_GRAY);
+        BufferedImage expected = new BufferedImage(TARGET_SIZE, TARGET_SIZE, BufferedImage.TYPE_BYTE_GRAY);
+        BufferedImage actual = new BufferedImage(TARGET_SIZE, TARGET_SIZE, BufferedImage.TYPE_BYTE_GRAY);
+        draw(expected, block, -3, TARGET_SIZE - 5);
+        new RasterRenderTarget(actual).drawImage(block, -3, TARGET_SIZE - 5);
+        assertArrayEquals(expected.getRaster().getPixels(0, 0, TARGET_SIZE, TARGET_SIZE, (int[]) null),
+                actual.getRaster().getPixels(0, 0, TARGET_SIZE, TARGET_SIZE, (int[]) null));
+    }
+
+    @Test
+    public void testIndexedWithDifferentColourMap() {
+        byte[] levels = new byte[] {0, (byte) 0x55, (byte) 0xAA, (byte) 0xFF};
+        byte[] reversed = new byte[] {(byte) 0xFF, (byte) 0xAA, (byte) 0x55, 0};
+        IndexColorModel targetColourModel = new IndexColorModel(8, levels.length, levels, levels, levels);
+        IndexColorModel blockColourModel = new IndexColorModel(8, reversed.length, reversed, reversed, reversed);
+        BufferedImage block = new BufferedImage(BLOCK_SIZE, BLOCK_SIZE, BufferedImage.TYPE_BYTE_INDEXED, blockColourModel);
+        Random random = new Random(3);
+        WritableRaster raster = block.getRaster();
+        for (int y = 0; y < BLOCK_SIZE; ++y) {
+            for (int x = 0; x < BLOCK_SIZE; ++x) {
+                raster.setSample(x, y, 0, random.nextInt(reversed.length));
+            }
+        }
+        BufferedImage expected = new BufferedImage(TARGET_SIZE, TARGET_SIZE, BufferedImage.TYPE_BYTE_INDEXED, targetColourModel);
+        BufferedImage actual = new BufferedImage(TARGET_SIZE, TARGET_SIZE, BufferedImage.TYPE_BYTE_INDEXED, targetColourModel);
+        draw(expected, block, 5, 7);
+        new RasterRenderTarget(actual).drawImage(block, 5, 7);
+        assertArrayEquals(getPixels(expected), getPixels(actual));
+    }
+
+    @Test
+    public void testUnhandledType() {
+        checkAllPositions(randomBlock(BufferedImage.TYPE_USHORT_GRAY));
+    }
+
+    /**
+     * Draw the block at positions inside, overlapping and outside the target, over existing content.
+     */
+    private static void checkAllPositions(final BufferedImage block) {
+        int[] positions = {-BLOCK_SIZE - 2, -5, 0, 7, TARGET_SIZE - BLOCK_SIZE, TARGET_SIZE - 3, TARGET_SIZE + 1};
+        for (int y : positions) {
+            for (int x : positions) {
+                BufferedImage expected = backgroundImage();
+                BufferedImage actual = backgroundImage();
+                draw(expected, block, x + 2, y - 1);
+                new RasterRenderTarget(actual, 2, -1).drawImage(block, x, y);
+                assertArrayEquals(getPixels(expected), getPixels(actual));
+
+                // clipped to a rendered image extent that ends inside the target
+                BufferedImage expectedClipped = backgroundImage();
+                BufferedImage actualClipped = backgroundImage();
+                draw(expectedClipped, block, x + 2, y - 1, new Rectangle(2, 0, TARGET_SIZE / 2, TARGET_SIZE / 2 - 1));
+                new RasterRenderTarget(actualClipped, 2, -1, TARGET_SIZE / 2, TARGET_SIZE / 2).drawImage(block, x, y);
+                assertArrayEquals(getPixels(expectedClipped), getPixels(actualClipped));
+            }
+        }
+    }
+
+    private static BufferedImage backgroundImage() {
+        BufferedImage img = new BufferedImage(TARGET_SIZE, TARGET_SIZE, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < TARGET_SIZE / 2; ++y) {
+            for (int x = 0; x < TARGET_SIZE; ++x) {
+                img.setRGB(x, y, 0xFF000000 | (x * 0x0604) | (y << 16));
+            }
+        }
+        return img;
+    }
+
+    private static BufferedImage randomBlock(final int type) {
+        BufferedImage block = new BufferedImage(BLOCK_SIZE, BLOCK_SIZE, type);
+        Random random = new Random(type);
+        WritableRaster raster = block.getRaster();
+        for (int y = 0; y < BLOCK_SIZE; ++y) {
+            for (int x = 0; x < BLOCK_SIZE; ++x) {
+                for (int band = 0; band < raster.getNumBands(); ++band) {
+                    raster.setSample(x, y, band, random.nextInt(1 << raster.getSampleModel().getSampleSize(band)));
+                }
+            }
+        }
+        return block;
+    }
+
+    private static void draw(final BufferedImage target, final BufferedImage block, final int x, final int y) {
+        draw(target, block, x, y, new Rectangle(0, 0, target.getWidth(), target.getHeight()));
+    }
+
+    private static void draw(final BufferedImage target, final BufferedImage block, final int x, final int y,
+            final Rectangle clip) {
+        Graphics2D graphics = target.createGraphics();
+        graphics.clip(clip);
+        graphics.drawImage(block, x, y, null);
+        graphics.dispose();
+    }
+}
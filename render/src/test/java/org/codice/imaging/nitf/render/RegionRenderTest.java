@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import static org.codice.imaging.nitf.render.RenderTestSupport.parseImageSegments;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.junit.Test;
+
+/**
+ * Tests that rendering a region gives the same pixels as the same region of a full render.
+ */
+public class RegionRenderTest {
+
+    @Test
+    public void testBlockInterleve() throws IOException, NitfFormatException {
+        checkRegionRender("/JitcNitf20Samples/U_3002A.NTF", null);
+    }
+
+    @Test
+    public void testBlockInterleveParallel() throws IOException, NitfFormatException {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            checkRegionRender("/JitcNitf20Samples/U_3002A.NTF", pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testPixelInterleve() throws IOException, NitfFormatException {
+        checkRegionRender("/JitcNitf20Samples/U_3010A.NTF", null);
+    }
+
+    @Test
+    public void testRowInterleve() throws IOException, NitfFormatException {
+        checkRegionRender("/JitcNitf21Samples/i_3301h.ntf", null);
+    }
+
+    @Test
+    public void testBandSequential() throws IOException, NitfFormatException {
+        checkRegionRender("/JitcNitf21Samples/i_3301a.ntf", null);
+    }
+
+    @Test
+    public void testMaskedPixelInterleve() throws IOException, NitfFormatException {
+        checkRegionRender("/JitcNitf21Samples/v_3301f.ntf", null);
+    }
+
+    @Test
+    public void testNonSquareBlockGrid() throws IOException, NitfFormatException {
+        checkRegionRender("/JitcNitf20Samples/U_4007A.NTF", null);
+    }
+
+    @Test
+    public void testBilevel() throws IOException, NitfFormatException {
+        checkRegionRender("/JitcNitf21Samples/i_3041a.ntf", null);
+    }
+
+    @Test
+    public void testJpeg() throws IOException, NitfFormatException {
+        checkRegionRender("/JitcNitf21Samples/i_3309a.ntf", null);
+    }
+
+    @Test
+    public void testMaskedJpeg() throws IOException, NitfFormatException {
+        checkRegionRender("/JitcNitf21Samples/ns3301j.nsf", null);
+    }
+
+    @Test
+    public void testJpeg2000() throws IOException, NitfFormatException {
+        checkRegionRender("/JitcJpeg2000/046_512x512_s_8_3_rgb_j2c.ntf", null);
+    }
+
+    @Test
+    public void testMaskedVectorQuantization() throws IOException, NitfFormatException {
+        checkRegionRender("/JitcNitf20Samples/U_3058B.NTF", null);
+    }
+
+    @Test
+    public void testRegionOutsideImage() throws IOException, NitfFormatException {
+        ImageSegment segment = parseImageSegments("/JitcNitf20Samples/U_3002A.NTF").get(0);
+        int columns = (int) segment.getNumberOfColumns();
+        BufferedImage img = new NitfRenderer().renderRegion(segment, new Rectangle(columns - 2, 0, 4, 4));
+        assertEquals(4, img.getWidth());
+        assertEquals(0, img.getRGB(3, 0));
+    }
+
+    @Test
+    public void testRegionOutsidePaddedImage() throws IOException, NitfFormatException {
+        // 257 columns in 128 column blocks, so the last block column has 127 columns of pad pixels
+        ImageSegment segment = parseImageSegments("/JitcNitf20Samples/U_4007A.NTF").get(0);
+        int columns = (int) segment.getNumberOfColumns();
+        int rows = (int) segment.getNumberOfRows();
+        BufferedImage img = new NitfRenderer().renderRegion(segment, new Rectangle(columns - 2, rows - 2, 4, 4));
+        for (int y = 0; y < 4; ++y) {
+            for (int x = 0; x < 4; ++x) {
+                int alpha = img.getRGB(x, y) >>> 24;
+                assertEquals(((x < 2) && (y < 2)) ? 0xFF : 0, alpha);
+            }
+        }
+    }
+
+    private void checkRegionRender(final String resourceName, final ForkJoinPool pool) throws IOException, NitfFormatException {
+        List<ImageSegment> fullSegments = parseImageSegments(resourceName);
+        List<ImageSegment> regionSegments = parseImageSegments(resourceName);
+        NitfRenderer renderer = new NitfRenderer();
+        renderer.setForkJoinPool(pool);
+        for (int i = 0; i < fullSegments.size(); ++i) {
+            BufferedImage full = renderer.render(fullSegments.get(i));
+            ImageSegment segment = regionSegments.get(i);
+            Rectangle region = new Rectangle((int) segment.getNumberOfColumns() / 3, (int) segment.getNumberOfRows() / 3,
+                    (int) segment.getNumberOfColumns() / 3 + 1, (int) segment.getNumberOfRows() / 3 + 1);
+            BufferedImage actual = renderer.renderRegion(segment, region);
+            assertArrayEquals(full.getRGB(region.x, region.y, region.width, region.height, null, 0, region.width),
+                    actual.getRGB(0, 0, region.width, region.height, null, 0, region.width));
+        }
+    }
+}
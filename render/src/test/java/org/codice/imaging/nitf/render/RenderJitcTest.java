@@ -454,7 +454,8 @@ public class RenderJitcTest extends RenderTestSupport {
 
     @Test
     public void testU_3058B() throws IOException, NitfFormatException {
-        testOneFile("U_3058B.NTF", "JitcNitf20Samples");
+        // masked blocks are transparent, which the indexed closest data model has no colour for
+        testOneFileRenderToAGRB("U_3058B.NTF", "JitcNitf20Samples");
     }
 
     @Test
@@ -18,6 +18,7 @@ import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 import java.util.function.Function;
 import javax.imageio.ImageIO;
 import org.apache.commons.lang3.tuple.ImmutablePair;
@@ -126,6 +127,42 @@ public class RenderTestSupport extends TestCase {
         }
     }
 
+    /**
+     * Parse the image segments (with their data) from a test resource.
+     *
+     * @param resourceName the name of the test file resource.
+     * @return the image segments in the file.
+     * @throws NitfFormatException if the file could not be parsed.
+     */
+    static List<ImageSegment> parseImageSegments(final String resourceName) throws NitfFormatException {
+        assertNotNull("Test file missing: " + resourceName, RenderTestSupport.class.getResource(resourceName));
+        SlottedParseStrategy parseStrategy = new SlottedParseStrategy(SlottedParseStrategy.IMAGE_DATA);
+        NitfParser.parse(new NitfInputStreamReader(RenderTestSupport.class.getResourceAsStream(resourceName)), parseStrategy);
+        return parseStrategy.getDataSource().getImageSegments();
+    }
+
+    /**
+     * Parse the first image segment (with its data) from a test resource.
+     *
+     * @param resourceName the name of the test file resource.
+     * @return the first image segment in the file.
+     * @throws NitfFormatException if the file could not be parsed.
+     */
+    static ImageSegment parseImageSegment(final String resourceName) throws NitfFormatException {
+        return parseImageSegments(resourceName).get(0);
+    }
+
+    /**
+     * Get the ARGB values of every pixel of an image.
+     *
+     * @param image the image.
+     * @return the pixel values, in row major order.
+     */
+    static int[] getPixels(final BufferedImage image) {
+        assertNotNull(image);
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+
     private BufferedImage convert2ARGB(ImageSegment imageSegment, BufferedImage bufferedImage) {
         BufferedImage imgAGRB = new BufferedImage(
                 imageSegment.getImageLocationColumn() + (int) imageSegment.getNumberOfColumns(),
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+import org.codice.imaging.nitf.render.datareader.DataReaderFactory;
+import org.codice.imaging.nitf.render.datareader.SampleReader;
+import org.junit.Test;
+
+/**
+ * Tests that bulk sample reads match reading one sample at a time.
+ */
+public class SampleReaderTest {
+
+    private static final int NUM_SAMPLES = 1000;
+
+    @Test
+    public void testOneBitSamples() throws IOException {
+        checkMatchesReadBits(1);
+    }
+
+    @Test
+    public void testEightBitSamples() throws IOException {
+        checkMatchesReadBits(Byte.SIZE);
+    }
+
+    @Test
+    public void testTwelveBitSamples() throws IOException {
+        checkMatchesReadBits(12);
+    }
+
+    @Test
+    public void testSixteenBitSamples() throws IOException {
+        checkMatchesReadBits(Short.SIZE);
+    }
+
+    @Test
+    public void testSkipSamples() throws IOException {
+        byte[] data = randomData();
+        SampleReader sampleReader = DataReaderFactory.samplesForBitsPerSample(12);
+        ImageInputStream bulkStream = new MemoryCacheImageInputStream(new ByteArrayInputStream(data));
+        ImageInputStream referenceStream = new MemoryCacheImageInputStream(new ByteArrayInputStream(data));
+        sampleReader.skip(bulkStream, 3);
+        referenceStream.readBits(36);
+        assertThat(bulkStream.getStreamPosition(), is(referenceStream.getStreamPosition()));
+        assertThat(bulkStream.getBitOffset(), is(referenceStream.getBitOffset()));
+    }
+
+    private void checkMatchesReadBits(final int bitsPerSample) throws IOException {
+        byte[] data = randomData();
+        SampleReader sampleReader = DataReaderFactory.samplesForBitsPerSample(bitsPerSample);
+        ImageInputStream bulkStream = new MemoryCacheImageInputStream(new ByteArrayInputStream(data));
+        ImageInputStream referenceStream = new MemoryCacheImageInputStream(new ByteArrayInputStream(data));
+        // Start part way through a byte, then check that byte aligned and unaligned runs both match.
+        bulkStream.readBits(3);
+        referenceStream.readBits(3);
+        int[] samples = new int[NUM_SAMPLES];
+        sampleReader.read(bulkStream, samples, 0, NUM_SAMPLES / 2);
+        sampleReader.read(bulkStream, samples, NUM_SAMPLES / 2, NUM_SAMPLES / 2);
+        for (int i = 0; i < NUM_SAMPLES; ++i) {
+            assertThat(samples[i], is((int) referenceStream.readBits(bitsPerSample)));
+        }
+        assertThat(bulkStream.getStreamPosition(), is(referenceStream.getStreamPosition()));
+        assertThat(bulkStream.getBitOffset(), is(referenceStream.getBitOffset()));
+    }
+
+    private static byte[] randomData() {
+        byte[] data = new byte[NUM_SAMPLES * 3];
+        new Random(1).nextBytes(data);
+        return data;
+    }
+}
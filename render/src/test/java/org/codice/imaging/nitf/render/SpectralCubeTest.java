@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.image.ImageCompression;
+import org.codice.imaging.nitf.core.image.ImageMode;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.core.image.PixelValueType;
+import static org.codice.imaging.nitf.render.RenderTestSupport.parseImageSegment;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * Tests for reading sample values as an image cube.
+ */
+public class SpectralCubeTest {
+
+    private static final int WIDTH = 3;
+
+    private static final int HEIGHT = 2;
+
+    @Test
+    public void checkBlockAndRowInterleveAgree() throws IOException, NitfFormatException {
+        // the same masked image, in different image modes
+        SpectralCube blockInterleved = new SpectralCube(parseImageSegment("/JitcNitf21Samples/ns3301b.nsf"));
+        SpectralCube rowInterleved = new SpectralCube(parseImageSegment("/JitcNitf21Samples/i_3301k.ntf"));
+        assertThat(blockInterleved.getNumberOfBands(), is(3));
+        for (int band = 0; band < 3; ++band) {
+            assertArrayEquals(blockInterleved.readBand(band), rowInterleved.readBand(band));
+        }
+        int[] bands = {2, 0};
+        assertArrayEquals(blockInterleved.readWindow(200, 250, 100, 300, bands), rowInterleved.readWindow(200, 250, 100, 300, bands));
+    }
+
+    @Test
+    public void checkBandSequentialSpectra() throws IOException, NitfFormatException {
+        checkSpectraMatchRender("/JitcNitf21Samples/i_3301a.ntf");
+    }
+
+    @Test
+    public void checkPixelInterleveSpectra() throws IOException, NitfFormatException {
+        checkSpectraMatchRender("/JitcNitf21Samples/v_3301f.ntf");
+    }
+
+    @Test
+    public void checkBlockInterleveSpectra() throws IOException, NitfFormatException {
+        checkSpectraMatchRender("/JitcNitf20Samples/U_3002A.NTF");
+    }
+
+    @Test
+    public void checkWindowMatchesBands() throws IOException, NitfFormatException {
+        SpectralCube cube = new SpectralCube(parseImageSegment("/JitcNitf21Samples/v_3301f.ntf"));
+        int row = 100;
+        int column = 120;
+        int height = 200;
+        int width = 250;
+        int[] bands = {1, 2};
+        int[] window = cube.readWindow(row, column, height, width, bands);
+        for (int i = 0; i < bands.length; ++i) {
+            int[] band = cube.readBand(bands[i]);
+            for (int y = 0; y < height; ++y) {
+                int windowStart = (i * height + y) * width;
+                int bandStart = (row + y) * cube.getNumberOfColumns() + column;
+                assertArrayEquals(Arrays.copyOfRange(band, bandStart, bandStart + width),
+                        Arrays.copyOfRange(window, windowStart, windowStart + width));
+            }
+        }
+    }
+
+    @Test
+    public void checkStreamPositionRestored() throws IOException, NitfFormatException {
+        ImageSegment segment = parseImageSegment("/JitcNitf21Samples/ns3301b.nsf");
+        long start = segment.getData().getStreamPosition();
+        SpectralCube cube = new SpectralCube(segment);
+        assertThat(segment.getData().getStreamPosition(), is(start));
+        cube.readWindow(10, 20, 30, 40, new int[] {1});
+        assertThat(segment.getData().getStreamPosition(), is(start));
+        cube.readSpectrum(50, 60);
+        assertThat(segment.getData().getStreamPosition(), is(start));
+    }
+
+    @Test
+    public void checkIntegerValuesMatchSamples() throws IOException, NitfFormatException {
+        SpectralCube cube = new SpectralCube(parseImageSegment("/JitcNitf21Samples/v_3301f.ntf"));
+        assertArrayEquals(Arrays.stream(cube.readBand(2)).asDoubleStream().toArray(), cube.readBandValues(2), 0.0);
+        assertArrayEquals(Arrays.stream(cube.readSpectrum(7, 9)).asDoubleStream().toArray(), cube.readSpectrumValues(7, 9), 0.0);
+    }
+
+    @Test
+    public void checkValueRangeSkipsPadPixels() throws IOException, NitfFormatException {
+        SpectralCube cube = new SpectralCube(parseImageSegment("/JitcNitf21Samples/v_3301f.ntf"));
+        // the window has pad pixels (0x7F in every band), and the other values of band 1 are from 152 to 255
+        assertArrayEquals(new double[] {152, 255}, cube.readValueRange(1, new Rectangle(128, 128, 256, 40)), 0.0);
+    }
+
+    @Test
+    public void checkFloat32BlockInterleveValues() throws IOException {
+        ByteBuffer data = ByteBuffer.allocate(WIDTH * HEIGHT * 2 * 4);
+        for (int i = 0; i < WIDTH * HEIGHT * 2; ++i) {
+            data.putFloat(i * 0.5f - 1.0f);
+        }
+        SpectralCube cube = new SpectralCube(mockSegment(PixelValueType.REAL, 32, ImageMode.BLOCKINTERLEVE, 2, data.array()));
+        assertArrayEquals(new double[] {2.0, 2.5, 3.0, 3.5, 4.0, 4.5}, cube.readBandValues(1), 0.0);
+        assertArrayEquals(new double[] {-0.5, 0.0, 1.0, 1.5, 2.5, 3.0, 4.0, 4.5}, cube.readWindowValues(0, 1, 2, 2, new int[] {0, 1}), 0.0);
+        assertArrayEquals(new double[] {1.5, 4.5}, cube.readSpectrumValues(1, 2), 0.0);
+    }
+
+    @Test
+    public void checkFloat64PixelInterleveValues() throws IOException {
+        ByteBuffer data = ByteBuffer.allocate(WIDTH * HEIGHT * 2 * 8);
+        for (int i = 0; i < WIDTH * HEIGHT * 2; ++i) {
+            data.putDouble(1.0e10 + i);
+        }
+        SpectralCube cube = new SpectralCube(mockSegment(PixelValueType.REAL, 64, ImageMode.PIXELINTERLEVE, 2, data.array()));
+        assertArrayEquals(new double[] {1.0e10 + 1, 1.0e10 + 3, 1.0e10 + 5, 1.0e10 + 7, 1.0e10 + 9, 1.0e10 + 11},
+                cube.readBandValues(1), 0.0);
+        assertArrayEquals(new double[] {1.0e10 + 8, 1.0e10 + 9}, cube.readSpectrumValues(1, 1), 0.0);
+    }
+
+    @Test
+    public void checkComplexMagnitudes() throws IOException {
+        ByteBuffer data = ByteBuffer.allocate(WIDTH * HEIGHT * 8);
+        float[][] values = {{3, 4}, {-6, 8}, {0, -2}, {1, 0}, {0, 0}, {-5, -12}};
+        for (float[] value : values) {
+            data.putFloat(value[0]);
+            data.putFloat(value[1]);
+        }
+        SpectralCube cube = new SpectralCube(mockSegment(PixelValueType.COMPLEX, 64, ImageMode.BLOCKINTERLEVE, 1, data.array()));
+        assertArrayEquals(new double[] {5, 10, 2, 1, 0, 13}, cube.readBandValues(0), 0.0);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void checkFloatSamplesNotReadAsIntegers() throws IOException {
+        SpectralCube cube = new SpectralCube(mockSegment(PixelValueType.REAL, 32, ImageMode.BLOCKINTERLEVE, 1,
+                new byte[WIDTH * HEIGHT * 4]));
+        cube.readBand(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void checkWindowOutsideImage() throws IOException, NitfFormatException {
+        SpectralCube cube = new SpectralCube(parseImageSegment("/JitcNitf21Samples/i_3301a.ntf"));
+        cube.readWindow(1000, 0, 100, 100, new int[] {0});
+    }
+
+    private void checkSpectraMatchRender(final String resourceName) throws IOException, NitfFormatException {
+        ImageSegment segment = parseImageSegment(resourceName);
+        BufferedImage rendered = new NitfRenderer().render(segment);
+        SpectralCube cube = new SpectralCube(segment);
+        int[] band = cube.readBand(1);
+        for (int row = 3; row < cube.getNumberOfRows(); row += 37) {
+            for (int column = 5; column < cube.getNumberOfColumns(); column += 41) {
+                int argb = rendered.getRGB(column, row);
+                int[] spectrum = cube.readSpectrum(row, column);
+                if ((argb >>> 24) == 0) {
+                    // masked
+                    assertArrayEquals(new int[3], spectrum);
+                } else {
+                    assertArrayEquals(new int[] {(argb >> 16) & 0xFF, (argb >> 8) & 0xFF, argb & 0xFF}, spectrum);
+                }
+                assertThat(band[row * cube.getNumberOfColumns() + column], is(spectrum[1]));
+            }
+        }
+    }
+
+    private static ImageSegment mockSegment(final PixelValueType pixelValueType, final int bitsPerPixel, final ImageMode imageMode,
+            final int numberOfBands, final byte[] data) {
+        ImageSegment segment = Mockito.mock(ImageSegment.class);
+        Mockito.when(segment.getImageCompression()).thenReturn(ImageCompression.NOTCOMPRESSED);
+        Mockito.when(segment.getImageMode()).thenReturn(imageMode);
+        Mockito.when(segment.getPixelValueType()).thenReturn(pixelValueType);
+        Mockito.when(segment.getNumberOfBitsPerPixelPerBand()).thenReturn(bitsPerPixel);
+        Mockito.when(segment.getActualBitsPerPixelPerBand()).thenReturn(bitsPerPixel);
+        Mockito.when(segment.getNumBands()).thenReturn(numberOfBands);
+        Mockito.when(segment.getNumberOfRows()).thenReturn((long) HEIGHT);
+        Mockito.when(segment.getNumberOfColumns()).thenReturn((long) WIDTH);
+        Mockito.when(segment.getNumberOfBlocksPerRow()).thenReturn(1);
+        Mockito.when(segment.getNumberOfBlocksPerColumn()).thenReturn(1);
+        Mockito.when(segment.getNumberOfPixelsPerBlockHorizontal()).thenReturn((long) WIDTH);
+        Mockito.when(segment.getNumberOfPixelsPerBlockVertical()).thenReturn((long) HEIGHT);
+        Mockito.when(segment.getData()).thenReturn(new MemoryCacheImageInputStream(new ByteArrayInputStream(data)));
+        return segment;
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import static org.codice.imaging.nitf.render.RenderTestSupport.parseImageSegments;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.render.imagemode.ImageModeHandler;
+import org.codice.imaging.nitf.render.imagemode.ImageModeHandlerFactory;
+import org.codice.imaging.nitf.render.imagemode.RenderOptions;
+import org.junit.Test;
+
+/**
+ * Tests that subsampled rendering keeps the same pixels as a full render.
+ */
+public class SubsampledRenderTest {
+
+    @Test
+    public void testBlockInterleve() throws IOException, NitfFormatException {
+        checkSubsampledRender("/JitcNitf20Samples/U_3002A.NTF", null);
+    }
+
+    @Test
+    public void testBlockInterleveParallel() throws IOException, NitfFormatException {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            checkSubsampledRender("/JitcNitf20Samples/U_3002A.NTF", pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testPixelInterleve() throws IOException, NitfFormatException {
+        checkSubsampledRender("/JitcNitf20Samples/U_3010A.NTF", null);
+    }
+
+    @Test
+    public void testRowInterleve() throws IOException, NitfFormatException {
+        checkSubsampledRender("/JitcNitf21Samples/i_3301h.ntf", null);
+    }
+
+    @Test
+    public void testBandSequential() throws IOException, NitfFormatException {
+        checkSubsampledRender("/JitcNitf21Samples/i_3301a.ntf", null);
+    }
+
+    @Test
+    public void testMaskedPixelInterleve() throws IOException, NitfFormatException {
+        checkSubsampledRender("/JitcNitf21Samples/v_3301f.ntf", null);
+    }
+
+    @Test
+    public void testTwelveBit() throws IOException, NitfFormatException {
+        checkSubsampledRender("/JitcNitf21Samples/i_3430a.ntf", null);
+    }
+
+    @Test
+    public void testNonSquareBlockGrid() throws IOException, NitfFormatException {
+        checkSubsampledRender("/JitcNitf20Samples/U_4007A.NTF", null);
+    }
+
+    @Test
+    public void testBilevel() throws IOException, NitfFormatException {
+        checkSubsampledRender("/JitcNitf21Samples/i_3041a.ntf", null);
+    }
+
+    @Test
+    public void testMaskedJpeg() throws IOException, NitfFormatException {
+        checkSubsampledRender("/JitcNitf21Samples/ns3301j.nsf", null);
+    }
+
+    @Test
+    public void testJpeg2000() throws IOException, NitfFormatException {
+        checkSubsampledRender("/JitcJpeg2000/046_512x512_s_8_3_rgb_j2c.ntf", null);
+    }
+
+    @Test
+    public void testMaskedVectorQuantization() throws IOException, NitfFormatException {
+        checkSubsampledRender("/JitcNitf20Samples/U_3058B.NTF", null);
+    }
+
+    @Test
+    public void testTargetSize() throws IOException, NitfFormatException {
+        ImageSegment segment = parseImageSegments("/JitcNitf20Samples/U_3002A.NTF").get(0);
+        BufferedImage img = new NitfRenderer().renderToFit(segment, new Dimension(100, 100));
+        assertTrue(img.getWidth() <= 100);
+        assertTrue(img.getHeight() <= 100);
+        int subsampling = (int) ((segment.getNumberOfColumns() + img.getWidth() - 1) / img.getWidth());
+        assertTrue(Math.max(segment.getNumberOfColumns(), segment.getNumberOfRows()) > 100 * (subsampling - 1));
+    }
+
+    @Test
+    public void testDefaultHandlerSubsampling() throws IOException, NitfFormatException {
+        String resourceName = "/JitcNitf21Samples/v_3301f.ntf";
+        BufferedImage full = new NitfRenderer().render(parseImageSegments(resourceName).get(0));
+        ImageSegment segment = parseImageSegments(resourceName).get(0);
+        // only handleImage(segment, graphics) is implemented, so the subsampling comes from the interface default
+        ImageModeHandler modeHandler = ImageModeHandlerFactory.forImageSegment(segment)::handleImage;
+        int subsampling = 3;
+        BufferedImage actual = new BufferedImage((full.getWidth() + subsampling - 1) / subsampling,
+                (full.getHeight() + subsampling - 1) / subsampling, BufferedImage.TYPE_INT_ARGB);
+        modeHandler.handleImage(segment, new RasterRenderTarget(actual), new RenderOptions(null, null, subsampling, null));
+        for (int y = 0; y < actual.getHeight(); ++y) {
+            for (int x = 0; x < actual.getWidth(); ++x) {
+                assertEquals(String.format("default subsampling at (%d, %d)", x, y),
+                        full.getRGB(x * subsampling, y * subsampling), actual.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSubsampling() throws IOException, NitfFormatException {
+        new NitfRenderer().render(parseImageSegments("/JitcNitf20Samples/U_3002A.NTF").get(0), 0);
+    }
+
+    private void checkSubsampledRender(final String resourceName, final ForkJoinPool pool) throws IOException, NitfFormatException {
+        NitfRenderer renderer = new NitfRenderer();
+        renderer.setForkJoinPool(pool);
+        List<ImageSegment> fullSegments = parseImageSegments(resourceName);
+        for (int i = 0; i < fullSegments.size(); ++i) {
+            BufferedImage full = renderer.render(fullSegments.get(i));
+            for (int subsampling : new int[] {2, 3, 5}) {
+                ImageSegment segment = parseImageSegments(resourceName).get(i);
+                BufferedImage actual = renderer.render(segment, subsampling);
+                assertEquals((segment.getNumberOfColumns() + subsampling - 1) / subsampling, actual.getWidth());
+                assertEquals((segment.getNumberOfRows() + subsampling - 1) / subsampling, actual.getHeight());
+                for (int y = 0; y < actual.getHeight(); ++y) {
+                    for (int x = 0; x < actual.getWidth(); ++x) {
+                        assertEquals(String.format("%s subsampling %d at (%d, %d)", resourceName, subsampling, x, y),
+                                full.getRGB(x * subsampling, y * subsampling), actual.getRGB(x, y));
+                    }
+                }
+                checkSubsampledRegionRender(renderer, parseImageSegments(resourceName).get(i), full, subsampling);
+            }
+        }
+    }
+
+    private void checkSubsampledRegionRender(final NitfRenderer renderer, final ImageSegment segment, final BufferedImage full,
+            final int subsampling) throws IOException {
+        Rectangle region = new Rectangle(full.getWidth() / 3 + 1, full.getHeight() / 4 + 1, full.getWidth() / 2, full.getHeight() / 2);
+        BufferedImage actual = renderer.renderRegion(segment, region, subsampling);
+        int firstColumn = (region.x + subsampling - 1) / subsampling;
+        int firstRow = (region.y + subsampling - 1) / subsampling;
+        assertEquals((region.x + region.width + subsampling - 1) / subsampling - firstColumn, actual.getWidth());
+        assertEquals((region.y + region.height + subsampling - 1) / subsampling - firstRow, actual.getHeight());
+        for (int y = 0; y < actual.getHeight(); ++y) {
+            for (int x = 0; x < actual.getWidth(); ++x) {
+                assertEquals(String.format("region subsampling %d at (%d, %d)", subsampling, x, y),
+                        full.getRGB((firstColumn + x) * subsampling, (firstRow + y) * subsampling), actual.getRGB(x, y));
+            }
+        }
+    }
+}